@@ -0,0 +1,111 @@
+package hr.fer.zemris.java.simplecomp;
+
+import java.util.Random;
+
+import hr.fer.zemris.java.simplecomp.impl.MemoryImpl;
+import hr.fer.zemris.java.simplecomp.impl.OffHeapMemory;
+import hr.fer.zemris.java.simplecomp.impl.PrimitiveMemory;
+
+/**
+ * A benchmark comparing the {@linkplain MemoryImpl} and the
+ * {@linkplain OffHeapMemory} on sequential and random integer access. Each
+ * memory is filled with integers, then read sequentially and on random
+ * locations, through both the primitive and the object accessors.
+ * <p>
+ * The program accepts an optional command line argument, the number of memory
+ * locations, which is <tt>10 000 000</tt> by default. Every measurement is
+ * repeated a few times so that the later runs are taken after the code is
+ * compiled by the JIT compiler.
+ *
+ * @author Mario Bobic
+ */
+public class MemoryBenchmark {
+
+    /** Default number of memory locations. */
+    private static final int DEFAULT_SIZE = 10_000_000;
+    /** Number of times each measurement is repeated. */
+    private static final int ROUNDS = 5;
+
+    /** Prevents the JIT compiler from removing the reads. */
+    private static long sink;
+
+    /**
+     * Program entry point.
+     *
+     * @param args optional number of memory locations
+     */
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SIZE;
+
+        int[] randomLocations = new int[size];
+        Random random = new Random(42);
+        for (int i = 0; i < size; i++) {
+            randomLocations[i] = random.nextInt(size);
+        }
+
+        System.out.println("Memory locations: " + size);
+        for (int round = 1; round <= ROUNDS; round++) {
+            System.out.println("Round " + round);
+
+            benchmark("heap", new MemoryImpl(size), randomLocations);
+            try (OffHeapMemory memory = new OffHeapMemory(size)) {
+                benchmark("offheap", memory, randomLocations);
+            }
+        }
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    /**
+     * Runs all measurements on the specified <tt>memory</tt> and prints the
+     * results onto the standard output.
+     *
+     * @param name name of the memory printed with the results
+     * @param memory the memory to be measured
+     * @param randomLocations locations read by the random access measurements
+     */
+    private static void benchmark(String name, PrimitiveMemory memory, int[] randomLocations) {
+        int size = randomLocations.length;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < size; i++) {
+            memory.setInt(i, i);
+        }
+        print(name, "sequential setInt", start, size);
+
+        start = System.nanoTime();
+        long sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += memory.getInt(i);
+        }
+        print(name, "sequential getInt", start, size);
+
+        start = System.nanoTime();
+        for (int i = 0; i < size; i++) {
+            sum += memory.getInt(randomLocations[i]);
+        }
+        print(name, "random getInt", start, size);
+
+        start = System.nanoTime();
+        for (int i = 0; i < size; i++) {
+            sum += (Integer) memory.getLocation(randomLocations[i]);
+        }
+        print(name, "random getLocation", start, size);
+
+        sink += sum;
+    }
+
+    /**
+     * Prints the time per operation of a measurement that started at the
+     * specified time.
+     *
+     * @param name name of the memory
+     * @param measurement name of the measurement
+     * @param start start of the measurement, in nanoseconds
+     * @param operations number of operations of the measurement
+     */
+    private static void print(String name, String measurement, long start, int operations) {
+        double nanos = (double) (System.nanoTime() - start) / operations;
+        System.out.printf("  %-8s %-20s %6.2f ns/op%n", name, measurement, nanos);
+    }
+
+}
@@ -0,0 +1,129 @@
+package hr.fer.zemris.java.simplecomp.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import hr.fer.zemris.java.simplecomp.impl.MemoryImpl;
+import hr.fer.zemris.java.simplecomp.impl.RegistersImpl;
+
+/**
+ * Measures single accesses of the {@linkplain MemoryImpl} and the
+ * {@linkplain RegistersImpl}, through both the object and the primitive
+ * accessors. Memory accesses go to pseudo-random locations of a memory of
+ * {@value #MEMORY_SIZE} locations, and register accesses to pseudo-random
+ * registers, so neither is reduced to a constant by the JIT compiler.
+ *
+ * @author Mario Bobic
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccessBenchmark {
+
+    /** Number of memory locations. */
+    private static final int MEMORY_SIZE = 1 << 16;
+    /** Number of precomputed indexes, a power of two. */
+    private static final int INDEXES = 1 << 12;
+
+    /** The memory. */
+    private MemoryImpl memory;
+    /** The registers. */
+    private RegistersImpl registers;
+    /** Pseudo-random memory locations. */
+    private int[] locations;
+    /** Pseudo-random register indexes. */
+    private int[] indexes;
+    /** Position in the precomputed indexes. */
+    private int pos;
+
+    /**
+     * Fills the memory and the registers with integers.
+     */
+    @Setup
+    public void setup() {
+        memory = new MemoryImpl(MEMORY_SIZE);
+        registers = new RegistersImpl(16);
+        for (int i = 0; i < MEMORY_SIZE; i++) {
+            memory.setInt(i, i);
+        }
+        for (int i = 0; i < 16; i++) {
+            registers.setInt(i, i);
+        }
+
+        Random random = new Random(42);
+        locations = new int[INDEXES];
+        indexes = new int[INDEXES];
+        for (int i = 0; i < INDEXES; i++) {
+            locations[i] = random.nextInt(MEMORY_SIZE);
+            indexes[i] = random.nextInt(16);
+        }
+    }
+
+    /**
+     * Returns the position of the next precomputed index.
+     *
+     * @return the position
+     */
+    private int next() {
+        return pos = (pos + 1) & (INDEXES - 1);
+    }
+
+    @Benchmark
+    public Object memoryGetLocation() {
+        return memory.getLocation(locations[next()]);
+    }
+
+    @Benchmark
+    public void memorySetLocation() {
+        int i = next();
+        memory.setLocation(locations[i], i);
+    }
+
+    @Benchmark
+    public int memoryGetInt() {
+        return memory.getInt(locations[next()]);
+    }
+
+    @Benchmark
+    public void memorySetInt() {
+        int i = next();
+        memory.setInt(locations[i], i);
+    }
+
+    @Benchmark
+    public Object registersGetValue() {
+        return registers.getRegisterValue(indexes[next()]);
+    }
+
+    @Benchmark
+    public void registersSetValue() {
+        int i = next();
+        registers.setRegisterValue(indexes[i], i);
+    }
+
+    @Benchmark
+    public int registersGetInt() {
+        return registers.getInt(indexes[next()]);
+    }
+
+    @Benchmark
+    public void registersSetInt() {
+        int i = next();
+        registers.setInt(indexes[i], i);
+    }
+
+}
@@ -0,0 +1,116 @@
+package hr.fer.zemris.java.simplecomp.jmh;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import hr.fer.zemris.java.simplecomp.impl.BlockExecutionUnit;
+import hr.fer.zemris.java.simplecomp.impl.DecodedExecutionUnit;
+import hr.fer.zemris.java.simplecomp.impl.ExecutionUnitImpl;
+import hr.fer.zemris.java.simplecomp.impl.FlightRecorder;
+import hr.fer.zemris.java.simplecomp.impl.InstructionRegistry;
+import hr.fer.zemris.java.simplecomp.impl.ProgramImage;
+import hr.fer.zemris.java.simplecomp.impl.TieredExecutionUnit;
+import hr.fer.zemris.java.simplecomp.models.ExecutionUnit;
+import hr.fer.zemris.java.simplecomp.models.Instruction;
+
+/**
+ * Helpers shared by the benchmarks: instructions assembled from single lines,
+ * execution units by name, an output stream that discards everything and an
+ * input stream that repeats the same lines forever.
+ *
+ * @author Mario Bobic
+ */
+public abstract class BenchmarkSupport {
+
+    /**
+     * Disable instantiation or inheritance.
+     */
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Assembles the specified line and returns its instruction.
+     *
+     * @param line the line of assembly code
+     * @return the instruction of the line
+     * @throws Exception if the line can not be parsed
+     */
+    public static Instruction instruction(String line) throws Exception {
+        byte[] source = (line + "\n").getBytes(StandardCharsets.UTF_8);
+        return (Instruction) ProgramImage.assemble(source, InstructionRegistry.DEFAULT_PACKAGE).getCell(0);
+    }
+
+    /**
+     * Creates an execution unit of the specified <tt>engine</tt> name.
+     *
+     * @param engine name of the execution engine
+     * @return an execution unit of the specified engine
+     * @throws IllegalArgumentException if the engine is unknown
+     */
+    public static ExecutionUnit engine(String engine) {
+        switch (engine) {
+            case "interpreter":
+            case "verified":
+            case "optimized":
+                return new ExecutionUnitImpl();
+            case "recorded":
+                return new ExecutionUnitImpl(null, new FlightRecorder());
+            case "decoded":
+                return new DecodedExecutionUnit();
+            case "blocks":
+                return new BlockExecutionUnit();
+            case "tiered":
+                return new TieredExecutionUnit();
+            default:
+                throw new IllegalArgumentException("Unknown engine: " + engine);
+        }
+    }
+
+    /**
+     * Returns an output stream that discards everything written to it.
+     *
+     * @return a discarding output stream
+     */
+    public static OutputStream nullOutput() {
+        return new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        };
+    }
+
+    /**
+     * Returns an input stream that repeats the specified text forever.
+     *
+     * @param text the text to be repeated
+     * @return an endless input stream
+     */
+    public static InputStream repeatingInput(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        return new InputStream() {
+            private int pos;
+
+            @Override
+            public int read() {
+                int b = bytes[pos];
+                pos = (pos + 1) % bytes.length;
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                for (int i = 0; i < len; i++) {
+                    b[off + i] = bytes[pos];
+                    pos = (pos + 1) % bytes.length;
+                }
+                return len;
+            }
+        };
+    }
+
+}
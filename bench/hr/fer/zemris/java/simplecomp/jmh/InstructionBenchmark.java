@@ -0,0 +1,186 @@
+package hr.fer.zemris.java.simplecomp.jmh;
+
+import static hr.fer.zemris.java.simplecomp.jmh.BenchmarkSupport.instruction;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import hr.fer.zemris.java.simplecomp.impl.ComputerImpl;
+import hr.fer.zemris.java.simplecomp.impl.MemoryImpl;
+import hr.fer.zemris.java.simplecomp.impl.RegistersImpl;
+import hr.fer.zemris.java.simplecomp.io.InputSource;
+import hr.fer.zemris.java.simplecomp.io.OutputSink;
+import hr.fer.zemris.java.simplecomp.models.Instruction;
+import hr.fer.zemris.java.simplecomp.models.Registers;
+
+/**
+ * Measures the time of executing each instruction of the default instruction
+ * set once, on a computer whose registers hold integers. Instructions that
+ * change the stack are measured in pairs that restore it: <tt>call</tt> with
+ * <tt>ret</tt> and <tt>push</tt> with <tt>pop</tt>. The <tt>echo</tt>
+ * instruction writes to a discarding output and <tt>iinput</tt> reads from an
+ * endless input.
+ *
+ * @author Mario Bobic
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstructionBenchmark {
+
+    /** The computer executing the instructions. */
+    private ComputerImpl computer;
+
+    /** Instruction <tt>halt</tt>. */
+    private Instruction halt;
+    /** Instruction <tt>echo</tt>. */
+    private Instruction echo;
+    /** Instruction <tt>load</tt>. */
+    private Instruction load;
+    /** Instruction <tt>move</tt>. */
+    private Instruction move;
+    /** Instruction <tt>add</tt>. */
+    private Instruction add;
+    /** Instruction <tt>mul</tt>. */
+    private Instruction mul;
+    /** Instruction <tt>increment</tt>. */
+    private Instruction increment;
+    /** Instruction <tt>decrement</tt>. */
+    private Instruction decrement;
+    /** Instruction <tt>testEquals</tt>. */
+    private Instruction testEquals;
+    /** Instruction <tt>jump</tt>. */
+    private Instruction jump;
+    /** Instruction <tt>jumpIfTrue</tt>. */
+    private Instruction jumpIfTrue;
+    /** Instruction <tt>call</tt>. */
+    private Instruction call;
+    /** Instruction <tt>ret</tt>. */
+    private Instruction ret;
+    /** Instruction <tt>push</tt>. */
+    private Instruction push;
+    /** Instruction <tt>pop</tt>. */
+    private Instruction pop;
+    /** Instruction <tt>iinput</tt>. */
+    private Instruction iinput;
+
+    /**
+     * Creates the computer and the instructions.
+     *
+     * @throws Exception if an instruction can not be created
+     */
+    @Setup
+    public void setup() throws Exception {
+        computer = new ComputerImpl(new MemoryImpl(256), new RegistersImpl(16));
+        computer.setOutput(new OutputSink(BenchmarkSupport.nullOutput()));
+        computer.setInput(new InputSource(BenchmarkSupport.repeatingInput("42\n")));
+
+        Registers registers = computer.getRegisters();
+        for (int i = 0; i < 8; i++) {
+            registers.setRegisterValue(i, i + 1);
+        }
+        registers.setRegisterValue(Registers.STACK_REGISTER_INDEX, 255);
+        computer.getMemory().setLocation(100, 42);
+
+        halt = instruction("halt");
+        echo = instruction("echo r1");
+        load = instruction("load r0, 100");
+        move = instruction("move r0, r1");
+        add = instruction("add r0, r1, r2");
+        mul = instruction("mul r0, r1, r2");
+        increment = instruction("increment r3");
+        decrement = instruction("decrement r4");
+        testEquals = instruction("testEquals r1, r2");
+        jump = instruction("jump 10");
+        jumpIfTrue = instruction("jumpIfTrue 10");
+        call = instruction("call 10");
+        ret = instruction("ret");
+        push = instruction("push r1");
+        pop = instruction("pop r5");
+        iinput = instruction("iinput 101");
+    }
+
+    @Benchmark
+    public boolean halt() {
+        return halt.execute(computer);
+    }
+
+    @Benchmark
+    public boolean echo() {
+        return echo.execute(computer);
+    }
+
+    @Benchmark
+    public boolean load() {
+        return load.execute(computer);
+    }
+
+    @Benchmark
+    public boolean move() {
+        return move.execute(computer);
+    }
+
+    @Benchmark
+    public boolean add() {
+        return add.execute(computer);
+    }
+
+    @Benchmark
+    public boolean mul() {
+        return mul.execute(computer);
+    }
+
+    @Benchmark
+    public boolean increment() {
+        return increment.execute(computer);
+    }
+
+    @Benchmark
+    public boolean decrement() {
+        return decrement.execute(computer);
+    }
+
+    @Benchmark
+    public boolean testEquals() {
+        return testEquals.execute(computer);
+    }
+
+    @Benchmark
+    public boolean jump() {
+        return jump.execute(computer);
+    }
+
+    @Benchmark
+    public boolean jumpIfTrue() {
+        return jumpIfTrue.execute(computer);
+    }
+
+    @Benchmark
+    public boolean callRet() {
+        return call.execute(computer) | ret.execute(computer);
+    }
+
+    @Benchmark
+    public boolean pushPop() {
+        return push.execute(computer) | pop.execute(computer);
+    }
+
+    @Benchmark
+    public boolean iinput() {
+        return iinput.execute(computer);
+    }
+
+}
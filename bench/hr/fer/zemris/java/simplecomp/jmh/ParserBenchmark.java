@@ -0,0 +1,100 @@
+package hr.fer.zemris.java.simplecomp.jmh;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import hr.fer.zemris.java.simplecomp.impl.ComputerImpl;
+import hr.fer.zemris.java.simplecomp.impl.InstructionRegistry;
+import hr.fer.zemris.java.simplecomp.impl.MemoryImpl;
+import hr.fer.zemris.java.simplecomp.impl.ParallelAssembler;
+import hr.fer.zemris.java.simplecomp.impl.ProgramImage;
+import hr.fer.zemris.java.simplecomp.impl.RegistersImpl;
+import hr.fer.zemris.java.simplecomp.models.Computer;
+import hr.fer.zemris.java.simplecomp.parser.ProgramParser;
+
+/**
+ * Measures parsing of synthetic programs of a given number of subroutines,
+ * eight lines each, by the {@linkplain ProgramParser} and by the
+ * {@linkplain ParallelAssembler}. The programs use labels, forward
+ * references, indirect register access, comments and all kinds of constants.
+ *
+ * @author Mario Bobic
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    /** Number of subroutines of the program. */
+    @Param({"1000", "100000"})
+    public int subroutines;
+
+    /** The program source. */
+    private byte[] source;
+    /** Number of memory locations of the program. */
+    private int size;
+
+    /**
+     * Generates the program.
+     *
+     * @throws Exception if the program can not be parsed
+     */
+    @Setup
+    public void setup() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        sb.append("# synthetic program\n");
+        for (int i = 0; i < subroutines; i++) {
+            sb.append("        call @f").append(i).append("  ; forward reference\n");
+        }
+        sb.append("        halt\n");
+        for (int i = 0; i < subroutines; i++) {
+            sb.append("@f").append(i).append(":\tmove r0, ").append(i).append('\n');
+            sb.append("        move r1, [r15+").append(i % 100).append("]\n");
+            sb.append("        add r0, r0, r1\n");
+            sb.append("        testEquals r0, r1\n");
+            sb.append("        jumpIfTrue @f").append(i / 2).append('\n');
+            sb.append("        ret\n");
+            sb.append("@s").append(i).append(": DEFSTR \"line\\n\"\n");
+            sb.append("@i").append(i).append(": DEFINT -").append(i).append('\n');
+        }
+        sb.append("        RESERVE:100\n");
+        sb.append("@stackTop: RESERVE\n");
+
+        source = sb.toString().getBytes(StandardCharsets.UTF_8);
+        size = ProgramImage.assemble(source, InstructionRegistry.DEFAULT_PACKAGE).size();
+    }
+
+    @Benchmark
+    public Computer programParser() throws Exception {
+        Computer computer = new ComputerImpl(new MemoryImpl(size), new RegistersImpl(16));
+        ProgramParser.parse(
+                new InputStreamReader(new ByteArrayInputStream(source), StandardCharsets.UTF_8),
+                computer, InstructionRegistry.getDefault());
+        return computer;
+    }
+
+    @Benchmark
+    public Computer parallelAssembler() throws Exception {
+        Computer computer = new ComputerImpl(new MemoryImpl(size), new RegistersImpl(16));
+        new ParallelAssembler().assemble(source, computer, InstructionRegistry.getDefault());
+        return computer;
+    }
+
+}
@@ -0,0 +1,124 @@
+package hr.fer.zemris.java.simplecomp.jmh;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import hr.fer.zemris.java.simplecomp.impl.ComputerImpl;
+import hr.fer.zemris.java.simplecomp.impl.InstructionRegistry;
+import hr.fer.zemris.java.simplecomp.impl.MemoryImpl;
+import hr.fer.zemris.java.simplecomp.impl.ProgramImage;
+import hr.fer.zemris.java.simplecomp.impl.ProgramOptimizer;
+import hr.fer.zemris.java.simplecomp.impl.ProgramVerifier;
+import hr.fer.zemris.java.simplecomp.impl.RegistersImpl;
+import hr.fer.zemris.java.simplecomp.io.InputSource;
+import hr.fer.zemris.java.simplecomp.io.OutputSink;
+
+/**
+ * Measures complete runs of the example programs on each execution engine.
+ * The <tt>recorded</tt> engine is the interpreter with a
+ * {@linkplain hr.fer.zemris.java.simplecomp.impl.FlightRecorder flight
+ * recorder}, the <tt>verified</tt> engine is the interpreter running the
+ * instructions replaced by the {@linkplain ProgramVerifier}, and the
+ * <tt>optimized</tt> engine is the interpreter running the instructions
+ * rewritten by the {@linkplain ProgramOptimizer}. The program is verified or
+ * optimized once, when it is assembled.
+ * A run loads the assembled program into a new computer and executes it until
+ * it halts. Programs that read numbers get <tt>1000</tt> and <tt>7</tt>, and
+ * their output is discarded.
+ * <p>
+ * The examples are read from the directory given by the
+ * <tt>examples.dir</tt> system property, which is <tt>examples</tt> by
+ * default.
+ *
+ * @author Mario Bobic
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProgramBenchmark {
+
+    /** Input of the programs that read numbers. */
+    private static final String INPUT = "1000\n7\n";
+
+    /** File name of the example program. */
+    @Param({"prim4.txt", "asmProgram1.txt", "asmProgram2.txt", "asmProgram3.txt",
+            "asmProgram4.txt", "asmProgram5.txt"})
+    public String program;
+
+    /** Name of the execution engine. */
+    @Param({"interpreter", "recorded", "verified", "optimized", "decoded", "blocks", "tiered"})
+    public String engine;
+
+    /** The assembled program. */
+    private ProgramImage image;
+    /** Instructions replaced by the verifier or the optimizer by location, or <tt>null</tt>. */
+    private Object[] rewritten;
+
+    /**
+     * Assembles the program.
+     *
+     * @throws Exception if the program can not be read or parsed
+     */
+    @Setup
+    public void setup() throws Exception {
+        byte[] source = Files.readAllBytes(Paths.get(System.getProperty("examples.dir", "examples"), program));
+        image = ProgramImage.assemble(source, InstructionRegistry.DEFAULT_PACKAGE);
+
+        if (engine.equals("verified") || engine.equals("optimized")) {
+            ComputerImpl computer = newComputer();
+            if (engine.equals("verified")) {
+                ProgramVerifier.verify(computer);
+            } else {
+                ProgramOptimizer.optimize(computer);
+            }
+
+            rewritten = new Object[image.size()];
+            for (int i = 0; i < rewritten.length; i++) {
+                Object cell = computer.getMemory().getLocation(i);
+                rewritten[i] = cell != image.getCell(i) ? cell : null;
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean run() {
+        ComputerImpl computer = newComputer();
+        if (rewritten != null) {
+            for (int i = 0; i < rewritten.length; i++) {
+                if (rewritten[i] != null) computer.getMemory().setLocation(i, rewritten[i]);
+            }
+        }
+
+        return BenchmarkSupport.engine(engine).go(computer);
+    }
+
+    /**
+     * Creates a new computer with the program loaded into it.
+     *
+     * @return a new computer with the program
+     */
+    private ComputerImpl newComputer() {
+        ComputerImpl computer = new ComputerImpl(new MemoryImpl(256), new RegistersImpl(16));
+        computer.setOutput(new OutputSink(BenchmarkSupport.nullOutput()));
+        computer.setInput(new InputSource(BenchmarkSupport.repeatingInput(INPUT)));
+        image.loadInto(computer);
+        return computer;
+    }
+
+}
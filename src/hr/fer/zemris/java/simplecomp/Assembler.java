@@ -0,0 +1,60 @@
+package hr.fer.zemris.java.simplecomp;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import hr.fer.zemris.java.simplecomp.impl.InstructionRegistry;
+import hr.fer.zemris.java.simplecomp.impl.ObjectFile;
+
+/**
+ * Converts programs between the assembly source and the binary
+ * {@linkplain ObjectFile object file} format. The program expects two command
+ * line arguments: the input file and the output file.
+ * <ul>
+ * <li>If the input file is an assembly source, it is assembled and written to
+ * the output file as an object file.
+ * <li>If the input file is an object file, it is disassembled and written to
+ * the output file as an assembly source. Labels are kept, but operands that
+ * referred to labels are written as addresses.
+ * </ul>
+ * <p>
+ * If the input file can not be read or parsed, an error message is written to
+ * the standard error and the program terminates with status <tt>1</tt>.
+ *
+ * @author Mario Bobic
+ */
+public class Assembler {
+
+    /**
+     * Program entry point.
+     *
+     * @param args input file and output file
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Expected input and output file.");
+            System.exit(3);
+        }
+
+        Path input = Paths.get(args[0]);
+        Path output = Paths.get(args[1]);
+        try {
+            if (ObjectFile.isObjectFile(input)) {
+                String source = ObjectFile.load(input).disassemble();
+                Files.write(output, source.getBytes(StandardCharsets.UTF_8));
+            } else {
+                ObjectFile.assemble(Files.readAllBytes(input), InstructionRegistry.DEFAULT_PACKAGE).write(output);
+            }
+        } catch (IOException e) {
+            System.err.println("I/O exception: " + e.getMessage());
+            System.exit(1);
+        } catch (Exception e) {
+            System.err.println("Parsing error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+}
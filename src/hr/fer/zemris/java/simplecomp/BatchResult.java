@@ -0,0 +1,118 @@
+package hr.fer.zemris.java.simplecomp;
+
+import java.nio.file.Path;
+
+/**
+ * The result of running one program by the {@linkplain BatchRunner}. It holds
+ * whether the program ended regularly, the number of executed instructions,
+ * the wall time of the run, the output of the program and, if the program
+ * failed, a description of the failure.
+ *
+ * @author Mario Bobic
+ */
+public class BatchResult {
+
+    /** Path to the program. */
+    private final Path path;
+    /** Indicates if the program ended regularly. */
+    private final boolean endedRegularly;
+    /** Number of executed instructions. */
+    private final long executedInstructions;
+    /** Wall time of the run, in nanoseconds. */
+    private final long wallTime;
+    /** Output of the program. */
+    private final byte[] output;
+    /** Description of the failure, or <tt>null</tt> if the program did not fail. */
+    private final String failure;
+
+    /**
+     * Constructs an instance of {@code BatchResult} with the specified values.
+     *
+     * @param path path to the program
+     * @param endedRegularly true if the program ended regularly
+     * @param executedInstructions number of executed instructions
+     * @param wallTime wall time of the run, in nanoseconds
+     * @param output output of the program
+     * @param failure description of the failure, or <tt>null</tt>
+     */
+    public BatchResult(Path path, boolean endedRegularly, long executedInstructions,
+            long wallTime, byte[] output, String failure) {
+        this.path = path;
+        this.endedRegularly = endedRegularly;
+        this.executedInstructions = executedInstructions;
+        this.wallTime = wallTime;
+        this.output = output;
+        this.failure = failure;
+    }
+
+    /**
+     * Returns the path to the program.
+     *
+     * @return the path to the program
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Returns true if the program was parsed and ended regularly.
+     *
+     * @return true if the program ended regularly
+     */
+    public boolean isEndedRegularly() {
+        return endedRegularly;
+    }
+
+    /**
+     * Returns the number of executed instructions, including the instruction
+     * that halted the program or failed.
+     *
+     * @return the number of executed instructions
+     */
+    public long getExecutedInstructions() {
+        return executedInstructions;
+    }
+
+    /**
+     * Returns the wall time of the run, including parsing, in nanoseconds.
+     *
+     * @return the wall time in nanoseconds
+     */
+    public long getWallTime() {
+        return wallTime;
+    }
+
+    /**
+     * Returns the bytes written by the program.
+     *
+     * @return the output of the program
+     */
+    public byte[] getOutput() {
+        return output;
+    }
+
+    /**
+     * Returns a description of the failure, or <tt>null</tt> if the program
+     * ended regularly. A program that exceeded its instruction or output limit
+     * failed with a description of the exceeded limit.
+     *
+     * @return description of the failure, or <tt>null</tt>
+     */
+    public String getFailure() {
+        return failure;
+    }
+
+    /**
+     * Returns a one-line summary of the result.
+     */
+    @Override
+    public String toString() {
+        return String.format("%-4s %12d instr %10.3f ms  %s%s",
+                endedRegularly ? "OK" : "FAIL",
+                executedInstructions,
+                wallTime / 1e6,
+                path,
+                failure == null ? "" : "  (" + failure + ")");
+    }
+
+}
@@ -0,0 +1,554 @@
+package hr.fer.zemris.java.simplecomp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import hr.fer.zemris.java.simplecomp.impl.ComputerImpl;
+import hr.fer.zemris.java.simplecomp.impl.ExecutionUnitImpl;
+import hr.fer.zemris.java.simplecomp.impl.ExecutionUnitImpl.StepStatus;
+import hr.fer.zemris.java.simplecomp.impl.InstructionRegistry;
+import hr.fer.zemris.java.simplecomp.impl.MemoryImpl;
+import hr.fer.zemris.java.simplecomp.impl.ProgramImage;
+import hr.fer.zemris.java.simplecomp.impl.ProgramImageCache;
+import hr.fer.zemris.java.simplecomp.impl.RegistersImpl;
+import hr.fer.zemris.java.simplecomp.io.InputSource;
+import hr.fer.zemris.java.simplecomp.io.OutputSink;
+import hr.fer.zemris.java.simplecomp.models.Computer;
+import hr.fer.zemris.java.simplecomp.parser.ProgramParser;
+
+/**
+ * Runs many assembly programs in parallel on a {@linkplain ForkJoinPool}. Each
+ * program is parsed into its own {@linkplain ComputerImpl} and executed by its
+ * own {@linkplain ExecutionUnitImpl}, so runs share no state.
+ * <p>
+ * The input of a program is read from the file next to it with the
+ * <tt>.in</tt> extension appended (i.e. <tt>prim2.txt.in</tt>), or is empty if
+ * there is no such file. The output of a program is collected in memory and
+ * returned in its {@linkplain BatchResult}, together with the number of
+ * executed instructions and the wall time of the run. Failures are recorded in
+ * the result instead of being written onto the standard error.
+ * <p>
+ * A program is {@linkplain ExecutionUnitImpl#step(Computer, int) stepped}
+ * until it halts, fails or executes its instruction limit, so a program that
+ * never halts fails with the limit exceeded instead of occupying a thread of
+ * the pool forever. Its output is limited as well: a program that writes
+ * more than the output limit fails, and only the output up to the limit is
+ * kept.
+ * <p>
+ * Programs are assembled through a {@linkplain ProgramImageCache}, so a
+ * program that is run many times is parsed only once and then loaded into each
+ * computer from its {@linkplain ProgramImage}.
+ * <p>
+ * The program entry point accepts paths to assembly files or directories,
+ * optionally preceded by options. Directories are searched recursively for
+ * files with the <tt>.txt</tt> extension. The following options are
+ * supported:
+ * <ul>
+ * <li><tt>--threads=<i>n</i></tt> sets the number of parallel runs, which is
+ * the number of available processors by default,
+ * <li><tt>--memory=<i>size</i></tt> sets the number of memory locations of
+ * each computer,
+ * <li><tt>--max-instructions=<i>n</i></tt> sets the instruction limit of each
+ * program, which is {@value #DEFAULT_INSTRUCTION_LIMIT} by default,
+ * <li><tt>--max-output=<i>bytes</i></tt> sets the output limit of each
+ * program, which is {@value #DEFAULT_OUTPUT_LIMIT} bytes by default,
+ * <li><tt>--output-dir=<i>path</i></tt> writes the output of each program to
+ * a file with the <tt>.out</tt> extension appended in the specified directory.
+ * A program found in a directory keeps its path relative to that directory,
+ * so programs of the same name in different subdirectories do not overwrite
+ * each other's output,
+ * <li><tt>--image-cache=<i>path</i></tt> also keeps assembled program images
+ * in the specified directory, so they are reused by later runs.
+ * </ul>
+ * A summary line is printed for each program. The program terminates with
+ * status <tt>4</tt> if any of the programs did not end regularly.
+ *
+ * @author Mario Bobic
+ */
+public class BatchRunner {
+
+    /** Default maximum number of instructions executed by a program. */
+    public static final long DEFAULT_INSTRUCTION_LIMIT = 100_000_000;
+    /** Default maximum number of bytes written by a program. */
+    public static final int DEFAULT_OUTPUT_LIMIT = 1024 * 1024;
+
+    /** Number of registers of each computer. */
+    private static final int REGISTERS = 16;
+    /** Number of instructions executed by one step of a program. */
+    private static final int STEP_BUDGET = 1 << 16;
+
+    /** The pool that runs the programs. */
+    private final ForkJoinPool pool;
+    /** Number of memory locations of each computer. */
+    private final int memorySize;
+    /** Cache of assembled programs. */
+    private final ProgramImageCache cache;
+    /** Maximum number of instructions executed by a program. */
+    private final long instructionLimit;
+    /** Maximum number of bytes written by a program. */
+    private final int outputLimit;
+
+    /**
+     * Constructs an instance of {@code BatchRunner} that runs programs with
+     * the specified parallelism on computers with the specified number of
+     * memory locations. Assembled programs are cached in memory.
+     *
+     * @param parallelism number of parallel runs
+     * @param memorySize number of memory locations of each computer
+     * @throws IllegalArgumentException if parallelism or memory size is not positive
+     */
+    public BatchRunner(int parallelism, int memorySize) {
+        this(parallelism, memorySize, new ProgramImageCache(ProgramImageCache.DEFAULT_CAPACITY));
+    }
+
+    /**
+     * Constructs an instance of {@code BatchRunner} that runs programs with
+     * the specified parallelism on computers with the specified number of
+     * memory locations, assembling programs through the specified cache.
+     * Programs run with the default instruction and output limits.
+     *
+     * @param parallelism number of parallel runs
+     * @param memorySize number of memory locations of each computer
+     * @param cache cache of assembled programs
+     * @throws IllegalArgumentException if parallelism or memory size is not positive
+     */
+    public BatchRunner(int parallelism, int memorySize, ProgramImageCache cache) {
+        this(parallelism, memorySize, cache, DEFAULT_INSTRUCTION_LIMIT, DEFAULT_OUTPUT_LIMIT);
+    }
+
+    /**
+     * Constructs an instance of {@code BatchRunner} that runs programs with
+     * the specified parallelism on computers with the specified number of
+     * memory locations, assembling programs through the specified cache. Each
+     * program may execute at most <tt>instructionLimit</tt> instructions and
+     * write at most <tt>outputLimit</tt> bytes.
+     *
+     * @param parallelism number of parallel runs
+     * @param memorySize number of memory locations of each computer
+     * @param cache cache of assembled programs
+     * @param instructionLimit maximum number of instructions of a program
+     * @param outputLimit maximum number of bytes written by a program
+     * @throws IllegalArgumentException if parallelism, memory size or a limit
+     *         is not positive
+     */
+    public BatchRunner(int parallelism, int memorySize, ProgramImageCache cache,
+            long instructionLimit, int outputLimit) {
+        if (parallelism < 1 || memorySize < 1) {
+            throw new IllegalArgumentException("Parallelism and memory size must be positive.");
+        }
+        if (instructionLimit < 1 || outputLimit < 1) {
+            throw new IllegalArgumentException("Instruction and output limits must be positive.");
+        }
+        this.pool = new ForkJoinPool(parallelism);
+        this.memorySize = memorySize;
+        this.cache = cache;
+        this.instructionLimit = instructionLimit;
+        this.outputLimit = outputLimit;
+    }
+
+    /**
+     * Runs the specified programs and returns their results, in the order of
+     * the programs.
+     *
+     * @param programs paths to the programs
+     * @return results of the programs
+     */
+    public List<BatchResult> run(List<Path> programs) {
+        BatchResult[] results = new BatchResult[programs.size()];
+        if (!programs.isEmpty()) {
+            pool.invoke(new RunTask(programs, results, 0, results.length));
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Shuts down the pool of this runner. The runner can not be used after it
+     * is shut down.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Returns the cache of assembled programs of this runner.
+     *
+     * @return the cache of assembled programs
+     */
+    public ProgramImageCache getCache() {
+        return cache;
+    }
+
+    /**
+     * A task that runs the programs in a range of the list, splitting the range
+     * in halves until a single program is left.
+     */
+    private class RunTask extends RecursiveAction {
+
+        /** Serial version UID. */
+        private static final long serialVersionUID = 1L;
+
+        /** Paths to the programs. */
+        private final List<Path> programs;
+        /** Results of the programs. */
+        private final BatchResult[] results;
+        /** Start of the range, inclusive. */
+        private final int from;
+        /** End of the range, exclusive. */
+        private final int to;
+
+        /**
+         * Constructs a task for the programs in the specified range.
+         *
+         * @param programs paths to the programs
+         * @param results results of the programs
+         * @param from start of the range, inclusive
+         * @param to end of the range, exclusive
+         */
+        RunTask(List<Path> programs, BatchResult[] results, int from, int to) {
+            this.programs = programs;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                results[from] = runProgram(programs.get(from), memorySize, cache, instructionLimit, outputLimit);
+                return;
+            }
+
+            int mid = (from + to) >>> 1;
+            invokeAll(new RunTask(programs, results, from, mid),
+                      new RunTask(programs, results, mid, to));
+        }
+    }
+
+    /**
+     * Parses and runs the program at the specified <tt>path</tt> on a new
+     * computer with the specified number of memory locations, and returns its
+     * result. The program runs with the default instruction and output
+     * limits.
+     *
+     * @param path path to the program
+     * @param memorySize number of memory locations of the computer
+     * @return result of the program
+     */
+    public static BatchResult runProgram(Path path, int memorySize) {
+        return runProgram(path, memorySize, null);
+    }
+
+    /**
+     * Runs the program at the specified <tt>path</tt> on a new computer with
+     * the specified number of memory locations, and returns its result. The
+     * program is taken from the specified cache, or parsed if the cache is
+     * <tt>null</tt>. The program runs with the default instruction and output
+     * limits.
+     *
+     * @param path path to the program
+     * @param memorySize number of memory locations of the computer
+     * @param cache cache of assembled programs, or <tt>null</tt>
+     * @return result of the program
+     */
+    public static BatchResult runProgram(Path path, int memorySize, ProgramImageCache cache) {
+        return runProgram(path, memorySize, cache, DEFAULT_INSTRUCTION_LIMIT, DEFAULT_OUTPUT_LIMIT);
+    }
+
+    /**
+     * Runs the program at the specified <tt>path</tt> on a new computer with
+     * the specified number of memory locations, and returns its result. The
+     * program is taken from the specified cache, or parsed if the cache is
+     * <tt>null</tt>.
+     * <p>
+     * The program fails if it executes more than <tt>instructionLimit</tt>
+     * instructions without halting, or if it writes more than
+     * <tt>outputLimit</tt> bytes, of which only the first
+     * <tt>outputLimit</tt> are kept.
+     *
+     * @param path path to the program
+     * @param memorySize number of memory locations of the computer
+     * @param cache cache of assembled programs, or <tt>null</tt>
+     * @param instructionLimit maximum number of instructions of the program
+     * @param outputLimit maximum number of bytes written by the program
+     * @return result of the program
+     */
+    public static BatchResult runProgram(Path path, int memorySize, ProgramImageCache cache,
+            long instructionLimit, int outputLimit) {
+        long start = System.nanoTime();
+        LimitedOutputStream output = new LimitedOutputStream(outputLimit);
+
+        ComputerImpl computer = new ComputerImpl(new MemoryImpl(memorySize), new RegistersImpl(REGISTERS));
+        computer.setOutput(new OutputSink(output));
+
+        try {
+            computer.setInput(new InputSource(new ByteArrayInputStream(readInput(path))));
+            if (cache != null) {
+                cache.get(path, InstructionRegistry.DEFAULT_PACKAGE).loadInto(computer);
+            } else {
+                ProgramParser.parse(path.toString(), computer, InstructionRegistry.getDefault());
+            }
+        } catch (Exception e) {
+            return new BatchResult(path, false, 0, System.nanoTime() - start,
+                    output.toByteArray(), "Parsing error: " + e.getMessage());
+        }
+
+        String[] failure = new String[1];
+        ExecutionUnitImpl exec = new ExecutionUnitImpl() {
+            @Override
+            protected boolean isInputReady(Computer c) {
+                // the whole input is in memory, reading it never blocks
+                return true;
+            }
+
+            @Override
+            protected void reportFailure(Computer c, Throwable t, int address) {
+                failure[0] = t + " at instruction on address " + address;
+            }
+        };
+
+        StepStatus status;
+        long remaining = instructionLimit;
+        do {
+            status = exec.step(computer, (int) Math.min(remaining, STEP_BUDGET));
+            remaining = instructionLimit - exec.getExecutedInstructions();
+        } while (status == StepStatus.RUNNING && remaining > 0);
+
+        if (status == StepStatus.RUNNING) {
+            failure[0] = "Instruction limit of " + instructionLimit + " exceeded";
+        }
+        try {
+            computer.getOutput().flush();
+        } catch (UncheckedIOException e) {
+            // the output limit is exceeded, which is reported below
+        }
+        if (output.isLimitExceeded()) {
+            failure[0] = "Output limit of " + outputLimit + " bytes exceeded";
+        }
+
+        boolean endedRegularly = status == StepStatus.HALTED && failure[0] == null;
+        return new BatchResult(path, endedRegularly, exec.getExecutedInstructions(),
+                System.nanoTime() - start, output.toByteArray(), failure[0]);
+    }
+
+    /**
+     * An output stream that collects at most a limited number of bytes in
+     * memory. A write beyond the limit keeps the bytes that fit and throws an
+     * {@linkplain IOException}, which fails the <tt>echo</tt> instruction that
+     * caused it.
+     */
+    private static class LimitedOutputStream extends OutputStream {
+
+        /** The collected bytes. */
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        /** Maximum number of collected bytes. */
+        private final int limit;
+        /** Indicates if a write exceeded the limit. */
+        private boolean limitExceeded;
+
+        /**
+         * Constructs a stream that collects at most <tt>limit</tt> bytes.
+         *
+         * @param limit maximum number of collected bytes
+         */
+        LimitedOutputStream(int limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            int free = limit - bytes.size();
+            if (len > free) {
+                bytes.write(b, off, free);
+                limitExceeded = true;
+                throw new IOException("Output limit of " + limit + " bytes exceeded.");
+            }
+            bytes.write(b, off, len);
+        }
+
+        /**
+         * Returns true if a write exceeded the limit.
+         *
+         * @return true if the limit was exceeded
+         */
+        boolean isLimitExceeded() {
+            return limitExceeded;
+        }
+
+        /**
+         * Returns the collected bytes.
+         *
+         * @return the collected bytes
+         */
+        byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+    }
+
+    /**
+     * Returns the input of the program at the specified <tt>path</tt>, read
+     * from the file with the <tt>.in</tt> extension appended, or an empty
+     * array if there is no such file.
+     *
+     * @param path path to the program
+     * @return the input of the program
+     * @throws IOException if the input file can not be read
+     */
+    private static byte[] readInput(Path path) throws IOException {
+        Path input = Paths.get(path.toString() + ".in");
+        return Files.isRegularFile(input) ? Files.readAllBytes(input) : new byte[0];
+    }
+
+    /**
+     * Program entry point.
+     *
+     * @param args options, followed by paths to programs or directories
+     */
+    public static void main(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int memorySize = Simulator.DEFAULT_MEMORY_SIZE;
+        long instructionLimit = DEFAULT_INSTRUCTION_LIMIT;
+        int outputLimit = DEFAULT_OUTPUT_LIMIT;
+        Path outputDir = null;
+        Path imageDir = null;
+        List<Path> programs = new ArrayList<>();
+        List<Path> outputNames = new ArrayList<>();
+
+        try {
+            for (String arg : args) {
+                if (arg.startsWith("--threads=")) {
+                    threads = Integer.parseInt(arg.substring("--threads=".length()));
+                } else if (arg.startsWith("--memory=")) {
+                    memorySize = Integer.parseInt(arg.substring("--memory=".length()));
+                } else if (arg.startsWith("--max-instructions=")) {
+                    instructionLimit = Long.parseLong(arg.substring("--max-instructions=".length()));
+                } else if (arg.startsWith("--max-output=")) {
+                    outputLimit = Integer.parseInt(arg.substring("--max-output=".length()));
+                } else if (arg.startsWith("--output-dir=")) {
+                    outputDir = Paths.get(arg.substring("--output-dir=".length()));
+                } else if (arg.startsWith("--image-cache=")) {
+                    imageDir = Paths.get(arg.substring("--image-cache=".length()));
+                } else if (arg.startsWith("--")) {
+                    System.err.println("Unknown option: " + arg);
+                    System.exit(3);
+                } else {
+                    Path path = Paths.get(arg);
+                    for (Path program : collectPrograms(path)) {
+                        programs.add(program);
+                        outputNames.add(Files.isDirectory(path) ? path.relativize(program) : program.getFileName());
+                    }
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid number: " + e.getMessage());
+            System.exit(3);
+        } catch (IOException e) {
+            System.err.println("I/O exception: " + e.getMessage());
+            System.exit(1);
+        }
+
+        if (outputDir != null) {
+            Set<Path> names = new HashSet<>();
+            for (int i = 0; i < outputNames.size(); i++) {
+                if (!names.add(outputNames.get(i))) {
+                    System.err.println("Output of " + programs.get(i) + " would overwrite the output of another "
+                            + "program named " + outputNames.get(i) + ".");
+                    System.exit(3);
+                }
+            }
+        }
+
+        BatchRunner runner;
+        try {
+            runner = new BatchRunner(threads, memorySize,
+                    new ProgramImageCache(ProgramImageCache.DEFAULT_CAPACITY, imageDir),
+                    instructionLimit, outputLimit);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(3);
+            return;
+        }
+        long start = System.nanoTime();
+        List<BatchResult> results = runner.run(programs);
+        long wallTime = System.nanoTime() - start;
+        runner.shutdown();
+
+        int failed = 0;
+        for (int i = 0; i < results.size(); i++) {
+            BatchResult result = results.get(i);
+            System.out.println(result);
+            if (!result.isEndedRegularly()) failed++;
+
+            if (outputDir != null) {
+                writeOutput(outputDir, outputNames.get(i), result);
+            }
+        }
+
+        System.out.printf("%d programs, %d failed, %.3f ms%n", results.size(), failed, wallTime / 1e6);
+        if (failed > 0) {
+            System.exit(4);
+        }
+    }
+
+    /**
+     * Returns the programs at the specified path. If the path is a directory,
+     * it is searched recursively for files with the <tt>.txt</tt> extension.
+     *
+     * @param path path to a program or a directory
+     * @return paths to the programs
+     * @throws IOException if the directory can not be searched
+     */
+    private static List<Path> collectPrograms(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            return Arrays.asList(path);
+        }
+
+        try (Stream<Path> files = Files.walk(path)) {
+            return files
+                    .filter(Files::isRegularFile)
+                    .filter(file -> file.toString().endsWith(".txt"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Writes the output of the specified result into the specified directory,
+     * to a file at the specified relative path with the <tt>.out</tt>
+     * extension appended, creating its parent directories. An error message
+     * is printed out onto the standard error if the file can not be written.
+     *
+     * @param outputDir the output directory
+     * @param name path of the program relative to the output directory
+     * @param result result of the program
+     */
+    private static void writeOutput(Path outputDir, Path name, BatchResult result) {
+        Path file = outputDir.resolve(name + ".out");
+        try {
+            Files.createDirectories(file.getParent());
+            Files.write(file, result.getOutput());
+        } catch (IOException e) {
+            System.err.println("I/O exception: " + e.getMessage());
+        }
+    }
+
+}
@@ -1,5 +1,6 @@
 package hr.fer.zemris.java.simplecomp;
 
+import hr.fer.zemris.java.simplecomp.impl.PrimitiveRegisters;
 import hr.fer.zemris.java.simplecomp.models.Computer;
 import hr.fer.zemris.java.simplecomp.models.InstructionArgument;
 
@@ -83,6 +84,14 @@ public abstract class RegisterUtil {
         }
 
         int registerIndex = getRegisterIndex(registerDescriptor);
+        int offset = getRegisterOffset(registerDescriptor);
+
+        if (computer.getRegisters() instanceof PrimitiveRegisters) {
+            PrimitiveRegisters registers = (PrimitiveRegisters) computer.getRegisters();
+            if (registers.isInt(registerIndex)) {
+                return registers.getInt(registerIndex) + offset;
+            }
+        }
 
         Object registerValue = computer.getRegisters().getRegisterValue(registerIndex);
         if (!(registerValue instanceof Integer)) {
@@ -91,7 +100,6 @@ public abstract class RegisterUtil {
         }
 
         int address = (Integer) registerValue;
-        int offset = getRegisterOffset(registerDescriptor);
 
         return address+offset;
     }
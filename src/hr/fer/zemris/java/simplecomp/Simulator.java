@@ -1,23 +1,54 @@
 package hr.fer.zemris.java.simplecomp;
 
-import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+import hr.fer.zemris.java.simplecomp.impl.BlockExecutionUnit;
 import hr.fer.zemris.java.simplecomp.impl.ComputerImpl;
+import hr.fer.zemris.java.simplecomp.impl.ComputerMetrics;
+import hr.fer.zemris.java.simplecomp.impl.DecodedExecutionUnit;
 import hr.fer.zemris.java.simplecomp.impl.ExecutionUnitImpl;
+import hr.fer.zemris.java.simplecomp.impl.FlightRecorder;
+import hr.fer.zemris.java.simplecomp.impl.IncrementalAssembler;
+import hr.fer.zemris.java.simplecomp.impl.InstructionFuser;
+import hr.fer.zemris.java.simplecomp.impl.InstructionRegistry;
+import hr.fer.zemris.java.simplecomp.impl.MappedMemory;
+import hr.fer.zemris.java.simplecomp.impl.MemoryImpl;
+import hr.fer.zemris.java.simplecomp.impl.ObjectFile;
+import hr.fer.zemris.java.simplecomp.impl.OffHeapMemory;
+import hr.fer.zemris.java.simplecomp.impl.PagedMemory;
+import hr.fer.zemris.java.simplecomp.impl.ParallelAssembler;
+import hr.fer.zemris.java.simplecomp.impl.ProfilingExecutionUnit;
+import hr.fer.zemris.java.simplecomp.impl.ProgramImage;
+import hr.fer.zemris.java.simplecomp.impl.ProgramImageCache;
+import hr.fer.zemris.java.simplecomp.impl.ProgramOptimizer;
+import hr.fer.zemris.java.simplecomp.impl.ProgramVerifier;
+import hr.fer.zemris.java.simplecomp.impl.RegistersImpl;
+import hr.fer.zemris.java.simplecomp.impl.SourceMap;
+import hr.fer.zemris.java.simplecomp.impl.TieredExecutionUnit;
+import hr.fer.zemris.java.simplecomp.io.InputSource;
 import hr.fer.zemris.java.simplecomp.models.Computer;
 import hr.fer.zemris.java.simplecomp.models.ExecutionUnit;
 import hr.fer.zemris.java.simplecomp.models.InstructionCreator;
-import hr.fer.zemris.java.simplecomp.parser.InstructionCreatorImpl;
+import hr.fer.zemris.java.simplecomp.models.Memory;
 import hr.fer.zemris.java.simplecomp.parser.ProgramParser;
 
 /**
  * A demonstration class that simulates the processor by executing the code
  * written in <i>assembly</i> language. The program expects <tt>zero</tt> or
- * <tt>one</tt> command line arguments.
+ * <tt>one</tt> command line arguments, optionally preceded by options.
  * <ul>
  * <li>If there are zero command line arguments specified, the program asks for
  * a keyboard input to obtain the <b>path</b> of the document containing
@@ -26,6 +57,72 @@ import hr.fer.zemris.java.simplecomp.parser.ProgramParser;
  * path to of the document containing assembly code.
  * </ul>
  * <p>
+ * The document may also be an {@linkplain ObjectFile object file} produced by
+ * the {@linkplain Assembler}, which is loaded without parsing.
+ * <p>
+ * The following options are supported:
+ * <ul>
+ * <li><tt>--engine=interpreter</tt> executes the program with the
+ * {@linkplain ExecutionUnitImpl}, which is the default,
+ * <li><tt>--engine=decoded</tt> executes the program with the
+ * {@linkplain DecodedExecutionUnit}, which dispatches from pre-decoded
+ * instructions,
+ * <li><tt>--engine=blocks</tt> executes the program with the
+ * {@linkplain BlockExecutionUnit}, which compiles each basic block into a
+ * class of its own,
+ * <li><tt>--engine=tiered</tt> executes the program with the
+ * {@linkplain TieredExecutionUnit}, which interprets the program and executes
+ * only its hot basic blocks as a whole, and writes the number of promoted and
+ * deoptimized blocks onto the standard error when the program ends,
+ * <li><tt>--tier-thresholds=<i>entries</i>,<i>backJumps</i></tt> sets the
+ * promotion thresholds of the tiered engine,
+ * <li><tt>--profile</tt> executes the program with the
+ * {@linkplain ProfilingExecutionUnit} instead of the chosen engine, and writes
+ * the report of the hottest lines, subroutines and loops onto the standard
+ * error when the program ends,
+ * <li><tt>--jmx</tt> executes the program with the interpreter, collecting
+ * {@linkplain ComputerMetrics} that are registered over JMX under the path of
+ * the program while it runs,
+ * <li><tt>--flight-recorder=<i>n</i></tt> sets the number of last executed
+ * instructions the interpreter keeps in its {@linkplain FlightRecorder} and
+ * writes onto the standard error when the program fails, which is
+ * {@value FlightRecorder#DEFAULT_CAPACITY} by default. The recorder is
+ * turned off by <tt>0</tt>, and is not used by the other engines,
+ * <li><tt>--optimize</tt> folds known values, removes the instructions
+ * without effect and threads jumps after the program is loaded, see
+ * {@linkplain ProgramOptimizer},
+ * <li><tt>--verify</tt> replaces the instructions proven to operate on
+ * integers with instructions that skip their runtime checks after the program
+ * is loaded, see {@linkplain ProgramVerifier},
+ * <li><tt>--fuse</tt> replaces common instruction sequences with fused
+ * instructions after the program is loaded, see {@linkplain InstructionFuser},
+ * <li><tt>--memory=<i>size</i></tt> sets the number of memory locations of the
+ * computer, which is {@value #DEFAULT_MEMORY_SIZE} by default,
+ * <li><tt>--memory-type=heap</tt> stores the memory on the Java heap in a
+ * {@linkplain MemoryImpl}, which is the default,
+ * <li><tt>--memory-type=offheap</tt> stores integer locations of the memory
+ * outside of the Java heap in an {@linkplain OffHeapMemory}, whose native
+ * memory is freed by the garbage collector after the program ends and is
+ * bounded by the <tt>-XX:MaxDirectMemorySize</tt> option of the virtual
+ * machine,
+ * <li><tt>--memory-type=paged</tt> stores the memory in pages that are copied
+ * on write in a {@linkplain PagedMemory},
+ * <li><tt>--memory-file=<i>path</i></tt> stores integer locations of the
+ * memory in the specified file through a {@linkplain MappedMemory}, so they
+ * persist across runs. The file is synchronized when the program ends,
+ * <li><tt>--image-cache=<i>path</i></tt> keeps the assembled program in the
+ * specified directory and loads it from there while the source does not
+ * change, see {@linkplain ProgramImageCache},
+ * <li><tt>--parallel-parse</tt> parses the program on all available
+ * processors, which pays off for very large programs, see
+ * {@linkplain ParallelAssembler},
+ * <li><tt>--watch</tt> keeps watching the file after the program ends, and
+ * runs the program again on a new computer whenever the file changes. Only
+ * the lines affected by a change are assembled again, see
+ * {@linkplain IncrementalAssembler}. The watch is ended by terminating the
+ * simulator.
+ * </ul>
+ * <p>
  * If the specified path does not exist, an error message is written to the
  * standard error and the program terminates.
  * <p>
@@ -43,8 +140,42 @@ import hr.fer.zemris.java.simplecomp.parser.ProgramParser;
  */
 public class Simulator {
 
+    /** Default number of memory locations. */
+    public static final int DEFAULT_MEMORY_SIZE = 256;
+
     /** Path to the file containing assembly code. */
     private static String path;
+    /** Name of the execution engine. */
+    private static String engine;
+    /** Promotion thresholds of the tiered engine. */
+    private static int[] tierThresholds;
+    /** Indicates if the program should be profiled. */
+    private static boolean profile;
+    /** Indicates if the metrics of the computer should be exposed over JMX. */
+    private static boolean jmx;
+    /** Number of records of the flight recorder, <tt>0</tt> if there is none. */
+    private static int flightRecorder;
+    /** Indicates if the program should be optimized. */
+    private static boolean optimize;
+    /** Indicates if the program should be verified. */
+    private static boolean verify;
+    /** Indicates if common instruction sequences should be fused. */
+    private static boolean fuse;
+    /** Number of memory locations of the computer. */
+    private static int memorySize;
+    /** Name of the memory type. */
+    private static String memoryType;
+    /** Path to the memory file of the mapped memory type. */
+    private static String memoryFile;
+    /** Directory of the program image cache, or <tt>null</tt>. */
+    private static String imageCache;
+    /** Indicates if the program should be parsed in parallel. */
+    private static boolean parallelParse;
+    /** Indicates if the file should be watched and the program run again on change. */
+    private static boolean watch;
+
+    /** Time to wait for further changes of a watched file, in milliseconds. */
+    private static final long WATCH_QUIET_PERIOD = 50;
 
     /** The regular ending flag.
      * Is false if the program did not finish regularly. */
@@ -57,37 +188,457 @@ public class Simulator {
      */
     public static void main(String[] args) {
         endedRegularly = false;
-        readPath(args);
-
-        // Create a computer with 256 memory locations and 16 registers.
-        Computer comp = new ComputerImpl(256, 16);
+        engine = "interpreter";
+        profile = false;
+        jmx = false;
+        flightRecorder = FlightRecorder.DEFAULT_CAPACITY;
+        optimize = false;
+        verify = false;
+        fuse = false;
+        memorySize = DEFAULT_MEMORY_SIZE;
+        memoryType = "heap";
+        memoryFile = null;
+        imageCache = null;
+        parallelParse = false;
+        watch = false;
+        tierThresholds = new int[] {
+                TieredExecutionUnit.DEFAULT_ENTRY_THRESHOLD,
+                TieredExecutionUnit.DEFAULT_BACK_EDGE_THRESHOLD
+        };
+        readPath(readOptions(args));
 
-        // Create an object that knows how to create instruction instances.
-        InstructionCreator creator = new InstructionCreatorImpl(
-                "hr.fer.zemris.java.simplecomp.impl.instructions"
-        );
+        if (watch) {
+            watch();
+            return;
+        }
 
+        // Create a computer with the given number of memory locations and 16 registers.
+        Memory memory = createMemory(memoryType);
+        try {
+            Computer comp = new ComputerImpl(memory, new RegistersImpl(16));
+            run(comp);
+        } finally {
+            closeMemory(memory);
+        }
+    }
 
+    /**
+     * Parses the program from the file at {@linkplain #path} into the
+     * specified computer and executes it.
+     *
+     * @param comp the computer
+     */
+    private static void run(Computer comp) {
         /* Load the computer memory from file; create instructions
          * using the specified object for creating instructions. */
         try {
-            ProgramParser.parse(path, comp, creator);
+            if (ObjectFile.isObjectFile(Paths.get(path))) {
+                ObjectFile.load(Paths.get(path)).getImage().loadInto(comp);
+            } else if (imageCache != null) {
+                new ProgramImageCache(1, Paths.get(imageCache))
+                        .get(Paths.get(path), InstructionRegistry.DEFAULT_PACKAGE)
+                        .loadInto(comp);
+            } else {
+                // Create an object that knows how to create instruction instances.
+                InstructionCreator creator = InstructionRegistry.getDefault();
+                if (parallelParse) {
+                    ParallelAssembler.parse(path, comp, creator);
+                } else {
+                    ProgramParser.parse(path, comp, creator);
+                }
+            }
         } catch (Exception e) {
             System.err.println("Parsing error: " + e.getMessage());
             e.printStackTrace();
             return;
         }
 
+        execute(comp);
+    }
+
+    /**
+     * Executes the program loaded into the specified computer.
+     *
+     * @param comp the computer
+     */
+    private static void execute(Computer comp) {
+        // optimize and verify first, as the analysis does not know fused instructions
+        if (optimize) {
+            ProgramOptimizer.optimize(comp);
+        }
+        if (verify) {
+            ProgramVerifier.verify(comp);
+        }
+        if (fuse) {
+            InstructionFuser.fuse(comp);
+        }
+
         // Create the execution unit
-        ExecutionUnit exec = new ExecutionUnitImpl();
+        ComputerMetrics metrics = jmx ? registerMetrics() : null;
+        ExecutionUnit exec;
+        if (profile) {
+            exec = new ProfilingExecutionUnit(readSourceMap(), System.err);
+        } else if (metrics != null) {
+            exec = new ExecutionUnitImpl(metrics, createFlightRecorder());
+        } else {
+            exec = createExecutionUnit(engine);
+        }
 
         // Print additional error message if the program did not end regularly.
-        endedRegularly = exec.go(comp);
+        try {
+            endedRegularly = exec.go(comp);
+        } finally {
+            if (metrics != null) {
+                metrics.unregister();
+            }
+        }
+        if (exec instanceof TieredExecutionUnit) {
+            System.err.println(exec);
+        }
         if (!endedRegularly) {
             System.err.println("Exception occured while executing code from file " + path);
         }
     }
 
+    /**
+     * Creates the metrics of the computer and registers them over JMX under
+     * the path of the program. Returns <tt>null</tt> if the metrics can not be
+     * registered (in this case, an error message is printed out onto the
+     * standard error and the program is executed without them).
+     *
+     * @return the registered metrics, or <tt>null</tt>
+     */
+    private static ComputerMetrics registerMetrics() {
+        ComputerMetrics metrics = new ComputerMetrics();
+        try {
+            metrics.register(path);
+            return metrics;
+        } catch (IllegalStateException e) {
+            System.err.println(e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Reads the source map of the program from the file at
+     * {@linkplain #path}. Returns <tt>null</tt> if the file is an object file
+     * or can not be read, in which case the profile is reported by addresses
+     * only.
+     *
+     * @return the source map, or <tt>null</tt>
+     */
+    private static SourceMap readSourceMap() {
+        try {
+            if (ObjectFile.isObjectFile(Paths.get(path))) {
+                return null;
+            }
+            return new SourceMap(new String(Files.readAllBytes(Paths.get(path)), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Runs the program from the file at {@linkplain #path} and runs it again
+     * whenever the file changes, until the simulator is terminated. Terminates
+     * the program if the file can not be watched (in this case, an error
+     * message is printed out onto the standard error).
+     */
+    private static void watch() {
+        Path file = Paths.get(path).toAbsolutePath();
+        IncrementalAssembler assembler = new IncrementalAssembler(InstructionRegistry.getDefault());
+
+        try (WatchService watcher = file.getFileSystem().newWatchService()) {
+            file.getParent().register(watcher,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+            byte[] previous = null;
+            while (true) {
+                byte[] source = Files.readAllBytes(file);
+                if (!Arrays.equals(source, previous)) {
+                    previous = source;
+                    runVersion(assembler, source);
+                }
+                awaitChange(watcher, file);
+            }
+        } catch (IOException e) {
+            System.err.println("I/O exception: " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Assembles the specified version of the watched program and runs it on
+     * a new computer.
+     *
+     * @param assembler assembler of the watched program
+     * @param source the program source
+     */
+    private static void runVersion(IncrementalAssembler assembler, byte[] source) {
+        ProgramImage image;
+        long start = System.nanoTime();
+        try {
+            image = assembler.assemble(source);
+        } catch (Exception e) {
+            System.err.println("Parsing error: " + e.getMessage());
+            return;
+        }
+        System.err.printf("Assembled %s in %.1f ms (%d of %d locations created).%n", path,
+                (System.nanoTime() - start) / 1e6, assembler.getCreatedLocations(), image.size());
+
+        Memory memory = createMemory(memoryType);
+        try {
+            Computer comp = new ComputerImpl(memory, new RegistersImpl(16));
+            image.loadInto(comp);
+            execute(comp);
+        } finally {
+            closeMemory(memory);
+        }
+    }
+
+    /**
+     * Waits until the specified file is created or modified. After the first
+     * event, further events are collected until the file is quiet for
+     * {@value #WATCH_QUIET_PERIOD} milliseconds, as editors often write a
+     * file in several steps.
+     *
+     * @param watcher watch service of the parent directory of the file
+     * @param file the watched file
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private static void awaitChange(WatchService watcher, Path file) throws InterruptedException {
+        boolean changed = false;
+        while (!changed) {
+            WatchKey key = watcher.take();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (file.getFileName().equals(event.context())) {
+                    changed = true;
+                }
+            }
+            key.reset();
+        }
+
+        WatchKey key;
+        while ((key = watcher.poll(WATCH_QUIET_PERIOD, TimeUnit.MILLISECONDS)) != null) {
+            key.pollEvents();
+            key.reset();
+        }
+    }
+
+    /**
+     * Reads the options from the specified command line arguments and returns
+     * the remaining arguments. Options are arguments starting with <tt>--</tt>.
+     * Terminates the program if an unknown option is given (in this case, an
+     * error message is printed out onto the standard error).
+     *
+     * @param args the command line arguments
+     * @return the arguments that are not options
+     */
+    private static String[] readOptions(String[] args) {
+        List<String> remaining = new ArrayList<>();
+
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                remaining.add(arg);
+            } else if (arg.startsWith("--engine=")) {
+                engine = arg.substring("--engine=".length());
+            } else if (arg.equals("--profile")) {
+                profile = true;
+            } else if (arg.equals("--jmx")) {
+                jmx = true;
+            } else if (arg.equals("--optimize")) {
+                optimize = true;
+            } else if (arg.equals("--verify")) {
+                verify = true;
+            } else if (arg.equals("--fuse")) {
+                fuse = true;
+            } else if (arg.equals("--parallel-parse")) {
+                parallelParse = true;
+            } else if (arg.equals("--watch")) {
+                watch = true;
+            } else if (arg.startsWith("--flight-recorder=")) {
+                flightRecorder = readRecorderCapacity(arg.substring("--flight-recorder=".length()));
+            } else if (arg.startsWith("--tier-thresholds=")) {
+                tierThresholds = readThresholds(arg.substring("--tier-thresholds=".length()));
+            } else if (arg.startsWith("--memory-type=")) {
+                memoryType = arg.substring("--memory-type=".length());
+            } else if (arg.startsWith("--memory-file=")) {
+                memoryType = "mapped";
+                memoryFile = arg.substring("--memory-file=".length());
+            } else if (arg.startsWith("--image-cache=")) {
+                imageCache = arg.substring("--image-cache=".length());
+            } else if (arg.startsWith("--memory=")) {
+                memorySize = readMemorySize(arg.substring("--memory=".length()));
+            } else {
+                System.err.println("Unknown option: " + arg);
+                System.exit(3);
+            }
+        }
+
+        return remaining.toArray(new String[remaining.size()]);
+    }
+
+    /**
+     * Reads the two comma-separated promotion thresholds of the tiered engine.
+     * Terminates the program if the thresholds are invalid (in this case, an
+     * error message is printed out onto the standard error).
+     *
+     * @param value the comma-separated thresholds
+     * @return array of entry threshold and backward jump threshold
+     */
+    private static int[] readThresholds(String value) {
+        String[] parts = value.split(",");
+        try {
+            if (parts.length == 2) {
+                int[] thresholds = {Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim())};
+                if (thresholds[0] > 0 && thresholds[1] > 0) {
+                    return thresholds;
+                }
+            }
+        } catch (NumberFormatException e) {
+            // falls through to the error message
+        }
+
+        System.err.println("Invalid tier thresholds: " + value);
+        System.exit(3);
+        return null;
+    }
+
+    /**
+     * Reads the number of records of the flight recorder. Terminates the
+     * program if the number is invalid (in this case, an error message is
+     * printed out onto the standard error).
+     *
+     * @param value the number of records
+     * @return the number of records
+     */
+    private static int readRecorderCapacity(String value) {
+        try {
+            int capacity = Integer.parseInt(value.trim());
+            if (capacity >= 0 && capacity <= 1 << 30) {
+                return capacity;
+            }
+        } catch (NumberFormatException e) {
+            // falls through to the error message
+        }
+
+        System.err.println("Invalid flight recorder size: " + value);
+        System.exit(3);
+        return 0;
+    }
+
+    /**
+     * Reads the number of memory locations. Terminates the program if the
+     * number is invalid (in this case, an error message is printed out onto
+     * the standard error).
+     *
+     * @param value the number of memory locations
+     * @return the number of memory locations
+     */
+    private static int readMemorySize(String value) {
+        try {
+            int size = Integer.parseInt(value.trim());
+            if (size > 0) {
+                return size;
+            }
+        } catch (NumberFormatException e) {
+            // falls through to the error message
+        }
+
+        System.err.println("Invalid memory size: " + value);
+        System.exit(3);
+        return 0;
+    }
+
+    /**
+     * Creates a memory of the specified <tt>type</tt> with
+     * {@linkplain #memorySize} locations. Terminates the program if the type
+     * is unknown or the memory file can not be mapped (in this case, an error
+     * message is printed out onto the standard error).
+     *
+     * @param type name of the memory type
+     * @return a memory of the specified type
+     */
+    private static Memory createMemory(String type) {
+        switch (type) {
+            case "heap":
+                return new MemoryImpl(memorySize);
+            case "offheap":
+                return new OffHeapMemory(memorySize);
+            case "paged":
+                return new PagedMemory(memorySize);
+            case "mapped":
+                if (memoryFile == null) {
+                    System.err.println("Memory type mapped requires the --memory-file option.");
+                    System.exit(3);
+                }
+                try {
+                    return new MappedMemory(Paths.get(memoryFile), memorySize);
+                } catch (IOException e) {
+                    System.err.println("I/O exception: " + e.getMessage());
+                    System.exit(1);
+                    return null;
+                }
+            default:
+                System.err.println("Unknown memory type: " + type);
+                System.exit(3);
+                return null;
+        }
+    }
+
+    /**
+     * Closes the specified <tt>memory</tt> if it holds resources that have to
+     * be released explicitly. An error message is printed out onto the
+     * standard error if the memory can not be closed.
+     *
+     * @param memory the memory to be closed
+     */
+    private static void closeMemory(Memory memory) {
+        if (memory instanceof Closeable) {
+            try {
+                ((Closeable) memory).close();
+            } catch (IOException e) {
+                System.err.println("I/O exception: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Creates the flight recorder of the interpreter.
+     *
+     * @return the flight recorder, or <tt>null</tt> if it is turned off
+     */
+    private static FlightRecorder createFlightRecorder() {
+        return flightRecorder > 0 ? new FlightRecorder(flightRecorder) : null;
+    }
+
+    /**
+     * Creates an execution unit of the specified <tt>engine</tt> name.
+     * Terminates the program if the engine is unknown (in this case, an error
+     * message is printed out onto the standard error).
+     *
+     * @param engine name of the execution engine
+     * @return an execution unit of the specified engine
+     */
+    private static ExecutionUnit createExecutionUnit(String engine) {
+        switch (engine) {
+            case "interpreter":
+                return new ExecutionUnitImpl(null, createFlightRecorder());
+            case "decoded":
+                return new DecodedExecutionUnit();
+            case "blocks":
+                return new BlockExecutionUnit();
+            case "tiered":
+                return new TieredExecutionUnit(tierThresholds[0], tierThresholds[1]);
+            default:
+                System.err.println("Unknown engine: " + engine);
+                System.exit(3);
+                return null;
+        }
+    }
+
     /**
      * Reads the path to file (either as the command line argument or the
      * standard input stream). Terminates the program if an I/O exception occurs
@@ -105,11 +656,11 @@ public class Simulator {
             path = args[0];
         } else {
             try {
-                // The input stream must NOT be closed. (Because of InstrIinput)
-                BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+                // Read through the shared source, so the program gets the rest of the input.
                 System.out.print("Path to file: ");
+                System.out.flush();
 
-                String line = reader.readLine();
+                String line = InputSource.stdin().readLine();
                 if (line == null) {
                     throw new IOException("Reached end of input stream.");
                 }
@@ -0,0 +1,100 @@
+package hr.fer.zemris.java.simplecomp.impl;
+
+import hr.fer.zemris.java.simplecomp.impl.instructions.AbstractInstrArithmeticOperation;
+import hr.fer.zemris.java.simplecomp.impl.instructions.AbstractInstrUnaryOperation;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrEcho;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrIinput;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrLoad;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrMove;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrPop;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrPush;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrTestEquals;
+import hr.fer.zemris.java.simplecomp.models.Instruction;
+
+/**
+ * A basic block of the program: a sequence of instructions that is always
+ * entered at its first instruction and left after its last one. The block
+ * consists of a <tt>body</tt> of straight-line instructions, which never change
+ * the program counter, optionally followed by a <tt>terminator</tt>, which is
+ * any other instruction (<tt>jump</tt>, <tt>jumpIfTrue</tt>, <tt>call</tt>,
+ * <tt>ret</tt>, <tt>halt</tt> or an instruction unknown to this class).
+ * <p>
+ * Blocks are built on demand from an entry address, so a jump into the middle
+ * of an already built block simply builds another block starting at the
+ * jump target.
+ *
+ * @author Mario Bobic
+ */
+class BasicBlock {
+
+    /** Address of the first instruction of the block. */
+    final int start;
+    /** Straight-line instructions of the block. */
+    final Instruction[] body;
+    /** The instruction that ends the block, or <tt>null</tt> if there is none. */
+    final Instruction terminator;
+    /** Address of the first instruction after the block. */
+    final int end;
+
+    /**
+     * Constructs an instance of {@code BasicBlock} with the specified values.
+     *
+     * @param start address of the first instruction of the block
+     * @param body straight-line instructions of the block
+     * @param terminator the instruction that ends the block, may be <tt>null</tt>
+     */
+    private BasicBlock(int start, Instruction[] body, Instruction terminator) {
+        this.start = start;
+        this.body = body;
+        this.terminator = terminator;
+        this.end = start + body.length + (terminator != null ? 1 : 0);
+    }
+
+    /**
+     * Builds a basic block of instructions from the code region of the
+     * specified <tt>cache</tt>, starting at the specified address. The block
+     * ends with the first instruction that is not straight-line, or at the end
+     * of the code region.
+     *
+     * @param cache the instruction cache
+     * @param start address of the first instruction of the block
+     * @return a basic block starting at the specified address
+     */
+    static BasicBlock build(InstructionCache cache, int start) {
+        int codeLength = cache.getCodeLength();
+
+        int end = start;
+        while (end < codeLength && isStraightLine(cache.getInstruction(end))) {
+            end++;
+        }
+
+        Instruction[] body = new Instruction[end - start];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = cache.getInstruction(start + i);
+        }
+
+        Instruction terminator = end < codeLength ? cache.getInstruction(end) : null;
+        return new BasicBlock(start, body, terminator);
+    }
+
+    /**
+     * Returns true if the specified instruction is a straight-line instruction,
+     * that is an instruction that is known never to change the program counter
+     * or halt the processor.
+     *
+     * @param instruction instruction to be checked
+     * @return true if the instruction is a straight-line instruction
+     */
+    static boolean isStraightLine(Instruction instruction) {
+        return instruction instanceof AbstractInstrArithmeticOperation
+            || instruction instanceof AbstractInstrUnaryOperation
+            || instruction instanceof InstrMove
+            || instruction instanceof InstrLoad
+            || instruction instanceof InstrTestEquals
+            || instruction instanceof InstrPush
+            || instruction instanceof InstrPop
+            || instruction instanceof InstrEcho
+            || instruction instanceof InstrIinput;
+    }
+
+}
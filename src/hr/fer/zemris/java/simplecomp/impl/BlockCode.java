@@ -0,0 +1,81 @@
+package hr.fer.zemris.java.simplecomp.impl;
+
+import hr.fer.zemris.java.simplecomp.models.Computer;
+import hr.fer.zemris.java.simplecomp.models.Instruction;
+
+/**
+ * Superclass of the classes generated by the {@linkplain BlockCompiler}, each
+ * of which executes the body of one {@linkplain BasicBlock} as a straight
+ * sequence of calls, one call site per instruction.
+ * <p>
+ * The generated classes are defined by a class loader of their own, so this
+ * class and its protected members are public to them. It is not meant to be
+ * extended otherwise.
+ *
+ * @author Mario Bobic
+ */
+public abstract class BlockCode {
+
+    /** Instruction cache of the executed program. */
+    private InstructionCache cache;
+    /** Index of the body instruction that threw an exception. */
+    private int failedIndex;
+
+    /**
+     * Constructs an instance of {@code BlockCode}. Only the generated
+     * subclasses call this constructor.
+     */
+    protected BlockCode() {
+    }
+
+    /**
+     * Executes the specified <tt>body</tt> of a block on the specified
+     * computer, until all of its instructions are executed or until an
+     * instruction writes to the code region of the program.
+     *
+     * @param body body of the block this code was generated for
+     * @param computer computer that executes the block
+     * @return number of executed instructions of the body
+     */
+    protected abstract int run(Instruction[] body, Computer computer);
+
+    /**
+     * Returns true if the executed program has written to its code region.
+     * The generated code calls this method after every instruction.
+     *
+     * @return true if the code region was written to
+     */
+    protected final boolean codeWritten() {
+        return cache.getCodeWrites() != 0;
+    }
+
+    /**
+     * Records the index of the body instruction that threw an exception. The
+     * generated code calls this method before rethrowing the exception.
+     *
+     * @param index index of the failed instruction in the body
+     */
+    protected final void failed(int index) {
+        failedIndex = index;
+    }
+
+    /**
+     * Binds this code to the instruction cache of the executed program.
+     *
+     * @param cache instruction cache of the program
+     */
+    void bind(InstructionCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Returns the index of the body instruction that threw an exception
+     * during the last {@linkplain #run(Instruction[], Computer) run}.
+     *
+     * @return index of the failed instruction in the body
+     */
+    int getFailedIndex() {
+        return failedIndex;
+    }
+
+}
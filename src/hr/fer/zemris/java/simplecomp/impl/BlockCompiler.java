@@ -0,0 +1,477 @@
+package hr.fer.zemris.java.simplecomp.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import hr.fer.zemris.java.simplecomp.models.Instruction;
+
+/**
+ * Compiles the body of a {@linkplain BasicBlock} into a class of its own, a
+ * subclass of {@linkplain BlockCode}, whose <tt>run</tt> method calls the
+ * <tt>execute</tt> method of each instruction of the body from a call site of
+ * its own. Each call site is typed with the concrete class of its instruction,
+ * so the virtual machine can inline the instructions of a block into one
+ * compiled method instead of dispatching every instruction through the same
+ * megamorphic call.
+ * <p>
+ * The generated code depends only on the classes of the instructions, not on
+ * their arguments, so a class is generated once for each sequence of
+ * instruction classes and is shared by all blocks, programs and execution
+ * units with that sequence. The code checks for writes to the code region
+ * after every instruction and records which instruction threw an exception,
+ * as the interpreting loop of the {@linkplain BlockExecutionUnit} does.
+ * <p>
+ * Class files are written directly, in the version 49 format, which needs no
+ * stack map frames. Blocks longer than {@value #MAX_LENGTH} instructions, whose
+ * code would exceed the size of methods the virtual machine compiles, and
+ * blocks of new instruction sequences after {@value #MAX_CLASSES} classes were
+ * generated are not compiled; they are executed instruction by instruction.
+ *
+ * @author Mario Bobic
+ */
+final class BlockCompiler {
+
+    /** Maximum number of body instructions of a compiled block. */
+    static final int MAX_LENGTH = 256;
+    /** Maximum number of generated classes. */
+    static final int MAX_CLASSES = 4096;
+
+    /** Internal name of the {@linkplain BlockCode} class. */
+    private static final String BLOCK_CODE = "hr/fer/zemris/java/simplecomp/impl/BlockCode";
+    /** Internal name of the {@linkplain Instruction} interface. */
+    private static final String INSTRUCTION = "hr/fer/zemris/java/simplecomp/models/Instruction";
+    /** Descriptor of the <tt>execute</tt> method of an instruction. */
+    private static final String EXECUTE = "(Lhr/fer/zemris/java/simplecomp/models/Computer;)Z";
+    /** Descriptor of the <tt>run</tt> method of the block code. */
+    private static final String RUN =
+            "([Lhr/fer/zemris/java/simplecomp/models/Instruction;Lhr/fer/zemris/java/simplecomp/models/Computer;)I";
+
+    /** Loader of the generated classes. */
+    private static final Loader LOADER = new Loader(BlockCode.class.getClassLoader());
+    /** Constructors of the generated classes, by instruction classes. */
+    private static final Map<List<Class<?>>, Constructor<? extends BlockCode>> CLASSES = new HashMap<>();
+
+    /**
+     * Disable instantiation.
+     */
+    private BlockCompiler() {
+    }
+
+    /**
+     * Returns a new instance of the code compiled for the body of the
+     * specified <tt>block</tt>, or <tt>null</tt> if the block is not compiled.
+     *
+     * @param block the basic block
+     * @return code of the block, or <tt>null</tt>
+     */
+    static BlockCode compile(BasicBlock block) {
+        if (block.body.length == 0 || block.body.length > MAX_LENGTH) {
+            return null;
+        }
+
+        List<Class<?>> classes = new ArrayList<>(block.body.length);
+        for (Instruction instruction : block.body) {
+            classes.add(instruction.getClass());
+        }
+
+        Constructor<? extends BlockCode> constructor;
+        synchronized (CLASSES) {
+            constructor = CLASSES.get(classes);
+            if (constructor == null) {
+                if (CLASSES.size() >= MAX_CLASSES) {
+                    return null;
+                }
+                constructor = define(classes);
+                CLASSES.put(classes, constructor);
+            }
+        }
+
+        try {
+            return constructor.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Can not instantiate compiled block.", e);
+        }
+    }
+
+    /**
+     * Returns the number of classes generated so far.
+     *
+     * @return the number of generated classes
+     */
+    static int getClassCount() {
+        synchronized (CLASSES) {
+            return CLASSES.size();
+        }
+    }
+
+    /**
+     * Generates and defines the class of a block body of the specified
+     * instruction classes and returns its constructor.
+     *
+     * @param classes classes of the body instructions
+     * @return constructor of the generated class
+     */
+    private static Constructor<? extends BlockCode> define(List<Class<?>> classes) {
+        String name = "hr/fer/zemris/java/simplecomp/impl/GeneratedBlock" + CLASSES.size();
+        byte[] bytes = generate(name, classes);
+        try {
+            return LOADER.define(name.replace('/', '.'), bytes).asSubclass(BlockCode.class).getConstructor();
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Generated block has no constructor.", e);
+        }
+    }
+
+    /**
+     * Returns true if the generated code can refer to the specified
+     * instruction class directly, which requires the class to be public and
+     * visible to the loader of the generated classes.
+     *
+     * @param type the instruction class
+     * @return true if the class can be referred to
+     */
+    private static boolean isLinkable(Class<?> type) {
+        if (!Modifier.isPublic(type.getModifiers())) {
+            return false;
+        }
+        try {
+            return Class.forName(type.getName(), false, LOADER) == type;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes the class file of a block body of the specified instruction
+     * classes.
+     *
+     * @param name internal name of the class
+     * @param classes classes of the body instructions
+     * @return bytes of the class file
+     */
+    private static byte[] generate(String name, List<Class<?>> classes) {
+        ConstantPool pool = new ConstantPool();
+        int thisClass = pool.classRef(name);
+        int superClass = pool.classRef(BLOCK_CODE);
+        int codeName = pool.utf8("Code");
+
+        // <init>: calls the constructor of BlockCode
+        ByteArrayOutputStream init = new ByteArrayOutputStream();
+        init.write(0x2a);                                   // aload_0
+        init.write(0xb7);                                   // invokespecial
+        writeShort(init, pool.methodRef(BLOCK_CODE, "<init>", "()V"));
+        init.write(0xb1);                                   // return
+
+        // run: locals are this, body, computer, index of the current instruction
+        // and the thrown exception
+        int codeWritten = pool.methodRef(BLOCK_CODE, "codeWritten", "()Z");
+        int failed = pool.methodRef(BLOCK_CODE, "failed", "(I)V");
+        int execute = pool.interfaceMethodRef(INSTRUCTION, "execute", EXECUTE);
+
+        ByteArrayOutputStream run = new ByteArrayOutputStream();
+        push(run, 0);
+        run.write(0x3e);                                    // istore_3
+        int start = run.size();
+        for (int i = 0; i < classes.size(); i++) {
+            push(run, i);
+            run.write(0x3e);                                // istore_3
+            run.write(0x2b);                                // aload_1
+            push(run, i);
+            run.write(0x32);                                // aaload
+
+            Class<?> type = classes.get(i);
+            if (isLinkable(type)) {
+                String owner = type.getName().replace('.', '/');
+                run.write(0xc0);                            // checkcast
+                writeShort(run, pool.classRef(owner));
+                run.write(0x2c);                            // aload_2
+                run.write(0xb6);                            // invokevirtual
+                writeShort(run, pool.methodRef(owner, "execute", EXECUTE));
+            } else {
+                run.write(0x2c);                            // aload_2
+                run.write(0xb9);                            // invokeinterface
+                writeShort(run, execute);
+                run.write(2);
+                run.write(0);
+            }
+            run.write(0x57);                                // pop
+
+            ByteArrayOutputStream exit = new ByteArrayOutputStream();
+            push(exit, i + 1);
+            exit.write(0xac);                               // ireturn
+
+            run.write(0x2a);                                // aload_0
+            run.write(0xb6);                                // invokevirtual
+            writeShort(run, codeWritten);
+            run.write(0x99);                                // ifeq
+            writeShort(run, 3 + exit.size());
+            run.write(exit.toByteArray(), 0, exit.size());
+        }
+        int end = run.size();
+        push(run, classes.size());
+        run.write(0xac);                                    // ireturn
+
+        int handler = run.size();
+        run.write(0x3a);                                    // astore 4
+        run.write(4);
+        run.write(0x2a);                                    // aload_0
+        run.write(0x1d);                                    // iload_3
+        run.write(0xb6);                                    // invokevirtual
+        writeShort(run, failed);
+        run.write(0x19);                                    // aload 4
+        run.write(4);
+        run.write(0xbf);                                    // athrow
+
+        int initName = pool.utf8("<init>");
+        int initDescriptor = pool.utf8("()V");
+        int runName = pool.utf8("run");
+        int runDescriptor = pool.utf8(RUN);
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);                              // minor version
+            out.writeShort(49);                             // major version
+            pool.write(out);
+            out.writeShort(0x0031);                         // public final super
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0);                              // interfaces
+            out.writeShort(0);                              // fields
+            out.writeShort(2);                              // methods
+
+            out.writeShort(0x0001);                         // public
+            out.writeShort(initName);
+            out.writeShort(initDescriptor);
+            writeCode(out, codeName, 1, 1, init.toByteArray(), null);
+
+            out.writeShort(0x0004);                         // protected
+            out.writeShort(runName);
+            out.writeShort(runDescriptor);
+            writeCode(out, codeName, 2, 5, run.toByteArray(), new int[] {start, end, handler});
+
+            out.writeShort(0);                              // attributes
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a method with a <tt>Code</tt> attribute of the specified code.
+     *
+     * @param out output of the class file
+     * @param codeName constant pool index of the attribute name
+     * @param maxStack maximum depth of the operand stack
+     * @param maxLocals number of local variables
+     * @param code bytecode of the method
+     * @param handler start, end and handler offsets of an exception handler
+     *        that catches any exception, or <tt>null</tt> if there is none
+     * @throws IOException if an I/O error occurs
+     */
+    private static void writeCode(DataOutputStream out, int codeName, int maxStack, int maxLocals,
+            byte[] code, int[] handler) throws IOException {
+        int handlers = handler == null ? 0 : 1;
+        out.writeShort(1);                                  // attributes
+        out.writeShort(codeName);
+        out.writeInt(2 + 2 + 4 + code.length + 2 + 8*handlers + 2);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(handlers);
+        if (handler != null) {
+            out.writeShort(handler[0]);
+            out.writeShort(handler[1]);
+            out.writeShort(handler[2]);
+            out.writeShort(0);                              // any exception
+        }
+        out.writeShort(0);                                  // attributes
+    }
+
+    /**
+     * Writes the instruction that pushes the specified non-negative integer.
+     *
+     * @param code the bytecode
+     * @param value the integer, less than 32768
+     */
+    private static void push(ByteArrayOutputStream code, int value) {
+        if (value <= 5) {
+            code.write(0x03 + value);                       // iconst_<value>
+        } else if (value <= Byte.MAX_VALUE) {
+            code.write(0x10);                               // bipush
+            code.write(value);
+        } else {
+            code.write(0x11);                               // sipush
+            writeShort(code, value);
+        }
+    }
+
+    /**
+     * Writes the specified value as two bytes, high byte first.
+     *
+     * @param code the bytecode
+     * @param value the value
+     */
+    private static void writeShort(ByteArrayOutputStream code, int value) {
+        code.write(value >>> 8);
+        code.write(value);
+    }
+
+    /**
+     * Constant pool of a generated class file. Each constant is added once.
+     */
+    private static class ConstantPool {
+
+        /** Indexes of the added constants, by their encoding. */
+        private final Map<String, Integer> indexes = new HashMap<>();
+        /** Encoded constants, in the order of their indexes. */
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        /** Index of the next constant. */
+        private int next = 1;
+
+        /**
+         * Adds a <tt>CONSTANT_Utf8</tt> constant.
+         *
+         * @param value the string
+         * @return index of the constant
+         */
+        int utf8(String value) {
+            return add("U" + value, 1, value, null);
+        }
+
+        /**
+         * Adds a <tt>CONSTANT_Class</tt> constant.
+         *
+         * @param name internal name of the class
+         * @return index of the constant
+         */
+        int classRef(String name) {
+            return add("C" + name, 7, null, new int[] {utf8(name)});
+        }
+
+        /**
+         * Adds a <tt>CONSTANT_Methodref</tt> constant.
+         *
+         * @param owner internal name of the class of the method
+         * @param name name of the method
+         * @param descriptor descriptor of the method
+         * @return index of the constant
+         */
+        int methodRef(String owner, String name, String descriptor) {
+            return member("M", 10, owner, name, descriptor);
+        }
+
+        /**
+         * Adds a <tt>CONSTANT_InterfaceMethodref</tt> constant.
+         *
+         * @param owner internal name of the interface of the method
+         * @param name name of the method
+         * @param descriptor descriptor of the method
+         * @return index of the constant
+         */
+        int interfaceMethodRef(String owner, String name, String descriptor) {
+            return member("I", 11, owner, name, descriptor);
+        }
+
+        /**
+         * Adds a member reference constant of the specified tag.
+         *
+         * @param kind prefix of the encoding of the constant
+         * @param tag tag of the constant
+         * @param owner internal name of the class of the member
+         * @param name name of the member
+         * @param descriptor descriptor of the member
+         * @return index of the constant
+         */
+        private int member(String kind, int tag, String owner, String name, String descriptor) {
+            int owned = classRef(owner);
+            int nameAndType = add("N" + name + " " + descriptor, 12, null,
+                    new int[] {utf8(name), utf8(descriptor)});
+            return add(kind + owner + "." + name + descriptor, tag, null, new int[] {owned, nameAndType});
+        }
+
+        /**
+         * Adds a constant, unless an equal constant was already added.
+         *
+         * @param key encoding of the constant
+         * @param tag tag of the constant
+         * @param string value of a <tt>CONSTANT_Utf8</tt>, otherwise <tt>null</tt>
+         * @param references indexes referred to by the constant
+         * @return index of the constant
+         */
+        private int add(String key, int tag, String string, int[] references) {
+            Integer index = indexes.get(key);
+            if (index != null) {
+                return index;
+            }
+
+            try {
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeByte(tag);
+                if (string != null) {
+                    out.writeUTF(string);
+                } else {
+                    for (int reference : references) {
+                        out.writeShort(reference);
+                    }
+                }
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            indexes.put(key, next);
+            return next++;
+        }
+
+        /**
+         * Writes the constant pool count and the constants.
+         *
+         * @param out output of the class file
+         * @throws IOException if an I/O error occurs
+         */
+        void write(DataOutputStream out) throws IOException {
+            out.writeShort(next);
+            bytes.writeTo(out);
+        }
+
+    }
+
+    /**
+     * Class loader that defines the generated classes.
+     */
+    private static class Loader extends ClassLoader {
+
+        /**
+         * Constructs a loader that delegates to the specified parent loader.
+         *
+         * @param parent the parent loader
+         */
+        Loader(ClassLoader parent) {
+            super(parent);
+        }
+
+        /**
+         * Defines a class of the specified name and bytes.
+         *
+         * @param name binary name of the class
+         * @param bytes bytes of the class file
+         * @return the defined class
+         */
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+
+    }
+
+}
@@ -0,0 +1,114 @@
+package hr.fer.zemris.java.simplecomp.impl;
+
+import hr.fer.zemris.java.simplecomp.models.*;
+
+/**
+ * This class implements the {@linkplain ExecutionUnit} interface and represents
+ * an execution unit that executes the program one {@linkplain BasicBlock} at a
+ * time instead of one instruction at a time.
+ * <p>
+ * The body of a block is executed as a straight sequence of instructions,
+ * without reading, incrementing and bounds checking the program counter and
+ * without fetching each instruction from memory. The program counter is set
+ * only once per block, just before its terminating instruction is executed.
+ * Blocks are built lazily the first time their entry address is reached and
+ * are reused afterwards.
+ * <p>
+ * The body of each block is compiled by the {@linkplain BlockCompiler} into a
+ * class of its own, which calls each instruction from a call site typed with
+ * the concrete class of the instruction. The virtual machine can therefore
+ * inline the instructions of a block into one compiled method, and only the
+ * block itself is dispatched through a megamorphic call. Blocks that are not
+ * compiled are executed instruction by instruction.
+ * <p>
+ * If the program writes to its own code region, all built blocks are
+ * discarded and the rest of the program is executed by the
+ * {@linkplain DecodedExecutionUnit} interpreter, which observes every write.
+ *
+ * @author Mario Bobic
+ */
+public class BlockExecutionUnit implements ExecutionUnit {
+
+    @Override
+    public boolean go(Computer computer) {
+        Registers registers = computer.getRegisters();
+        InstructionCache cache = new InstructionCache(computer.getMemory());
+        Computer cachedComputer = ComputerImpl.withMemory(computer, cache);
+
+        BasicBlock[] blocks = new BasicBlock[cache.getCodeLength()];
+        BlockCode[] codes = new BlockCode[blocks.length];
+
+        registers.setProgramCounter(0);
+
+        int address = 0;
+        try {
+            while (true) {
+                if (cache.getCodeWrites() != 0) {
+                    // code was modified, blocks can not be trusted anymore
+                    return DecodedExecutionUnit.execute(cachedComputer, cache);
+                }
+
+                address = registers.getProgramCounter();
+                if (address < 0 || address >= blocks.length) {
+                    // outside of the code region, execute a single instruction
+                    registers.incrementProgramCounter();
+                    boolean halt = cache.getInstruction(address).execute(cachedComputer);
+                    if (halt) break;
+                    continue;
+                }
+
+                BasicBlock block = blocks[address];
+                if (block == null) {
+                    block = BasicBlock.build(cache, address);
+                    blocks[address] = block;
+                    codes[address] = BlockCompiler.compile(block);
+                    if (codes[address] != null) {
+                        codes[address].bind(cache);
+                    }
+                }
+
+                BlockCode code = codes[address];
+                if (code != null) {
+                    int executed;
+                    try {
+                        executed = code.run(block.body, cachedComputer);
+                    } catch (Throwable t) {
+                        address += code.getFailedIndex();
+                        throw t;
+                    }
+                    address += executed;
+
+                    if (cache.getCodeWrites() != 0) {
+                        registers.setProgramCounter(address);
+                        return DecodedExecutionUnit.execute(cachedComputer, cache);
+                    }
+                } else {
+                    for (Instruction instruction : block.body) {
+                        instruction.execute(cachedComputer);
+                        address++;
+
+                        if (cache.getCodeWrites() != 0) {
+                            registers.setProgramCounter(address);
+                            return DecodedExecutionUnit.execute(cachedComputer, cache);
+                        }
+                    }
+                }
+
+                registers.setProgramCounter(block.end);
+                if (block.terminator != null) {
+                    boolean halt = block.terminator.execute(cachedComputer);
+                    if (halt) break;
+                }
+            }
+        } catch (Throwable t) {
+            registers.setProgramCounter(address+1);
+            ExecutionUnitImpl.flushOutput(computer);
+            t.printStackTrace();
+            System.err.println("\t at instruction on address " + address);
+            return false;
+        }
+
+        return true;
+    }
+
+}
@@ -0,0 +1,330 @@
+package hr.fer.zemris.java.simplecomp.impl;
+
+import java.util.Arrays;
+
+import hr.fer.zemris.java.simplecomp.RegisterUtil;
+import hr.fer.zemris.java.simplecomp.impl.instructions.AbstractInstrArithmeticOperation;
+import hr.fer.zemris.java.simplecomp.impl.instructions.AbstractInstrUnaryOperation;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrCall;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrEcho;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrIinput;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrLoad;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrMove;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrPop;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrPush;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrRet;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrTestEquals;
+import hr.fer.zemris.java.simplecomp.impl.instructions.VerifiedArithmetic;
+import hr.fer.zemris.java.simplecomp.impl.instructions.VerifiedMove;
+import hr.fer.zemris.java.simplecomp.impl.instructions.VerifiedPush;
+import hr.fer.zemris.java.simplecomp.impl.instructions.VerifiedTestEquals;
+import hr.fer.zemris.java.simplecomp.impl.instructions.VerifiedUnary;
+import hr.fer.zemris.java.simplecomp.models.Instruction;
+import hr.fer.zemris.java.simplecomp.models.InstructionArgument;
+import hr.fer.zemris.java.simplecomp.models.Registers;
+
+/**
+ * A {@linkplain BasicBlock} promoted to the faster tier of the
+ * {@linkplain TieredExecutionUnit}, together with the assumptions it was
+ * promoted under.
+ * <p>
+ * The block assumes that every register its instructions use as an integer
+ * (arithmetic operands, indirect address registers and the stack register)
+ * holds an {@linkplain Integer} when the block is entered, unless the block
+ * itself writes that register first. These assumptions are checked by the
+ * {@linkplain #guard(Registers)} method before each execution of the block.
+ * <p>
+ * Under these assumptions the block is specialized: if the registers are
+ * {@linkplain RegistersImpl}, each instruction of the body whose registers
+ * are known to hold integers is replaced with a verified instruction that
+ * skips the type and index checks, as the {@linkplain ProgramVerifier} does
+ * for the whole program. A register is known to hold an integer if it is
+ * guarded, or if an earlier instruction of the block stored an integer into
+ * it. A register loaded from the memory or popped from the stack is not
+ * known, so the instructions using it keep their checks and a value of the
+ * wrong type still fails them inside the block.
+ *
+ * @author Mario Bobic
+ */
+class CompiledBlock {
+
+    /** Maximum number of registers that can be addressed by a descriptor. */
+    private static final int MAX_REGISTERS = 256;
+
+    /** The compiled basic block. */
+    final BasicBlock block;
+    /** Body of the block, with the instructions specialized for integers. */
+    final Instruction[] body;
+    /** Indexes of registers that must hold an integer on block entry. */
+    private final int[] integerRegisters;
+
+    /**
+     * Constructs an instance of {@code CompiledBlock} by compiling the
+     * specified basic block for the specified <tt>registers</tt>.
+     *
+     * @param block the basic block to be compiled
+     * @param registers registers of the computer executing the block
+     */
+    CompiledBlock(BasicBlock block, Registers registers) {
+        boolean[] inputs = integerInputs(block);
+
+        this.block = block;
+        this.body = specialize(block.body, inputs, registers);
+        this.integerRegisters = indexes(inputs);
+    }
+
+    /**
+     * Returns true if the assumptions of this block hold for the specified
+     * <tt>registers</tt>, that is if every register this block uses as an
+     * integer before writing it holds an {@linkplain Integer}.
+     *
+     * @param registers registers to be checked
+     * @return true if the block may be executed
+     */
+    boolean guard(Registers registers) {
+        if (registers instanceof PrimitiveRegisters) {
+            PrimitiveRegisters primitive = (PrimitiveRegisters) registers;
+            for (int index : integerRegisters) {
+                if (!primitive.isInt(index)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        for (int index : integerRegisters) {
+            if (!(registers.getRegisterValue(index) instanceof Integer)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the registers that instructions of the specified block read as
+     * integers before the block writes them, by index.
+     *
+     * @param block the basic block
+     * @return registers that are integer inputs of the block
+     */
+    private static boolean[] integerInputs(BasicBlock block) {
+        boolean[] written = new boolean[MAX_REGISTERS];
+        boolean[] inputs = new boolean[MAX_REGISTERS];
+
+        for (Instruction instruction : block.body) {
+            markInputs(instruction, written, inputs);
+        }
+        if (block.terminator != null) {
+            markInputs(block.terminator, written, inputs);
+        }
+        return inputs;
+    }
+
+    /**
+     * Returns the indexes of the specified registers.
+     *
+     * @param registers registers, by index
+     * @return indexes of the registers
+     */
+    private static int[] indexes(boolean[] registers) {
+        int count = 0;
+        for (boolean register : registers) {
+            if (register) count++;
+        }
+
+        int[] indexes = new int[count];
+        for (int i = 0, j = 0; i < MAX_REGISTERS; i++) {
+            if (registers[i]) indexes[j++] = i;
+        }
+        return indexes;
+    }
+
+    /**
+     * Returns the specified block body with every instruction whose
+     * registers are known to hold integers replaced with a verified
+     * instruction. Returns a copy of the body if the <tt>registers</tt> are
+     * not {@linkplain RegistersImpl}, which the verified instructions use.
+     *
+     * @param body body of the block
+     * @param inputs integer inputs of the block, guarded on block entry
+     * @param registers registers of the computer executing the block
+     * @return the specialized body
+     */
+    private static Instruction[] specialize(Instruction[] body, boolean[] inputs, Registers registers) {
+        Instruction[] specialized = body.clone();
+        if (!(registers instanceof RegistersImpl)) {
+            return specialized;
+        }
+
+        int registerCount = ((RegistersImpl) registers).getLength();
+        boolean[] integer = inputs.clone();
+        for (int i = 0; i < specialized.length; i++) {
+            specialized[i] = specialize(specialized[i], integer, registerCount);
+        }
+        return specialized;
+    }
+
+    /**
+     * Returns a verified instruction replacing the specified one if its
+     * registers are known to hold integers, or the instruction itself
+     * otherwise, and updates the registers known to hold integers after it.
+     *
+     * @param instruction the instruction
+     * @param integer registers known to hold an integer, by index
+     * @param registerCount number of registers
+     * @return the specialized instruction
+     */
+    private static Instruction specialize(Instruction instruction, boolean[] integer, int registerCount) {
+        int stack = Registers.STACK_REGISTER_INDEX;
+
+        if (instruction instanceof AbstractInstrArithmeticOperation) {
+            AbstractInstrArithmeticOperation op = (AbstractInstrArithmeticOperation) instruction;
+            boolean known = op.getRegisterIndex1() < registerCount
+                    && integer[op.getRegisterIndex2()] && integer[op.getRegisterIndex3()];
+            integer[op.getRegisterIndex1()] = true;
+            if (known && !(op instanceof VerifiedArithmetic)) {
+                return new VerifiedArithmetic(op);
+            }
+
+        } else if (instruction instanceof AbstractInstrUnaryOperation) {
+            AbstractInstrUnaryOperation op = (AbstractInstrUnaryOperation) instruction;
+            boolean known = integer[op.getRegisterIndex()];
+            integer[op.getRegisterIndex()] = true;
+            if (known && !(op instanceof VerifiedUnary)) {
+                return new VerifiedUnary(op);
+            }
+
+        } else if (instruction instanceof InstrTestEquals) {
+            InstrTestEquals test = (InstrTestEquals) instruction;
+            if (integer[test.getRegisterIndex1()] && integer[test.getRegisterIndex2()]
+                    && !(test instanceof VerifiedTestEquals)) {
+                return new VerifiedTestEquals(test);
+            }
+
+        } else if (instruction instanceof InstrMove) {
+            InstrMove move = (InstrMove) instruction;
+            InstructionArgument argument = move.getArgument();
+            boolean value;
+            if (!argument.isRegister()) {
+                value = argument.getValue() instanceof Integer;
+            } else {
+                int source = (Integer) argument.getValue();
+                value = !RegisterUtil.isIndirect(source) && integer[RegisterUtil.getRegisterIndex(source)];
+            }
+
+            int descriptor = move.getRegisterDescriptor();
+            int destination = RegisterUtil.getRegisterIndex(descriptor);
+            boolean known;
+            if (RegisterUtil.isIndirect(descriptor)) {
+                known = value && integer[destination];
+            } else {
+                known = value && destination < registerCount;
+                integer[destination] = value;
+            }
+            if (known && !(move instanceof VerifiedMove)) {
+                return new VerifiedMove(move);
+            }
+
+        } else if (instruction instanceof InstrPush) {
+            InstrPush push = (InstrPush) instruction;
+            if (integer[stack] && integer[push.getRegisterIndex()] && !(push instanceof VerifiedPush)) {
+                return new VerifiedPush(push);
+            }
+
+        } else if (instruction instanceof InstrLoad) {
+            integer[((InstrLoad) instruction).getRegisterIndex()] = false;
+
+        } else if (instruction instanceof InstrPop) {
+            integer[((InstrPop) instruction).getRegisterIndex()] = false;
+
+        } else if (!(instruction instanceof InstrEcho || instruction instanceof InstrIinput)) {
+            // an unknown instruction may write any register
+            Arrays.fill(integer, false);
+        }
+
+        return instruction;
+    }
+
+    /**
+     * Marks the registers that the specified instruction reads as integers
+     * and that were not written by an earlier instruction as inputs, and then
+     * marks the registers written by the instruction.
+     *
+     * @param instruction the instruction
+     * @param written registers written by earlier instructions of the block
+     * @param inputs registers marked as integer inputs of the block
+     */
+    private static void markInputs(Instruction instruction, boolean[] written, boolean[] inputs) {
+        int stack = Registers.STACK_REGISTER_INDEX;
+
+        if (instruction instanceof AbstractInstrArithmeticOperation) {
+            AbstractInstrArithmeticOperation op = (AbstractInstrArithmeticOperation) instruction;
+            read(op.getRegisterIndex2(), written, inputs);
+            read(op.getRegisterIndex3(), written, inputs);
+            written[op.getRegisterIndex1()] = true;
+
+        } else if (instruction instanceof AbstractInstrUnaryOperation) {
+            AbstractInstrUnaryOperation op = (AbstractInstrUnaryOperation) instruction;
+            read(op.getRegisterIndex(), written, inputs);
+
+        } else if (instruction instanceof InstrMove) {
+            InstrMove move = (InstrMove) instruction;
+            InstructionArgument argument = move.getArgument();
+            if (argument.isRegister()) {
+                readIndirect((Integer) argument.getValue(), written, inputs);
+            }
+
+            int descriptor = move.getRegisterDescriptor();
+            if (RegisterUtil.isIndirect(descriptor)) {
+                readIndirect(descriptor, written, inputs);
+            } else {
+                written[RegisterUtil.getRegisterIndex(descriptor)] = true;
+            }
+
+        } else if (instruction instanceof InstrEcho) {
+            readIndirect(((InstrEcho) instruction).getRegisterDescriptor(), written, inputs);
+
+        } else if (instruction instanceof InstrLoad) {
+            written[((InstrLoad) instruction).getRegisterIndex()] = true;
+
+        } else if (instruction instanceof InstrPush) {
+            read(stack, written, inputs);
+
+        } else if (instruction instanceof InstrPop) {
+            read(stack, written, inputs);
+            written[((InstrPop) instruction).getRegisterIndex()] = true;
+
+        } else if (instruction instanceof InstrCall || instruction instanceof InstrRet) {
+            read(stack, written, inputs);
+        }
+    }
+
+    /**
+     * Marks the register of the specified descriptor as an input if it is an
+     * indirect register, since its value is then used as an address.
+     *
+     * @param descriptor the register descriptor
+     * @param written registers written by earlier instructions of the block
+     * @param inputs registers marked as integer inputs of the block
+     */
+    private static void readIndirect(int descriptor, boolean[] written, boolean[] inputs) {
+        if (RegisterUtil.isIndirect(descriptor)) {
+            read(RegisterUtil.getRegisterIndex(descriptor), written, inputs);
+        }
+    }
+
+    /**
+     * Marks the specified register as an input if it was not written by an
+     * earlier instruction of the block.
+     *
+     * @param index the register index
+     * @param written registers written by earlier instructions of the block
+     * @param inputs registers marked as integer inputs of the block
+     */
+    private static void read(int index, boolean[] written, boolean[] inputs) {
+        if (!written[index]) {
+            inputs[index] = true;
+        }
+    }
+
+}
@@ -1,5 +1,7 @@
 package hr.fer.zemris.java.simplecomp.impl;
 
+import hr.fer.zemris.java.simplecomp.io.InputSource;
+import hr.fer.zemris.java.simplecomp.io.OutputSink;
 import hr.fer.zemris.java.simplecomp.models.Computer;
 import hr.fer.zemris.java.simplecomp.models.Memory;
 import hr.fer.zemris.java.simplecomp.models.Registers;
@@ -7,15 +9,31 @@ import hr.fer.zemris.java.simplecomp.models.Registers;
 /**
  * This class implements the {@linkplain Computer} interface, containing an
  * obtainable {@linkplain Memory} and {@linkplain Registers}.
+ * <p>
+ * The computer also has its own {@linkplain OutputSink output}, which writes
+ * to the {@linkplain System#out standard output} unless another sink is
+ * {@linkplain #setOutput(OutputSink) set}, and its own
+ * {@linkplain InputSource input}, which reads from the shared
+ * {@linkplain InputSource#stdin() standard input source} unless another
+ * source is {@linkplain #setInput(InputSource) set}.
+ * <p>
+ * A computer with a {@linkplain PagedMemory} and {@linkplain RegistersImpl
+ * registers} can be {@linkplain #snapshot() snapshot} in constant time. The
+ * {@linkplain ComputerSnapshot snapshot} can be forked into new computers or
+ * {@linkplain #restore(ComputerSnapshot) restored} to roll the computer back.
  *
  * @author Mario Bobic
  */
-public class ComputerImpl implements Computer {
+public class ComputerImpl implements IOComputer {
 
     /** The computer memory. */
     private Memory memory;
     /** The computer registers. */
     private Registers registers;
+    /** The computer output. */
+    private OutputSink output;
+    /** The computer input. */
+    private InputSource input;
 
     /**
      * Constructs an instance of {@code ComputerImpl} with the specified memory
@@ -30,6 +48,90 @@ public class ComputerImpl implements Computer {
     public ComputerImpl(int memoryLength, int registersLength) {
         memory = new MemoryImpl(memoryLength);
         registers = new RegistersImpl(registersLength);
+        output = new OutputSink(System.out);
+        input = InputSource.stdin();
+    }
+
+    /**
+     * Constructs an instance of {@code ComputerImpl} with the specified
+     * <tt>memory</tt> and <tt>registers</tt>.
+     *
+     * @param memory the computer memory
+     * @param registers the computer registers
+     * @throws NullPointerException if memory or registers is <tt>null</tt>
+     */
+    public ComputerImpl(Memory memory, Registers registers) {
+        if (memory == null || registers == null) {
+            throw new NullPointerException("Memory and registers must not be null.");
+        }
+        this.memory = memory;
+        this.registers = registers;
+        this.output = new OutputSink(System.out);
+        this.input = InputSource.stdin();
+    }
+
+    /**
+     * Returns a computer with the registers and the input and output of the
+     * specified <tt>computer</tt>, but with the specified <tt>memory</tt>.
+     * Execution units use this method to execute programs on a decorated
+     * memory.
+     *
+     * @param computer the original computer
+     * @param memory memory of the returned computer
+     * @return a computer with the specified memory
+     */
+    static ComputerImpl withMemory(Computer computer, Memory memory) {
+        ComputerImpl result = new ComputerImpl(memory, computer.getRegisters());
+        if (computer instanceof IOComputer) {
+            result.output = ((IOComputer) computer).getOutput();
+            result.input = ((IOComputer) computer).getInput();
+        }
+        return result;
+    }
+
+    /**
+     * Returns a snapshot of the memory, the registers, the program counter and
+     * the flag of this computer, in constant time.
+     * <p>
+     * Throws an {@linkplain IllegalStateException} if the memory of this
+     * computer is not a {@linkplain PagedMemory} or its registers are not
+     * {@linkplain RegistersImpl}.
+     *
+     * @return a snapshot of this computer
+     * @throws IllegalStateException if this computer can not be snapshot
+     */
+    public ComputerSnapshot snapshot() {
+        checkSnapshotSupported();
+        return new ComputerSnapshot(((PagedMemory) memory).snapshot(), ((RegistersImpl) registers).copy());
+    }
+
+    /**
+     * Restores the memory, the registers, the program counter and the flag of
+     * this computer from the specified <tt>snapshot</tt>, in constant time.
+     * The input and the output of this computer are left as they are.
+     *
+     * @param snapshot snapshot of a computer of the same memory size and
+     *        number of registers
+     * @throws IllegalStateException if this computer can not be snapshot
+     * @throws IllegalArgumentException if the snapshot is of a computer of
+     *         another memory size or number of registers
+     */
+    public void restore(ComputerSnapshot snapshot) {
+        checkSnapshotSupported();
+        snapshot.restore((PagedMemory) memory, (RegistersImpl) registers);
+    }
+
+    /**
+     * Throws an {@linkplain IllegalStateException} if this computer can not
+     * be snapshot.
+     *
+     * @throws IllegalStateException if this computer can not be snapshot
+     */
+    private void checkSnapshotSupported() {
+        if (!(memory instanceof PagedMemory) || !(registers instanceof RegistersImpl)) {
+            throw new IllegalStateException("Only a computer with a paged memory and RegistersImpl registers "
+                    + "can be snapshot.");
+        }
     }
 
     @Override
@@ -42,4 +144,40 @@ public class ComputerImpl implements Computer {
         return memory;
     }
 
+    @Override
+    public OutputSink getOutput() {
+        return output;
+    }
+
+    /**
+     * Sets the output sink of this computer.
+     *
+     * @param output the output sink
+     * @throws NullPointerException if the output sink is <tt>null</tt>
+     */
+    public void setOutput(OutputSink output) {
+        if (output == null) {
+            throw new NullPointerException("Output sink must not be null.");
+        }
+        this.output = output;
+    }
+
+    @Override
+    public InputSource getInput() {
+        return input;
+    }
+
+    /**
+     * Sets the input source of this computer.
+     *
+     * @param input the input source
+     * @throws NullPointerException if the input source is <tt>null</tt>
+     */
+    public void setInput(InputSource input) {
+        if (input == null) {
+            throw new NullPointerException("Input source must not be null.");
+        }
+        this.input = input;
+    }
+
 }
@@ -0,0 +1,323 @@
+package hr.fer.zemris.java.simplecomp.impl;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import hr.fer.zemris.java.simplecomp.RegisterUtil;
+import hr.fer.zemris.java.simplecomp.impl.instructions.FusedPushPushCall;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrCall;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrIinput;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrMove;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrPush;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrRet;
+import hr.fer.zemris.java.simplecomp.io.InputSource;
+import hr.fer.zemris.java.simplecomp.io.OutputSink;
+import hr.fer.zemris.java.simplecomp.models.Computer;
+import hr.fer.zemris.java.simplecomp.models.Instruction;
+import hr.fer.zemris.java.simplecomp.models.Registers;
+
+/**
+ * Live metrics of a computer executing a program, which can be
+ * {@linkplain #register(String) registered} as an MXBean and observed over
+ * JMX while the program runs. The metrics are collected by an
+ * {@linkplain ExecutionUnitImpl} constructed with them.
+ * <p>
+ * The counters are confined to the executing thread, which updates them
+ * without synchronization after every instruction. Every
+ * {@value #PUBLISH_INTERVAL} instructions, and when the program ends, the
+ * executing thread publishes them to volatile fields that the
+ * {@linkplain ComputerMetricsMXBean management interface} reads. Input
+ * waiting time and echoed bytes are taken from the
+ * {@linkplain InputSource input} and {@linkplain OutputSink output} of the
+ * computer when the counters are published.
+ *
+ * @author Mario Bobic
+ */
+public class ComputerMetrics implements ComputerMetricsMXBean {
+
+    /** Domain of the names the metrics are registered under. */
+    public static final String DOMAIN = "hr.fer.zemris.java.simplecomp";
+    /** Number of instructions between two publications of the counters. */
+    public static final int PUBLISH_INTERVAL = 4096;
+
+    /** Time over which the instructions per second are measured. */
+    private static final long RATE_WINDOW = TimeUnit.SECONDS.toNanos(1);
+
+    /* Counters of the executing thread. */
+
+    /** The computer executing the program. */
+    private Computer computer;
+    /** Number of executed instructions. */
+    private long instructions;
+    /** Current call depth. */
+    private int callDepth;
+    /** Maximum call depth. */
+    private int maxCallDepth;
+    /** Lowest value of the stack register, or <tt>Integer.MAX_VALUE</tt>. */
+    private int stackLowWaterMark;
+    /** Number of written memory locations. */
+    private long cellsWritten;
+    /** Input waiting time of the computer input when the program started. */
+    private long inputWaitStart;
+    /** Bytes written to the computer output when the program started. */
+    private long echoBytesStart;
+    /** Time the program started, in nanoseconds. */
+    private long startNanos;
+    /** Time the current rate window started, in nanoseconds. */
+    private long windowNanos;
+    /** Number of executed instructions when the current rate window started. */
+    private long windowInstructions;
+    /** Indicates if a whole rate window was measured. */
+    private boolean windowMeasured;
+    /** Number of instructions until the next publication. */
+    private int untilPublish;
+
+    /* Published values. */
+
+    /** Published indication if the program is running. */
+    private volatile boolean running;
+    /** Published number of executed instructions. */
+    private volatile long publishedInstructions;
+    /** Published number of instructions per second. */
+    private volatile double publishedRate;
+    /** Published call depth. */
+    private volatile int publishedCallDepth;
+    /** Published maximum call depth. */
+    private volatile int publishedMaxCallDepth;
+    /** Published lowest value of the stack register. */
+    private volatile int publishedStackLowWaterMark = -1;
+    /** Published number of written memory locations. */
+    private volatile long publishedCellsWritten;
+    /** Published input waiting time, in nanoseconds. */
+    private volatile long publishedInputWait;
+    /** Published number of echoed bytes. */
+    private volatile long publishedEchoBytes;
+
+    /** Name these metrics are registered under, or <tt>null</tt>. */
+    private ObjectName objectName;
+
+    /**
+     * Registers these metrics in the platform MBean server under the
+     * specified name, in the {@value #DOMAIN} domain with the type
+     * <tt>Computer</tt>.
+     * <p>
+     * Throws an {@linkplain IllegalStateException} if the metrics can not be
+     * registered, for example if there already are metrics of that name.
+     *
+     * @param name name of the computer
+     * @return the object name of the registered metrics
+     * @throws IllegalStateException if the metrics can not be registered
+     */
+    public synchronized ObjectName register(String name) {
+        try {
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=Computer,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            this.objectName = objectName;
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Metrics can not be registered: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Unregisters these metrics from the platform MBean server, if they are
+     * registered.
+     */
+    public synchronized void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            // already unregistered
+        }
+        objectName = null;
+    }
+
+    /**
+     * Resets the counters as the specified computer starts executing a
+     * program. Must be called by the executing thread.
+     *
+     * @param computer the computer
+     */
+    void start(Computer computer) {
+        this.computer = computer;
+        instructions = 0;
+        callDepth = 0;
+        maxCallDepth = 0;
+        stackLowWaterMark = Integer.MAX_VALUE;
+        cellsWritten = 0;
+        inputWaitStart = input(computer).getWaitNanos();
+        echoBytesStart = computer instanceof IOComputer ? ((IOComputer) computer).getOutput().getBytesWritten() : 0;
+        startNanos = windowNanos = System.nanoTime();
+        windowInstructions = 0;
+        windowMeasured = false;
+        untilPublish = PUBLISH_INTERVAL;
+
+        updateStack(computer.getRegisters());
+        running = true;
+        publish();
+    }
+
+    /**
+     * Records that the specified instruction was executed. Must be called by
+     * the executing thread after each instruction.
+     *
+     * @param instruction the executed instruction
+     * @param registers registers of the computer
+     */
+    void executed(Instruction instruction, Registers registers) {
+        instructions++;
+
+        if (instruction instanceof InstrPush) {
+            cellsWritten++;
+            updateStack(registers);
+        } else if (instruction instanceof InstrCall) {
+            cellsWritten++;
+            enter();
+            updateStack(registers);
+        } else if (instruction instanceof InstrRet) {
+            if (callDepth > 0) callDepth--;
+        } else if (instruction instanceof InstrMove) {
+            if (RegisterUtil.isIndirect(((InstrMove) instruction).getRegisterDescriptor())) {
+                cellsWritten++;
+            }
+        } else if (instruction instanceof InstrIinput) {
+            if (registers.getFlag()) cellsWritten++;
+        } else if (instruction instanceof FusedPushPushCall) {
+            cellsWritten += 3;
+            enter();
+            updateStack(registers);
+        }
+
+        if (--untilPublish == 0) {
+            untilPublish = PUBLISH_INTERVAL;
+            publish();
+        }
+    }
+
+    /**
+     * Publishes the counters as the program ends. Must be called by the
+     * executing thread.
+     */
+    void finish() {
+        publish();
+        running = false;
+    }
+
+    /**
+     * Records a subroutine call.
+     */
+    private void enter() {
+        if (++callDepth > maxCallDepth) {
+            maxCallDepth = callDepth;
+        }
+    }
+
+    /**
+     * Lowers the stack high-water mark to the value of the stack register, if
+     * it holds a lower number.
+     *
+     * @param registers registers of the computer
+     */
+    private void updateStack(Registers registers) {
+        int index = Registers.STACK_REGISTER_INDEX;
+        int value;
+        if (registers instanceof PrimitiveRegisters && ((PrimitiveRegisters) registers).isInt(index)) {
+            value = ((PrimitiveRegisters) registers).getInt(index);
+        } else if (registers.getRegisterValue(index) instanceof Integer) {
+            value = (Integer) registers.getRegisterValue(index);
+        } else {
+            return;
+        }
+        if (value < stackLowWaterMark) {
+            stackLowWaterMark = value;
+        }
+    }
+
+    /**
+     * Publishes the counters of the executing thread.
+     */
+    private void publish() {
+        long now = System.nanoTime();
+        if (now - windowNanos >= RATE_WINDOW) {
+            publishedRate = (instructions - windowInstructions) * 1e9 / (now - windowNanos);
+            windowNanos = now;
+            windowInstructions = instructions;
+            windowMeasured = true;
+        } else if (!windowMeasured && now > startNanos) {
+            publishedRate = instructions * 1e9 / (now - startNanos);
+        }
+
+        publishedInstructions = instructions;
+        publishedCallDepth = callDepth;
+        publishedMaxCallDepth = maxCallDepth;
+        publishedStackLowWaterMark = stackLowWaterMark == Integer.MAX_VALUE ? -1 : stackLowWaterMark;
+        publishedCellsWritten = cellsWritten;
+        publishedInputWait = input(computer).getWaitNanos() - inputWaitStart;
+        if (computer instanceof IOComputer) {
+            publishedEchoBytes = ((IOComputer) computer).getOutput().getBytesWritten() - echoBytesStart;
+        }
+    }
+
+    /**
+     * Returns the input the <tt>iinput</tt> instruction reads from on the
+     * specified computer.
+     *
+     * @param computer the computer
+     * @return the input of the computer
+     */
+    private static InputSource input(Computer computer) {
+        return computer instanceof IOComputer ? ((IOComputer) computer).getInput() : InputSource.stdin();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public long getInstructionsExecuted() {
+        return publishedInstructions;
+    }
+
+    @Override
+    public double getInstructionsPerSecond() {
+        return publishedRate;
+    }
+
+    @Override
+    public int getCallDepth() {
+        return publishedCallDepth;
+    }
+
+    @Override
+    public int getMaxCallDepth() {
+        return publishedMaxCallDepth;
+    }
+
+    @Override
+    public int getStackLowWaterMark() {
+        return publishedStackLowWaterMark;
+    }
+
+    @Override
+    public long getMemoryCellsWritten() {
+        return publishedCellsWritten;
+    }
+
+    @Override
+    public long getInputWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(publishedInputWait);
+    }
+
+    @Override
+    public long getEchoBytesWritten() {
+        return publishedEchoBytes;
+    }
+
+}
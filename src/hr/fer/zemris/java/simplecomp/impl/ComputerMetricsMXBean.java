@@ -0,0 +1,85 @@
+package hr.fer.zemris.java.simplecomp.impl;
+
+/**
+ * The management interface of the {@linkplain ComputerMetrics}, through which
+ * the metrics of a running computer are exposed over JMX.
+ * <p>
+ * The values are published by the executing thread periodically, so they may
+ * lag behind the execution by a few thousand instructions.
+ *
+ * @author Mario Bobic
+ */
+public interface ComputerMetricsMXBean {
+
+    /**
+     * Returns true if the program is being executed.
+     *
+     * @return true if the program is running
+     */
+    boolean isRunning();
+
+    /**
+     * Returns the number of instructions executed since the program started.
+     *
+     * @return the number of executed instructions
+     */
+    long getInstructionsExecuted();
+
+    /**
+     * Returns the number of instructions executed per second, measured over
+     * the last second of execution, or since the start if the program runs
+     * for less than a second.
+     *
+     * @return the number of instructions per second
+     */
+    double getInstructionsPerSecond();
+
+    /**
+     * Returns the number of subroutine calls that have not returned yet.
+     *
+     * @return the current call depth
+     */
+    int getCallDepth();
+
+    /**
+     * Returns the greatest call depth reached since the program started.
+     *
+     * @return the maximum call depth
+     */
+    int getMaxCallDepth();
+
+    /**
+     * Returns the lowest value of the stack register seen since the program
+     * started, which is the high-water mark of the stack as it grows towards
+     * lower addresses, or <tt>-1</tt> if the stack register never held a
+     * number.
+     *
+     * @return the lowest stack address
+     */
+    int getStackLowWaterMark();
+
+    /**
+     * Returns the number of memory locations written by the instructions
+     * since the program started.
+     *
+     * @return the number of written memory locations
+     */
+    long getMemoryCellsWritten();
+
+    /**
+     * Returns the time the <tt>iinput</tt> instructions spent waiting for
+     * input since the program started, in milliseconds.
+     *
+     * @return the input waiting time in milliseconds
+     */
+    long getInputWaitMillis();
+
+    /**
+     * Returns the number of bytes written by the <tt>echo</tt> instructions
+     * since the program started.
+     *
+     * @return the number of written bytes
+     */
+    long getEchoBytesWritten();
+
+}
@@ -0,0 +1,90 @@
+package hr.fer.zemris.java.simplecomp.impl;
+
+import hr.fer.zemris.java.simplecomp.io.InputSource;
+import hr.fer.zemris.java.simplecomp.io.OutputSink;
+import hr.fer.zemris.java.simplecomp.models.Computer;
+
+/**
+ * An immutable snapshot of the state of a {@linkplain ComputerImpl}: the
+ * contents of its memory, its registers, its program counter and its flag. A
+ * snapshot is taken by the {@linkplain ComputerImpl#snapshot()} method from a
+ * computer with a {@linkplain PagedMemory}.
+ * <p>
+ * A snapshot can be {@linkplain #fork(OutputSink, InputSource) forked} into
+ * any number of independent computers, or
+ * {@linkplain ComputerImpl#restore(ComputerSnapshot) restored} into the
+ * computer it was taken from, to roll it back. Both take
+ * constant time, as the memory pages are copied only when they are written
+ * to. A program can therefore be run up to its first <tt>iinput</tt>, by
+ * {@linkplain ExecutionUnitImpl#step(Computer, int) stepping} it, snapshot
+ * there, and continued many times with different inputs without being parsed
+ * again.
+ * <p>
+ * The input and the output of a computer are not part of its snapshot.
+ *
+ * @author Mario Bobic
+ */
+public final class ComputerSnapshot {
+
+    /** Snapshot of the memory. */
+    private final PagedMemory.Snapshot memory;
+    /** Copy of the registers, which is never written to. */
+    private final RegistersImpl registers;
+
+    /**
+     * Constructs a snapshot of the specified memory snapshot and registers.
+     *
+     * @param memory snapshot of the memory
+     * @param registers copy of the registers
+     */
+    ComputerSnapshot(PagedMemory.Snapshot memory, RegistersImpl registers) {
+        this.memory = memory;
+        this.registers = registers;
+    }
+
+    /**
+     * Returns a new computer in the state of this snapshot. The computer
+     * writes to the {@linkplain System#out standard output} and reads from
+     * the {@linkplain InputSource#stdin() standard input source} until
+     * another {@linkplain ComputerImpl#setOutput(OutputSink) output} and
+     * {@linkplain ComputerImpl#setInput(InputSource) input} are set.
+     *
+     * @return a new computer in the state of this snapshot
+     */
+    public ComputerImpl fork() {
+        return new ComputerImpl(new PagedMemory(memory), registers.copy());
+    }
+
+    /**
+     * Returns a new computer in the state of this snapshot, which writes to
+     * the specified <tt>output</tt> and reads from the specified
+     * <tt>input</tt>.
+     *
+     * @param output the output sink of the computer
+     * @param input the input source of the computer
+     * @return a new computer in the state of this snapshot
+     * @throws NullPointerException if the output sink or the input source is
+     *         <tt>null</tt>
+     */
+    public ComputerImpl fork(OutputSink output, InputSource input) {
+        ComputerImpl computer = fork();
+        computer.setOutput(output);
+        computer.setInput(input);
+        return computer;
+    }
+
+    /**
+     * Restores the state of this snapshot into the specified memory and
+     * registers.
+     *
+     * @param memory memory of the computer
+     * @param registers registers of the computer
+     * @throws IllegalArgumentException if the memory or the registers are of
+     *         another size
+     */
+    void restore(PagedMemory memory, RegistersImpl registers) {
+        memory.restore(this.memory);
+        registers.copyFrom(this.registers);
+    }
+
+}
@@ -0,0 +1,64 @@
+package hr.fer.zemris.java.simplecomp.impl;
+
+import hr.fer.zemris.java.simplecomp.models.*;
+
+/**
+ * This class implements the {@linkplain ExecutionUnit} interface and represents
+ * an execution unit that dispatches instructions from a pre-decoded
+ * {@linkplain InstructionCache} instead of fetching them from the computer
+ * memory on every step.
+ * <p>
+ * The code region is decoded once at the start of the execution. Instructions
+ * are executed on a computer whose memory is the instruction cache, so writes
+ * to code addresses invalidate the cached entries and programs that modify
+ * their own code still behave as they would on the {@linkplain ExecutionUnitImpl}.
+ *
+ * @author Mario Bobic
+ */
+public class DecodedExecutionUnit implements ExecutionUnit {
+
+    @Override
+    public boolean go(Computer computer) {
+        InstructionCache cache = new InstructionCache(computer.getMemory());
+        Computer cachedComputer = ComputerImpl.withMemory(computer, cache);
+
+        computer.getRegisters().setProgramCounter(0);
+
+        return execute(cachedComputer, cache);
+    }
+
+    /**
+     * Executes the program of the specified <tt>computer</tt> starting from its
+     * current program counter, fetching instructions from the specified
+     * <tt>cache</tt>. The memory of the computer is expected to be the cache
+     * itself, so that writes to the code region invalidate the cached entries.
+     *
+     * @param computer computer whose memory is the instruction cache
+     * @param cache the instruction cache
+     * @return <tt>true</tt> if the program ended regularly, <tt>false</tt> if
+     *         an exception occurred
+     */
+    static boolean execute(Computer computer, InstructionCache cache) {
+        Registers registers = computer.getRegisters();
+
+        while (true) {
+            int pc = registers.getProgramCounter();
+            registers.incrementProgramCounter();
+
+            try {
+                Instruction instruction = cache.getInstruction(pc);
+
+                boolean halt = instruction.execute(computer);
+                if (halt) break;
+            } catch (Throwable t) {
+                ExecutionUnitImpl.flushOutput(computer);
+                t.printStackTrace();
+                System.err.println("\t at instruction on address " + pc);
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+}
@@ -1,21 +1,92 @@
 package hr.fer.zemris.java.simplecomp.impl;
 
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrIinput;
+import hr.fer.zemris.java.simplecomp.io.InputSource;
 import hr.fer.zemris.java.simplecomp.models.*;
 
 /**
  * This class implements the {@linkplain ExecutionUnit} interface and represents
  * an execution unit. It executes the program stored in the computer memory.
+ * <p>
+ * The number of instructions executed during the last execution can be
+ * obtained by the {@linkplain #getExecutedInstructions()} method. An execution
+ * unit constructed with {@linkplain ComputerMetrics} also collects them, so
+ * that a running program can be observed over JMX. An execution unit
+ * constructed with a {@linkplain FlightRecorder} records the last executed
+ * instructions, and dumps them along with the failure of a program.
+ * <p>
+ * Besides running a program to its end, the execution unit can
+ * {@linkplain #step(Computer, int) step} it: execute at most a given number of
+ * instructions from the current program counter and report the
+ * {@linkplain StepStatus status} of the program. A program can be stepped
+ * until it halts, so that one program never holds a thread for longer than
+ * its budget.
  *
  * @author Mario Bobic
  */
 public class ExecutionUnitImpl implements ExecutionUnit {
 
+    /**
+     * Status of a program after a {@linkplain ExecutionUnitImpl#step(Computer,
+     * int) step}.
+     */
+    public enum StepStatus {
+        /** The program executed its whole budget and can continue. */
+        RUNNING,
+        /** The program halted. */
+        HALTED,
+        /** An instruction of the program failed. */
+        FAULTED,
+        /** The next instruction is an <tt>iinput</tt> and no input is ready. */
+        WAITING_FOR_INPUT
+    }
+
+    /** Number of instructions executed during the last execution. */
+    private long executedInstructions;
+    /** Metrics collected during the execution, or <tt>null</tt>. */
+    private final ComputerMetrics metrics;
+    /** Recorder of the executed instructions, or <tt>null</tt>. */
+    private final FlightRecorder recorder;
+
+    /**
+     * Constructs an execution unit that does not collect metrics.
+     */
+    public ExecutionUnitImpl() {
+        this(null, null);
+    }
+
+    /**
+     * Constructs an execution unit that collects the specified metrics.
+     *
+     * @param metrics metrics to be collected, or <tt>null</tt>
+     */
+    public ExecutionUnitImpl(ComputerMetrics metrics) {
+        this(metrics, null);
+    }
+
+    /**
+     * Constructs an execution unit that collects the specified metrics and
+     * records the executed instructions into the specified recorder.
+     *
+     * @param metrics metrics to be collected, or <tt>null</tt>
+     * @param recorder recorder of the executed instructions, or <tt>null</tt>
+     */
+    public ExecutionUnitImpl(ComputerMetrics metrics, FlightRecorder recorder) {
+        this.metrics = metrics;
+        this.recorder = recorder;
+    }
+
     @Override
     public boolean go(Computer computer) {
+        if (metrics != null || recorder != null) {
+            return goObserved(computer);
+        }
+
         Registers registers = computer.getRegisters();
         Memory memory = computer.getMemory();
 
         registers.setProgramCounter(0);
+        executedInstructions = 0;
 
         while (true) {
             int pc = registers.getProgramCounter();
@@ -24,11 +95,11 @@ public class ExecutionUnitImpl implements ExecutionUnit {
             try {
                 Instruction instruction = getInstruction(memory, pc);
 
+                executedInstructions++;
                 boolean halt = instruction.execute(computer);
                 if (halt) break;
             } catch (Throwable t) {
-                t.printStackTrace();
-                System.err.println("\t at instruction on address " + pc);
+                reportFailure(computer, t, pc);
                 return false;
             }
         }
@@ -36,6 +107,181 @@ public class ExecutionUnitImpl implements ExecutionUnit {
         return true;
     }
 
+    /**
+     * Executes the program like {@linkplain #go(Computer)}, collecting the
+     * metrics and recording the instructions. This is a separate loop so that
+     * execution without them does not pay for them.
+     *
+     * @param computer the computer
+     * @return true if the program ended regularly
+     */
+    private boolean goObserved(Computer computer) {
+        ComputerMetrics metrics = this.metrics;
+        FlightRecorder recorder = this.recorder;
+        Registers registers = computer.getRegisters();
+        Memory memory = computer.getMemory();
+
+        registers.setProgramCounter(0);
+        executedInstructions = 0;
+        if (metrics != null) {
+            metrics.start(computer);
+        }
+
+        try {
+            while (true) {
+                int pc = registers.getProgramCounter();
+                registers.incrementProgramCounter();
+
+                Instruction instruction = null;
+                try {
+                    instruction = getInstruction(memory, pc);
+
+                    executedInstructions++;
+                    boolean halt = instruction.execute(computer);
+                    if (metrics != null) {
+                        metrics.executed(instruction, registers);
+                    }
+                    if (recorder != null) {
+                        recorder.record(pc, instruction, registers.getFlag());
+                    }
+                    if (halt) break;
+                } catch (Throwable t) {
+                    if (recorder != null) {
+                        recorder.record(pc, instruction, registers.getFlag());
+                    }
+                    reportFailure(computer, t, pc);
+                    return false;
+                }
+            }
+        } finally {
+            if (metrics != null) {
+                metrics.finish();
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Executes at most <tt>budget</tt> instructions of the program loaded into
+     * the specified computer, starting from its current program counter, and
+     * returns the status of the program. The number of executed instructions
+     * is added to the {@linkplain #getExecutedInstructions() executed
+     * instructions}.
+     * <p>
+     * Before an <tt>iinput</tt> instruction is executed, the input is checked
+     * by the {@linkplain #isInputReady(Computer)} method. If no input is
+     * ready, the output of the computer is flushed, as the program may have
+     * prompted for input, and {@linkplain StepStatus#WAITING_FOR_INPUT} is
+     * returned without executing the instruction. If an instruction fails,
+     * the failure is {@linkplain #reportFailure(Computer, Throwable, int)
+     * reported}, the program counter is left after the failed instruction and
+     * {@linkplain StepStatus#FAULTED} is returned.
+     *
+     * @param computer the computer
+     * @param budget maximum number of instructions to be executed
+     * @return status of the program
+     * @throws IllegalArgumentException if the budget is not positive
+     */
+    public StepStatus step(Computer computer, int budget) {
+        if (budget < 1) {
+            throw new IllegalArgumentException("Budget must be positive: " + budget);
+        }
+
+        Registers registers = computer.getRegisters();
+        Memory memory = computer.getMemory();
+
+        for (int i = 0; i < budget; i++) {
+            int pc = registers.getProgramCounter();
+            Instruction instruction = null;
+            try {
+                instruction = getInstruction(memory, pc);
+                if (instruction instanceof InstrIinput && !isInputReady(computer)) {
+                    flushOutput(computer);
+                    return StepStatus.WAITING_FOR_INPUT;
+                }
+
+                registers.incrementProgramCounter();
+                executedInstructions++;
+                boolean halt = instruction.execute(computer);
+                if (recorder != null) {
+                    recorder.record(pc, instruction, registers.getFlag());
+                }
+                if (halt) {
+                    return StepStatus.HALTED;
+                }
+            } catch (Throwable t) {
+                if (recorder != null) {
+                    recorder.record(pc, instruction, registers.getFlag());
+                }
+                registers.setProgramCounter(pc + 1);
+                reportFailure(computer, t, pc);
+                return StepStatus.FAULTED;
+            }
+        }
+
+        return StepStatus.RUNNING;
+    }
+
+    /**
+     * Returns true if an <tt>iinput</tt> instruction may read from the input
+     * of the specified computer without waiting. By default, input is ready
+     * if the {@linkplain InputSource#isReady() input source is ready}.
+     * Subclasses that know more about the input may override this method.
+     *
+     * @param computer the computer
+     * @return true if input is ready
+     */
+    protected boolean isInputReady(Computer computer) {
+        InputSource input = computer instanceof IOComputer
+                ? ((IOComputer) computer).getInput()
+                : InputSource.stdin();
+        return input.isReady();
+    }
+
+    /**
+     * Reports that the instruction on the specified <tt>address</tt> failed
+     * with the specified throwable. By default, the output of the computer is
+     * flushed and the stack trace is written onto the standard error,
+     * followed by the dump of the {@linkplain FlightRecorder flight recorder},
+     * if there is one. Subclasses may override this method to record failures
+     * elsewhere.
+     *
+     * @param computer the computer that executed the instruction
+     * @param t the throwable thrown by the instruction
+     * @param address address of the failed instruction
+     */
+    protected void reportFailure(Computer computer, Throwable t, int address) {
+        flushOutput(computer);
+        t.printStackTrace();
+        System.err.println("\t at instruction on address " + address);
+        if (recorder != null) {
+            recorder.dump(System.err);
+        }
+    }
+
+    /**
+     * Returns the recorder of the executed instructions, which can be
+     * {@linkplain FlightRecorder#dump(java.io.PrintStream) dumped} on demand.
+     *
+     * @return the flight recorder, or <tt>null</tt> if there is none
+     */
+    public FlightRecorder getFlightRecorder() {
+        return recorder;
+    }
+
+    /**
+     * Returns the number of instructions executed during the last execution,
+     * including the instruction that halted the program or failed. When the
+     * program is stepped, this is the number of instructions executed by all
+     * steps since the last execution.
+     *
+     * @return the number of executed instructions
+     */
+    public long getExecutedInstructions() {
+        return executedInstructions;
+    }
+
     /**
      * Returns the instruction from the specified <tt>memory</tt> at the
      * specified program counter <tt>pc</tt>.
@@ -48,8 +294,9 @@ public class ExecutionUnitImpl implements ExecutionUnit {
      * @param memory the computer memory
      * @param pc program counter
      * @return the instruction from memory at the program counter address
+     * @throws IllegalStateException if the location does not hold an instruction
      */
-    private static Instruction getInstruction(Memory memory, int pc) {
+    static Instruction getInstruction(Memory memory, int pc) {
         Object instruction = memory.getLocation(pc);
         if (!(instruction instanceof Instruction)) {
             throw new IllegalStateException("Reading constants instead of instructions.");
@@ -58,4 +305,17 @@ public class ExecutionUnitImpl implements ExecutionUnit {
         return (Instruction) instruction;
     }
 
+    /**
+     * Flushes the output of the specified <tt>computer</tt>, if it has its own
+     * output. Execution units call this method when a program fails, so that
+     * the output of the program precedes the error message.
+     *
+     * @param computer the computer
+     */
+    static void flushOutput(Computer computer) {
+        if (computer instanceof IOComputer) {
+            ((IOComputer) computer).getOutput().flush();
+        }
+    }
+
 }
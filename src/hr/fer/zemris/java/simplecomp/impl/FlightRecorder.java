@@ -0,0 +1,171 @@
+package hr.fer.zemris.java.simplecomp.impl;
+
+import java.io.PrintStream;
+
+import hr.fer.zemris.java.simplecomp.impl.instructions.AbstractInstruction;
+import hr.fer.zemris.java.simplecomp.models.Instruction;
+
+/**
+ * A ring buffer of the last executed instructions, which is
+ * {@linkplain #dump(PrintStream) dumped} when a program fails, so that the
+ * path that led to the failure can be seen without running the program again.
+ * The recorder is collected by an {@linkplain ExecutionUnitImpl} constructed
+ * with it.
+ * <p>
+ * Each record holds the address of the instruction, its
+ * {@linkplain AbstractInstruction#getOpcode() opcode}, the
+ * {@linkplain AbstractInstruction#getWrittenRegister() register it writes}
+ * and the flag after it was executed, packed into one <tt>long</tt>. The
+ * records are written into an array allocated with the recorder, so recording
+ * an instruction allocates nothing and costs one array store. Instructions
+ * that do not extend the {@linkplain AbstractInstruction} are recorded
+ * without their name and register.
+ * <p>
+ * The recorder is meant to be written and dumped by the executing thread. A
+ * dump from another thread while the program runs may show a partially
+ * written record.
+ *
+ * @author Mario Bobic
+ */
+public class FlightRecorder {
+
+    /** Default number of records. */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    /** Opcode of a location that does not hold an instruction. */
+    private static final int NO_INSTRUCTION = 0;
+    /** Opcode of an instruction that has none. */
+    private static final int UNKNOWN_OPCODE = 0xFFFF;
+    /** Bit of a record holding the flag. */
+    private static final long FLAG_BIT = 1L << 31;
+    /** Bits of a record holding the address. */
+    private static final long ADDRESS_MASK = FLAG_BIT - 1;
+
+    /**
+     * The records: the opcode in bits 32 to 47, the written register plus
+     * one in bits 48 to 63, the flag in bit 31 and the address in the rest.
+     */
+    private final long[] records;
+    /** Mask of the record index within the buffer. */
+    private final int mask;
+    /** Number of recorded instructions. */
+    private long count;
+
+    /**
+     * Constructs an instance of {@code FlightRecorder} with the
+     * {@linkplain #DEFAULT_CAPACITY default capacity}.
+     */
+    public FlightRecorder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an instance of {@code FlightRecorder} that keeps the
+     * specified number of last records. The capacity is rounded up to a power
+     * of two.
+     *
+     * @param capacity number of records
+     * @throws IllegalArgumentException if the capacity is not positive or
+     *         greater than <tt>2<sup>30</sup></tt>
+     */
+    public FlightRecorder(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30: " + capacity);
+        }
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+
+        records = new long[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Records the instruction executed on the specified address.
+     *
+     * @param address address of the instruction
+     * @param instruction the instruction, or <tt>null</tt> if the location did
+     *        not hold one
+     * @param flag the flag after the instruction was executed
+     */
+    public void record(int address, Instruction instruction, boolean flag) {
+        long code;
+        if (instruction instanceof AbstractInstruction) {
+            AbstractInstruction known = (AbstractInstruction) instruction;
+            code = known.getOpcode() | (known.getWrittenRegister() + 1) << 16;
+        } else {
+            code = instruction == null ? NO_INSTRUCTION : UNKNOWN_OPCODE;
+        }
+        records[(int) count++ & mask] = code << 32 | (flag ? FLAG_BIT : 0) | address & ADDRESS_MASK;
+    }
+
+    /**
+     * Removes all records.
+     */
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * Returns the number of records this recorder keeps.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return records.length;
+    }
+
+    /**
+     * Returns the number of instructions recorded since the recorder was
+     * constructed or {@linkplain #clear() cleared}, including those whose
+     * records were overwritten.
+     *
+     * @return the number of recorded instructions
+     */
+    public long getRecordedCount() {
+        return count;
+    }
+
+    /**
+     * Returns the addresses of the kept records, from the oldest to the last.
+     *
+     * @return the recorded addresses
+     */
+    public int[] getAddresses() {
+        int kept = (int) Math.min(count, records.length);
+        int[] result = new int[kept];
+        for (int k = 0; k < kept; k++) {
+            result[k] = (int) (records[(int) (count - kept + k) & mask] & ADDRESS_MASK);
+        }
+        return result;
+    }
+
+    /**
+     * Writes the kept records onto the specified stream, from the oldest to
+     * the last, one per line: the sequence number of the instruction, its
+     * address, its name, the register it writes and the flag after it.
+     *
+     * @param out the stream to be written to
+     */
+    public void dump(PrintStream out) {
+        int kept = (int) Math.min(count, records.length);
+        out.println("Last " + kept + " of " + count + " executed instructions:");
+        out.println("       #  address  instruction   register  flag");
+        for (long n = count - kept; n < count; n++) {
+            long record = records[(int) n & mask];
+            int opcode = (int) (record >>> 32) & 0xFFFF;
+            int register = (int) (record >>> 48) - 1;
+
+            String name;
+            if (opcode == NO_INSTRUCTION) {
+                name = "-";
+            } else if (opcode == UNKNOWN_OPCODE) {
+                name = "?";
+            } else {
+                name = AbstractInstruction.nameOf(opcode);
+            }
+            out.println(String.format("%8d  %7d  %-12s  %-8s  %s",
+                    n + 1, record & ADDRESS_MASK, name,
+                    register < 0 ? "-" : "r" + register, (record & FLAG_BIT) != 0));
+        }
+    }
+
+}
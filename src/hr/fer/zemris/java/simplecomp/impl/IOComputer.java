@@ -0,0 +1,34 @@
+package hr.fer.zemris.java.simplecomp.impl;
+
+import hr.fer.zemris.java.simplecomp.io.InputSource;
+import hr.fer.zemris.java.simplecomp.io.OutputSink;
+import hr.fer.zemris.java.simplecomp.models.Computer;
+
+/**
+ * An extension of the {@linkplain Computer} interface for computers that have
+ * their own input and output. Instructions that communicate with the user use
+ * the channels of this interface instead of the standard streams if the
+ * computer they are executed on implements it.
+ *
+ * @author Mario Bobic
+ * @see ComputerImpl
+ */
+public interface IOComputer extends Computer {
+
+    /**
+     * Returns the output sink of this computer, written to by the
+     * <tt>echo</tt> instruction.
+     *
+     * @return the output sink
+     */
+    OutputSink getOutput();
+
+    /**
+     * Returns the input source of this computer, read from by the
+     * <tt>iinput</tt> instruction.
+     *
+     * @return the input source
+     */
+    InputSource getInput();
+
+}
@@ -0,0 +1,353 @@
+package hr.fer.zemris.java.simplecomp.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import hr.fer.zemris.java.simplecomp.models.Instruction;
+import hr.fer.zemris.java.simplecomp.models.InstructionArgument;
+import hr.fer.zemris.java.simplecomp.models.InstructionCreator;
+import hr.fer.zemris.java.simplecomp.parser.ProgramParser;
+
+/**
+ * An assembler that keeps the last assembled version of a program and
+ * assembles the next version by reusing everything an edit did not affect.
+ * <p>
+ * The lines common to the start and to the end of both versions are kept, and
+ * only the lines between them are assembled. Addresses are recomputed only
+ * from the first changed line onward. Labels defined by the changed lines are
+ * replaced, and labels after them are moved by the change in the number of
+ * locations. Of the kept lines, only those that reference a label whose
+ * address changed are created again. A one-line edit of a long program that
+ * does not move any label therefore creates a single location.
+ * <p>
+ * The assembler accepts exactly the language of the {@linkplain ProgramParser}
+ * and produces the same contents. If a version is invalid, the exception the
+ * parser would throw is thrown, and the assembler keeps the last valid
+ * version, so the next version is again assembled against it.
+ *
+ * @author Mario Bobic
+ */
+public class IncrementalAssembler {
+
+    /** The location of every line of a <tt>RESERVE:</tt> statement. */
+    private static final Location RESERVED = new Location(LineParser.RESERVED, 0, null, null,
+            Collections.<String>emptyList());
+
+    /** Creator of the instructions. */
+    private final InstructionCreator creator;
+
+    /** Lines of the last version. */
+    private List<String> lines = Collections.emptyList();
+    /** Statements of the lines of the last version. */
+    private List<Statement> statements = Collections.emptyList();
+    /** Address of the first location of each line, and the number of locations. */
+    private int[] addresses = {0};
+    /** Addresses of the labels of the last version. */
+    private Map<String, Integer> labels = new HashMap<>();
+    /** Locations of the last version. */
+    private List<Location> locations = Collections.emptyList();
+    /** Image of the last version, or <tt>null</tt>. */
+    private ProgramImage image;
+    /** Number of locations created by the last assembly. */
+    private int created;
+    /** Number of locations created by the running assembly. */
+    private int creating;
+
+    /**
+     * Constructs an assembler that creates instructions with the specified
+     * creator.
+     *
+     * @param creator creator of the instructions
+     */
+    public IncrementalAssembler(InstructionCreator creator) {
+        this.creator = Objects.requireNonNull(creator);
+    }
+
+    /**
+     * Returns the image of the last valid version, or <tt>null</tt> if no
+     * version was assembled yet.
+     *
+     * @return image of the last valid version, or <tt>null</tt>
+     */
+    public ProgramImage getImage() {
+        return image;
+    }
+
+    /**
+     * Returns the number of locations created by the last successful
+     * assembly, as opposed to the locations reused from the version before.
+     *
+     * @return the number of created locations
+     */
+    public int getCreatedLocations() {
+        return created;
+    }
+
+    /**
+     * Assembles the specified version of the program source and returns its
+     * image.
+     *
+     * @param source the program source, encoded in UTF-8
+     * @return image of the program
+     * @throws Exception if the program can not be parsed
+     */
+    public ProgramImage assemble(byte[] source) throws Exception {
+        List<String> newLines = LineParser.splitLines(new String(source, StandardCharsets.UTF_8));
+        int oldSize = lines.size();
+        int newSize = newLines.size();
+
+        int prefix = 0;
+        int common = Math.min(oldSize, newSize);
+        while (prefix < common && lines.get(prefix).equals(newLines.get(prefix))) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < common - prefix
+                && lines.get(oldSize - 1 - suffix).equals(newLines.get(newSize - 1 - suffix))) {
+            suffix++;
+        }
+        if (prefix == oldSize && prefix == newSize && image != null) {
+            created = 0;
+            return image;
+        }
+
+        // First pass over the changed lines, with the labels of the kept lines.
+        Map<String, Integer> newLabels = new HashMap<>(labels);
+        Map<String, Integer> suffixLabels = new HashMap<>();
+        Set<String> moved = new HashSet<>();
+        for (int i = prefix; i < oldSize - suffix; i++) {
+            String label = statements.get(i).label;
+            if (label != null) {
+                newLabels.remove(label);
+                moved.add(label);
+            }
+        }
+        for (int i = oldSize - suffix; i < oldSize; i++) {
+            String label = statements.get(i).label;
+            if (label != null) {
+                suffixLabels.put(label, i);
+            }
+        }
+
+        List<Statement> changed = new ArrayList<>(newSize - suffix - prefix);
+        int address = addresses[prefix];
+        String duplicate = null;
+        for (int i = prefix; i < newSize - suffix; i++) {
+            Statement statement = new Statement(newLines.get(i));
+            if (statement.label != null) {
+                Integer position = suffixLabels.get(statement.label);
+                if (position != null) {
+                    // The parser finds this duplicate at the later definition.
+                    if (duplicate == null || position < suffixLabels.get(duplicate)) {
+                        duplicate = statement.label;
+                    }
+                } else if (newLabels.containsKey(statement.label)) {
+                    throw new IllegalArgumentException("Label " + statement.label + " is already defined!");
+                }
+                newLabels.put(statement.label, address);
+                moved.add(statement.label);
+            }
+            statement.count();
+            changed.add(statement);
+            address += statement.count;
+        }
+        if (duplicate != null) {
+            throw new IllegalArgumentException("Label " + duplicate + " is already defined!");
+        }
+
+        // Addresses from the first changed line onward.
+        int delta = address - addresses[oldSize - suffix];
+        int[] newAddresses = new int[newSize + 1];
+        System.arraycopy(addresses, 0, newAddresses, 0, prefix + 1);
+        for (int i = 0; i < changed.size(); i++) {
+            newAddresses[prefix + i + 1] = newAddresses[prefix + i] + changed.get(i).count;
+        }
+        for (int i = 0; i < suffix; i++) {
+            newAddresses[newSize - suffix + i + 1] = addresses[oldSize - suffix + i + 1] + delta;
+        }
+        if (delta != 0) {
+            for (Map.Entry<String, Integer> entry : suffixLabels.entrySet()) {
+                newLabels.put(entry.getKey(), labels.get(entry.getKey()) + delta);
+                moved.add(entry.getKey());
+            }
+        }
+        moved.removeIf(label -> Objects.equals(labels.get(label), newLabels.get(label)));
+
+        // Second pass: changed lines and kept lines referencing moved labels.
+        LineParser parser = new LineParser(newLabels);
+        creating = 0;
+        int start = addresses[prefix];
+        int end = addresses[oldSize - suffix];
+        List<Location> newLocations = new ArrayList<>(newAddresses[newSize]);
+        for (int i = 0; i < start; i++) {
+            newLocations.add(reuse(locations.get(i), moved, parser));
+        }
+        for (Statement statement : changed) {
+            for (int i = 0; i < statement.count; i++) {
+                newLocations.add(create(statement.text, parser));
+            }
+        }
+        for (int i = end; i < locations.size(); i++) {
+            newLocations.add(reuse(locations.get(i), moved, parser));
+        }
+
+        int size = newLocations.size();
+        Object[] cells = new Object[size];
+        String[] names = new String[size];
+        List<List<InstructionArgument>> arguments = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Location location = newLocations.get(i);
+            cells[i] = location.cell;
+            names[i] = location.name;
+            arguments.add(location.arguments);
+        }
+        ProgramImage newImage = new ProgramImage(cells, newLabels.get("@stackTop"), names, arguments);
+
+        List<Statement> newStatements = new ArrayList<>(newSize);
+        newStatements.addAll(statements.subList(0, prefix));
+        newStatements.addAll(changed);
+        newStatements.addAll(statements.subList(oldSize - suffix, oldSize));
+
+        lines = newLines;
+        statements = newStatements;
+        addresses = newAddresses;
+        labels = newLabels;
+        locations = newLocations;
+        image = newImage;
+        created = creating;
+        return newImage;
+    }
+
+    /**
+     * Returns the specified kept location, created again if it references a
+     * moved label.
+     *
+     * @param location the kept location
+     * @param moved labels whose address changed
+     * @param parser parser of the new version
+     * @return the location
+     */
+    private Location reuse(Location location, Set<String> moved, LineParser parser) {
+        if (!moved.isEmpty()) {
+            for (String label : location.references) {
+                if (moved.contains(label)) {
+                    return create(location.text, parser);
+                }
+            }
+        }
+        return location;
+    }
+
+    /**
+     * Creates the location of the specified statement text.
+     *
+     * @param text the statement text
+     * @param parser parser of the new version
+     * @return the location
+     */
+    private Location create(String text, LineParser parser) {
+        if (text == LineParser.RESERVED) {
+            return RESERVED;
+        }
+        Object cell = parser.generate(text, creator);
+        creating++;
+        return cell instanceof Instruction
+                ? new Location(text, cell, parser.getName(), parser.getArguments(), parser.getReferences())
+                : new Location(text, cell, null, null, parser.getReferences());
+    }
+
+    /**
+     * A line of the program: its label and the statement of its locations.
+     */
+    private static class Statement {
+
+        /** The trimmed line. */
+        private String line;
+        /** Label defined by the line, or <tt>null</tt>. */
+        final String label;
+        /** Statement text of the locations, or <tt>null</tt> if none. */
+        String text;
+        /** Number of locations of the line. */
+        int count;
+
+        /**
+         * Constructs the statement of the specified line, reading its label.
+         *
+         * @param line the line
+         */
+        Statement(String line) {
+            line = line.trim();
+            String label = null;
+            if (!line.isEmpty() && line.startsWith("@")) {
+                int colon = line.indexOf(':');
+                label = line.substring(0, colon);
+                line = line.substring(colon + 1).trim();
+            } else if (line.isEmpty() || line.startsWith("#")) {
+                line = null;
+            }
+            this.line = line;
+            this.label = label;
+        }
+
+        /**
+         * Counts the locations of the statement, expanding a
+         * <tt>RESERVE:</tt> statement.
+         */
+        void count() {
+            if (line == null) {
+                return;
+            }
+            if (line.startsWith("RESERVE:")) {
+                count = LineParser.reserveCount(line.substring("RESERVE:".length()));
+                text = LineParser.RESERVED;
+            } else {
+                count = 1;
+                text = line;
+            }
+            line = null;
+        }
+    }
+
+    /**
+     * A location of the program with the statement it was created from.
+     */
+    private static class Location {
+
+        /** The statement text. */
+        final String text;
+        /** Content of the location. */
+        final Object cell;
+        /** Name of the instruction, or <tt>null</tt> for constants. */
+        final String name;
+        /** Arguments of the instruction, or <tt>null</tt> for constants. */
+        final List<InstructionArgument> arguments;
+        /** Labels referenced by the statement. */
+        final List<String> references;
+
+        /**
+         * Constructs a location with the specified values.
+         *
+         * @param text the statement text
+         * @param cell content of the location
+         * @param name name of the instruction, or <tt>null</tt>
+         * @param arguments arguments of the instruction, or <tt>null</tt>
+         * @param references labels referenced by the statement
+         */
+        Location(String text, Object cell, String name, List<InstructionArgument> arguments,
+                List<String> references) {
+            this.text = text;
+            this.cell = cell;
+            this.name = name;
+            this.arguments = arguments;
+            this.references = references;
+        }
+    }
+
+}
@@ -0,0 +1,182 @@
+package hr.fer.zemris.java.simplecomp.impl;
+
+import hr.fer.zemris.java.simplecomp.models.Instruction;
+import hr.fer.zemris.java.simplecomp.models.Memory;
+
+/**
+ * This class implements the {@linkplain Memory} interface as a decorator of
+ * another memory, keeping a dense array of pre-decoded {@linkplain Instruction}s
+ * for the <tt>code region</tt> of the decorated memory. The code region is the
+ * contiguous block of instructions starting at address <tt>0</tt>.
+ * <p>
+ * Instructions are fetched from the array by the
+ * {@linkplain #getInstruction(int)} method, which skips the bounds check and
+ * the type check of the decorated memory. Every write to a code address that
+ * goes through {@linkplain #setLocation(int, Object)} invalidates the affected
+ * entry, so the next fetch decodes it again from the decorated memory. This
+ * keeps programs that modify their own code behaving correctly.
+ * <p>
+ * The cache also implements the {@linkplain PrimitiveMemory} interface. If the
+ * decorated memory is a primitive memory, integers are passed to it unboxed,
+ * otherwise they are boxed and passed through the {@linkplain Memory}
+ * interface.
+ *
+ * @author Mario Bobic
+ */
+public class InstructionCache implements PrimitiveMemory {
+
+    /** The decorated memory. */
+    private final Memory memory;
+    /** The decorated memory if it is a primitive memory, <tt>null</tt> otherwise. */
+    private final PrimitiveMemory primitive;
+    /** Pre-decoded instructions of the code region. */
+    private final Instruction[] instructions;
+    /** Number of writes to the code region. */
+    private int codeWrites;
+
+    /**
+     * Constructs an instance of {@code InstructionCache} that decorates the
+     * specified <tt>memory</tt> and decodes its code region.
+     *
+     * @param memory the memory to be decorated
+     * @throws NullPointerException if the specified memory is <tt>null</tt>
+     */
+    public InstructionCache(Memory memory) {
+        if (memory == null) {
+            throw new NullPointerException("Memory must not be null.");
+        }
+        this.memory = memory;
+        this.primitive = memory instanceof PrimitiveMemory ? (PrimitiveMemory) memory : null;
+        this.instructions = decode(memory);
+    }
+
+    /**
+     * Decodes the contiguous block of instructions starting at address
+     * <tt>0</tt> of the specified <tt>memory</tt> into an array.
+     *
+     * @param memory memory to be decoded
+     * @return array of instructions of the code region
+     */
+    private static Instruction[] decode(Memory memory) {
+        int length = 0;
+        try {
+            while (memory.getLocation(length) instanceof Instruction) {
+                length++;
+            }
+        } catch (IndexOutOfBoundsException e) {
+            // memory is filled with instructions up to its end
+        }
+
+        Instruction[] instructions = new Instruction[length];
+        for (int i = 0; i < length; i++) {
+            instructions[i] = (Instruction) memory.getLocation(i);
+        }
+
+        return instructions;
+    }
+
+    /**
+     * Returns the instruction at the specified program counter <tt>pc</tt>.
+     * Instructions of the code region are returned from the pre-decoded array,
+     * while all other locations are fetched from the decorated memory.
+     * <p>
+     * Throws an {@linkplain IllegalStateException} if the location does not
+     * contain an instruction.
+     *
+     * @param pc program counter
+     * @return the instruction at the program counter address
+     * @throws IllegalStateException if the location does not hold an instruction
+     */
+    public Instruction getInstruction(int pc) {
+        if (pc < 0 || pc >= instructions.length) {
+            return ExecutionUnitImpl.getInstruction(memory, pc);
+        }
+
+        Instruction instruction = instructions[pc];
+        if (instruction == null) {
+            // entry was invalidated by a write, decode it again
+            instruction = ExecutionUnitImpl.getInstruction(memory, pc);
+            instructions[pc] = instruction;
+        }
+
+        return instruction;
+    }
+
+    /**
+     * Returns the length of the code region, that is the number of
+     * instructions that were decoded when this cache was constructed.
+     *
+     * @return the length of the code region
+     */
+    public int getCodeLength() {
+        return instructions.length;
+    }
+
+    /**
+     * Returns the number of writes to the code region since this cache was
+     * constructed. Execution units that derive structures from the decoded
+     * instructions may use this counter to detect that the code was modified.
+     *
+     * @return the number of writes to the code region
+     */
+    public int getCodeWrites() {
+        return codeWrites;
+    }
+
+    @Override
+    public void setLocation(int location, Object value) {
+        memory.setLocation(location, value);
+        invalidate(location);
+    }
+
+    @Override
+    public Object getLocation(int location) {
+        return memory.getLocation(location);
+    }
+
+    @Override
+    public boolean isInt(int location) {
+        if (primitive != null) {
+            return primitive.isInt(location);
+        }
+        return memory.getLocation(location) instanceof Integer;
+    }
+
+    @Override
+    public int getInt(int location) {
+        if (primitive != null) {
+            return primitive.getInt(location);
+        }
+
+        Object value = memory.getLocation(location);
+        if (!(value instanceof Integer)) {
+            throw new IllegalStateException("Location " + location
+                    + " must contain an integer. Instead it contained: [" + value + "]");
+        }
+        return (Integer) value;
+    }
+
+    @Override
+    public void setInt(int location, int value) {
+        if (primitive != null) {
+            primitive.setInt(location, value);
+        } else {
+            memory.setLocation(location, value);
+        }
+        invalidate(location);
+    }
+
+    /**
+     * Invalidates the cached instruction at the specified <tt>location</tt>,
+     * if the location is in the code region.
+     *
+     * @param location the written location
+     */
+    private void invalidate(int location) {
+        if (location >= 0 && location < instructions.length) {
+            instructions[location] = null;
+            codeWrites++;
+        }
+    }
+
+}
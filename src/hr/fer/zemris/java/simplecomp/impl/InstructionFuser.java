@@ -0,0 +1,113 @@
+package hr.fer.zemris.java.simplecomp.impl;
+
+import hr.fer.zemris.java.simplecomp.impl.instructions.FusedLoadEcho;
+import hr.fer.zemris.java.simplecomp.impl.instructions.FusedPushPushCall;
+import hr.fer.zemris.java.simplecomp.impl.instructions.FusedTestEqualsJumpIfTrue;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrCall;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrEcho;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrJumpIfTrue;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrLoad;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrPush;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrTestEquals;
+import hr.fer.zemris.java.simplecomp.models.Computer;
+import hr.fer.zemris.java.simplecomp.models.Instruction;
+import hr.fer.zemris.java.simplecomp.models.Memory;
+
+/**
+ * A load-time pass that replaces common sequences of instructions in the code
+ * region of a memory with fused instructions, each executing the whole
+ * sequence in a single dispatch. The following sequences are fused:
+ * <ul>
+ * <li><tt>testEquals</tt>, <tt>jumpIfTrue</tt> into a
+ * {@linkplain FusedTestEqualsJumpIfTrue},
+ * <li><tt>push</tt>, <tt>push</tt>, <tt>call</tt> into a
+ * {@linkplain FusedPushPushCall},
+ * <li><tt>load</tt>, <tt>echo</tt> into a {@linkplain FusedLoadEcho}.
+ * </ul>
+ * <p>
+ * A fused instruction replaces only the first instruction of its sequence.
+ * All other instructions stay on their addresses, so jumps into the middle of
+ * a fused sequence still work and no address of the program changes.
+ * <p>
+ * The pass must be run after the program is loaded and before it is executed.
+ * A fused instruction keeps executing the sequence it was built from, so a
+ * program is fused only if the {@linkplain ProgramAnalysis} proves that it
+ * never writes over its own instructions, as the {@linkplain ProgramVerifier}
+ * and the {@linkplain ProgramOptimizer} require. Programs that can not be
+ * analyzed are left as they are. If an instruction inside a fused sequence
+ * fails, the failure is reported at the address of the fused instruction.
+ *
+ * @author Mario Bobic
+ */
+public abstract class InstructionFuser {
+
+    /**
+     * Fuses the common instruction sequences of the program loaded into the
+     * specified <tt>computer</tt> and returns the number of fused sequences.
+     * Returns <tt>0</tt> if the program may write over its own instructions or
+     * can not be analyzed, or if the computer does not have
+     * {@linkplain RegistersImpl}.
+     *
+     * @param computer computer holding the program
+     * @return the number of fused sequences
+     */
+    public static int fuse(Computer computer) {
+        if (!(computer.getRegisters() instanceof RegistersImpl)) {
+            return 0;
+        }
+
+        ProgramAnalysis analysis = new ProgramAnalysis(computer.getMemory(), (RegistersImpl) computer.getRegisters());
+        if (!analysis.run()) {
+            return 0;
+        }
+
+        Memory memory = computer.getMemory();
+        InstructionCache cache = new InstructionCache(memory);
+
+        Instruction[] code = new Instruction[cache.getCodeLength()];
+        for (int i = 0; i < code.length; i++) {
+            code[i] = cache.getInstruction(i);
+        }
+
+        int fused = 0;
+        for (int i = 0; i < code.length; i++) {
+            Instruction instruction = fuseAt(code, i);
+            if (instruction != null) {
+                memory.setLocation(i, instruction);
+                fused++;
+            }
+        }
+
+        return fused;
+    }
+
+    /**
+     * Returns a fused instruction for the sequence starting at the specified
+     * address of the <tt>code</tt>, or <tt>null</tt> if no known sequence
+     * starts there.
+     *
+     * @param code instructions of the code region
+     * @param i address of the first instruction of the sequence
+     * @return a fused instruction, or <tt>null</tt>
+     */
+    private static Instruction fuseAt(Instruction[] code, int i) {
+        Instruction first = code[i];
+        Instruction second = i+1 < code.length ? code[i+1] : null;
+        Instruction third = i+2 < code.length ? code[i+2] : null;
+
+        if (first instanceof InstrTestEquals && second instanceof InstrJumpIfTrue) {
+            return new FusedTestEqualsJumpIfTrue((InstrTestEquals) first, (InstrJumpIfTrue) second);
+        }
+
+        if (first instanceof InstrPush && second instanceof InstrPush && third instanceof InstrCall) {
+            return new FusedPushPushCall((InstrPush) first, (InstrPush) second, (InstrCall) third);
+        }
+
+        if (first instanceof InstrLoad && second instanceof InstrEcho) {
+            return new FusedLoadEcho((InstrLoad) first, (InstrEcho) second);
+        }
+
+        return null;
+    }
+
+}
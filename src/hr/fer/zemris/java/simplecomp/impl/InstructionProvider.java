@@ -0,0 +1,26 @@
+package hr.fer.zemris.java.simplecomp.impl;
+
+import java.util.ServiceLoader;
+
+/**
+ * A provider of instructions outside of the default instruction set.
+ * Providers are discovered through the {@linkplain ServiceLoader} when the
+ * {@linkplain InstructionRegistry#getDefault() default registry} is built, so
+ * a third-party instruction set becomes available by listing its provider in
+ * the <tt>META-INF/services/hr.fer.zemris.java.simplecomp.impl.InstructionProvider</tt>
+ * file of its jar.
+ *
+ * @author Mario Bobic
+ */
+public interface InstructionProvider {
+
+    /**
+     * Registers the instructions of this provider into the specified
+     * registry, usually by passing constructor references to
+     * {@linkplain InstructionRegistry#register(String, java.util.function.Function)}.
+     *
+     * @param registry the registry
+     */
+    void registerInstructions(InstructionRegistry registry);
+
+}
@@ -0,0 +1,245 @@
+package hr.fer.zemris.java.simplecomp.impl;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrAdd;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrCall;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrDecrement;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrEcho;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrHalt;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrIinput;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrIncrement;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrJump;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrJumpIfTrue;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrLoad;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrMove;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrMul;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrPop;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrPush;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrRet;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrTestEquals;
+import hr.fer.zemris.java.simplecomp.models.Instruction;
+import hr.fer.zemris.java.simplecomp.models.InstructionArgument;
+import hr.fer.zemris.java.simplecomp.models.InstructionCreator;
+
+/**
+ * An {@linkplain InstructionCreator} that creates instructions through a
+ * registry of factories, indexed by instruction name. Creating an instruction
+ * is a map lookup followed by a direct constructor call, unlike the
+ * <tt>InstructionCreatorImpl</tt> which looks the instruction class up by
+ * reflection for every instruction.
+ * <p>
+ * Names are resolved as by the <tt>InstructionCreatorImpl</tt>: the name is
+ * trimmed and its first letter is capitalized, so <tt>move</tt> and
+ * <tt>Move</tt> name the same instruction. A registry may be given a
+ * <i>fallback package</i>. A name that is not registered is then resolved
+ * once to the constructor of the <tt>Instr<i>Name</i></tt> class of that
+ * package, which is registered as a method handle for later use.
+ * <p>
+ * The {@linkplain #getDefault() default registry} holds the default
+ * instruction set and all instructions of the {@linkplain InstructionProvider}s
+ * found by the {@linkplain ServiceLoader}.
+ *
+ * @author Mario Bobic
+ */
+public class InstructionRegistry implements InstructionCreator {
+
+    /** Package of the default instruction set. */
+    public static final String DEFAULT_PACKAGE = "hr.fer.zemris.java.simplecomp.impl.instructions";
+
+    /** Registries of instruction packages other than the default one. */
+    private static final Map<String, InstructionRegistry> PACKAGES = new ConcurrentHashMap<>();
+
+    /** Factories of instructions, indexed by the capitalized name. */
+    private final Map<String, Function<List<InstructionArgument>, Instruction>> factories =
+            new ConcurrentHashMap<>();
+    /** Package of classes for names that are not registered, or <tt>null</tt>. */
+    private final String fallbackPackage;
+
+    /**
+     * Constructs an empty registry without a fallback package.
+     */
+    public InstructionRegistry() {
+        this(null);
+    }
+
+    /**
+     * Constructs an empty registry with the specified fallback package.
+     *
+     * @param fallbackPackage package of classes for names that are not
+     *        registered, or <tt>null</tt>
+     */
+    public InstructionRegistry(String fallbackPackage) {
+        this.fallbackPackage = fallbackPackage;
+    }
+
+    /**
+     * Holder of the default registry, built when it is first used.
+     */
+    private static class DefaultHolder {
+        /** The default registry. */
+        static final InstructionRegistry INSTANCE = new InstructionRegistry(DEFAULT_PACKAGE).registerDefaults();
+    }
+
+    /**
+     * Returns the shared registry of the default instruction set and the
+     * instructions of all discovered {@linkplain InstructionProvider}s.
+     *
+     * @return the default registry
+     */
+    public static InstructionRegistry getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Returns the shared registry of the specified instruction package. For
+     * the {@linkplain #DEFAULT_PACKAGE default package} that is the
+     * {@linkplain #getDefault() default registry}, and for any other package
+     * a registry that resolves all names in that package.
+     *
+     * @param instructionPackage package of the instruction classes
+     * @return the registry of the package
+     */
+    public static InstructionRegistry forPackage(String instructionPackage) {
+        if (DEFAULT_PACKAGE.equals(instructionPackage)) {
+            return getDefault();
+        }
+        return PACKAGES.computeIfAbsent(instructionPackage, InstructionRegistry::new);
+    }
+
+    /**
+     * Registers the default instruction set and the instructions of all
+     * {@linkplain InstructionProvider}s found by the {@linkplain ServiceLoader}.
+     *
+     * @return this registry
+     */
+    public InstructionRegistry registerDefaults() {
+        register("halt", InstrHalt::new);
+        register("echo", InstrEcho::new);
+        register("load", InstrLoad::new);
+        register("move", InstrMove::new);
+        register("add", InstrAdd::new);
+        register("mul", InstrMul::new);
+        register("increment", InstrIncrement::new);
+        register("decrement", InstrDecrement::new);
+        register("testEquals", InstrTestEquals::new);
+        register("jump", InstrJump::new);
+        register("jumpIfTrue", InstrJumpIfTrue::new);
+        register("call", InstrCall::new);
+        register("ret", InstrRet::new);
+        register("push", InstrPush::new);
+        register("pop", InstrPop::new);
+        register("iinput", InstrIinput::new);
+
+        for (InstructionProvider provider : ServiceLoader.load(InstructionProvider.class)) {
+            provider.registerInstructions(this);
+        }
+        return this;
+    }
+
+    /**
+     * Registers the specified factory under the specified instruction name,
+     * replacing any factory registered under that name.
+     *
+     * @param name name of the instruction
+     * @param factory factory creating the instruction from its arguments
+     * @throws IllegalArgumentException if the name is empty
+     */
+    public void register(String name, Function<List<InstructionArgument>, Instruction> factory) {
+        factories.put(normalize(name), factory);
+    }
+
+    /**
+     * Returns true if a factory is registered under the specified instruction
+     * name, not counting names that would be resolved in the fallback package.
+     *
+     * @param name name of the instruction
+     * @return true if the name is registered
+     */
+    public boolean isRegistered(String name) {
+        return factories.containsKey(normalize(name));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalArgumentException if the name is empty, no instruction
+     *         of that name exists, or the instruction can not be created from
+     *         the specified arguments
+     */
+    @Override
+    public Instruction getInstruction(String name, List<InstructionArgument> arguments) {
+        String key = normalize(name);
+
+        Function<List<InstructionArgument>, Instruction> factory = factories.get(key);
+        if (factory == null) {
+            factory = resolve(key);
+        }
+
+        try {
+            return factory.apply(arguments);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Instruction [" + key + "] could not be created.", e);
+        }
+    }
+
+    /**
+     * Resolves the specified name to the constructor of its class in the
+     * fallback package and registers it.
+     *
+     * @param key the capitalized name
+     * @return factory of the instruction
+     * @throws IllegalArgumentException if the instruction does not exist
+     */
+    private Function<List<InstructionArgument>, Instruction> resolve(String key) {
+        if (fallbackPackage == null) {
+            throw new IllegalArgumentException("Unknown instruction [" + key + "].");
+        }
+
+        String className = fallbackPackage + ".Instr" + key;
+        MethodHandle constructor;
+        try {
+            Class<? extends Instruction> type = Class.forName(className).asSubclass(Instruction.class);
+            constructor = MethodHandles.publicLookup()
+                    .findConstructor(type, MethodType.methodType(void.class, List.class))
+                    .asType(MethodType.methodType(Instruction.class, List.class));
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalArgumentException("Unknown instruction [" + className + "].", e);
+        }
+
+        Function<List<InstructionArgument>, Instruction> factory = arguments -> {
+            try {
+                return (Instruction) constructor.invokeExact(arguments);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        };
+        Function<List<InstructionArgument>, Instruction> previous = factories.putIfAbsent(key, factory);
+        return previous != null ? previous : factory;
+    }
+
+    /**
+     * Returns the key of the specified instruction name, which is the trimmed
+     * name with its first letter capitalized.
+     *
+     * @param name name of the instruction
+     * @return the key of the name
+     * @throws IllegalArgumentException if the name is empty
+     */
+    private static String normalize(String name) {
+        if (name == null || (name = name.trim()).isEmpty()) {
+            throw new IllegalArgumentException("Instruction name must not be empty.");
+        }
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+}
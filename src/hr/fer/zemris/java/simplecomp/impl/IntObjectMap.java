@@ -0,0 +1,152 @@
+package hr.fer.zemris.java.simplecomp.impl;
+
+import java.util.function.IntConsumer;
+
+/**
+ * A hash map from primitive integer keys to non-null objects, used as a sparse
+ * side table by the {@linkplain MemoryImpl}. Keys are stored in an integer
+ * array so they are never boxed. Collisions are resolved by linear probing.
+ *
+ * @author Mario Bobic
+ */
+class IntObjectMap {
+
+    /** Initial capacity of the table, must be a power of two. */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** Keys of the table. */
+    private int[] keys;
+    /** Values of the table, a slot is free if its value is <tt>null</tt>. */
+    private Object[] values;
+    /** Number of entries in the table. */
+    private int size;
+
+    /**
+     * Constructs an empty instance of {@code IntObjectMap}.
+     */
+    IntObjectMap() {
+        keys = new int[INITIAL_CAPACITY];
+        values = new Object[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Returns the value mapped to the specified <tt>key</tt>, or <tt>null</tt>
+     * if the key is not mapped.
+     *
+     * @param key the key
+     * @return the value mapped to the key, or <tt>null</tt>
+     */
+    Object get(int key) {
+        int mask = keys.length - 1;
+        for (int i = hash(key) & mask; values[i] != null; i = (i+1) & mask) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Maps the specified <tt>key</tt> to the specified non-null <tt>value</tt>.
+     *
+     * @param key the key
+     * @param value the value, must not be <tt>null</tt>
+     */
+    void put(int key, Object value) {
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        for (; values[i] != null; i = (i+1) & mask) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+        }
+
+        keys[i] = key;
+        values[i] = value;
+        if (++size > keys.length / 2) {
+            resize();
+        }
+    }
+
+    /**
+     * Removes the mapping of the specified <tt>key</tt>, if there is one.
+     *
+     * @param key the key
+     */
+    void remove(int key) {
+        if (size == 0) {
+            return;
+        }
+
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        for (; values[i] != null; i = (i+1) & mask) {
+            if (keys[i] == key) {
+                break;
+            }
+        }
+        if (values[i] == null) {
+            return;
+        }
+
+        values[i] = null;
+        size--;
+
+        // shift back the entries that were probed past the removed slot
+        for (int j = (i+1) & mask; values[j] != null; j = (j+1) & mask) {
+            int home = hash(keys[j]) & mask;
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                values[j] = null;
+                i = j;
+            }
+        }
+    }
+
+    /**
+     * Performs the specified <tt>action</tt> for each key of the table, in no
+     * particular order. The table must not be modified by the action.
+     *
+     * @param action action to be performed for each key
+     */
+    void forEachKey(IntConsumer action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != null) {
+                action.accept(keys[i]);
+            }
+        }
+    }
+
+    /**
+     * Doubles the capacity of the table and rehashes all entries.
+     */
+    private void resize() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+
+        keys = new int[oldKeys.length * 2];
+        values = new Object[oldValues.length * 2];
+        size = 0;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    /**
+     * Spreads the bits of the specified key so that consecutive keys do not
+     * cluster in the table.
+     *
+     * @param key the key
+     * @return hash of the key
+     */
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+}
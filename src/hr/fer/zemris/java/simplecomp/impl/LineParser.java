@@ -0,0 +1,419 @@
+package hr.fer.zemris.java.simplecomp.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import hr.fer.zemris.java.simplecomp.impl.ProgramImage.Argument;
+import hr.fer.zemris.java.simplecomp.models.InstructionArgument;
+import hr.fer.zemris.java.simplecomp.models.InstructionCreator;
+import hr.fer.zemris.java.simplecomp.parser.ProgramParser;
+
+/**
+ * A tokenizer and parser of single lines of a program, following the rules
+ * of the {@linkplain ProgramParser}, and the rules by which the parser splits
+ * the program into lines. It is used by the assemblers that parse programs
+ * without the parser, and reports the same errors the parser does.
+ * <p>
+ * A line parser is not thread-safe.
+ *
+ * @author Mario Bobic
+ */
+class LineParser {
+
+    /** Line the parser stores for each location of a <tt>RESERVE:</tt> statement. */
+    static final String RESERVED = "  RESERVE";
+
+    /** Token type of an identifier. */
+    private static final int TT_IDENT = 0;
+    /** Token type of a label. */
+    private static final int TT_LABEL = 1;
+    /** Token type of an integer. */
+    private static final int TT_INT = 2;
+    /** Token type of a string. */
+    private static final int TT_STRING = 3;
+    /** Token type of any other character. */
+    private static final int TT_CHARACTER = 4;
+    /** Token type of the end of line. */
+    private static final int TT_EOF = -1;
+
+
+    /** Addresses of the labels. */
+    private final Map<String, Integer> labels;
+
+    /** Characters of the line. */
+    private char[] elems;
+    /** Position of the next character. */
+    private int pos;
+    /** The current token. */
+    private Object token;
+    /** Type of the current token. */
+    private int tokenType;
+    /** Indicates if a minus sign is a character rather than part of a number. */
+    private boolean forbidNegativeNumbers;
+
+    /** Name of the instruction of the last line. */
+    private String name;
+    /** Arguments of the instruction of the last line. */
+    private List<InstructionArgument> arguments;
+    /** Labels referenced by the last line, or <tt>null</tt> if none. */
+    private List<String> references;
+
+    /**
+     * Constructs a parser that resolves the specified labels.
+     *
+     * @param labels addresses of the labels
+     */
+    LineParser(Map<String, Integer> labels) {
+        this.labels = labels;
+    }
+
+    /**
+     * Returns the content of the location of the specified line, which is a
+     * constant or an instruction created by the specified creator.
+     *
+     * @param line the line
+     * @param creator creator of the instructions
+     * @return a constant or an instruction
+     */
+    Object generate(String line, InstructionCreator creator) {
+        arguments = new ArrayList<>();
+        references = null;
+        name = parseLine(line, arguments);
+
+        switch (name) {
+            case "DEFSTR":
+                if (arguments.size() != 1) {
+                    throw new IllegalArgumentException("DEFSTR must have one string argument.");
+                }
+                return (String) arguments.get(0).getValue();
+            case "DEFINT":
+                if (arguments.size() != 1) {
+                    throw new IllegalArgumentException("DEFINT must have one integer argument.");
+                }
+                return (Integer) arguments.get(0).getValue();
+            case "RESERVE":
+                if (arguments.size() != 0) {
+                    // The message of the parser.
+                    throw new IllegalArgumentException("DEFINT must not have any arguments.");
+                }
+                return Integer.valueOf(0);
+            default:
+                return creator.getInstruction(name, arguments);
+        }
+    }
+
+    /**
+     * Returns the name of the instruction of the line last passed to
+     * {@linkplain #generate(String, InstructionCreator)}.
+     *
+     * @return name of the instruction
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the arguments of the instruction of the line last passed to
+     * {@linkplain #generate(String, InstructionCreator)}.
+     *
+     * @return arguments of the instruction
+     */
+    List<InstructionArgument> getArguments() {
+        return arguments;
+    }
+
+    /**
+     * Returns the labels referenced by the line last passed to
+     * {@linkplain #generate(String, InstructionCreator)}.
+     *
+     * @return the referenced labels, possibly empty
+     */
+    List<String> getReferences() {
+        return references != null ? references : Collections.<String>emptyList();
+    }
+
+    /**
+     * Splits the specified text into lines as a <tt>BufferedReader</tt>
+     * would, at line feeds, carriage returns and their pairs.
+     *
+     * @param text the text
+     * @return lines of the text
+     */
+    static List<String> splitLines(String text) {
+        List<String> lines = new ArrayList<>();
+        int length = text.length();
+        for (int from = 0; from < length;) {
+            int to = from;
+            while (to < length && text.charAt(to) != '\n' && text.charAt(to) != '\r') {
+                to++;
+            }
+            lines.add(text.substring(from, to));
+
+            if (to + 1 < length && text.charAt(to) == '\r' && text.charAt(to + 1) == '\n') {
+                to++;
+            }
+            from = to + 1;
+        }
+        return lines;
+    }
+
+    /**
+     * Returns the number of locations of a <tt>RESERVE:</tt> statement with
+     * the specified text after <tt>RESERVE:</tt>.
+     *
+     * @param text the text after <tt>RESERVE:</tt>
+     * @return the number of locations
+     * @throws IllegalArgumentException if the statement is invalid
+     */
+    static int reserveCount(String text) {
+        int digits = 0;
+        while (digits < text.length() && text.charAt(digits) >= '0' && text.charAt(digits) <= '9') {
+            digits++;
+        }
+        if (digits == 0) {
+            throw new IllegalArgumentException("After RESERVE: a positive number is expected.");
+        }
+        int count = Integer.parseInt(text.substring(0, digits));
+        if (count < 1) {
+            throw new IllegalArgumentException(
+                    "After RESERVE: a positive number is expected; found " + count + ".");
+        }
+        text = text.substring(digits).trim();
+        if (!text.isEmpty() && text.charAt(0) != ';') {
+            throw new IllegalArgumentException("Invalid RESERVE: statement. Unexpected '" + text + "'.");
+        }
+        return count;
+    }
+
+    /**
+     * Parses the specified line into the instruction name, which is
+     * returned, and its arguments.
+     *
+     * @param line the line
+     * @param arguments list to add the arguments to
+     * @return name of the instruction
+     */
+    private String parseLine(String line, List<InstructionArgument> arguments) {
+        elems = line.trim().toCharArray();
+        pos = 0;
+
+        next();
+        if (tokenType != TT_IDENT) {
+            throw new IllegalArgumentException("Instruction must start with a name.");
+        }
+        String name = (String) token;
+
+        boolean expectComma = false;
+        while (true) {
+            next();
+            if (tokenType == TT_EOF) {
+                break;
+            }
+            if (expectComma) {
+                if (tokenType != TT_CHARACTER || (Character) token != ',') {
+                    throw new IllegalArgumentException("Comma expected.");
+                }
+                expectComma = false;
+                continue;
+            }
+
+            expectComma = true;
+            if (tokenType == TT_INT) {
+                arguments.add(new Argument(false, false, true, token));
+            } else if (tokenType == TT_STRING) {
+                arguments.add(new Argument(false, true, false, token));
+            } else if (tokenType == TT_LABEL) {
+                arguments.add(new Argument(false, false, true, labels.get(token)));
+                if (references == null) {
+                    references = new ArrayList<>(1);
+                }
+                references.add((String) token);
+            } else if (tokenType == TT_IDENT) {
+                String register = (String) token;
+                if (!register.startsWith("r")) {
+                    throw new IllegalArgumentException("Register reference must start with r.");
+                }
+                int index = Integer.parseInt(register.substring(1));
+                checkRegRange(index, 0, 255);
+                arguments.add(new Argument(true, false, false, index));
+            } else if (tokenType == TT_CHARACTER && token.equals('[')) {
+                arguments.add(new Argument(true, false, false, parseIndirect()));
+            }
+        }
+        return name;
+    }
+
+    /**
+     * Parses an indirect register access after its opening bracket and
+     * returns its register descriptor.
+     *
+     * @return the register descriptor
+     */
+    private int parseIndirect() {
+        next();
+        if (tokenType != TT_IDENT || !token.toString().startsWith("r")) {
+            throw new IllegalArgumentException(
+                    "After '[' a register was expected; found '" + token + "' instead.");
+        }
+        int index = Integer.parseInt(token.toString().substring(1));
+        checkRegRange(index, 0, 255);
+
+        forbidNegativeNumbers = true;
+        next();
+        forbidNegativeNumbers = false;
+
+        int offset = 0;
+        if (tokenType == TT_CHARACTER) {
+            int sign = 1;
+            if (token.equals('-')) {
+                sign = -1;
+            } else if (!token.equals('+') && !token.equals(']')) {
+                throw new IllegalArgumentException(
+                        "In indirect register access, after register name only '+' or '-' are allowed.");
+            }
+            if (!token.equals(']')) {
+                next();
+                if (tokenType != TT_INT) {
+                    throw new IllegalArgumentException("In indirect register access, "
+                            + "after register name and '+' or '-', number is expected.");
+                }
+                offset = (Integer) token * sign;
+                if (offset > Short.MAX_VALUE || offset < Short.MIN_VALUE) {
+                    throw new IllegalArgumentException("In indirect register access, "
+                            + "register offset must be betwwen -32768 and 32767, was: " + offset + ".");
+                }
+                next();
+                if (tokenType != TT_CHARACTER || !token.equals(']')) {
+                    throw new IllegalArgumentException("Indirect register access must be closed by ']'");
+                }
+            }
+        }
+        return 0x1000000 | index | (offset & 0xFFFF) << 8;
+    }
+
+    /**
+     * Checks if the specified register index is in range.
+     *
+     * @param index the register index
+     * @param min minimal index
+     * @param max maximal index
+     * @throws IllegalArgumentException if the index is out of range
+     */
+    private static void checkRegRange(int index, int min, int max) {
+        if (index < min || index > max) {
+            throw new IllegalArgumentException(
+                    "Register index must be between " + min + " and " + max + "; was: " + index + ".");
+        }
+    }
+
+    /**
+     * Reads the next token of the line.
+     */
+    private void next() {
+        while (true) {
+            if (pos >= elems.length) {
+                tokenType = TT_EOF;
+                return;
+            }
+
+            char c = elems[pos];
+            if (c == '"') {
+                readString();
+                return;
+            } else if (c == '@') {
+                StringBuilder sb = new StringBuilder();
+                do {
+                    sb.append(elems[pos++]);
+                } while (pos < elems.length && Character.isJavaIdentifierPart(elems[pos]));
+                tokenType = TT_LABEL;
+                token = sb.toString();
+                return;
+            } else if (c == ';') {
+                do {
+                    pos++;
+                } while (pos < elems.length && elems[pos] != '\n');
+            } else if (Character.isJavaIdentifierStart(c)) {
+                StringBuilder sb = new StringBuilder();
+                do {
+                    sb.append(elems[pos++]);
+                } while (pos < elems.length && Character.isJavaIdentifierPart(elems[pos]));
+                tokenType = TT_IDENT;
+                token = sb.toString();
+                return;
+            } else if (Character.isWhitespace(c)) {
+                do {
+                    pos++;
+                } while (pos < elems.length && Character.isWhitespace(elems[pos]));
+            } else if (Character.isDigit(c)) {
+                tokenType = TT_INT;
+                token = Integer.valueOf(readDigits());
+                return;
+            } else if (c == '-' && pos + 1 < elems.length
+                    && Character.isDigit(elems[pos + 1]) && !forbidNegativeNumbers) {
+                pos++;
+                tokenType = TT_INT;
+                token = -Integer.valueOf(readDigits());
+                return;
+            } else {
+                tokenType = TT_CHARACTER;
+                token = c;
+                pos++;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reads the digits starting at the current position.
+     *
+     * @return the digits
+     */
+    private String readDigits() {
+        StringBuilder sb = new StringBuilder();
+        do {
+            sb.append(elems[pos++]);
+        } while (pos < elems.length && Character.isDigit(elems[pos]));
+        return sb.toString();
+    }
+
+    /**
+     * Reads a string token starting at the opening quote, resolving the
+     * <tt>\n</tt>, <tt>\t</tt>, <tt>\"</tt> and <tt>\\</tt> escapes.
+     */
+    private void readString() {
+        StringBuilder sb = new StringBuilder();
+        do {
+            if (elems[pos] == '\\') {
+                char escaped = elems[pos + 1];
+                if (escaped == 'n') {
+                    sb.append('\n');
+                    pos++;
+                } else if (escaped == 't') {
+                    sb.append('\t');
+                    pos++;
+                } else if (escaped == '"') {
+                    sb.append('"');
+                    pos++;
+                } else if (escaped == '\\') {
+                    sb.append('\\');
+                    pos++;
+                } else {
+                    sb.append('\\');
+                }
+            } else {
+                sb.append(elems[pos]);
+            }
+            pos++;
+        } while (pos < elems.length && elems[pos] != '"');
+
+        if (pos >= elems.length) {
+            throw new IllegalArgumentException("Unterminated string found.");
+        }
+        pos++;
+        tokenType = TT_STRING;
+        token = sb.substring(1);
+    }
+
+}
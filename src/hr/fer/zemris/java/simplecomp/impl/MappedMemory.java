@@ -0,0 +1,394 @@
+package hr.fer.zemris.java.simplecomp.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import hr.fer.zemris.java.simplecomp.models.Memory;
+
+/**
+ * This class implements the {@linkplain Memory} interface with integer
+ * locations stored in a file that is mapped into memory. Integer data written
+ * to the memory persists across runs, so a program may resume from the memory
+ * state of a previous run without loading it first. The memory may also be
+ * much larger than the Java heap, as its pages are managed by the operating
+ * system.
+ * <p>
+ * Each location takes five bytes of the file: an integer value and a tag
+ * recording whether the location is empty, holds an integer or holds an object.
+ * Objects, such as instructions and strings, are kept on the heap in a sparse
+ * side table, as in the {@linkplain MemoryImpl}, and <b>are not persisted</b>.
+ * Locations that held objects are emptied when the memory is closed, since the
+ * program is loaded by the parser anyway. The file header records whether a
+ * run stored any objects, so if that run ended without closing the memory,
+ * its object locations are found and emptied when the file is mapped again.
+ * <p>
+ * Writes go directly to the mapping and reach the file when the operating
+ * system writes the pages back. The {@linkplain #sync()} method forces all
+ * changes to the storage device, and is called by the {@linkplain #close()}
+ * method. Every access after the memory is closed throws an
+ * {@linkplain IllegalStateException}.
+ *
+ * @author Mario Bobic
+ */
+public class MappedMemory implements PrimitiveMemory, Closeable {
+
+    /** Tag of a location that holds no value. */
+    private static final byte EMPTY = 0;
+    /** Tag of a location that holds an integer. */
+    private static final byte INT = 1;
+    /** Tag of a location that holds an object. */
+    private static final byte OBJECT = 2;
+
+    /** Magic number at the beginning of a memory file, <tt>SCMM</tt>. */
+    private static final int MAGIC = 0x53434D4D;
+    /** Version of the memory file layout. */
+    private static final int VERSION = 2;
+    /** Length of the memory file header: magic, version, size and flags. */
+    private static final int HEADER_LENGTH = 16;
+    /** Offset of the flags in the memory file header. */
+    private static final int FLAGS_OFFSET = 12;
+    /** Flag set while locations of the file may be tagged as objects. */
+    private static final int OBJECT_TAGS = 1;
+
+    /** Binary logarithm of the number of locations in a chunk. */
+    private static final int CHUNK_SHIFT = 24;
+    /** Number of locations in a chunk, each chunk is mapped separately. */
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    /** Mask of a location index inside its chunk. */
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /** Number of memory locations. */
+    private final int size;
+    /** Offset of the first tag in each chunk, which follows its values. */
+    private final int[] tagOffsets;
+    /** Channel of the memory file, <tt>null</tt> if the memory is closed. */
+    private FileChannel channel;
+    /** Mapped header of the memory file. */
+    private MappedByteBuffer header;
+    /**
+     * Mapped chunks. Each chunk holds the integer values of its locations,
+     * followed by the tags of its locations.
+     */
+    private MappedByteBuffer[] chunks;
+    /** Object values of locations tagged as objects. */
+    private IntObjectMap objects;
+    /** Indicates if the object tags flag is set in the header. */
+    private boolean objectTags;
+
+    /**
+     * Constructs an instance of {@code MappedMemory} with memory length of the
+     * specified <tt>size</tt>, mapped to the specified <tt>file</tt>.
+     * <p>
+     * If the file does not exist or is empty, it is created and all of its
+     * locations are empty. Otherwise it must be a memory file of the same
+     * size, written by a previous run, whose integer locations are kept.
+     *
+     * @param file the memory file
+     * @param size memory size
+     * @throws IllegalArgumentException if the specified size is negative
+     * @throws IOException if the file can not be mapped or is not a memory
+     *         file of the specified size
+     */
+    public MappedMemory(Path file, int size) throws IOException {
+        if (size < 0) {
+            throw new IllegalArgumentException("Memory size must not be negative.");
+        }
+        this.size = size;
+
+        int count = (int) (((long) size + CHUNK_SIZE - 1) >>> CHUNK_SHIFT);
+        tagOffsets = new int[count];
+        for (int i = 0; i < count; i++) {
+            tagOffsets[i] = 4 * Math.min(CHUNK_SIZE, size - (i << CHUNK_SHIFT));
+        }
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            boolean created = channel.size() == 0;
+            if (created) {
+                writeHeader();
+            } else {
+                checkHeader(file);
+            }
+            header = channel.map(MapMode.READ_WRITE, 0, HEADER_LENGTH);
+            chunks = map();
+            objects = new IntObjectMap();
+
+            if ((header.getInt(FLAGS_OFFSET) & OBJECT_TAGS) != 0) {
+                scanObjectTags();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the header of a new memory file.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        header.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(0).flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+
+    /**
+     * Checks that the header of an existing memory file matches this memory.
+     *
+     * @param file the memory file, used in error messages
+     * @throws IOException if the file is not a memory file of this size
+     */
+    private void checkHeader(Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                throw new IOException("File " + file + " is not a memory file.");
+            }
+        }
+        header.flip();
+
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new IOException("File " + file + " is not a memory file.");
+        }
+        int fileSize = header.getInt();
+        if (fileSize != size) {
+            throw new IOException("File " + file + " holds a memory of size "
+                    + fileSize + ", expected " + size + ".");
+        }
+    }
+
+    /**
+     * Maps all chunks of the memory file, growing the file if needed.
+     *
+     * @return the mapped chunks
+     * @throws IOException if an I/O error occurs
+     */
+    private MappedByteBuffer[] map() throws IOException {
+        MappedByteBuffer[] chunks = new MappedByteBuffer[tagOffsets.length];
+
+        long position = HEADER_LENGTH;
+        for (int i = 0; i < chunks.length; i++) {
+            long length = 5L * (tagOffsets[i] >>> 2);
+            chunks[i] = channel.map(MapMode.READ_WRITE, position, length);
+            position += length;
+        }
+
+        return chunks;
+    }
+
+    /**
+     * Empties the locations that held objects in a previous run which ended
+     * without closing the memory, since objects are not persisted. Every tag
+     * of the file is checked, as the locations of those objects are unknown.
+     */
+    private void scanObjectTags() {
+        for (int location = 0; location < size; location++) {
+            if (getTag(location) == OBJECT) {
+                setTag(location, EMPTY);
+            }
+        }
+        setObjectTags(false);
+    }
+
+    /**
+     * Empties the locations that hold objects in this run, since objects are
+     * not persisted. Only the locations in the object side table are visited.
+     */
+    private void clearObjectTags() {
+        if (objectTags) {
+            objects.forEachKey(location -> setTag(location, EMPTY));
+            setObjectTags(false);
+        }
+    }
+
+    /**
+     * Sets or clears the object tags flag in the header of the memory file.
+     *
+     * @param value true to set the flag, false to clear it
+     */
+    private void setObjectTags(boolean value) {
+        int flags = header.getInt(FLAGS_OFFSET);
+        header.putInt(FLAGS_OFFSET, value ? flags | OBJECT_TAGS : flags & ~OBJECT_TAGS);
+        objectTags = value;
+    }
+
+    @Override
+    public void setLocation(int location, Object value) {
+        checkLocation(location);
+        if (getTag(location) == OBJECT) {
+            objects.remove(location);
+        }
+
+        if (value instanceof Integer) {
+            setTag(location, INT);
+            setValue(location, (Integer) value);
+        } else if (value == null) {
+            setTag(location, EMPTY);
+        } else {
+            if (!objectTags) {
+                setObjectTags(true);
+            }
+            setTag(location, OBJECT);
+            objects.put(location, value);
+        }
+    }
+
+    @Override
+    public Object getLocation(int location) {
+        checkLocation(location);
+        switch (getTag(location)) {
+            case INT:
+                return getValue(location);
+            case OBJECT:
+                return objects.get(location);
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public boolean isInt(int location) {
+        checkLocation(location);
+        return getTag(location) == INT;
+    }
+
+    @Override
+    public int getInt(int location) {
+        checkLocation(location);
+        if (getTag(location) != INT) {
+            throw new IllegalStateException("Location " + location
+                    + " must contain an integer. Instead it contained: [" + getLocation(location) + "]");
+        }
+        return getValue(location);
+    }
+
+    @Override
+    public void setInt(int location, int value) {
+        checkLocation(location);
+        if (getTag(location) == OBJECT) {
+            objects.remove(location);
+        }
+        setTag(location, INT);
+        setValue(location, value);
+    }
+
+    /**
+     * Forces all changes of the memory to be written to the storage device.
+     *
+     * @throws IllegalStateException if the memory is closed
+     */
+    public void sync() {
+        checkOpen();
+        for (MappedByteBuffer chunk : chunks) {
+            chunk.force();
+        }
+        header.force();
+    }
+
+    /**
+     * Empties the locations that hold objects, writes all changes of the
+     * memory to the storage device and closes the memory file. Closing an
+     * already closed memory has no effect.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            try {
+                clearObjectTags();
+                sync();
+            } finally {
+                channel.close();
+                channel = null;
+                header = null;
+                chunks = null;
+                objects = null;
+            }
+        }
+    }
+
+    /**
+     * Returns the integer value of the specified location.
+     *
+     * @param location the memory location
+     * @return the integer value
+     */
+    private int getValue(int location) {
+        return chunks[location >>> CHUNK_SHIFT].getInt((location & CHUNK_MASK) << 2);
+    }
+
+    /**
+     * Sets the integer value of the specified location.
+     *
+     * @param location the memory location
+     * @param value the integer value
+     */
+    private void setValue(int location, int value) {
+        chunks[location >>> CHUNK_SHIFT].putInt((location & CHUNK_MASK) << 2, value);
+    }
+
+    /**
+     * Returns the tag of the specified location.
+     *
+     * @param location the memory location
+     * @return the tag
+     */
+    private byte getTag(int location) {
+        int chunk = location >>> CHUNK_SHIFT;
+        return chunks[chunk].get(tagOffsets[chunk] + (location & CHUNK_MASK));
+    }
+
+    /**
+     * Sets the tag of the specified location.
+     *
+     * @param location the memory location
+     * @param tag the tag
+     */
+    private void setTag(int location, byte tag) {
+        int chunk = location >>> CHUNK_SHIFT;
+        chunks[chunk].put(tagOffsets[chunk] + (location & CHUNK_MASK), tag);
+    }
+
+    /**
+     * Checks if the memory is open, or throws an
+     * {@linkplain IllegalStateException} if it is closed.
+     *
+     * @throws IllegalStateException if the memory is closed
+     */
+    private void checkOpen() {
+        if (channel == null) {
+            throw new IllegalStateException("Memory is closed.");
+        }
+    }
+
+    /**
+     * Checks if the memory is open and the specified <tt>location</tt> is in
+     * range of the memory. Throws an {@linkplain IllegalStateException} if the
+     * memory is closed or an {@linkplain IndexOutOfBoundsException} if the
+     * location is invalid.
+     *
+     * @param location location to be checked
+     * @throws IllegalStateException if the memory is closed
+     * @throws IndexOutOfBoundsException if location is out of range
+     */
+    private void checkLocation(int location) {
+        checkOpen();
+        if (location < 0 || location >= size) {
+            throw new IndexOutOfBoundsException(
+                    "Size: " + size
+                    + ", location: " + location);
+        }
+    }
+
+}
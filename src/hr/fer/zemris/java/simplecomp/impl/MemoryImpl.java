@@ -6,13 +6,32 @@ import hr.fer.zemris.java.simplecomp.models.Memory;
 /**
  * This class implements the {@linkplain Memory} interface and contains concrete
  * locations used for storing {@linkplain Instruction}s and <tt>constants</tt>.
+ * <p>
+ * Integer locations are stored as primitive values in an integer array, with a
+ * parallel array of tags recording whether a location is empty, holds an
+ * integer or holds an object. Objects, such as instructions and strings, are
+ * kept in a sparse side table indexed by location, so a memory used mostly for
+ * integer data costs about five bytes per location. The primitive accessors of
+ * the {@linkplain PrimitiveMemory} interface never box integers into
+ * {@linkplain Integer} objects.
  *
  * @author Mario Bobic
  */
-public class MemoryImpl implements Memory {
+public class MemoryImpl implements PrimitiveMemory {
 
-    /** Array of memory locations. */
-    private Object[] locations;
+    /** Tag of a location that holds no value. */
+    static final byte EMPTY = 0;
+    /** Tag of a location that holds an integer. */
+    static final byte INT = 1;
+    /** Tag of a location that holds an object. */
+    static final byte OBJECT = 2;
+
+    /** Tags of memory locations. */
+    private byte[] tags;
+    /** Integer values of locations tagged as integers. */
+    private int[] values;
+    /** Object values of locations tagged as objects. */
+    private IntObjectMap objects;
 
     /**
      * Constructs an instance of {@code MemoryImpl} with memory length of the
@@ -25,19 +44,99 @@ public class MemoryImpl implements Memory {
         if (size < 0) {
             throw new IllegalArgumentException("Memory size must not be negative.");
         }
-        locations = new Object[size];
+        tags = new byte[size];
+        values = new int[size];
+        objects = new IntObjectMap();
     }
 
     @Override
     public void setLocation(int location, Object value) {
         checkLocation(location);
-        locations[location] = value;
+        if (tags[location] == OBJECT) {
+            objects.remove(location);
+        }
+
+        if (value instanceof Integer) {
+            tags[location] = INT;
+            values[location] = (Integer) value;
+        } else if (value == null) {
+            tags[location] = EMPTY;
+        } else {
+            tags[location] = OBJECT;
+            objects.put(location, value);
+        }
     }
 
     @Override
     public Object getLocation(int location) {
         checkLocation(location);
-        return locations[location];
+        switch (tags[location]) {
+            case INT:
+                return values[location];
+            case OBJECT:
+                return objects.get(location);
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public boolean isInt(int location) {
+        checkLocation(location);
+        return tags[location] == INT;
+    }
+
+    @Override
+    public int getInt(int location) {
+        checkLocation(location);
+        if (tags[location] != INT) {
+            throw new IllegalStateException("Location " + location
+                    + " must contain an integer. Instead it contained: [" + getLocation(location) + "]");
+        }
+        return values[location];
+    }
+
+    @Override
+    public void setInt(int location, int value) {
+        checkLocation(location);
+        if (tags[location] == OBJECT) {
+            objects.remove(location);
+        }
+        tags[location] = INT;
+        values[location] = value;
+    }
+
+    /**
+     * Loads the specified contents into the locations starting from
+     * <tt>0</tt>, copying the tags and integer values in bulk. Objects are
+     * taken from the specified <tt>cells</tt> at locations tagged as
+     * {@linkplain #OBJECT}. Used by the {@linkplain ProgramImage}.
+     *
+     * @param srcTags tags of the locations
+     * @param srcValues integer values of the locations
+     * @param cells contents of the locations
+     * @throws IndexOutOfBoundsException if the contents do not fit the memory
+     */
+    void load(byte[] srcTags, int[] srcValues, Object[] cells) {
+        int length = srcTags.length;
+        if (length > tags.length) {
+            throw new IndexOutOfBoundsException(
+                    "Size: " + tags.length
+                    + ", image size: " + length);
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (tags[i] == OBJECT) {
+                objects.remove(i);
+            }
+        }
+        System.arraycopy(srcTags, 0, tags, 0, length);
+        System.arraycopy(srcValues, 0, values, 0, length);
+        for (int i = 0; i < length; i++) {
+            if (srcTags[i] == OBJECT) {
+                objects.put(i, cells[i]);
+            }
+        }
     }
 
     /**
@@ -49,9 +148,9 @@ public class MemoryImpl implements Memory {
      * @throws IndexOutOfBoundsException if location is out of range
      */
     private void checkLocation(int location) {
-        if (location < 0 || location >= locations.length) {
+        if (location < 0 || location >= tags.length) {
             throw new IndexOutOfBoundsException(
-                    "Size: " + locations.length
+                    "Size: " + tags.length
                     + ", location: " + location);
         }
     }
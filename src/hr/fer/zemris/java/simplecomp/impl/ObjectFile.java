@@ -0,0 +1,594 @@
+package hr.fer.zemris.java.simplecomp.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import hr.fer.zemris.java.simplecomp.RegisterUtil;
+import hr.fer.zemris.java.simplecomp.models.Instruction;
+import hr.fer.zemris.java.simplecomp.models.InstructionArgument;
+import hr.fer.zemris.java.simplecomp.models.InstructionCreator;
+
+/**
+ * An assembled program in the binary <i>object file</i> format, together with
+ * the table of its labels. An object file is loaded without parsing the
+ * program text: instructions are created from their opcodes or names through
+ * an {@linkplain InstructionCreator}, by default the
+ * {@linkplain InstructionRegistry#getDefault() default registry}, which needs
+ * no reflection.
+ * <p>
+ * An object file consists of the following parts, with all numbers in
+ * big-endian order:
+ * <ul>
+ * <li>the header: magic number <tt>SCOB</tt>, 16-bit version and flags, the
+ * initial value of the stack register, and the numbers of cells, strings and
+ * symbols,
+ * <li>the string table: each string as its length in bytes followed by its
+ * UTF-8 bytes; strings are referenced by their index,
+ * <li>the symbol table: each label as the index of its name and its address,
+ * <li>the cells from address <tt>0</tt>: each cell as a one-byte kind followed
+ * by its content. <tt>DEFINT</tt> constants hold the integer,
+ * <tt>DEFSTR</tt> constants hold the string index, and instructions hold
+ * their argument count and arguments. A register argument holds the packed
+ * register descriptor as decoded by the {@linkplain RegisterUtil}, a number
+ * argument holds the number and a string argument holds the string index.
+ * </ul>
+ *
+ * @author Mario Bobic
+ * @see ProgramImage
+ */
+public class ObjectFile {
+
+    /** Magic number of an object file. */
+    private static final int MAGIC = 0x53434F42;
+    /** Version of the object file format. */
+    private static final short VERSION = 1;
+    /** Flag indicating that the initial value of the stack register is set. */
+    private static final short FLAG_STACK_TOP = 1;
+
+    /** Kind of an empty cell. */
+    private static final byte CELL_EMPTY = 0;
+    /** Kind of a <tt>DEFINT</tt> cell. */
+    private static final byte CELL_INT = 1;
+    /** Kind of a <tt>DEFSTR</tt> cell. */
+    private static final byte CELL_STRING = 2;
+    /** Kind of an instruction created by name. */
+    private static final byte CELL_NAMED = 3;
+    /** Opcode of the first instruction of the default instruction set. */
+    private static final int FIRST_OPCODE = 16;
+
+    /** Kind of a register argument. */
+    private static final byte ARG_REGISTER = 0;
+    /** Kind of a number argument. */
+    private static final byte ARG_NUMBER = 1;
+    /** Kind of a string argument. */
+    private static final byte ARG_STRING = 2;
+
+    /** Names of the default instruction set, in order of their opcodes. */
+    private static final List<String> NAMES = Arrays.asList(
+            "halt", "echo", "load", "move", "add", "mul", "increment", "decrement",
+            "testEquals", "jump", "jumpIfTrue", "call", "ret", "push", "pop", "iinput");
+
+    /** Size of the header in bytes. */
+    private static final int HEADER_SIZE = 24;
+
+    /** The assembled program. */
+    private final ProgramImage image;
+    /** Addresses of the labels, in order of addresses. */
+    private final Map<String, Integer> symbols;
+
+    /**
+     * Constructs an object file of the specified image and labels.
+     *
+     * @param image the assembled program
+     * @param symbols addresses of the labels
+     */
+    public ObjectFile(ProgramImage image, Map<String, Integer> symbols) {
+        this.image = image;
+        this.symbols = Collections.unmodifiableMap(new LinkedHashMap<>(symbols));
+    }
+
+    /**
+     * Assembles the specified program <tt>source</tt> into an object file,
+     * creating instructions from classes of the specified package.
+     *
+     * @param source the program source, encoded in UTF-8
+     * @param instructionPackage package of the instruction classes
+     * @return the object file
+     * @throws Exception if the program can not be parsed
+     */
+    public static ObjectFile assemble(byte[] source, String instructionPackage) throws Exception {
+        return new ObjectFile(ProgramImage.assemble(source, instructionPackage), scanLabels(source));
+    }
+
+    /**
+     * Returns the assembled program.
+     *
+     * @return the assembled program
+     */
+    public ProgramImage getImage() {
+        return image;
+    }
+
+    /**
+     * Returns the addresses of the labels, in order of addresses. Label names
+     * include the leading <tt>@</tt>.
+     *
+     * @return the addresses of the labels
+     */
+    public Map<String, Integer> getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * Returns true if the file at the specified <tt>path</tt> starts with the
+     * magic number of an object file.
+     *
+     * @param path path to the file
+     * @return true if the file is an object file
+     * @throws IOException if the file can not be read
+     */
+    public static boolean isObjectFile(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            byte[] magic = new byte[4];
+            int n = 0;
+            while (n < magic.length) {
+                int r = in.read(magic, n, magic.length - n);
+                if (r < 0) return false;
+                n += r;
+            }
+            return ByteBuffer.wrap(magic).getInt() == MAGIC;
+        }
+    }
+
+    /**
+     * Loads the object file at the specified <tt>path</tt>, creating
+     * instructions through the {@linkplain InstructionRegistry#getDefault()
+     * default registry}.
+     *
+     * @param path path to the object file
+     * @return the object file
+     * @throws IOException if the file can not be read or is not a valid object file
+     */
+    public static ObjectFile load(Path path) throws IOException {
+        return load(path, InstructionRegistry.getDefault());
+    }
+
+    /**
+     * Loads the object file at the specified <tt>path</tt> by mapping it into
+     * memory, creating instructions through the specified creator.
+     *
+     * @param path path to the object file
+     * @param creator creator of the instructions
+     * @return the object file
+     * @throws IOException if the file can not be read or is not a valid object file
+     */
+    public static ObjectFile load(Path path, InstructionCreator creator) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        try {
+            return read(buffer, creator);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Object file is truncated: " + path, e);
+        }
+    }
+
+    /**
+     * Reads an object file from the specified buffer.
+     *
+     * @param buffer buffer holding the object file
+     * @param creator creator of the instructions
+     * @return the object file
+     * @throws IOException if the buffer does not hold a valid object file
+     */
+    private static ObjectFile read(ByteBuffer buffer, InstructionCreator creator) throws IOException {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException("Not an object file.");
+        }
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported object file version: " + version);
+        }
+        short flags = buffer.getShort();
+        int stackTopValue = buffer.getInt();
+        Integer stackTop = (flags & FLAG_STACK_TOP) != 0 ? stackTopValue : null;
+        int cellCount = checkCount(buffer.getInt(), buffer);
+        int stringCount = checkCount(buffer.getInt(), buffer);
+        int symbolCount = checkCount(buffer.getInt(), buffer);
+
+        String[] strings = new String[stringCount];
+        for (int i = 0; i < stringCount; i++) {
+            byte[] bytes = new byte[checkCount(buffer.getInt(), buffer)];
+            buffer.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        Map<String, Integer> symbols = new LinkedHashMap<>();
+        for (int i = 0; i < symbolCount; i++) {
+            symbols.put(string(strings, buffer.getInt()), buffer.getInt());
+        }
+
+        Object[] cells = new Object[cellCount];
+        String[] names = new String[cellCount];
+        List<List<InstructionArgument>> arguments = new ArrayList<>(Collections.nCopies(cellCount, null));
+        for (int i = 0; i < cellCount; i++) {
+            int kind = buffer.get() & 0xFF;
+            switch (kind) {
+                case CELL_EMPTY:
+                    break;
+                case CELL_INT:
+                    cells[i] = buffer.getInt();
+                    break;
+                case CELL_STRING:
+                    cells[i] = string(strings, buffer.getInt());
+                    break;
+                default:
+                    String name;
+                    if (kind == CELL_NAMED) {
+                        name = string(strings, buffer.getInt());
+                    } else if (kind >= FIRST_OPCODE && kind < FIRST_OPCODE + NAMES.size()) {
+                        name = NAMES.get(kind - FIRST_OPCODE);
+                    } else {
+                        throw new IOException("Invalid cell kind " + kind + " at address " + i + ".");
+                    }
+
+                    List<InstructionArgument> args = readArguments(buffer, strings);
+                    try {
+                        cells[i] = creator.getInstruction(name, args);
+                    } catch (RuntimeException e) {
+                        throw new IOException("Invalid instruction " + name + " at address " + i + ": "
+                                + e.getMessage(), e);
+                    }
+                    names[i] = name;
+                    arguments.set(i, args);
+            }
+        }
+
+        return new ObjectFile(new ProgramImage(cells, stackTop, names, arguments), symbols);
+    }
+
+    /**
+     * Reads the arguments of an instruction from the specified buffer.
+     *
+     * @param buffer buffer holding the object file
+     * @param strings the string table
+     * @return the instruction arguments
+     * @throws IOException if an argument is invalid
+     */
+    private static List<InstructionArgument> readArguments(ByteBuffer buffer, String[] strings) throws IOException {
+        int count = buffer.get() & 0xFF;
+        List<InstructionArgument> args = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte kind = buffer.get();
+            switch (kind) {
+                case ARG_REGISTER:
+                    args.add(new ProgramImage.Argument(true, false, false, buffer.getInt()));
+                    break;
+                case ARG_NUMBER:
+                    args.add(new ProgramImage.Argument(false, false, true, buffer.getInt()));
+                    break;
+                case ARG_STRING:
+                    args.add(new ProgramImage.Argument(false, true, false, string(strings, buffer.getInt())));
+                    break;
+                default:
+                    throw new IOException("Invalid argument kind: " + kind);
+            }
+        }
+        return Collections.unmodifiableList(args);
+    }
+
+    /**
+     * Returns the string with the specified index from the string table.
+     *
+     * @param strings the string table
+     * @param index index of the string
+     * @return the string
+     * @throws IOException if the index is invalid
+     */
+    private static String string(String[] strings, int index) throws IOException {
+        if (index < 0 || index >= strings.length) {
+            throw new IOException("Invalid string index: " + index);
+        }
+        return strings[index];
+    }
+
+    /**
+     * Checks that the specified count is not negative and not larger than the
+     * number of remaining bytes, each counted element taking at least one.
+     *
+     * @param count the count
+     * @param buffer buffer holding the object file
+     * @return the count
+     * @throws IOException if the count is invalid
+     */
+    private static int checkCount(int count, ByteBuffer buffer) throws IOException {
+        if (count < 0 || count > buffer.remaining()) {
+            throw new IOException("Invalid count: " + count);
+        }
+        return count;
+    }
+
+    /**
+     * Writes this object file to the file at the specified <tt>path</tt>.
+     *
+     * @param path path to the file
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalStateException if the image is not
+     *         {@linkplain ProgramImage#isWritable() writable}
+     */
+    public void write(Path path) throws IOException {
+        try (OutputStream out = Files.newOutputStream(path)) {
+            write(out);
+        }
+    }
+
+    /**
+     * Writes this object file to the specified stream.
+     *
+     * @param os the output stream
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalStateException if the image is not
+     *         {@linkplain ProgramImage#isWritable() writable}
+     */
+    public void write(OutputStream os) throws IOException {
+        if (!image.isWritable()) {
+            throw new IllegalStateException("Image holds values that can not be written.");
+        }
+
+        // collect the string table
+        List<String> strings = new ArrayList<>();
+        Map<String, Integer> indexes = new HashMap<>();
+        for (String label : symbols.keySet()) {
+            intern(label, strings, indexes);
+        }
+        for (int i = 0, n = image.size(); i < n; i++) {
+            Object cell = image.getCell(i);
+            if (cell instanceof String) {
+                intern((String) cell, strings, indexes);
+            } else if (cell instanceof Instruction) {
+                if (!NAMES.contains(image.getName(i))) {
+                    intern(image.getName(i), strings, indexes);
+                }
+                for (InstructionArgument arg : image.getArguments(i)) {
+                    if (arg.isString()) {
+                        intern((String) arg.getValue(), strings, indexes);
+                    }
+                }
+            }
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+        Integer stackTop = image.getStackTop();
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeShort(stackTop != null ? FLAG_STACK_TOP : 0);
+        out.writeInt(stackTop != null ? stackTop : 0);
+        out.writeInt(image.size());
+        out.writeInt(strings.size());
+        out.writeInt(symbols.size());
+
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        for (Map.Entry<String, Integer> symbol : symbols.entrySet()) {
+            out.writeInt(indexes.get(symbol.getKey()));
+            out.writeInt(symbol.getValue());
+        }
+
+        for (int i = 0, n = image.size(); i < n; i++) {
+            Object cell = image.getCell(i);
+            if (cell == null) {
+                out.writeByte(CELL_EMPTY);
+            } else if (cell instanceof Integer) {
+                out.writeByte(CELL_INT);
+                out.writeInt((Integer) cell);
+            } else if (cell instanceof String) {
+                out.writeByte(CELL_STRING);
+                out.writeInt(indexes.get(cell));
+            } else {
+                int opcode = NAMES.indexOf(image.getName(i));
+                if (opcode < 0) {
+                    out.writeByte(CELL_NAMED);
+                    out.writeInt(indexes.get(image.getName(i)));
+                } else {
+                    out.writeByte(FIRST_OPCODE + opcode);
+                }
+
+                List<InstructionArgument> args = image.getArguments(i);
+                out.writeByte(args.size());
+                for (InstructionArgument arg : args) {
+                    if (arg.isString()) {
+                        out.writeByte(ARG_STRING);
+                        out.writeInt(indexes.get(arg.getValue()));
+                    } else {
+                        out.writeByte(arg.isRegister() ? ARG_REGISTER : ARG_NUMBER);
+                        out.writeInt((Integer) arg.getValue());
+                    }
+                }
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Adds the specified string to the string table if it is not already in it.
+     *
+     * @param string the string
+     * @param strings the string table
+     * @param indexes indexes of the strings in the table
+     */
+    private static void intern(String string, List<String> strings, Map<String, Integer> indexes) {
+        if (!indexes.containsKey(string)) {
+            indexes.put(string, strings.size());
+            strings.add(string);
+        }
+    }
+
+    /**
+     * Returns the assembly source of this object file. Labels are written on
+     * the lines of their addresses, but operands that referred to labels are
+     * written as the addresses the labels were resolved to. Empty cells are
+     * written as <tt>RESERVE</tt>, which the parser fills with zero.
+     *
+     * @return the assembly source
+     */
+    public String disassemble() {
+        Map<Integer, String> labels = new HashMap<>();
+        for (Map.Entry<String, Integer> symbol : symbols.entrySet()) {
+            labels.putIfAbsent(symbol.getValue(), symbol.getKey());
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0, n = image.size(); i < n; i++) {
+            String label = labels.get(i);
+            sb.append(label == null ? "" : label + ":").append('\t');
+
+            Object cell = image.getCell(i);
+            if (cell == null) {
+                sb.append("RESERVE");
+            } else if (cell instanceof Integer) {
+                sb.append("DEFINT ").append(cell);
+            } else if (cell instanceof String) {
+                sb.append("DEFSTR ");
+                appendString(sb, (String) cell);
+            } else {
+                sb.append(image.getName(i));
+                List<InstructionArgument> args = image.getArguments(i);
+                for (int j = 0; j < args.size(); j++) {
+                    sb.append(j == 0 ? " " : ", ");
+                    appendArgument(sb, args.get(j));
+                }
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Appends the specified instruction argument as written in the assembly
+     * source.
+     *
+     * @param sb the string builder
+     * @param arg the instruction argument
+     */
+    private static void appendArgument(StringBuilder sb, InstructionArgument arg) {
+        if (arg.isString()) {
+            appendString(sb, (String) arg.getValue());
+        } else if (!arg.isRegister()) {
+            sb.append(arg.getValue());
+        } else {
+            int descriptor = (Integer) arg.getValue();
+            int index = RegisterUtil.getRegisterIndex(descriptor);
+            if (!RegisterUtil.isIndirect(descriptor)) {
+                sb.append('r').append(index);
+            } else {
+                int offset = RegisterUtil.getRegisterOffset(descriptor);
+                sb.append("[r").append(index).append(offset < 0 ? "-" : "+").append(Math.abs(offset)).append(']');
+            }
+        }
+    }
+
+    /**
+     * Appends the specified string as a quoted literal, escaping the
+     * characters the parser unescapes.
+     *
+     * @param sb the string builder
+     * @param s the string
+     */
+    private static void appendString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (char c : s.toCharArray()) {
+            switch (c) {
+                case '\n': sb.append("\\n"); break;
+                case '\t': sb.append("\\t"); break;
+                case '"':  sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                default:   sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    /**
+     * Returns the addresses of the labels defined in the specified program
+     * source, counting addresses the same way the parser does: every line
+     * that is neither empty nor a comment takes one address, and a
+     * <tt>RESERVE:<i>n</i></tt> line takes <tt>n</tt> addresses.
+     *
+     * @param source the program source, encoded in UTF-8
+     * @return the addresses of the labels, in order of addresses
+     * @throws IOException if the source can not be read
+     */
+    static Map<String, Integer> scanLabels(byte[] source) throws IOException {
+        Map<String, Integer> labels = new LinkedHashMap<>();
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(source), StandardCharsets.UTF_8));
+
+        int address = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            int colon = line.indexOf(':');
+            if (line.startsWith("@") && colon > 0) {
+                labels.put(line.substring(0, colon), address);
+                line = line.substring(colon + 1).trim();
+            }
+            address += reservedCount(line);
+        }
+        return labels;
+    }
+
+    /**
+     * Returns the number of addresses the specified line takes, which is the
+     * number after <tt>RESERVE:</tt> or <tt>1</tt> for any other line.
+     *
+     * @param line the line, without a label
+     * @return the number of addresses the line takes
+     */
+    private static int reservedCount(String line) {
+        if (!line.startsWith("RESERVE:")) {
+            return 1;
+        }
+
+        int end = "RESERVE:".length();
+        while (end < line.length() && Character.isDigit(line.charAt(end))) {
+            end++;
+        }
+        try {
+            return Integer.parseInt(line.substring("RESERVE:".length(), end));
+        } catch (NumberFormatException e) {
+            // the parser rejects such a line
+            return 1;
+        }
+    }
+
+}
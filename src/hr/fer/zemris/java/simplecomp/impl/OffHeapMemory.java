@@ -0,0 +1,189 @@
+package hr.fer.zemris.java.simplecomp.impl;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import hr.fer.zemris.java.simplecomp.models.Memory;
+
+/**
+ * This class implements the {@linkplain Memory} interface with integer
+ * locations stored outside of the Java heap, so that memories of hundreds of
+ * millions of locations are not scanned by the garbage collector.
+ * <p>
+ * Each location takes five bytes of native memory: an integer value and a tag
+ * recording whether the location is empty, holds an integer or holds an object.
+ * The native memory is allocated in chunks of direct buffers, one for the
+ * values and one for the tags of a chunk, as the
+ * {@linkplain MappedMemory} maps its file in chunks, and counts against the
+ * <tt>-XX:MaxDirectMemorySize</tt> limit of the virtual machine. Objects, such
+ * as instructions and strings, are kept on the heap in a sparse side table, as
+ * in the {@linkplain MemoryImpl}.
+ * <p>
+ * The native memory is allocated when the memory is constructed. The
+ * {@linkplain #close()} method only drops the references to the buffers, and
+ * the native memory is freed when the garbage collector reclaims them, so its
+ * release is not deterministic. Until then it still counts against the
+ * <tt>-XX:MaxDirectMemorySize</tt> limit, and an allocation that would exceed
+ * the limit first triggers a collection to free the buffers of closed
+ * memories. Every access after the memory is closed throws an
+ * {@linkplain IllegalStateException}. An access racing with the close either
+ * completes on the dropped buffers or throws the exception, it never reads
+ * freed memory.
+ *
+ * @author Mario Bobic
+ */
+public class OffHeapMemory implements PrimitiveMemory, Closeable {
+
+    /** Tag of a location that holds no value. */
+    private static final byte EMPTY = 0;
+    /** Tag of a location that holds an integer. */
+    private static final byte INT = 1;
+    /** Tag of a location that holds an object. */
+    private static final byte OBJECT = 2;
+
+    /** Binary logarithm of the number of locations in a chunk. */
+    private static final int CHUNK_SHIFT = 24;
+    /** Number of locations in a chunk, each chunk is allocated separately. */
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    /** Mask of a location index inside its chunk. */
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /** Number of memory locations. */
+    private final int size;
+    /**
+     * Allocated buffers, <tt>null</tt> if the memory is closed. Each chunk of
+     * locations has two buffers: the integer values of its locations at index
+     * <tt>2*chunk</tt>, and the tags of its locations at index
+     * <tt>2*chunk + 1</tt>.
+     */
+    private volatile ByteBuffer[] buffers;
+    /** Object values of locations tagged as objects. */
+    private final IntObjectMap objects = new IntObjectMap();
+
+    /**
+     * Constructs an instance of {@code OffHeapMemory} with memory length of
+     * the specified <tt>size</tt> and allocates its native memory. The
+     * specified size must not be negative.
+     *
+     * @param size memory size
+     * @throws IllegalArgumentException if the specified size is negative
+     * @throws OutOfMemoryError if the native memory can not be allocated
+     */
+    public OffHeapMemory(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Memory size must not be negative.");
+        }
+        this.size = size;
+
+        int count = (int) (((long) size + CHUNK_SIZE - 1) >>> CHUNK_SHIFT);
+        ByteBuffer[] buffers = new ByteBuffer[2 * count];
+        for (int i = 0; i < count; i++) {
+            int locations = Math.min(CHUNK_SIZE, size - (i << CHUNK_SHIFT));
+            buffers[2*i] = ByteBuffer.allocateDirect(4 * locations).order(ByteOrder.nativeOrder());
+            buffers[2*i + 1] = ByteBuffer.allocateDirect(locations);
+        }
+        this.buffers = buffers;
+    }
+
+    @Override
+    public void setLocation(int location, Object value) {
+        ByteBuffer[] buffers = buffers(location);
+        ByteBuffer tags = buffers[2*(location >>> CHUNK_SHIFT) + 1];
+        int index = location & CHUNK_MASK;
+        if (tags.get(index) == OBJECT) {
+            objects.remove(location);
+        }
+
+        if (value instanceof Integer) {
+            tags.put(index, INT);
+            buffers[2*(location >>> CHUNK_SHIFT)].putInt(index << 2, (Integer) value);
+        } else if (value == null) {
+            tags.put(index, EMPTY);
+        } else {
+            tags.put(index, OBJECT);
+            objects.put(location, value);
+        }
+    }
+
+    @Override
+    public Object getLocation(int location) {
+        ByteBuffer[] buffers = buffers(location);
+        int index = location & CHUNK_MASK;
+        switch (buffers[2*(location >>> CHUNK_SHIFT) + 1].get(index)) {
+            case INT:
+                return buffers[2*(location >>> CHUNK_SHIFT)].getInt(index << 2);
+            case OBJECT:
+                return objects.get(location);
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public boolean isInt(int location) {
+        ByteBuffer[] buffers = buffers(location);
+        return buffers[2*(location >>> CHUNK_SHIFT) + 1].get(location & CHUNK_MASK) == INT;
+    }
+
+    @Override
+    public int getInt(int location) {
+        ByteBuffer[] buffers = buffers(location);
+        int index = location & CHUNK_MASK;
+        if (buffers[2*(location >>> CHUNK_SHIFT) + 1].get(index) != INT) {
+            throw new IllegalStateException("Location " + location
+                    + " must contain an integer. Instead it contained: [" + getLocation(location) + "]");
+        }
+        return buffers[2*(location >>> CHUNK_SHIFT)].getInt(index << 2);
+    }
+
+    @Override
+    public void setInt(int location, int value) {
+        ByteBuffer[] buffers = buffers(location);
+        ByteBuffer tags = buffers[2*(location >>> CHUNK_SHIFT) + 1];
+        int index = location & CHUNK_MASK;
+        if (tags.get(index) == OBJECT) {
+            objects.remove(location);
+        }
+        tags.put(index, INT);
+        buffers[2*(location >>> CHUNK_SHIFT)].putInt(index << 2, value);
+    }
+
+    /**
+     * Closes this memory and drops its buffers, whose native memory is freed
+     * once the garbage collector reclaims them. Closing an already closed
+     * memory has no effect.
+     */
+    @Override
+    public void close() {
+        buffers = null;
+    }
+
+    /**
+     * Returns the buffers of this memory, checking that the memory is open
+     * and the specified <tt>location</tt> is in range of the memory. Throws an
+     * {@linkplain IllegalStateException} if the memory is closed or an
+     * {@linkplain IndexOutOfBoundsException} if the location is invalid.
+     * <p>
+     * The buffers are read once, so an access that passed the check keeps
+     * using them even if the memory is closed meanwhile.
+     *
+     * @param location location to be checked
+     * @return the buffers of this memory
+     * @throws IllegalStateException if the memory is closed
+     * @throws IndexOutOfBoundsException if location is out of range
+     */
+    private ByteBuffer[] buffers(int location) {
+        ByteBuffer[] buffers = this.buffers;
+        if (buffers == null) {
+            throw new IllegalStateException("Memory is closed.");
+        }
+        if (location < 0 || location >= size) {
+            throw new IndexOutOfBoundsException(
+                    "Size: " + size
+                    + ", location: " + location);
+        }
+        return buffers;
+    }
+
+}
@@ -0,0 +1,360 @@
+package hr.fer.zemris.java.simplecomp.impl;
+
+import java.util.Arrays;
+
+import hr.fer.zemris.java.simplecomp.models.Memory;
+
+/**
+ * This class implements the {@linkplain Memory} interface with locations
+ * divided into pages that are copied on write, so that the memory can be
+ * {@linkplain #snapshot() snapshot} and {@linkplain #fork() forked} without
+ * copying its contents.
+ * <p>
+ * Each page stores its locations as the {@linkplain MemoryImpl} does: integer
+ * values in an integer array, with a parallel array of tags recording whether
+ * a location is empty, holds an integer or holds an object. A page is owned by
+ * the memory that created it, and is written in place only by its owner.
+ * Taking a snapshot revokes the ownership of all pages, which therefore
+ * become immutable: the first write to a page after a snapshot copies the
+ * page, and the first such write also copies the table of pages. A snapshot
+ * takes constant time, and the memory restored from it or forked from it
+ * copies only the pages it writes to.
+ * <p>
+ * A new memory shares one empty page across its whole table, so it costs one
+ * reference per page until its locations are written.
+ * <p>
+ * A memory must not be accessed by more than one thread at a time, but its
+ * snapshots are immutable and may be forked by any thread.
+ *
+ * @author Mario Bobic
+ * @see ComputerSnapshot
+ */
+public class PagedMemory implements PrimitiveMemory {
+
+    /** Default number of locations of a page. */
+    public static final int DEFAULT_PAGE_SIZE = 256;
+
+    /** Tag of a location that holds no value. */
+    private static final byte EMPTY = 0;
+    /** Tag of a location that holds an integer. */
+    private static final byte INT = 1;
+    /** Tag of a location that holds an object. */
+    private static final byte OBJECT = 2;
+
+    /** Number of memory locations. */
+    private final int size;
+    /** Binary logarithm of the page size. */
+    private final int pageShift;
+    /** Mask of the location offset within its page. */
+    private final int pageMask;
+    /** Table of pages. */
+    private Page[] pages;
+    /** Indicates that the table of pages is shared with a snapshot. */
+    private boolean tableShared;
+    /** Owner of the pages this memory may write in place. */
+    private Object owner = new Object();
+    /** Number of pages copied on write. */
+    private long copiedPages;
+
+    /**
+     * Constructs an instance of {@code PagedMemory} with memory length of the
+     * specified <tt>size</tt> and pages of the
+     * {@linkplain #DEFAULT_PAGE_SIZE default size}. The specified size must
+     * not be negative.
+     *
+     * @param size memory size
+     * @throws IllegalArgumentException if the specified size is negative
+     */
+    public PagedMemory(int size) {
+        this(size, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Constructs an instance of {@code PagedMemory} with memory length of the
+     * specified <tt>size</tt> and pages of the specified size. The memory size
+     * must not be negative, and the page size must be a positive power of two.
+     *
+     * @param size memory size
+     * @param pageSize number of locations of a page
+     * @throws IllegalArgumentException if the memory size is negative or the
+     *         page size is not a power of two
+     */
+    public PagedMemory(int size, int pageSize) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Memory size must not be negative.");
+        }
+        if (pageSize < 1 || Integer.bitCount(pageSize) != 1) {
+            throw new IllegalArgumentException("Page size must be a power of two: " + pageSize);
+        }
+        this.size = size;
+        this.pageShift = Integer.numberOfTrailingZeros(pageSize);
+        this.pageMask = pageSize - 1;
+
+        pages = new Page[(int) (((long) size + pageMask) >>> pageShift)];
+        Arrays.fill(pages, new Page(pageSize));
+    }
+
+    /**
+     * Constructs an instance of {@code PagedMemory} with the contents of the
+     * specified <tt>snapshot</tt>. This takes constant time, as the pages are
+     * copied only when they are written to.
+     *
+     * @param snapshot snapshot of a memory
+     */
+    public PagedMemory(Snapshot snapshot) {
+        this.size = snapshot.size;
+        this.pageShift = snapshot.pageShift;
+        this.pageMask = (1 << pageShift) - 1;
+        this.pages = snapshot.pages;
+        this.tableShared = true;
+    }
+
+    /**
+     * Returns a snapshot of the current contents of this memory, in constant
+     * time. Later writes to this memory do not change the snapshot.
+     *
+     * @return a snapshot of this memory
+     */
+    public Snapshot snapshot() {
+        owner = new Object();
+        tableShared = true;
+        return new Snapshot(size, pageShift, pages);
+    }
+
+    /**
+     * Returns an independent copy of this memory, in constant time. Writes to
+     * this memory and to the copy do not affect each other.
+     *
+     * @return a copy of this memory
+     */
+    public PagedMemory fork() {
+        return new PagedMemory(snapshot());
+    }
+
+    /**
+     * Restores the contents of this memory from the specified
+     * <tt>snapshot</tt>, in constant time. The snapshot must be taken from a
+     * memory of the same size and page size.
+     *
+     * @param snapshot snapshot of a memory
+     * @throws IllegalArgumentException if the snapshot is of a memory of
+     *         another size or page size
+     */
+    public void restore(Snapshot snapshot) {
+        if (snapshot.size != size || snapshot.pageShift != pageShift) {
+            throw new IllegalArgumentException("Snapshot of a memory of size " + snapshot.size
+                    + " and page size " + (1 << snapshot.pageShift) + " can not be restored into a memory of size "
+                    + size + " and page size " + (1 << pageShift) + ".");
+        }
+        owner = new Object();
+        tableShared = true;
+        pages = snapshot.pages;
+    }
+
+    /**
+     * Returns the number of pages this memory copied on write since it was
+     * constructed.
+     *
+     * @return the number of copied pages
+     */
+    public long getCopiedPages() {
+        return copiedPages;
+    }
+
+    @Override
+    public void setLocation(int location, Object value) {
+        checkLocation(location);
+        Page page = writablePage(location);
+        int offset = location & pageMask;
+
+        if (value instanceof Integer) {
+            page.tags[offset] = INT;
+            page.values[offset] = (Integer) value;
+            page.setObject(offset, null);
+        } else {
+            page.tags[offset] = value == null ? EMPTY : OBJECT;
+            page.setObject(offset, value);
+        }
+    }
+
+    @Override
+    public Object getLocation(int location) {
+        checkLocation(location);
+        Page page = pages[location >>> pageShift];
+        int offset = location & pageMask;
+
+        switch (page.tags[offset]) {
+            case INT:
+                return page.values[offset];
+            case OBJECT:
+                return page.objects[offset];
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public boolean isInt(int location) {
+        checkLocation(location);
+        return pages[location >>> pageShift].tags[location & pageMask] == INT;
+    }
+
+    @Override
+    public int getInt(int location) {
+        checkLocation(location);
+        Page page = pages[location >>> pageShift];
+        int offset = location & pageMask;
+
+        if (page.tags[offset] != INT) {
+            throw new IllegalStateException("Location " + location
+                    + " must contain an integer. Instead it contained: [" + getLocation(location) + "]");
+        }
+        return page.values[offset];
+    }
+
+    @Override
+    public void setInt(int location, int value) {
+        checkLocation(location);
+        Page page = writablePage(location);
+        int offset = location & pageMask;
+
+        page.tags[offset] = INT;
+        page.values[offset] = value;
+        page.setObject(offset, null);
+    }
+
+    /**
+     * Returns the page of the specified <tt>location</tt> for writing. A page
+     * this memory does not own is copied first, and so is the table of pages
+     * if it is shared.
+     *
+     * @param location the memory location
+     * @return the page of the location, owned by this memory
+     */
+    private Page writablePage(int location) {
+        int index = location >>> pageShift;
+        Page page = pages[index];
+        if (page.owner == owner) {
+            return page;
+        }
+
+        if (tableShared) {
+            pages = pages.clone();
+            tableShared = false;
+        }
+        page = new Page(page, owner);
+        pages[index] = page;
+        copiedPages++;
+        return page;
+    }
+
+    /**
+     * Checks if the specified <tt>location</tt> is in range of the memory, or
+     * throws an {@linkplain IndexOutOfBoundsException} if the location is
+     * invalid.
+     *
+     * @param location location to be checked
+     * @throws IndexOutOfBoundsException if location is out of range
+     */
+    private void checkLocation(int location) {
+        if (location < 0 || location >= size) {
+            throw new IndexOutOfBoundsException(
+                    "Size: " + size
+                    + ", location: " + location);
+        }
+    }
+
+    /**
+     * An immutable snapshot of the contents of a {@linkplain PagedMemory},
+     * taken by the {@linkplain PagedMemory#snapshot()} method. A snapshot
+     * shares its pages with the memory it was taken from and with the
+     * memories forked from it.
+     */
+    public static final class Snapshot {
+
+        /** Number of memory locations. */
+        private final int size;
+        /** Binary logarithm of the page size. */
+        private final int pageShift;
+        /** Table of pages, which is never written to. */
+        private final Page[] pages;
+
+        /**
+         * Constructs a snapshot of the specified table of pages.
+         *
+         * @param size number of memory locations
+         * @param pageShift binary logarithm of the page size
+         * @param pages table of pages
+         */
+        private Snapshot(int size, int pageShift, Page[] pages) {
+            this.size = size;
+            this.pageShift = pageShift;
+            this.pages = pages;
+        }
+
+        /**
+         * Returns the number of memory locations of this snapshot.
+         *
+         * @return the memory size
+         */
+        public int getSize() {
+            return size;
+        }
+    }
+
+    /**
+     * A page of memory locations.
+     */
+    private static final class Page {
+
+        /** Memory that may write this page in place, or <tt>null</tt>. */
+        private final Object owner;
+        /** Tags of the locations. */
+        private final byte[] tags;
+        /** Integer values of locations tagged as integers. */
+        private final int[] values;
+        /** Object values of locations tagged as objects, or <tt>null</tt> if there are none. */
+        private Object[] objects;
+
+        /**
+         * Constructs an empty page of the specified size, owned by no memory.
+         *
+         * @param size number of locations
+         */
+        Page(int size) {
+            this.owner = null;
+            this.tags = new byte[size];
+            this.values = new int[size];
+        }
+
+        /**
+         * Constructs a copy of the specified page, owned by the specified
+         * owner.
+         *
+         * @param page the page to be copied
+         * @param owner owner of the copy
+         */
+        Page(Page page, Object owner) {
+            this.owner = owner;
+            this.tags = page.tags.clone();
+            this.values = page.values.clone();
+            this.objects = page.objects == null ? null : page.objects.clone();
+        }
+
+        /**
+         * Sets the object value of the location at the specified offset,
+         * allocating the object values on the first object.
+         *
+         * @param offset offset of the location
+         * @param value object value, or <tt>null</tt>
+         */
+        void setObject(int offset, Object value) {
+            if (objects == null) {
+                if (value == null) return;
+                objects = new Object[tags.length];
+            }
+            objects[offset] = value;
+        }
+    }
+
+}
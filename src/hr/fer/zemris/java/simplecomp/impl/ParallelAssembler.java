@@ -0,0 +1,367 @@
+package hr.fer.zemris.java.simplecomp.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import hr.fer.zemris.java.simplecomp.models.Computer;
+import hr.fer.zemris.java.simplecomp.models.InstructionCreator;
+import hr.fer.zemris.java.simplecomp.models.Memory;
+import hr.fer.zemris.java.simplecomp.models.Registers;
+import hr.fer.zemris.java.simplecomp.parser.ProgramParser;
+
+/**
+ * A two-pass assembler that parses very large programs on a
+ * {@linkplain ForkJoinPool}. The source is split into chunks of whole lines,
+ * and each pass works on all chunks in parallel:
+ * <ol>
+ * <li>the first pass splits the chunks into lines and collects the labels of
+ * each chunk, which are then merged into one label table, in the order of
+ * the chunks,
+ * <li>the second pass tokenizes the lines, resolves the label references and
+ * creates the instructions and constants of each chunk.
+ * </ol>
+ * The created locations are then written into the memory of the computer, in
+ * the order of their addresses.
+ * <p>
+ * The assembler accepts exactly the language of the {@linkplain ProgramParser}
+ * and writes the same contents into the memory. If the program is invalid,
+ * the assembler throws the exception the parser would throw for the first
+ * invalid line, and the locations the parser would write before that line are
+ * written. The instruction creator must be safe for use by multiple threads,
+ * as the {@linkplain InstructionRegistry} is. It may be asked for
+ * instructions of lines after the first invalid line.
+ * <p>
+ * Sources smaller than the minimum chunk size are parsed in one chunk by the
+ * calling thread.
+ *
+ * @author Mario Bobic
+ */
+public class ParallelAssembler {
+
+    /** Default minimum number of bytes of a chunk. */
+    public static final int DEFAULT_MIN_CHUNK_SIZE = 64 * 1024;
+
+    /** Number of chunks per thread of the pool, for load balancing. */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /** The pool that parses the chunks. */
+    private final ForkJoinPool pool;
+    /** Minimum number of bytes of a chunk. */
+    private final int minChunkSize;
+
+    /**
+     * Constructs an assembler that parses on the common pool.
+     */
+    public ParallelAssembler() {
+        this(ForkJoinPool.commonPool(), DEFAULT_MIN_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructs an assembler that parses on the specified pool, splitting the
+     * source into chunks of at least the specified number of bytes.
+     *
+     * @param pool the pool that parses the chunks
+     * @param minChunkSize minimum number of bytes of a chunk
+     * @throws IllegalArgumentException if the minimum chunk size is not positive
+     */
+    public ParallelAssembler(ForkJoinPool pool, int minChunkSize) {
+        if (minChunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + minChunkSize);
+        }
+        this.pool = pool;
+        this.minChunkSize = minChunkSize;
+    }
+
+    /**
+     * Parses the program from the file of the specified name into the memory
+     * of the specified computer on the common pool, as
+     * {@linkplain ProgramParser#parse(String, Computer, InstructionCreator)}
+     * would.
+     *
+     * @param fileName name of the file containing the program, encoded in UTF-8
+     * @param computer the computer
+     * @param creator creator of the instructions
+     * @throws Exception if the file can not be read or the program can not be parsed
+     */
+    public static void parse(String fileName, Computer computer, InstructionCreator creator) throws Exception {
+        byte[] source;
+        try (InputStream in = new FileInputStream(fileName)) {
+            source = readAll(in);
+        }
+        new ParallelAssembler().assemble(source, computer, creator);
+    }
+
+    /**
+     * Parses the specified program <tt>source</tt> into the memory of the
+     * specified computer and sets its stack register if the program defines
+     * the <tt>@stackTop</tt> label.
+     *
+     * @param source the program source, encoded in UTF-8
+     * @param computer the computer
+     * @param creator creator of the instructions
+     * @throws Exception if the program can not be parsed
+     */
+    public void assemble(byte[] source, Computer computer, InstructionCreator creator) throws Exception {
+        Chunk[] chunks = split(source);
+
+        // First pass: lines and labels of each chunk, merged in order.
+        run(chunks, null, null);
+        Map<String, Integer> labels = new HashMap<>();
+        int address = 0;
+        for (Chunk chunk : chunks) {
+            chunk.address = address;
+            for (int i = 0, n = chunk.labelNames.size(); i < n; i++) {
+                String label = chunk.labelNames.get(i);
+                if (labels.containsKey(label)) {
+                    throw new IllegalArgumentException("Label " + label + " is already defined!");
+                }
+                labels.put(label, address + chunk.labelOffsets.get(i));
+            }
+            if (chunk.failure != null) {
+                throw chunk.failure;
+            }
+            address += chunk.lines.size();
+        }
+
+        // Second pass: contents of the locations of each chunk.
+        run(chunks, labels, creator);
+        Memory memory = computer.getMemory();
+        for (Chunk chunk : chunks) {
+            for (int i = 0; i < chunk.generated; i++) {
+                memory.setLocation(chunk.address + i, chunk.cells[i]);
+            }
+            if (chunk.failure != null) {
+                throw chunk.failure;
+            }
+        }
+
+        Integer stackTop = labels.get("@stackTop");
+        if (stackTop != null) {
+            computer.getRegisters().setRegisterValue(Registers.STACK_REGISTER_INDEX, stackTop);
+        }
+    }
+
+    /**
+     * Splits the specified source into chunks that end with a line feed or
+     * at the end of the source.
+     *
+     * @param source the program source
+     * @return chunks of the source
+     */
+    private Chunk[] split(byte[] source) {
+        long bySize = (source.length + (long) minChunkSize - 1) / minChunkSize;
+        int count = (int) Math.max(1, Math.min(bySize, (long) pool.getParallelism() * CHUNKS_PER_THREAD));
+
+        Chunk[] chunks = new Chunk[count];
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            int end = i == count - 1 ? source.length : (int) ((long) source.length * (i + 1) / count);
+            end = Math.max(start, end);
+            while (end < source.length && end > 0 && source[end - 1] != '\n') {
+                end++;
+            }
+            chunks[i] = new Chunk(source, start, end);
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * Runs the first pass over the specified chunks if <tt>labels</tt> is
+     * <tt>null</tt>, otherwise the second pass.
+     *
+     * @param chunks the chunks
+     * @param labels addresses of the labels, or <tt>null</tt>
+     * @param creator creator of the instructions
+     */
+    private void run(Chunk[] chunks, Map<String, Integer> labels, InstructionCreator creator) {
+        if (chunks.length == 1) {
+            new PassTask(chunks, 0, 1, labels, creator).compute();
+        } else {
+            pool.invoke(new PassTask(chunks, 0, chunks.length, labels, creator));
+        }
+    }
+
+    /**
+     * Reads all bytes of the specified input stream.
+     *
+     * @param in the input stream
+     * @return bytes of the stream
+     * @throws IOException if an I/O error occurs
+     */
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        for (int n; (n = in.read(buffer)) != -1;) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * A task that runs one pass over a range of chunks.
+     */
+    private static class PassTask extends RecursiveAction {
+
+        /** Serial version UID. */
+        private static final long serialVersionUID = 1L;
+
+        /** The chunks. */
+        private final Chunk[] chunks;
+        /** Start of the range, inclusive. */
+        private final int from;
+        /** End of the range, exclusive. */
+        private final int to;
+        /** Addresses of the labels, or <tt>null</tt> in the first pass. */
+        private final Map<String, Integer> labels;
+        /** Creator of the instructions. */
+        private final InstructionCreator creator;
+
+        /**
+         * Constructs a task for the chunks in the specified range.
+         *
+         * @param chunks the chunks
+         * @param from start of the range, inclusive
+         * @param to end of the range, exclusive
+         * @param labels addresses of the labels, or <tt>null</tt> in the first pass
+         * @param creator creator of the instructions
+         */
+        PassTask(Chunk[] chunks, int from, int to, Map<String, Integer> labels, InstructionCreator creator) {
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+            this.labels = labels;
+            this.creator = creator;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                if (labels == null) {
+                    chunks[from].scan();
+                } else {
+                    chunks[from].generate(labels, creator);
+                }
+                return;
+            }
+
+            int mid = (from + to) >>> 1;
+            invokeAll(new PassTask(chunks, from, mid, labels, creator),
+                      new PassTask(chunks, mid, to, labels, creator));
+        }
+    }
+
+    /**
+     * A chunk of whole lines of the source, with the results of both passes.
+     * Each pass stops at the first invalid line of the chunk.
+     */
+    private static class Chunk {
+
+        /** The program source. */
+        private final byte[] source;
+        /** Start of the chunk, inclusive. */
+        private final int start;
+        /** End of the chunk, exclusive. */
+        private final int end;
+
+        /** Lines of the chunk that take a location. */
+        final List<String> lines = new ArrayList<>();
+        /** Labels defined in the chunk. */
+        final List<String> labelNames = new ArrayList<>();
+        /** Offsets of the labels from the first location of the chunk. */
+        final List<Integer> labelOffsets = new ArrayList<>();
+        /** Address of the first location of the chunk. */
+        int address;
+        /** Contents of the locations of the chunk. */
+        Object[] cells;
+        /** Number of valid locations of the chunk. */
+        int generated;
+        /** Exception of the first invalid line, or <tt>null</tt>. */
+        Exception failure;
+
+        /**
+         * Constructs a chunk of the specified range of the source.
+         *
+         * @param source the program source
+         * @param start start of the chunk, inclusive
+         * @param end end of the chunk, exclusive
+         */
+        Chunk(byte[] source, int start, int end) {
+            this.source = source;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Splits the chunk into lines and collects its labels, skipping empty
+         * lines and comments and expanding <tt>RESERVE:</tt> statements.
+         */
+        void scan() {
+            String text = new String(source, start, end - start, StandardCharsets.UTF_8);
+            try {
+                for (String line : LineParser.splitLines(text)) {
+                    scanLine(line);
+                }
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+
+        /**
+         * Processes the specified line in the first pass.
+         *
+         * @param line the line
+         */
+        private void scanLine(String line) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                return;
+            }
+            if (line.startsWith("@")) {
+                int colon = line.indexOf(':');
+                labelNames.add(line.substring(0, colon));
+                labelOffsets.add(lines.size());
+                line = line.substring(colon + 1).trim();
+            }
+            if (line.startsWith("RESERVE:")) {
+                int count = LineParser.reserveCount(line.substring("RESERVE:".length()));
+                for (int i = 0; i < count; i++) {
+                    lines.add(LineParser.RESERVED);
+                }
+            } else {
+                lines.add(line);
+            }
+        }
+
+        /**
+         * Creates the contents of the locations of the chunk.
+         *
+         * @param labels addresses of the labels
+         * @param creator creator of the instructions
+         */
+        void generate(Map<String, Integer> labels, InstructionCreator creator) {
+            cells = new Object[lines.size()];
+            LineParser parser = new LineParser(labels);
+            try {
+                for (String line : lines) {
+                    cells[generated] = line == LineParser.RESERVED
+                            ? Integer.valueOf(0)
+                            : parser.generate(line, creator);
+                    generated++;
+                }
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,50 @@
+package hr.fer.zemris.java.simplecomp.impl;
+
+import hr.fer.zemris.java.simplecomp.models.Memory;
+
+/**
+ * An extension of the {@linkplain Memory} interface for memories that store
+ * integers as primitive values. Instructions may use the primitive accessors of
+ * this interface on their hot paths to read and write integer locations without
+ * boxing them into {@linkplain Integer} objects.
+ * <p>
+ * The primitive accessors and the object accessors inherited from the
+ * {@linkplain Memory} interface operate on the same locations, so an integer
+ * written by {@linkplain #setInt(int, int)} is read as an {@linkplain Integer}
+ * by {@linkplain #getLocation(int)} and vice versa.
+ *
+ * @author Mario Bobic
+ * @see PrimitiveRegisters
+ */
+public interface PrimitiveMemory extends Memory {
+
+    /**
+     * Returns true if the specified memory <tt>location</tt> holds an integer.
+     *
+     * @param location the memory location
+     * @return true if the location holds an integer
+     * @throws IndexOutOfBoundsException if location is out of range
+     */
+    boolean isInt(int location);
+
+    /**
+     * Returns the integer held by the specified memory <tt>location</tt>.
+     *
+     * @param location the memory location
+     * @return the integer held by the location
+     * @throws IndexOutOfBoundsException if location is out of range
+     * @throws IllegalStateException if the location does not hold an integer
+     */
+    int getInt(int location);
+
+    /**
+     * Sets the specified memory <tt>location</tt> to the specified integer
+     * <tt>value</tt>.
+     *
+     * @param location the memory location
+     * @param value the integer value
+     * @throws IndexOutOfBoundsException if location is out of range
+     */
+    void setInt(int location, int value);
+
+}
@@ -0,0 +1,51 @@
+package hr.fer.zemris.java.simplecomp.impl;
+
+import hr.fer.zemris.java.simplecomp.models.Registers;
+
+/**
+ * An extension of the {@linkplain Registers} interface for register files that
+ * store integers as primitive values. Instructions may use the primitive
+ * accessors of this interface on their hot paths to read and write integer
+ * registers without boxing them into {@linkplain Integer} objects.
+ * <p>
+ * The primitive accessors and the object accessors inherited from the
+ * {@linkplain Registers} interface operate on the same registers, so an
+ * integer written by {@linkplain #setInt(int, int)} is read as an
+ * {@linkplain Integer} by {@linkplain #getRegisterValue(int)} and vice versa.
+ *
+ * @author Mario Bobic
+ */
+public interface PrimitiveRegisters extends Registers {
+
+    /**
+     * Returns true if the register at the specified <tt>index</tt> holds an
+     * integer.
+     *
+     * @param index the register index
+     * @return true if the register holds an integer
+     * @throws IndexOutOfBoundsException if register index is out of range
+     */
+    boolean isInt(int index);
+
+    /**
+     * Returns the integer held by the register at the specified
+     * <tt>index</tt>.
+     *
+     * @param index the register index
+     * @return the integer held by the register
+     * @throws IndexOutOfBoundsException if register index is out of range
+     * @throws IllegalStateException if the register does not hold an integer
+     */
+    int getInt(int index);
+
+    /**
+     * Sets the register at the specified <tt>index</tt> to the specified
+     * integer <tt>value</tt>.
+     *
+     * @param index the register index
+     * @param value the integer value
+     * @throws IndexOutOfBoundsException if register index is out of range
+     */
+    void setInt(int index, int value);
+
+}
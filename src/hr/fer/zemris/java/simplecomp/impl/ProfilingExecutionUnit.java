@@ -0,0 +1,373 @@
+package hr.fer.zemris.java.simplecomp.impl;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import hr.fer.zemris.java.simplecomp.impl.instructions.FusedPushPushCall;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrCall;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrRet;
+import hr.fer.zemris.java.simplecomp.models.*;
+
+/**
+ * An execution unit that interprets the program like the
+ * {@linkplain ExecutionUnitImpl} and profiles it on the way. It counts
+ * <ul>
+ * <li>the executions of each memory location,
+ * <li>the calls of each subroutine, and the instructions executed inside it
+ * including the subroutines it calls, counting recursive calls only once,
+ * <li>how often each backward jump is taken, which are the iterations of the
+ * loops of the program.
+ * </ul>
+ * When the program ends, the report of the hottest locations, subroutines and
+ * loops is written to the report stream, if it is given. Locations are mapped
+ * back to the lines and labels of the program if a {@linkplain SourceMap} is
+ * given.
+ * <p>
+ * Profiling has to be chosen explicitly, by executing the program with this
+ * unit. The other execution units do not profile, so they pay nothing for it.
+ *
+ * @author Mario Bobic
+ */
+public class ProfilingExecutionUnit implements ExecutionUnit {
+
+    /** Default number of entries of each part of the report. */
+    public static final int DEFAULT_REPORT_SIZE = 10;
+
+    /** Initial capacity of the per-location counters. */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /** Source map of the program, or <tt>null</tt>. */
+    private final SourceMap sourceMap;
+    /** Stream the report is written to, or <tt>null</tt>. */
+    private final PrintStream report;
+    /** Number of entries of each part of the report. */
+    private final int reportSize;
+
+    /** Number of instructions executed during the last execution. */
+    private long steps;
+    /** Executions per location. */
+    private long[] executions;
+    /** Calls per subroutine location. */
+    private long[] calls;
+    /** Inclusive steps per subroutine location. */
+    private long[] inclusiveSteps;
+    /** Number of active calls per subroutine location. */
+    private int[] activeCalls;
+    /** Taken backward jumps per jump location. */
+    private long[] backJumps;
+    /** Target of the last taken backward jump per jump location. */
+    private int[] backJumpTargets;
+
+    /** Subroutine locations of the active calls. */
+    private int[] frameTargets;
+    /** Steps at the start of the active calls. */
+    private long[] frameStarts;
+    /** Number of active calls. */
+    private int depth;
+
+    /**
+     * Constructs a profiling execution unit that writes the report of
+     * {@value #DEFAULT_REPORT_SIZE} entries to the specified stream.
+     *
+     * @param sourceMap source map of the program, or <tt>null</tt>
+     * @param report stream the report is written to, or <tt>null</tt>
+     */
+    public ProfilingExecutionUnit(SourceMap sourceMap, PrintStream report) {
+        this(sourceMap, report, DEFAULT_REPORT_SIZE);
+    }
+
+    /**
+     * Constructs a profiling execution unit that writes the report of the
+     * specified number of entries to the specified stream.
+     * <p>
+     * Throws an {@linkplain IllegalArgumentException} if the report size is
+     * less than <tt>1</tt>.
+     *
+     * @param sourceMap source map of the program, or <tt>null</tt>
+     * @param report stream the report is written to, or <tt>null</tt>
+     * @param reportSize number of entries of each part of the report
+     * @throws IllegalArgumentException if the report size is invalid
+     */
+    public ProfilingExecutionUnit(SourceMap sourceMap, PrintStream report, int reportSize) {
+        if (reportSize < 1) {
+            throw new IllegalArgumentException("Report size must be positive: " + reportSize);
+        }
+        this.sourceMap = sourceMap;
+        this.report = report;
+        this.reportSize = reportSize;
+    }
+
+    @Override
+    public boolean go(Computer computer) {
+        Registers registers = computer.getRegisters();
+        Memory memory = computer.getMemory();
+
+        reset();
+        registers.setProgramCounter(0);
+
+        boolean halted = true;
+        while (true) {
+            int pc = registers.getProgramCounter();
+            registers.incrementProgramCounter();
+
+            try {
+                Instruction instruction = ExecutionUnitImpl.getInstruction(memory, pc);
+
+                ensureCapacity(pc);
+                executions[pc]++;
+                steps++;
+                boolean halt = instruction.execute(computer);
+                if (halt) break;
+
+                int next = registers.getProgramCounter();
+                if (instruction instanceof InstrCall || instruction instanceof FusedPushPushCall) {
+                    enter(next);
+                } else if (instruction instanceof InstrRet) {
+                    leave();
+                } else if (next <= pc) {
+                    backJumps[pc]++;
+                    backJumpTargets[pc] = next;
+                }
+            } catch (Throwable t) {
+                ExecutionUnitImpl.flushOutput(computer);
+                t.printStackTrace();
+                System.err.println("\t at instruction on address " + pc);
+                halted = false;
+                break;
+            }
+        }
+
+        while (depth > 0) {
+            leave();
+        }
+        if (report != null) {
+            ExecutionUnitImpl.flushOutput(computer);
+            printReport(report);
+        }
+        return halted;
+    }
+
+    /**
+     * Clears the counters of the previous execution.
+     */
+    private void reset() {
+        steps = 0;
+        executions = new long[INITIAL_CAPACITY];
+        calls = new long[INITIAL_CAPACITY];
+        inclusiveSteps = new long[INITIAL_CAPACITY];
+        activeCalls = new int[INITIAL_CAPACITY];
+        backJumps = new long[INITIAL_CAPACITY];
+        backJumpTargets = new int[INITIAL_CAPACITY];
+        frameTargets = new int[16];
+        frameStarts = new long[16];
+        depth = 0;
+    }
+
+    /**
+     * Grows the per-location counters so they hold the specified location.
+     *
+     * @param location the memory location
+     */
+    private void ensureCapacity(int location) {
+        if (location < executions.length) {
+            return;
+        }
+        int capacity = Math.max(location + 1, executions.length * 2);
+        executions = Arrays.copyOf(executions, capacity);
+        calls = Arrays.copyOf(calls, capacity);
+        inclusiveSteps = Arrays.copyOf(inclusiveSteps, capacity);
+        activeCalls = Arrays.copyOf(activeCalls, capacity);
+        backJumps = Arrays.copyOf(backJumps, capacity);
+        backJumpTargets = Arrays.copyOf(backJumpTargets, capacity);
+    }
+
+    /**
+     * Records a call of the subroutine at the specified location.
+     *
+     * @param target location of the subroutine
+     */
+    private void enter(int target) {
+        ensureCapacity(target);
+        calls[target]++;
+        activeCalls[target]++;
+
+        if (depth == frameTargets.length) {
+            frameTargets = Arrays.copyOf(frameTargets, depth * 2);
+            frameStarts = Arrays.copyOf(frameStarts, depth * 2);
+        }
+        frameTargets[depth] = target;
+        frameStarts[depth] = steps;
+        depth++;
+    }
+
+    /**
+     * Records a return from the innermost active call. The steps of the call
+     * are added to its subroutine if it is the outermost active call of the
+     * subroutine. Returns without a call are ignored.
+     */
+    private void leave() {
+        if (depth == 0) {
+            return;
+        }
+        depth--;
+        int target = frameTargets[depth];
+        if (--activeCalls[target] == 0) {
+            inclusiveSteps[target] += steps - frameStarts[depth];
+        }
+    }
+
+    /**
+     * Returns the number of instructions executed during the last execution,
+     * including the instruction that halted the program or failed.
+     *
+     * @return the number of executed instructions
+     */
+    public long getExecutedInstructions() {
+        return steps;
+    }
+
+    /**
+     * Returns the number of executions of the specified location during the
+     * last execution.
+     *
+     * @param location the memory location
+     * @return the number of executions
+     */
+    public long getExecutions(int location) {
+        return location >= 0 && location < executions.length ? executions[location] : 0;
+    }
+
+    /**
+     * Returns the number of calls of the subroutine at the specified location
+     * during the last execution.
+     *
+     * @param location location of the subroutine
+     * @return the number of calls
+     */
+    public long getCalls(int location) {
+        return location >= 0 && location < calls.length ? calls[location] : 0;
+    }
+
+    /**
+     * Returns the number of instructions executed inside the subroutine at
+     * the specified location during the last execution, including the
+     * subroutines it called.
+     *
+     * @param location location of the subroutine
+     * @return the number of inclusive steps
+     */
+    public long getInclusiveSteps(int location) {
+        return location >= 0 && location < inclusiveSteps.length ? inclusiveSteps[location] : 0;
+    }
+
+    /**
+     * Returns how often the jump at the specified location jumped backwards
+     * during the last execution.
+     *
+     * @param location location of the jump
+     * @return the number of taken backward jumps
+     */
+    public long getBackJumps(int location) {
+        return location >= 0 && location < backJumps.length ? backJumps[location] : 0;
+    }
+
+    /**
+     * Writes the report of the last execution to the specified stream.
+     *
+     * @param out the stream
+     */
+    public void printReport(PrintStream out) {
+        out.printf("Profile: %d instructions executed.%n", steps);
+
+        out.printf("%nHottest locations:%n");
+        out.printf("%12s %7s %8s %6s  %s%n", "executions", "%", "address", "line", "source");
+        for (int address : hottest(executions)) {
+            out.printf("%12d %6.1f%% %8d %6s  %s%n", executions[address], percent(executions[address]),
+                    address, line(address), text(address));
+        }
+
+        out.printf("%nHottest subroutines:%n");
+        out.printf("%12s %12s %7s %8s  %s%n", "calls", "steps", "%", "address", "subroutine");
+        for (int address : hottest(inclusiveSteps)) {
+            out.printf("%12d %12d %6.1f%% %8d  %s%n", calls[address], inclusiveSteps[address],
+                    percent(inclusiveSteps[address]), address, name(address));
+        }
+
+        out.printf("%nHottest loops:%n");
+        out.printf("%12s %8s %8s  %s%n", "taken", "jump", "target", "loop");
+        for (int address : hottest(backJumps)) {
+            int target = backJumpTargets[address];
+            out.printf("%12d %8d %8d  %s (lines %s-%s)%n", backJumps[address],
+                    address, target, name(target), line(target), line(address));
+        }
+        out.flush();
+    }
+
+    /**
+     * Returns the locations of the greatest non-zero counts, at most
+     * {@linkplain #reportSize} of them, starting from the greatest.
+     *
+     * @param counts the counts per location
+     * @return the locations of the greatest counts
+     */
+    private List<Integer> hottest(long[] counts) {
+        List<Integer> locations = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                locations.add(i);
+            }
+        }
+        locations.sort((a, b) -> counts[a] != counts[b] ? Long.compare(counts[b], counts[a]) : a - b);
+        return locations.subList(0, Math.min(reportSize, locations.size()));
+    }
+
+    /**
+     * Returns the percentage of the executed instructions of the specified
+     * count.
+     *
+     * @param count the count
+     * @return the percentage
+     */
+    private double percent(long count) {
+        return steps == 0 ? 0 : 100.0 * count / steps;
+    }
+
+    /**
+     * Returns the source line number of the specified location, or
+     * <tt>-</tt> if unknown.
+     *
+     * @param location the memory location
+     * @return the line number
+     */
+    private String line(int location) {
+        int line = sourceMap == null ? 0 : sourceMap.getLine(location);
+        return line == 0 ? "-" : Integer.toString(line);
+    }
+
+    /**
+     * Returns the source line of the specified location with tabs replaced by
+     * spaces, or an empty string if unknown.
+     *
+     * @param location the memory location
+     * @return the source line
+     */
+    private String text(int location) {
+        String text = sourceMap == null ? null : sourceMap.getText(location);
+        return text == null ? "" : text.replace('\t', ' ');
+    }
+
+    /**
+     * Returns the labels of the specified location, or its address if it has
+     * no labels.
+     *
+     * @param location the memory location
+     * @return name of the location
+     */
+    private String name(int location) {
+        List<String> labels = sourceMap == null ? null : sourceMap.getLabels(location);
+        return labels == null || labels.isEmpty() ? "address " + location : String.join(", ", labels);
+    }
+
+}
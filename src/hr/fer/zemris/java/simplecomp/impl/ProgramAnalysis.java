@@ -0,0 +1,1137 @@
+package hr.fer.zemris.java.simplecomp.impl;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+
+import hr.fer.zemris.java.simplecomp.RegisterUtil;
+import hr.fer.zemris.java.simplecomp.impl.instructions.AbstractInstrArithmeticOperation;
+import hr.fer.zemris.java.simplecomp.impl.instructions.AbstractInstrUnaryOperation;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrAdd;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrCall;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrDecrement;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrEcho;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrHalt;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrIinput;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrIncrement;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrJump;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrJumpIfTrue;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrLoad;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrMove;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrMul;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrPop;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrPush;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrRet;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrTestEquals;
+import hr.fer.zemris.java.simplecomp.impl.instructions.VerifiedArithmetic;
+import hr.fer.zemris.java.simplecomp.impl.instructions.VerifiedUnary;
+import hr.fer.zemris.java.simplecomp.models.Instruction;
+import hr.fer.zemris.java.simplecomp.models.InstructionArgument;
+import hr.fer.zemris.java.simplecomp.models.Memory;
+import hr.fer.zemris.java.simplecomp.models.Registers;
+
+/**
+ * A dataflow analysis of a program loaded into a memory, shared by the
+ * load-time passes that rewrite the program, such as the
+ * {@linkplain ProgramVerifier} and the {@linkplain ProgramOptimizer}.
+ * <p>
+ * The analysis runs over the instructions in the memory, starting at address
+ * <tt>0</tt> from the current registers of the computer. Before each
+ * reachable instruction it knows the possible kinds of each register (empty,
+ * integer or object), the range of its integers and the possible values of
+ * the flag. Memory locations written on every path with a known address, such
+ * as the stack cells, are known the same way; all other locations are known by
+ * their loaded contents, together with everything the program may store into
+ * them once they may have been written. A return address is known as the range
+ * of integers a <tt>ret</tt> may pop, and the location written by an
+ * <tt>iinput</tt> is known to hold an integer after a <tt>jumpIfTrue</tt> taken
+ * on its flag. The analysis also records the instructions that may follow
+ * each instruction.
+ * <p>
+ * A program can not be analyzed if it contains an instruction unknown to the
+ * analysis (including fused ones), or may write over one of its instructions.
+ * The facts are only valid for executions that start from the registers the
+ * program was analyzed with, which is how a loaded program is executed.
+ *
+ * @author Mario Bobic
+ */
+class ProgramAnalysis {
+
+    /** Kind of an empty value. */
+    private static final int EMPTY = 1;
+    /** Kind of an integer value. */
+    private static final int INT = 2;
+    /** Kind of any other value. */
+    private static final int OBJECT = 4;
+
+    /** Value of a flag that may be false. */
+    private static final int FALSE = 1;
+    /** Value of a flag that may be true. */
+    private static final int TRUE = 2;
+
+    /** Number of changes of the facts before an instruction after which their ranges are widened. */
+    private static final int WIDENING_DELAY = 8;
+    /** Maximum number of memory locations known before an instruction. */
+    private static final int MAX_TRACKED_CELLS = 64;
+    /** Maximum length of a range of locations that is analyzed location by location. */
+    private static final int MAX_RANGE = 1024;
+
+
+    /** Memory holding the program. */
+    private final Memory memory;
+    /** Instructions by address, <tt>null</tt> for locations holding data. */
+    private final Instruction[] code;
+    /** Number of registers of the computer. */
+    private final int registerCount;
+    /** Facts before each instruction, <tt>null</tt> for unreachable ones and data. */
+    private final State[] states;
+    /** Addresses of the instructions that may follow each instruction. */
+    private final int[][] successors;
+    /** Address of the instruction being analyzed. */
+    private int current;
+
+    /** Facts of the loaded memory contents, by location. */
+    private final Map<Integer, Fact> loaded = new HashMap<>();
+    /** Facts of everything stored into a location, by location. */
+    private final Map<Integer, Fact> stored = new HashMap<>();
+    /** Facts of everything stored into ranges too long to be analyzed. */
+    private Fact storedAnywhere = Fact.NONE;
+    /** Indicates that the stored facts changed since the last pass. */
+    private boolean storedChanged;
+    /** Indicates that the program can not be analyzed. */
+    private boolean failed;
+
+    /** Addresses of instructions whose facts changed. */
+    private final Queue<Integer> worklist = new ArrayDeque<>();
+    /** Indicates that an address is in the worklist. */
+    private final boolean[] queued;
+
+    /**
+     * Constructs the analysis of the program in the specified memory,
+     * starting from the specified registers.
+     *
+     * @param memory memory holding the program
+     * @param registers registers of the computer
+     */
+    ProgramAnalysis(Memory memory, RegistersImpl registers) {
+        this.memory = memory;
+        this.code = instructions(memory);
+        this.registerCount = registers.getLength();
+        this.states = new State[code.length];
+        this.successors = new int[code.length][];
+        this.queued = new boolean[code.length];
+
+        if (code.length > 0 && code[0] != null) {
+            Fact[] entry = new Fact[registerCount];
+            for (int i = 0; i < registerCount; i++) {
+                entry[i] = Fact.of(registers.getRegisterValue(i));
+            }
+            states[0] = new State(entry);
+            states[0].flag = registers.getFlag() ? TRUE : FALSE;
+            enqueue(0);
+        }
+    }
+
+    /**
+     * Returns the instructions in the specified memory by address, up to
+     * the last location holding an instruction.
+     *
+     * @param memory the memory
+     * @return the instructions by address
+     */
+    private static Instruction[] instructions(Memory memory) {
+        int length = 0;
+        for (int location = 0; ; location++) {
+            try {
+                if (memory.getLocation(location) instanceof Instruction) {
+                    length = location + 1;
+                }
+            } catch (IndexOutOfBoundsException e) {
+                break;
+            }
+        }
+
+        Instruction[] instructions = new Instruction[length];
+        for (int location = 0; location < length; location++) {
+            Object value = memory.getLocation(location);
+            if (value instanceof Instruction) {
+                instructions[location] = (Instruction) value;
+            }
+        }
+        return instructions;
+    }
+
+    /**
+     * Computes the facts before each reachable instruction. Returns
+     * false if the program can not be analyzed.
+     *
+     * @return true if the facts were computed
+     */
+    boolean run() {
+        do {
+            storedChanged = false;
+            while (!worklist.isEmpty()) {
+                int pc = worklist.poll();
+                queued[pc] = false;
+
+                current = pc;
+                execute(pc, states[pc].copy());
+                if (failed) {
+                    return false;
+                }
+            }
+
+            // facts read from the memory may have grown, so read them again
+            if (storedChanged) {
+                for (int pc = 0; pc < code.length; pc++) {
+                    if (states[pc] != null && readsMemory(code[pc])) enqueue(pc);
+                }
+            }
+        } while (storedChanged);
+
+        return true;
+    }
+
+    /**
+     * Returns the number of addresses up to the last instruction of the
+     * program.
+     *
+     * @return the length of the program
+     */
+    int getCodeLength() {
+        return code.length;
+    }
+
+    /**
+     * Returns the instruction on the specified address, or <tt>null</tt> if
+     * the address holds data.
+     *
+     * @param pc address of the instruction
+     * @return the instruction, or <tt>null</tt>
+     */
+    Instruction getInstruction(int pc) {
+        return code[pc];
+    }
+
+    /**
+     * Returns true if the instruction on the specified address may be
+     * executed.
+     *
+     * @param pc address of the instruction
+     * @return true if the instruction is reachable
+     */
+    boolean isReachable(int pc) {
+        return states[pc] != null;
+    }
+
+    /**
+     * Returns the addresses of the instructions that may follow the
+     * instruction on the specified address.
+     *
+     * @param pc address of the instruction
+     * @return addresses of the following instructions
+     */
+    int[] getSuccessors(int pc) {
+        return successors[pc] != null ? successors[pc] : new int[0];
+    }
+
+    /**
+     * Returns the number of registers of the computer.
+     *
+     * @return the number of registers
+     */
+    int getRegisterCount() {
+        return registerCount;
+    }
+
+    /**
+     * Returns true if the register at the specified index holds only
+     * integers before the instruction on the specified address.
+     *
+     * @param pc address of the instruction
+     * @param index the register index
+     * @return true if the register holds an integer
+     */
+    boolean isInt(int pc, int index) {
+        return isInt(states[pc].registers, index);
+    }
+
+    /**
+     * Returns the only integer the register at the specified index may hold
+     * before the instruction on the specified address, or <tt>null</tt> if
+     * it may hold anything else.
+     *
+     * @param pc address of the instruction
+     * @param index the register index
+     * @return the integer held by the register, or <tt>null</tt>
+     */
+    Integer getConstant(int pc, int index) {
+        if (!isInt(pc, index)) {
+            return null;
+        }
+        Fact value = states[pc].registers[index];
+        return value.min == value.max ? value.min : null;
+    }
+
+    /**
+     * Returns true if the register at the specified index holds only
+     * integers, and the memory location at the address it holds increased by
+     * the <tt>offset</tt> holds only integers, before the instruction on the
+     * specified address.
+     *
+     * @param pc address of the instruction
+     * @param index the register index
+     * @param offset offset of the memory location
+     * @return true if the location holds an integer
+     */
+    boolean readsInt(int pc, int index, int offset) {
+        if (!isInt(pc, index)) {
+            return false;
+        }
+        State state = states[pc];
+        Fact base = state.registers[index];
+        return read(state, (long) base.min + offset, (long) base.max + offset).isInt();
+    }
+
+    /**
+     * Returns the only value the flag may have before the instruction on the
+     * specified address, or <tt>null</tt> if it may be either.
+     *
+     * @param pc address of the instruction
+     * @return the value of the flag, or <tt>null</tt>
+     */
+    Boolean getFlag(int pc) {
+        int flag = states[pc].flag;
+        return flag == (FALSE | TRUE) ? null : flag == TRUE;
+    }
+
+    /**
+     * Applies the instruction on the specified address to the specified
+     * facts, and passes the facts after it to the instructions that may
+     * follow it. An instruction that always fails is followed by none.
+     *
+     * @param pc address of the instruction
+     * @param state facts before the instruction, owned by this method
+     */
+    private void execute(int pc, State state) {
+        Instruction instruction = code[pc];
+        Fact[] registers = state.registers;
+        int stack = Registers.STACK_REGISTER_INDEX;
+
+        if (instruction instanceof AbstractInstrArithmeticOperation) {
+            AbstractInstrArithmeticOperation op = (AbstractInstrArithmeticOperation) instruction;
+            if (!isValid(op.getRegisterIndex1()) || !mayBeInt(registers, op.getRegisterIndex2())
+                    || !mayBeInt(registers, op.getRegisterIndex3())) {
+                return;
+            }
+            registers[op.getRegisterIndex1()] = arithmetic(op,
+                    registers[op.getRegisterIndex2()], registers[op.getRegisterIndex3()]);
+            follow(pc + 1, state);
+
+        } else if (instruction instanceof AbstractInstrUnaryOperation) {
+            AbstractInstrUnaryOperation op = (AbstractInstrUnaryOperation) instruction;
+            if (!mayBeInt(registers, op.getRegisterIndex())) {
+                return;
+            }
+            registers[op.getRegisterIndex()] = unary(op, registers[op.getRegisterIndex()]);
+            follow(pc + 1, state);
+
+        } else if (instruction instanceof InstrTestEquals) {
+            InstrTestEquals test = (InstrTestEquals) instruction;
+            if (!isValid(test.getRegisterIndex1()) || !isValid(test.getRegisterIndex2())) {
+                return;
+            }
+            state.flag = compare(registers[test.getRegisterIndex1()], registers[test.getRegisterIndex2()]);
+            state.inputLocation = -1;
+            follow(pc + 1, state);
+
+        } else if (instruction instanceof InstrMove) {
+            if (move((InstrMove) instruction, state)) {
+                follow(pc + 1, state);
+            }
+
+        } else if (instruction instanceof InstrLoad) {
+            InstrLoad load = (InstrLoad) instruction;
+            Fact value = read(state, load.getMemoryLocation(), load.getMemoryLocation());
+            if (!isValid(load.getRegisterIndex()) || value == Fact.NONE) {
+                return;
+            }
+            registers[load.getRegisterIndex()] = value;
+            follow(pc + 1, state);
+
+        } else if (instruction instanceof InstrPush) {
+            InstrPush push = (InstrPush) instruction;
+            if (!mayBeInt(registers, stack) || !isValid(push.getRegisterIndex())) {
+                return;
+            }
+            Fact sp = registers[stack];
+            store(state, sp.min, sp.max, registers[push.getRegisterIndex()], true);
+            registers[stack] = Fact.integer((long) sp.min - 1, (long) sp.max - 1);
+            follow(pc + 1, state);
+
+        } else if (instruction instanceof InstrPop) {
+            InstrPop pop = (InstrPop) instruction;
+            if (!mayBeInt(registers, stack) || !isValid(pop.getRegisterIndex())) {
+                return;
+            }
+            Fact sp = registers[stack];
+            Fact value = read(state, (long) sp.min + 1, (long) sp.max + 1);
+            if (value == Fact.NONE) {
+                return;
+            }
+            registers[stack] = Fact.integer((long) sp.min + 1, (long) sp.max + 1);
+            registers[pop.getRegisterIndex()] = value;
+            follow(pc + 1, state);
+
+        } else if (instruction instanceof InstrCall) {
+            if (!mayBeInt(registers, stack)) {
+                return;
+            }
+            Fact sp = registers[stack];
+            store(state, sp.min, sp.max, Fact.integer(pc + 1, pc + 1), true);
+            registers[stack] = Fact.integer((long) sp.min - 1, (long) sp.max - 1);
+            follow(((InstrCall) instruction).getMemoryLocation(), state);
+
+        } else if (instruction instanceof InstrRet) {
+            if (!mayBeInt(registers, stack)) {
+                return;
+            }
+            Fact sp = registers[stack];
+            Fact address = read(state, (long) sp.min + 1, (long) sp.max + 1);
+            if ((address.kinds & INT) == 0) {
+                return;
+            }
+            registers[stack] = Fact.integer((long) sp.min + 1, (long) sp.max + 1);
+            returnTo(address, state);
+
+        } else if (instruction instanceof InstrJumpIfTrue) {
+            if ((state.flag & TRUE) != 0) {
+                State taken = state.copy();
+                taken.flag = TRUE;
+                if (taken.inputLocation >= 0) {
+                    // the flag is set only if the input was stored
+                    taken.track(taken.inputLocation, Fact.ANY_INT);
+                }
+                follow(((InstrJumpIfTrue) instruction).getMemoryLocation(), taken);
+            }
+            if ((state.flag & FALSE) != 0) {
+                state.flag = FALSE;
+                follow(pc + 1, state);
+            }
+
+        } else if (instruction instanceof InstrJump) {
+            follow(((InstrJump) instruction).getMemoryLocation(), state);
+
+        } else if (instruction instanceof InstrHalt) {
+            return;
+
+        } else if (instruction instanceof InstrEcho) {
+            int descriptor = ((InstrEcho) instruction).getRegisterDescriptor();
+            int index = RegisterUtil.getRegisterIndex(descriptor);
+            if (RegisterUtil.isIndirect(descriptor) ? !mayBeInt(registers, index) : !isValid(index)) {
+                return;
+            }
+            follow(pc + 1, state);
+
+        } else if (instruction instanceof InstrIinput) {
+            int location = ((InstrIinput) instruction).getMemoryLocation();
+            store(state, location, location, Fact.ANY_INT, false);
+            state.flag = FALSE | TRUE;
+            state.inputLocation = location;
+            follow(pc + 1, state);
+
+        } else {
+            // anything may happen
+            failed = true;
+        }
+    }
+
+    /**
+     * Applies the specified <tt>move</tt> to the specified facts. Returns
+     * false if the move always fails.
+     *
+     * @param move the instruction
+     * @param state facts before the instruction
+     * @return true if the move may succeed
+     */
+    private boolean move(InstrMove move, State state) {
+        Fact[] registers = state.registers;
+
+        Fact value;
+        InstructionArgument argument = move.getArgument();
+        if (argument.isRegister()) {
+            int source = (Integer) argument.getValue();
+            int index = RegisterUtil.getRegisterIndex(source);
+            if (!RegisterUtil.isIndirect(source)) {
+                if (!isValid(index)) return false;
+                value = registers[index];
+            } else {
+                if (!mayBeInt(registers, index)) return false;
+                int offset = RegisterUtil.getRegisterOffset(source);
+                value = read(state, (long) registers[index].min + offset, (long) registers[index].max + offset);
+                if (value == Fact.NONE) return false;
+            }
+        } else {
+            value = Fact.of(argument.getValue());
+        }
+
+        int descriptor = move.getRegisterDescriptor();
+        int index = RegisterUtil.getRegisterIndex(descriptor);
+        if (!RegisterUtil.isIndirect(descriptor)) {
+            if (!isValid(index)) return false;
+            registers[index] = value;
+        } else {
+            if (!mayBeInt(registers, index)) return false;
+            int offset = RegisterUtil.getRegisterOffset(descriptor);
+            store(state, (long) registers[index].min + offset, (long) registers[index].max + offset, value, true);
+        }
+        return true;
+    }
+
+    /**
+     * Passes the specified facts to the instructions a <tt>ret</tt> may
+     * return to, which are the addresses of the specified return address.
+     *
+     * @param address facts of the return address
+     * @param state facts after the <tt>ret</tt>
+     */
+    private void returnTo(Fact address, State state) {
+        if ((long) address.max - address.min >= MAX_RANGE) {
+            failed = true;
+            return;
+        }
+        for (int target = address.min; target <= address.max; target++) {
+            follow(target, target == address.max ? state : state.copy());
+            if (failed) return;
+        }
+    }
+
+    /**
+     * Joins the specified facts into the facts before the instruction on
+     * the specified address, and queues the instruction if its facts
+     * changed. Nothing follows an address that does not hold an
+     * instruction, as executing it fails.
+     *
+     * @param target address of the next instruction
+     * @param state facts after the previous instruction, owned by this method
+     */
+    private void follow(int target, State state) {
+        if (target < 0 || target >= code.length || code[target] == null) {
+            return;
+        }
+        addSuccessor(current, target);
+
+        State current = states[target];
+        if (current == null) {
+            states[target] = state;
+            enqueue(target);
+        } else if (current.join(state, current.changes >= WIDENING_DELAY)) {
+            current.changes++;
+            enqueue(target);
+        }
+    }
+
+    /**
+     * Records that the instruction on the <tt>target</tt> address may follow
+     * the instruction on the <tt>pc</tt> address.
+     *
+     * @param pc address of the instruction
+     * @param target address of the following instruction
+     */
+    private void addSuccessor(int pc, int target) {
+        int[] targets = successors[pc];
+        if (targets == null) {
+            successors[pc] = new int[] {target};
+            return;
+        }
+        for (int t : targets) {
+            if (t == target) return;
+        }
+        targets = Arrays.copyOf(targets, targets.length + 1);
+        targets[targets.length - 1] = target;
+        successors[pc] = targets;
+    }
+
+    /**
+     * Queues the instruction on the specified address, unless it is queued.
+     *
+     * @param pc address of the instruction
+     */
+    private void enqueue(int pc) {
+        if (!queued[pc]) {
+            queued[pc] = true;
+            worklist.add(pc);
+        }
+    }
+
+    /**
+     * Returns true if the specified instruction reads a value from the
+     * memory into a register or the program counter.
+     *
+     * @param instruction the instruction
+     * @return true if the instruction reads the memory
+     */
+    private static boolean readsMemory(Instruction instruction) {
+        if (instruction instanceof InstrMove) {
+            InstructionArgument argument = ((InstrMove) instruction).getArgument();
+            return argument.isRegister() && RegisterUtil.isIndirect((Integer) argument.getValue());
+        }
+        return instruction instanceof InstrLoad
+                || instruction instanceof InstrPop
+                || instruction instanceof InstrRet;
+    }
+
+    /**
+     * Returns the facts of a value read from a location between
+     * <tt>from</tt> and <tt>to</tt>, or {@linkplain Fact#NONE} if every
+     * such location is outside the memory.
+     *
+     * @param state facts before the instruction
+     * @param from the lowest location
+     * @param to the highest location
+     * @return facts of the read value
+     */
+    private Fact read(State state, long from, long to) {
+        from = Math.max(from, 0);
+        if (to < from) {
+            return Fact.NONE;
+        }
+        if (to - from >= MAX_RANGE) {
+            return Fact.ANY;
+        }
+
+        Fact value = Fact.NONE;
+        for (int location = (int) from; location <= to; location++) {
+            Fact known = state.cells.get(location);
+            if (known != null) {
+                value = value.join(known);
+                continue;
+            }
+
+            Fact contents = loaded(location);
+            if (contents != Fact.NONE && (state.writtenAnywhere || state.written.get(location))) {
+                Fact written = stored.get(location);
+                contents = contents.join(written != null ? written : Fact.NONE).join(storedAnywhere);
+            }
+            value = value.join(contents);
+        }
+        return value;
+    }
+
+    /**
+     * Applies a store of the specified value into a location between
+     * <tt>from</tt> and <tt>to</tt>. A store into a known location
+     * replaces the value of the location if it is <tt>certain</tt>, and
+     * is joined with it otherwise. Fails the verification if the store
+     * may write over an instruction.
+     *
+     * @param state facts before the instruction
+     * @param from the lowest location
+     * @param to the highest location
+     * @param value facts of the stored value
+     * @param certain true if the value is certainly stored
+     */
+    private void store(State state, long from, long to, Fact value, boolean certain) {
+        from = Math.max(from, 0);
+        if (to < from) {
+            return;
+        }
+        for (long location = from; location <= to && location < code.length; location++) {
+            if (code[(int) location] != null) {
+                // the program may modify itself
+                failed = true;
+                return;
+            }
+        }
+        if (state.inputLocation >= from && state.inputLocation <= to) {
+            state.inputLocation = -1;
+        }
+
+        state.own();
+        if (to - from >= MAX_RANGE) {
+            state.writtenAnywhere = true;
+        } else {
+            state.written.set((int) from, (int) to + 1);
+        }
+
+        if (from == to && certain) {
+            state.track((int) from, value);
+            storeInto((int) from, value);
+            return;
+        }
+
+        for (Map.Entry<Integer, Fact> cell : state.cells.entrySet()) {
+            if (cell.getKey() >= from && cell.getKey() <= to) {
+                cell.setValue(cell.getValue().join(value));
+            }
+        }
+        if (to - from >= MAX_RANGE) {
+            Fact joined = storedAnywhere.join(value).widen(storedAnywhere);
+            if (!joined.equals(storedAnywhere)) {
+                storedAnywhere = joined;
+                storedChanged = true;
+            }
+        } else {
+            for (int location = (int) from; location <= to; location++) {
+                storeInto(location, value);
+            }
+        }
+    }
+
+    /**
+     * Joins the specified value into everything stored into the specified
+     * location.
+     *
+     * @param location the location
+     * @param value facts of the stored value
+     */
+    private void storeInto(int location, Fact value) {
+        Fact previous = stored.get(location);
+        Fact joined = previous == null ? value : previous.join(value).widen(previous);
+        if (!joined.equals(previous)) {
+            stored.put(location, joined);
+            storedChanged = true;
+        }
+    }
+
+    /**
+     * Returns the facts of the loaded contents of the specified location,
+     * or {@linkplain Fact#NONE} if the location is outside the memory.
+     *
+     * @param location the location
+     * @return facts of the loaded contents
+     */
+    private Fact loaded(int location) {
+        Fact contents = loaded.get(location);
+        if (contents == null) {
+            try {
+                contents = Fact.of(memory.getLocation(location));
+            } catch (IndexOutOfBoundsException e) {
+                contents = Fact.NONE;
+            }
+            loaded.put(location, contents);
+        }
+        return contents;
+    }
+
+    /**
+     * Returns true if the specified register index is valid.
+     *
+     * @param index the register index
+     * @return true if the index is valid
+     */
+    private boolean isValid(int index) {
+        return index < registerCount;
+    }
+
+    /**
+     * Returns true if the register at the specified index is valid and
+     * may hold an integer.
+     *
+     * @param registers facts of the registers
+     * @param index the register index
+     * @return true if the register may hold an integer
+     */
+    private boolean mayBeInt(Fact[] registers, int index) {
+        return isValid(index) && (registers[index].kinds & INT) != 0;
+    }
+
+    /**
+     * Returns true if the register at the specified index is valid and
+     * holds only integers.
+     *
+     * @param registers facts of the registers
+     * @param index the register index
+     * @return true if the register holds an integer
+     */
+    private boolean isInt(Fact[] registers, int index) {
+        return isValid(index) && registers[index].isInt();
+    }
+
+    /**
+     * Returns the possible values of the flag after comparing values of the
+     * specified facts.
+     *
+     * @param a facts of the first value
+     * @param b facts of the second value
+     * @return the possible values of the flag
+     */
+    private static int compare(Fact a, Fact b) {
+        if (!a.isInt() || !b.isInt()) {
+            return FALSE | TRUE;
+        }
+        if (a.max < b.min || b.max < a.min) {
+            return FALSE;
+        }
+        if (a.min == a.max && b.min == b.max) {
+            return TRUE;
+        }
+        return FALSE | TRUE;
+    }
+
+    /**
+     * Returns the facts of the result of the specified arithmetic
+     * operation on the specified operands.
+     *
+     * @param op the operation
+     * @param a facts of the first operand
+     * @param b facts of the second operand
+     * @return facts of the result
+     */
+    private static Fact arithmetic(AbstractInstrArithmeticOperation op, Fact a, Fact b) {
+        if (op instanceof VerifiedArithmetic) {
+            op = ((VerifiedArithmetic) op).getOperation();
+        }
+        if (op instanceof InstrAdd) {
+            return Fact.integer((long) a.min + b.min, (long) a.max + b.max);
+        }
+        if (op instanceof InstrMul) {
+            long p1 = (long) a.min * b.min;
+            long p2 = (long) a.min * b.max;
+            long p3 = (long) a.max * b.min;
+            long p4 = (long) a.max * b.max;
+            return Fact.integer(Math.min(Math.min(p1, p2), Math.min(p3, p4)),
+                    Math.max(Math.max(p1, p2), Math.max(p3, p4)));
+        }
+        return Fact.ANY_INT;
+    }
+
+    /**
+     * Returns the facts of the result of the specified unary operation on
+     * the specified operand.
+     *
+     * @param op the operation
+     * @param a facts of the operand
+     * @return facts of the result
+     */
+    private static Fact unary(AbstractInstrUnaryOperation op, Fact a) {
+        if (op instanceof VerifiedUnary) {
+            op = ((VerifiedUnary) op).getOperation();
+        }
+        if (op instanceof InstrIncrement) {
+            return Fact.integer((long) a.min + 1, (long) a.max + 1);
+        }
+        if (op instanceof InstrDecrement) {
+            return Fact.integer((long) a.min - 1, (long) a.max - 1);
+        }
+        return Fact.ANY_INT;
+    }
+
+    /**
+     * Facts known before an instruction.
+     */
+    private static class State {
+
+        /** Facts of the registers. */
+        final Fact[] registers;
+        /** Facts of the locations written on every path, by location. */
+        Map<Integer, Fact> cells;
+        /** Locations that may have been written. */
+        BitSet written;
+        /** Indicates that the locations may be shared with a copy. */
+        private boolean shared;
+        /** Indicates that any location may have been written. */
+        boolean writtenAnywhere;
+        /** Possible values of the flag. */
+        int flag;
+        /** Location written by the <tt>iinput</tt> that set the flag, or <tt>-1</tt>. */
+        int inputLocation = -1;
+        /** Number of times these facts changed. */
+        int changes;
+
+        /**
+         * Constructs facts of the specified registers.
+         *
+         * @param registers facts of the registers
+         */
+        State(Fact[] registers) {
+            this(registers, new HashMap<>());
+            this.written = new BitSet();
+        }
+
+        /**
+         * Constructs facts of the specified registers and locations.
+         *
+         * @param registers facts of the registers
+         * @param cells facts of the locations
+         */
+        private State(Fact[] registers, Map<Integer, Fact> cells) {
+            this.registers = registers;
+            this.cells = cells;
+        }
+
+        /**
+         * Returns a copy of these facts. The facts of the locations are
+         * shared until either of the facts modifies them.
+         *
+         * @return a copy of these facts
+         */
+        State copy() {
+            State copy = new State(Arrays.copyOf(registers, registers.length), cells);
+            copy.written = written;
+            copy.shared = shared = true;
+            copy.writtenAnywhere = writtenAnywhere;
+            copy.flag = flag;
+            copy.inputLocation = inputLocation;
+            return copy;
+        }
+
+        /**
+         * Takes ownership of the facts of the locations, so that they may be
+         * modified. Must be called before they are modified.
+         */
+        void own() {
+            if (shared) {
+                cells = new HashMap<>(cells);
+                written = (BitSet) written.clone();
+                shared = false;
+            }
+        }
+
+        /**
+         * Sets the facts of the specified location, if there is room for it.
+         *
+         * @param location the location
+         * @param value facts of the location
+         */
+        void track(int location, Fact value) {
+            own();
+            if (cells.size() < MAX_TRACKED_CELLS || cells.containsKey(location)) {
+                cells.put(location, value);
+            }
+        }
+
+        /**
+         * Joins the specified facts into these facts and returns true if
+         * these facts changed. If <tt>widen</tt> is true, the ranges that
+         * grew are widened to all integers on the side they grew.
+         *
+         * @param other facts to be joined
+         * @param widen true if ranges should be widened
+         * @return true if these facts changed
+         */
+        boolean join(State other, boolean widen) {
+            boolean changed = false;
+
+            for (int i = 0; i < registers.length; i++) {
+                Fact joined = join(registers[i], other.registers[i], widen);
+                if (joined != registers[i]) {
+                    registers[i] = joined;
+                    changed = true;
+                }
+            }
+
+            if ((cells != other.cells || written != other.written) && !includesLocations(other, widen)) {
+                joinLocations(other, widen);
+                changed = true;
+            }
+            if (other.writtenAnywhere && !writtenAnywhere) {
+                writtenAnywhere = true;
+                changed = true;
+            }
+            if ((flag | other.flag) != flag) {
+                flag |= other.flag;
+                changed = true;
+            }
+
+            if (inputLocation != other.inputLocation && inputLocation != -1) {
+                inputLocation = -1;
+                changed = true;
+            }
+            return changed;
+        }
+
+        /**
+         * Returns true if joining the facts of the locations of the specified
+         * facts would not change the facts of the locations of these facts.
+         *
+         * @param other facts to be joined
+         * @param widen true if ranges should be widened
+         * @return true if the facts of the locations would not change
+         */
+        private boolean includesLocations(State other, boolean widen) {
+            for (Map.Entry<Integer, Fact> cell : cells.entrySet()) {
+                Fact value = other.cells.get(cell.getKey());
+                if (value == null || join(cell.getValue(), value, widen) != cell.getValue()) {
+                    return false;
+                }
+            }
+            for (int i = other.written.nextSetBit(0); i >= 0; i = other.written.nextSetBit(i + 1)) {
+                if (!written.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Joins the facts of the locations of the specified facts into the
+         * facts of the locations of these facts.
+         *
+         * @param other facts to be joined
+         * @param widen true if ranges should be widened
+         */
+        private void joinLocations(State other, boolean widen) {
+            own();
+
+            Iterator<Map.Entry<Integer, Fact>> iterator = cells.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Integer, Fact> cell = iterator.next();
+                Fact value = other.cells.get(cell.getKey());
+                if (value == null) {
+                    iterator.remove();
+                } else {
+                    cell.setValue(join(cell.getValue(), value, widen));
+                }
+            }
+            written.or(other.written);
+        }
+
+        /**
+         * Returns the join of the specified facts, or the <tt>previous</tt>
+         * facts if they already include the <tt>other</tt>.
+         *
+         * @param previous the previous facts
+         * @param other facts to be joined
+         * @param widen true if ranges should be widened
+         * @return the joined facts
+         */
+        private static Fact join(Fact previous, Fact other, boolean widen) {
+            Fact joined = previous.join(other);
+            if (widen) {
+                joined = joined.widen(previous);
+            }
+            return joined.equals(previous) ? previous : joined;
+        }
+    }
+
+    /**
+     * Facts of a value: its possible kinds and the range of its integers.
+     */
+    private static final class Fact {
+
+        /** Facts of no value, such as of a location outside the memory. */
+        static final Fact NONE = new Fact(0, 0, 0);
+        /** Facts of any integer. */
+        static final Fact ANY_INT = new Fact(INT, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        /** Facts of any value. */
+        static final Fact ANY = new Fact(EMPTY | INT | OBJECT, Integer.MIN_VALUE, Integer.MAX_VALUE);
+
+        /** Possible kinds of the value. */
+        final int kinds;
+        /** The least integer the value may be. */
+        final int min;
+        /** The greatest integer the value may be. */
+        final int max;
+
+        /**
+         * Constructs facts with the specified kinds and range.
+         *
+         * @param kinds possible kinds of the value
+         * @param min the least integer
+         * @param max the greatest integer
+         */
+        private Fact(int kinds, int min, int max) {
+            this.kinds = kinds;
+            this.min = min;
+            this.max = max;
+        }
+
+        /**
+         * Returns the facts of the specified value.
+         *
+         * @param value the value
+         * @return facts of the value
+         */
+        static Fact of(Object value) {
+            if (value == null) {
+                return new Fact(EMPTY, 0, 0);
+            }
+            if (value instanceof Integer) {
+                int n = (Integer) value;
+                return new Fact(INT, n, n);
+            }
+            return new Fact(OBJECT, 0, 0);
+        }
+
+        /**
+         * Returns the facts of an integer between the specified bounds. The
+         * bounds are computed without overflow, so a range that does not fit
+         * into an integer stands for any integer.
+         *
+         * @param min the least integer
+         * @param max the greatest integer
+         * @return facts of the integer
+         */
+        static Fact integer(long min, long max) {
+            if (min < Integer.MIN_VALUE || max > Integer.MAX_VALUE) {
+                return ANY_INT;
+            }
+            return new Fact(INT, (int) min, (int) max);
+        }
+
+        /**
+         * Returns true if the value is certainly an integer.
+         *
+         * @return true if the value is an integer
+         */
+        boolean isInt() {
+            return kinds == INT;
+        }
+
+        /**
+         * Returns the facts of a value that is either this value or the
+         * specified one.
+         *
+         * @param other facts of the other value
+         * @return the joined facts
+         */
+        Fact join(Fact other) {
+            if ((other.kinds | kinds) == kinds && (other.kinds & INT) != 0 && other.min >= min && other.max <= max) {
+                return this;
+            }
+            if ((other.kinds & INT) == 0) {
+                return (kinds | other.kinds) == kinds ? this : new Fact(kinds | other.kinds, min, max);
+            }
+            if ((kinds & INT) == 0) {
+                return new Fact(kinds | other.kinds, other.min, other.max);
+            }
+            return new Fact(kinds | other.kinds, Math.min(min, other.min), Math.max(max, other.max));
+        }
+
+        /**
+         * Returns these facts with the bounds that grew since the specified
+         * <tt>previous</tt> facts widened to all integers.
+         *
+         * @param previous the previous facts
+         * @return the widened facts
+         */
+        Fact widen(Fact previous) {
+            if ((kinds & INT) == 0 || (previous.kinds & INT) == 0) {
+                return this;
+            }
+            int widenedMin = min < previous.min ? Integer.MIN_VALUE : min;
+            int widenedMax = max > previous.max ? Integer.MAX_VALUE : max;
+            return widenedMin == min && widenedMax == max ? this : new Fact(kinds, widenedMin, widenedMax);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Fact)) {
+                return false;
+            }
+            Fact other = (Fact) obj;
+            return kinds == other.kinds && min == other.min && max == other.max;
+        }
+
+        @Override
+        public int hashCode() {
+            return (kinds * 31 + min) * 31 + max;
+        }
+    }
+
+}
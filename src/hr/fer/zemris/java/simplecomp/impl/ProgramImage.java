@@ -0,0 +1,506 @@
+package hr.fer.zemris.java.simplecomp.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import hr.fer.zemris.java.simplecomp.models.Computer;
+import hr.fer.zemris.java.simplecomp.models.Instruction;
+import hr.fer.zemris.java.simplecomp.models.InstructionArgument;
+import hr.fer.zemris.java.simplecomp.models.InstructionCreator;
+import hr.fer.zemris.java.simplecomp.models.Memory;
+import hr.fer.zemris.java.simplecomp.models.Registers;
+import hr.fer.zemris.java.simplecomp.parser.ProgramParser;
+
+/**
+ * An assembled program: the contents of the memory locations the
+ * {@linkplain ProgramParser} writes when it parses the program, starting from
+ * location <tt>0</tt>, and the initial value of the stack register, which the
+ * parser sets to the address of the <tt>@stackTop</tt> label if the program
+ * defines it. An image is immutable and holds only instructions,
+ * which keep nothing but their decoded operands, and constants, so one image
+ * can be {@linkplain #loadInto(Computer) loaded} into any number of computers.
+ * <p>
+ * Besides the contents, an image remembers the name and the arguments each of
+ * its instructions was created from. This allows an image to be
+ * {@linkplain #write(DataOutputStream) written} to a stream and
+ * {@linkplain #read(DataInputStream, InstructionCreator) read} back, creating
+ * the instructions again without parsing the program.
+ *
+ * @author Mario Bobic
+ * @see ProgramImageCache
+ */
+public class ProgramImage {
+
+    /** Magic number of a written image. */
+    private static final int MAGIC = 0x53435049;
+    /** Version of the written image format. */
+    private static final int VERSION = 1;
+
+    /** Number of registers of the computer programs are assembled into. */
+    private static final int REGISTERS = 16;
+
+    /** Kind of an empty cell in the written image. */
+    private static final byte CELL_EMPTY = 0;
+    /** Kind of an integer cell in the written image. */
+    private static final byte CELL_INT = 1;
+    /** Kind of a string cell in the written image. */
+    private static final byte CELL_STRING = 2;
+    /** Kind of an instruction cell in the written image. */
+    private static final byte CELL_INSTRUCTION = 3;
+
+    /** Kind of a register argument in the written image. */
+    private static final byte ARG_REGISTER = 0;
+    /** Kind of a number argument in the written image. */
+    private static final byte ARG_NUMBER = 1;
+    /** Kind of a string argument in the written image. */
+    private static final byte ARG_STRING = 2;
+
+    /** Contents of the memory locations. */
+    private final Object[] cells;
+    /** Tags of the memory locations, as used by the {@linkplain MemoryImpl}. */
+    private final byte[] tags;
+    /** Integer values of the memory locations. */
+    private final int[] values;
+    /** Initial value of the stack register, or <tt>null</tt>. */
+    private final Integer stackTop;
+    /** Names of the instructions, or <tt>null</tt> for constants. */
+    private final String[] names;
+    /** Arguments of the instructions, or <tt>null</tt> for constants. */
+    private final List<List<InstructionArgument>> arguments;
+
+    /**
+     * Constructs an image with the specified contents.
+     *
+     * @param cells contents of the memory locations
+     * @param stackTop initial value of the stack register, or <tt>null</tt>
+     * @param names names of the instructions
+     * @param arguments arguments of the instructions
+     */
+    ProgramImage(Object[] cells, Integer stackTop, String[] names,
+            List<List<InstructionArgument>> arguments) {
+        this.cells = cells;
+        this.stackTop = stackTop;
+        this.names = names;
+        this.arguments = arguments;
+        this.tags = new byte[cells.length];
+        this.values = new int[cells.length];
+
+        for (int i = 0; i < cells.length; i++) {
+            Object cell = cells[i];
+            if (cell instanceof Integer) {
+                tags[i] = MemoryImpl.INT;
+                values[i] = (Integer) cell;
+            } else if (cell != null) {
+                tags[i] = MemoryImpl.OBJECT;
+            }
+        }
+    }
+
+    /**
+     * Assembles the specified program <tt>source</tt>, creating instructions
+     * from classes of the specified package.
+     *
+     * @param source the program source, encoded in UTF-8
+     * @param instructionPackage package of the instruction classes
+     * @return image of the program
+     * @throws Exception if the program can not be parsed
+     */
+    public static ProgramImage assemble(byte[] source, String instructionPackage) throws Exception {
+        RecordingCreator creator = new RecordingCreator(InstructionRegistry.forPackage(instructionPackage));
+        ImageMemory memory = new ImageMemory();
+        Registers registers = new RegistersImpl(REGISTERS);
+
+        ProgramParser.parse(
+                new InputStreamReader(new ByteArrayInputStream(source), StandardCharsets.UTF_8),
+                new ComputerImpl(memory, registers),
+                creator);
+        Integer stackTop = (Integer) registers.getRegisterValue(Registers.STACK_REGISTER_INDEX);
+
+        Object[] cells = memory.cells.toArray();
+        String[] names = new String[cells.length];
+        List<List<InstructionArgument>> arguments = new ArrayList<>(Collections.nCopies(cells.length, null));
+        for (int i = 0; i < cells.length; i++) {
+            Recipe recipe = creator.recipes.get(cells[i]);
+            if (recipe != null) {
+                names[i] = recipe.name;
+                arguments.set(i, recipe.arguments);
+            }
+        }
+        return new ProgramImage(cells, stackTop, names, arguments);
+    }
+
+    /**
+     * Returns the number of memory locations of this image.
+     *
+     * @return the number of memory locations
+     */
+    public int size() {
+        return cells.length;
+    }
+
+    /**
+     * Returns the content of the specified memory <tt>location</tt> of this
+     * image.
+     *
+     * @param location the memory location
+     * @return the content of the location
+     * @throws IndexOutOfBoundsException if location is out of range
+     */
+    public Object getCell(int location) {
+        return cells[location];
+    }
+
+    /**
+     * Returns the name of the instruction at the specified memory
+     * <tt>location</tt> of this image, or <tt>null</tt> if the location does
+     * not hold an instruction created from a name.
+     *
+     * @param location the memory location
+     * @return name of the instruction, or <tt>null</tt>
+     */
+    String getName(int location) {
+        return names[location];
+    }
+
+    /**
+     * Returns the arguments of the instruction at the specified memory
+     * <tt>location</tt> of this image, or <tt>null</tt> if the location does
+     * not hold an instruction created from a name.
+     *
+     * @param location the memory location
+     * @return arguments of the instruction, or <tt>null</tt>
+     */
+    List<InstructionArgument> getArguments(int location) {
+        return arguments.get(location);
+    }
+
+    /**
+     * Returns the initial value of the stack register, or <tt>null</tt> if
+     * the program does not define the <tt>@stackTop</tt> label.
+     *
+     * @return the initial value of the stack register, or <tt>null</tt>
+     */
+    public Integer getStackTop() {
+        return stackTop;
+    }
+
+    /**
+     * Loads this image into the memory of the specified computer, starting
+     * from location <tt>0</tt>, and sets its stack register as the parser
+     * would. A {@linkplain MemoryImpl} is loaded by one bulk copy of the tags
+     * and integer values, other memories location by location.
+     *
+     * @param computer the computer
+     * @throws IndexOutOfBoundsException if the image does not fit the memory
+     */
+    public void loadInto(Computer computer) {
+        Memory memory = computer.getMemory();
+        if (memory instanceof MemoryImpl) {
+            ((MemoryImpl) memory).load(tags, values, cells);
+        } else {
+            for (int i = 0; i < cells.length; i++) {
+                memory.setLocation(i, cells[i]);
+            }
+        }
+
+        if (stackTop != null) {
+            computer.getRegisters().setRegisterValue(Registers.STACK_REGISTER_INDEX, stackTop);
+        }
+    }
+
+    /**
+     * Returns true if this image can be {@linkplain #write(DataOutputStream)
+     * written}, which is if it holds only integers, strings and instructions
+     * with known arguments.
+     *
+     * @return true if this image can be written
+     */
+    public boolean isWritable() {
+        for (int i = 0; i < cells.length; i++) {
+            Object cell = cells[i];
+            if (cell instanceof Instruction ? names[i] == null
+                    : cell != null && !(cell instanceof Integer) && !(cell instanceof String)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes this image to the specified stream.
+     *
+     * @param out the output stream
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalStateException if this image is not
+     *         {@linkplain #isWritable() writable}
+     */
+    public void write(DataOutputStream out) throws IOException {
+        if (!isWritable()) {
+            throw new IllegalStateException("Image holds values that can not be written.");
+        }
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeBoolean(stackTop != null);
+        if (stackTop != null) {
+            out.writeInt(stackTop);
+        }
+        out.writeInt(cells.length);
+        for (int i = 0; i < cells.length; i++) {
+            Object cell = cells[i];
+            if (cell == null) {
+                out.writeByte(CELL_EMPTY);
+            } else if (cell instanceof Integer) {
+                out.writeByte(CELL_INT);
+                out.writeInt((Integer) cell);
+            } else if (cell instanceof String) {
+                out.writeByte(CELL_STRING);
+                out.writeUTF((String) cell);
+            } else {
+                out.writeByte(CELL_INSTRUCTION);
+                out.writeUTF(names[i]);
+                writeArguments(out, arguments.get(i));
+            }
+        }
+    }
+
+    /**
+     * Writes the specified instruction arguments to the specified stream.
+     *
+     * @param out the output stream
+     * @param args the instruction arguments
+     * @throws IOException if an I/O error occurs
+     */
+    private static void writeArguments(DataOutputStream out, List<InstructionArgument> args) throws IOException {
+        out.writeByte(args.size());
+        for (InstructionArgument arg : args) {
+            if (arg.isString()) {
+                out.writeByte(ARG_STRING);
+                out.writeUTF((String) arg.getValue());
+            } else {
+                out.writeByte(arg.isRegister() ? ARG_REGISTER : ARG_NUMBER);
+                out.writeInt((Integer) arg.getValue());
+            }
+        }
+    }
+
+    /**
+     * Reads an image from the specified stream, creating its instructions by
+     * the specified instruction creator.
+     *
+     * @param in the input stream
+     * @param creator creator of the instructions
+     * @return the read image
+     * @throws IOException if an I/O error occurs or the stream does not hold
+     *         a valid image
+     */
+    public static ProgramImage read(DataInputStream in, InstructionCreator creator) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Not a program image.");
+        }
+
+        Integer stackTop = in.readBoolean() ? in.readInt() : null;
+        int size = in.readInt();
+        if (size < 0) {
+            throw new IOException("Invalid image size: " + size);
+        }
+
+        Object[] cells = new Object[size];
+        String[] names = new String[size];
+        List<List<InstructionArgument>> arguments = new ArrayList<>(Collections.nCopies(size, null));
+        for (int i = 0; i < size; i++) {
+            byte kind = in.readByte();
+            switch (kind) {
+                case CELL_EMPTY:
+                    break;
+                case CELL_INT:
+                    cells[i] = in.readInt();
+                    break;
+                case CELL_STRING:
+                    cells[i] = in.readUTF();
+                    break;
+                case CELL_INSTRUCTION:
+                    names[i] = in.readUTF();
+                    arguments.set(i, readArguments(in));
+                    try {
+                        cells[i] = creator.getInstruction(names[i], arguments.get(i));
+                    } catch (RuntimeException e) {
+                        throw new IOException("Can not create instruction " + names[i] + ": " + e.getMessage(), e);
+                    }
+                    break;
+                default:
+                    throw new IOException("Invalid cell kind: " + kind);
+            }
+        }
+        return new ProgramImage(cells, stackTop, names, arguments);
+    }
+
+    /**
+     * Reads instruction arguments from the specified stream.
+     *
+     * @param in the input stream
+     * @return the instruction arguments
+     * @throws IOException if an I/O error occurs or an argument is invalid
+     */
+    private static List<InstructionArgument> readArguments(DataInputStream in) throws IOException {
+        int count = in.readUnsignedByte();
+        List<InstructionArgument> args = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte kind = in.readByte();
+            switch (kind) {
+                case ARG_REGISTER:
+                    args.add(new Argument(true, false, false, in.readInt()));
+                    break;
+                case ARG_NUMBER:
+                    args.add(new Argument(false, false, true, in.readInt()));
+                    break;
+                case ARG_STRING:
+                    args.add(new Argument(false, true, false, in.readUTF()));
+                    break;
+                default:
+                    throw new IOException("Invalid argument kind: " + kind);
+            }
+        }
+        return Collections.unmodifiableList(args);
+    }
+
+    /**
+     * The name and the arguments an instruction was created from.
+     */
+    private static class Recipe {
+
+        /** Name of the instruction. */
+        final String name;
+        /** Arguments of the instruction. */
+        final List<InstructionArgument> arguments;
+
+        /**
+         * Constructs a recipe with the specified name and arguments.
+         *
+         * @param name name of the instruction
+         * @param arguments arguments of the instruction
+         */
+        Recipe(String name, List<InstructionArgument> arguments) {
+            this.name = name;
+            this.arguments = arguments;
+        }
+    }
+
+    /**
+     * An instruction creator that remembers the recipe of every instruction
+     * created by the wrapped creator.
+     */
+    private static class RecordingCreator implements InstructionCreator {
+
+        /** The wrapped creator. */
+        private final InstructionCreator creator;
+        /** Recipes of the created instructions. */
+        final Map<Object, Recipe> recipes = new IdentityHashMap<>();
+
+        /**
+         * Constructs a recording creator wrapping the specified creator.
+         *
+         * @param creator the wrapped creator
+         */
+        RecordingCreator(InstructionCreator creator) {
+            this.creator = creator;
+        }
+
+        @Override
+        public Instruction getInstruction(String name, List<InstructionArgument> args) {
+            Instruction instruction = creator.getInstruction(name, args);
+
+            List<InstructionArgument> copy = new ArrayList<>(args.size());
+            for (InstructionArgument arg : args) {
+                copy.add(new Argument(arg.isRegister(), arg.isString(), arg.isNumber(), arg.getValue()));
+            }
+            recipes.put(instruction, new Recipe(name, Collections.unmodifiableList(copy)));
+            return instruction;
+        }
+    }
+
+    /**
+     * An immutable instruction argument.
+     */
+    static class Argument implements InstructionArgument {
+
+        /** Indicates if the argument is a register. */
+        private final boolean register;
+        /** Indicates if the argument is a string. */
+        private final boolean string;
+        /** Indicates if the argument is a number. */
+        private final boolean number;
+        /** Value of the argument. */
+        private final Object value;
+
+        /**
+         * Constructs an argument with the specified values.
+         *
+         * @param register true if the argument is a register
+         * @param string true if the argument is a string
+         * @param number true if the argument is a number
+         * @param value value of the argument
+         */
+        Argument(boolean register, boolean string, boolean number, Object value) {
+            this.register = register;
+            this.string = string;
+            this.number = number;
+            this.value = value;
+        }
+
+        @Override
+        public boolean isRegister() {
+            return register;
+        }
+
+        @Override
+        public boolean isString() {
+            return string;
+        }
+
+        @Override
+        public boolean isNumber() {
+            return number;
+        }
+
+        @Override
+        public Object getValue() {
+            return value;
+        }
+    }
+
+    /**
+     * A memory that grows to hold any location the parser writes.
+     */
+    private static class ImageMemory implements Memory {
+
+        /** Contents of the locations. */
+        final List<Object> cells = new ArrayList<>();
+
+        @Override
+        public void setLocation(int location, Object value) {
+            if (location < 0) {
+                throw new IndexOutOfBoundsException("Location: " + location);
+            }
+            while (cells.size() <= location) {
+                cells.add(null);
+            }
+            cells.set(location, value);
+        }
+
+        @Override
+        public Object getLocation(int location) {
+            return location < cells.size() ? cells.get(location) : null;
+        }
+    }
+
+}
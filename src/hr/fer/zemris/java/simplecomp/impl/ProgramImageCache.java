@@ -0,0 +1,278 @@
+package hr.fer.zemris.java.simplecomp.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of {@linkplain ProgramImage}s, keyed by the SHA-256 hash of the
+ * program source and the instruction package, so a program is assembled only
+ * once for as long as its source does not change.
+ * <p>
+ * The cache has two levels. The first level keeps the most recently used
+ * images in memory, up to the capacity given to the constructor. The second,
+ * optional level keeps written images in a directory, one file per image named
+ * after its key, so that images survive the process. A program found in
+ * neither level is assembled and stored in both. Files that can not be read
+ * are ignored and replaced, and images that can not be
+ * {@linkplain ProgramImage#isWritable() written} are kept in memory only.
+ * <p>
+ * This class is thread-safe. Two threads that miss the same program at the
+ * same time may both assemble it, in which case one of the equal images is
+ * kept.
+ *
+ * @author Mario Bobic
+ */
+public class ProgramImageCache {
+
+    /** Default number of images kept in memory. */
+    public static final int DEFAULT_CAPACITY = 64;
+    /** Extension of image files. */
+    private static final String EXTENSION = ".img";
+
+    /** Images kept in memory, in access order. */
+    private final Map<String, ProgramImage> images;
+    /** Directory of image files, or <tt>null</tt>. */
+    private final Path directory;
+
+    /** Number of images found in memory. */
+    private final AtomicLong memoryHits = new AtomicLong();
+    /** Number of images read from the directory. */
+    private final AtomicLong diskHits = new AtomicLong();
+    /** Number of requests found in neither level. */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructs a cache that keeps images in memory only.
+     *
+     * @param capacity number of images kept in memory
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public ProgramImageCache(int capacity) {
+        this(capacity, null);
+    }
+
+    /**
+     * Constructs a cache that keeps images in memory and in the specified
+     * directory, which is created if it does not exist.
+     *
+     * @param capacity number of images kept in memory
+     * @param directory directory of image files, or <tt>null</tt> to keep
+     *        images in memory only
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public ProgramImageCache(int capacity, Path directory) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive.");
+        }
+        this.directory = directory;
+        this.images = new LinkedHashMap<String, ProgramImage>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ProgramImage> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the image of the program at the specified <tt>path</tt>, with
+     * instructions from classes of the specified package.
+     *
+     * @param path path to the program
+     * @param instructionPackage package of the instruction classes
+     * @return image of the program
+     * @throws IOException if the program can not be read
+     * @throws Exception if the program can not be parsed
+     */
+    public ProgramImage get(Path path, String instructionPackage) throws Exception {
+        return get(Files.readAllBytes(path), instructionPackage);
+    }
+
+    /**
+     * Returns the image of the specified program <tt>source</tt>, with
+     * instructions from classes of the specified package.
+     *
+     * @param source the program source, encoded in UTF-8
+     * @param instructionPackage package of the instruction classes
+     * @return image of the program
+     * @throws Exception if the program can not be parsed
+     */
+    public ProgramImage get(byte[] source, String instructionPackage) throws Exception {
+        String key = key(source, instructionPackage);
+
+        ProgramImage image;
+        synchronized (images) {
+            image = images.get(key);
+        }
+        if (image != null) {
+            memoryHits.incrementAndGet();
+            return image;
+        }
+
+        image = readImage(key, instructionPackage);
+        if (image != null) {
+            diskHits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            image = ProgramImage.assemble(source, instructionPackage);
+            writeImage(key, image);
+        }
+
+        synchronized (images) {
+            images.put(key, image);
+        }
+        return image;
+    }
+
+    /**
+     * Returns the number of images kept in memory.
+     *
+     * @return the number of images in memory
+     */
+    public int size() {
+        synchronized (images) {
+            return images.size();
+        }
+    }
+
+    /**
+     * Returns the number of requests answered from memory.
+     *
+     * @return the number of memory hits
+     */
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    /**
+     * Returns the number of requests answered from the directory.
+     *
+     * @return the number of disk hits
+     */
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    /**
+     * Returns the number of requests that assembled the program.
+     *
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Reads the image with the specified key from the directory. Returns
+     * <tt>null</tt> if there is no directory, no such image or it can not be
+     * read.
+     *
+     * @param key key of the image
+     * @param instructionPackage package of the instruction classes
+     * @return the image, or <tt>null</tt>
+     */
+    private ProgramImage readImage(String key, String instructionPackage) {
+        if (directory == null) {
+            return null;
+        }
+
+        Path file = directory.resolve(key + EXTENSION);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            return ProgramImage.read(in, InstructionRegistry.forPackage(instructionPackage));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the specified image into the directory under the specified key,
+     * through a temporary file so that readers never see a partial image.
+     * Does nothing if there is no directory or the image can not be written.
+     *
+     * @param key key of the image
+     * @param image the image
+     */
+    private void writeImage(String key, ProgramImage image) {
+        if (directory == null || !image.isWritable()) {
+            return;
+        }
+
+        Path temp = null;
+        try {
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, key, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                image.write(out);
+            }
+
+            Path file = directory.resolve(key + EXTENSION);
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            // the image stays in memory only
+            deleteQuietly(temp);
+        }
+    }
+
+    /**
+     * Deletes the specified file, ignoring any errors.
+     *
+     * @param file the file, or <tt>null</tt>
+     */
+    private static void deleteQuietly(Path file) {
+        if (file == null) return;
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignorable) {}
+    }
+
+    /**
+     * Returns the key of the specified program source and instruction
+     * package, which is the hexadecimal SHA-256 hash of both.
+     *
+     * @param source the program source
+     * @param instructionPackage package of the instruction classes
+     * @return key of the program
+     */
+    static String key(byte[] source, String instructionPackage) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new InternalError("SHA-256 must be supported.", e);
+        }
+
+        digest.update(instructionPackage.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        byte[] hash = digest.digest(source);
+
+        StringBuilder sb = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,504 @@
+package hr.fer.zemris.java.simplecomp.impl;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import hr.fer.zemris.java.simplecomp.RegisterUtil;
+import hr.fer.zemris.java.simplecomp.impl.instructions.AbstractInstrArithmeticOperation;
+import hr.fer.zemris.java.simplecomp.impl.instructions.AbstractInstrUnaryOperation;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrAdd;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrCall;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrDecrement;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrEcho;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrIinput;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrIncrement;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrJump;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrJumpIfTrue;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrLoad;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrMove;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrMul;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrPop;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrPush;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrRet;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrTestEquals;
+import hr.fer.zemris.java.simplecomp.models.Computer;
+import hr.fer.zemris.java.simplecomp.models.Instruction;
+import hr.fer.zemris.java.simplecomp.models.InstructionArgument;
+import hr.fer.zemris.java.simplecomp.models.Memory;
+import hr.fer.zemris.java.simplecomp.models.Registers;
+
+/**
+ * A load-time pass that optimizes a program using the facts of a
+ * {@linkplain ProgramAnalysis}. The pass:
+ * <ul>
+ * <li>folds <tt>add</tt>, <tt>mul</tt>, <tt>increment</tt> and
+ * <tt>decrement</tt> of known integers into a <tt>move</tt> of the result,
+ * <li>folds a <tt>jumpIfTrue</tt> on a known flag into a <tt>jump</tt>, or
+ * removes it,
+ * <li>removes moves of a value the register already holds,
+ * <li>removes stores into registers and into the flag that are never read,
+ * <li>threads jumps and calls through removed instructions and other jumps.
+ * </ul>
+ * The program is rewritten in place, so every address keeps its meaning: a
+ * removed instruction is replaced by a <tt>jump</tt> to the first instruction
+ * executed after it, or is left in place, where it has no effect, if that
+ * instruction directly follows it. Unreachable instructions and data are left
+ * as they are. The final
+ * contents of the registers and the flag are kept, as is everything the
+ * program writes to the memory and the output.
+ * <p>
+ * The whole program is left as it is if it can not be analyzed, that is if it
+ * contains an instruction unknown to the analysis (including fused ones), or
+ * may write over one of its instructions. The pass should therefore be run
+ * before the {@linkplain InstructionFuser}, and before the
+ * {@linkplain ProgramVerifier} as verified operations are not folded. It must
+ * be run after the program is loaded and before it is executed, on the
+ * computer that executes it.
+ *
+ * @author Mario Bobic
+ */
+public abstract class ProgramOptimizer {
+
+    /** Index of the flag in the sets of live registers. */
+    private static final int FLAG = 256;
+
+    /**
+     * Optimizes the program loaded into the specified <tt>computer</tt> and
+     * returns the number of rewritten instructions. Returns <tt>0</tt> if the
+     * program can not be optimized, or if the computer does not have
+     * {@linkplain RegistersImpl}.
+     *
+     * @param computer computer holding the program
+     * @return the number of rewritten instructions
+     */
+    public static int optimize(Computer computer) {
+        if (!(computer.getRegisters() instanceof RegistersImpl)) {
+            return 0;
+        }
+
+        ProgramAnalysis analysis = new ProgramAnalysis(computer.getMemory(), (RegistersImpl) computer.getRegisters());
+        if (!analysis.run()) {
+            return 0;
+        }
+        return new Optimization(analysis).rewrite(computer.getMemory());
+    }
+
+    /**
+     * Optimization of an analyzed program. Instructions are first folded,
+     * then the registers live after each instruction are computed on the
+     * folded program, and the instructions storing only into registers that
+     * are not live are removed.
+     */
+    private static class Optimization {
+
+        /** Analysis of the program. */
+        private final ProgramAnalysis analysis;
+        /** Number of addresses up to the last instruction. */
+        private final int length;
+        /** Instructions after folding, by address. */
+        private final Instruction[] folded;
+        /** Indicates that the instruction on an address is removed. */
+        private final boolean[] removed;
+        /** Registers and flag read by each folded instruction. */
+        private final BitSet[] uses;
+        /** Registers and flag written by each folded instruction. */
+        private final BitSet[] defs;
+        /** Registers and flag live after each instruction. */
+        private final BitSet[] liveOut;
+
+        /**
+         * Constructs an optimization of the specified analyzed program.
+         *
+         * @param analysis analysis of the program
+         */
+        Optimization(ProgramAnalysis analysis) {
+            this.analysis = analysis;
+            this.length = analysis.getCodeLength();
+            this.folded = new Instruction[length];
+            this.removed = new boolean[length];
+            this.uses = new BitSet[length];
+            this.defs = new BitSet[length];
+            this.liveOut = new BitSet[length];
+
+            for (int pc = 0; pc < length; pc++) {
+                if (analysis.isReachable(pc)) {
+                    folded[pc] = analysis.getInstruction(pc);
+                    fold(pc);
+                }
+            }
+            computeLiveness();
+            for (int pc = 0; pc < length; pc++) {
+                if (analysis.isReachable(pc) && !removed[pc] && isPure(pc)) {
+                    BitSet stored = (BitSet) defs[pc].clone();
+                    stored.and(liveOut[pc]);
+                    removed[pc] = stored.isEmpty();
+                }
+            }
+        }
+
+        /**
+         * Folds the instruction on the specified address if its result is
+         * known, or removes it if it has no effect.
+         *
+         * @param pc address of the instruction
+         */
+        private void fold(int pc) {
+            Instruction instruction = folded[pc];
+
+            if (instruction instanceof AbstractInstrArithmeticOperation) {
+                AbstractInstrArithmeticOperation op = (AbstractInstrArithmeticOperation) instruction;
+                Integer a = analysis.getConstant(pc, op.getRegisterIndex2());
+                Integer b = analysis.getConstant(pc, op.getRegisterIndex3());
+                if (a != null && b != null && op.getRegisterIndex1() < analysis.getRegisterCount()) {
+                    if (op instanceof InstrAdd) {
+                        store(pc, op.getRegisterIndex1(), a + b);
+                    } else if (op instanceof InstrMul) {
+                        store(pc, op.getRegisterIndex1(), a * b);
+                    }
+                }
+
+            } else if (instruction instanceof AbstractInstrUnaryOperation) {
+                AbstractInstrUnaryOperation op = (AbstractInstrUnaryOperation) instruction;
+                Integer a = analysis.getConstant(pc, op.getRegisterIndex());
+                if (a != null) {
+                    if (op instanceof InstrIncrement) {
+                        store(pc, op.getRegisterIndex(), a + 1);
+                    } else if (op instanceof InstrDecrement) {
+                        store(pc, op.getRegisterIndex(), a - 1);
+                    }
+                }
+
+            } else if (instruction instanceof InstrMove) {
+                InstrMove move = (InstrMove) instruction;
+                int destination = move.getRegisterDescriptor();
+                InstructionArgument argument = move.getArgument();
+                if (RegisterUtil.isIndirect(destination) || destination >= analysis.getRegisterCount()) {
+                    return;
+                }
+
+                if (!argument.isRegister()) {
+                    Object value = argument.getValue();
+                    removed[pc] = value instanceof Integer && value.equals(analysis.getConstant(pc, destination));
+                } else {
+                    int source = (Integer) argument.getValue();
+                    if (!RegisterUtil.isIndirect(source) && source < analysis.getRegisterCount()) {
+                        Integer value = analysis.getConstant(pc, source);
+                        removed[pc] = source == destination
+                                || value != null && value.equals(analysis.getConstant(pc, destination));
+                    }
+                }
+
+            } else if (instruction instanceof InstrJumpIfTrue) {
+                Boolean flag = analysis.getFlag(pc);
+                if (flag == Boolean.TRUE) {
+                    folded[pc] = jump(((InstrJumpIfTrue) instruction).getMemoryLocation());
+                } else if (flag == Boolean.FALSE) {
+                    removed[pc] = true;
+                }
+            }
+        }
+
+        /**
+         * Folds the instruction on the specified address into a move of the
+         * specified value into the register at the specified index, or
+         * removes it if the register already holds the value.
+         *
+         * @param pc address of the instruction
+         * @param index the register index
+         * @param value value of the register after the instruction
+         */
+        private void store(int pc, int index, int value) {
+            if (Integer.valueOf(value).equals(analysis.getConstant(pc, index))) {
+                removed[pc] = true;
+            } else {
+                folded[pc] = new InstrMove(Arrays.asList(
+                        new ProgramImage.Argument(true, false, false, index),
+                        new ProgramImage.Argument(false, false, true, value)
+                ));
+            }
+        }
+
+        /**
+         * Returns true if the folded instruction on the specified address
+         * always succeeds and only writes registers or the flag.
+         *
+         * @param pc address of the instruction
+         * @return true if the instruction is pure
+         */
+        private boolean isPure(int pc) {
+            Instruction instruction = folded[pc];
+
+            if (instruction instanceof InstrMove) {
+                InstrMove move = (InstrMove) instruction;
+                int destination = move.getRegisterDescriptor();
+                InstructionArgument argument = move.getArgument();
+                if (RegisterUtil.isIndirect(destination) || destination >= analysis.getRegisterCount()) {
+                    return false;
+                }
+                if (!argument.isRegister()) {
+                    return argument.getValue() instanceof Integer;
+                }
+                int source = (Integer) argument.getValue();
+                return !RegisterUtil.isIndirect(source) && source < analysis.getRegisterCount();
+
+            } else if (instruction instanceof InstrTestEquals) {
+                InstrTestEquals test = (InstrTestEquals) instruction;
+                return analysis.isInt(pc, test.getRegisterIndex1()) && analysis.isInt(pc, test.getRegisterIndex2());
+            }
+
+            return false;
+        }
+
+        /**
+         * Computes the registers and the flag read and written by each folded
+         * instruction, and the registers and the flag live after each
+         * instruction. Everything is live after an instruction that ends the
+         * program or may fail, so the contents of the registers are kept
+         * wherever the program may stop.
+         */
+        private void computeLiveness() {
+            BitSet all = new BitSet();
+            all.set(0, analysis.getRegisterCount());
+            all.set(FLAG);
+
+            BitSet[] liveIn = new BitSet[length];
+            for (int pc = 0; pc < length; pc++) {
+                if (!analysis.isReachable(pc)) continue;
+
+                uses[pc] = new BitSet();
+                defs[pc] = new BitSet();
+                if (!removed[pc]) {
+                    usesAndDefs(folded[pc], uses[pc], defs[pc]);
+                }
+                liveIn[pc] = new BitSet();
+            }
+
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (int pc = length - 1; pc >= 0; pc--) {
+                    if (!analysis.isReachable(pc)) continue;
+
+                    int[] successors = analysis.getSuccessors(pc);
+                    BitSet out = successors.length == 0 || mayFail(pc) ? (BitSet) all.clone() : new BitSet();
+                    for (int successor : successors) {
+                        out.or(liveIn[successor]);
+                    }
+                    liveOut[pc] = out;
+
+                    BitSet in = (BitSet) out.clone();
+                    in.andNot(defs[pc]);
+                    in.or(uses[pc]);
+                    if (!in.equals(liveIn[pc])) {
+                        liveIn[pc] = in;
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns true if the folded instruction on the specified address may
+         * fail, which stops the program. Removed instructions, pure
+         * instructions, jumps, operations on integer registers and echoes of
+         * registers never fail.
+         *
+         * @param pc address of the instruction
+         * @return true if the instruction may fail
+         */
+        private boolean mayFail(int pc) {
+            Instruction instruction = folded[pc];
+            if (removed[pc] || isPure(pc) || instruction instanceof InstrJump) {
+                return false;
+            }
+
+            if (instruction instanceof AbstractInstrArithmeticOperation) {
+                AbstractInstrArithmeticOperation op = (AbstractInstrArithmeticOperation) instruction;
+                return op.getRegisterIndex1() >= analysis.getRegisterCount()
+                        || !analysis.isInt(pc, op.getRegisterIndex2())
+                        || !analysis.isInt(pc, op.getRegisterIndex3());
+            }
+            if (instruction instanceof AbstractInstrUnaryOperation) {
+                return !analysis.isInt(pc, ((AbstractInstrUnaryOperation) instruction).getRegisterIndex());
+            }
+            if (instruction instanceof InstrEcho) {
+                int descriptor = ((InstrEcho) instruction).getRegisterDescriptor();
+                return RegisterUtil.isIndirect(descriptor)
+                        || RegisterUtil.getRegisterIndex(descriptor) >= analysis.getRegisterCount();
+            }
+            return true;
+        }
+
+        /**
+         * Adds the registers and the flag read by the specified instruction
+         * to <tt>uses</tt>, and the ones it certainly writes to
+         * <tt>defs</tt>. A register both read and written is live before the
+         * instruction.
+         *
+         * @param instruction the instruction
+         * @param uses registers and flag read by the instruction
+         * @param defs registers and flag written by the instruction
+         */
+        private static void usesAndDefs(Instruction instruction, BitSet uses, BitSet defs) {
+            int stack = Registers.STACK_REGISTER_INDEX;
+
+            if (instruction instanceof AbstractInstrArithmeticOperation) {
+                AbstractInstrArithmeticOperation op = (AbstractInstrArithmeticOperation) instruction;
+                uses.set(op.getRegisterIndex2());
+                uses.set(op.getRegisterIndex3());
+                defs.set(op.getRegisterIndex1());
+
+            } else if (instruction instanceof AbstractInstrUnaryOperation) {
+                int index = ((AbstractInstrUnaryOperation) instruction).getRegisterIndex();
+                uses.set(index);
+                defs.set(index);
+
+            } else if (instruction instanceof InstrTestEquals) {
+                InstrTestEquals test = (InstrTestEquals) instruction;
+                uses.set(test.getRegisterIndex1());
+                uses.set(test.getRegisterIndex2());
+                defs.set(FLAG);
+
+            } else if (instruction instanceof InstrJumpIfTrue) {
+                uses.set(FLAG);
+
+            } else if (instruction instanceof InstrMove) {
+                InstrMove move = (InstrMove) instruction;
+                int destination = move.getRegisterDescriptor();
+                InstructionArgument argument = move.getArgument();
+                if (argument.isRegister()) {
+                    uses.set(RegisterUtil.getRegisterIndex((Integer) argument.getValue()));
+                }
+                if (RegisterUtil.isIndirect(destination)) {
+                    uses.set(RegisterUtil.getRegisterIndex(destination));
+                } else {
+                    defs.set(destination);
+                }
+
+            } else if (instruction instanceof InstrLoad) {
+                defs.set(((InstrLoad) instruction).getRegisterIndex());
+
+            } else if (instruction instanceof InstrPush) {
+                uses.set(((InstrPush) instruction).getRegisterIndex());
+                uses.set(stack);
+                defs.set(stack);
+
+            } else if (instruction instanceof InstrPop) {
+                uses.set(stack);
+                defs.set(((InstrPop) instruction).getRegisterIndex());
+
+            } else if (instruction instanceof InstrCall || instruction instanceof InstrRet) {
+                uses.set(stack);
+                defs.set(stack);
+
+            } else if (instruction instanceof InstrEcho) {
+                uses.set(RegisterUtil.getRegisterIndex(((InstrEcho) instruction).getRegisterDescriptor()));
+
+            } else if (instruction instanceof InstrIinput) {
+                defs.set(FLAG);
+            }
+        }
+
+        /**
+         * Writes the folded instructions, the jumps over the removed ones and
+         * the threaded jumps into the specified memory, and returns the
+         * number of rewritten instructions.
+         *
+         * @param memory memory holding the program
+         * @return the number of rewritten instructions
+         */
+        int rewrite(Memory memory) {
+            Instruction[] rewritten = new Instruction[length];
+
+            for (int pc = 0; pc < length; pc++) {
+                if (!analysis.isReachable(pc)) continue;
+
+                if (removed[pc]) {
+                    int target = resolve(pc);
+                    if (target != pc + 1 && target != pc) {
+                        rewritten[pc] = jump(target);
+                    }
+                    continue;
+                }
+
+                Instruction instruction = folded[pc];
+                if (instruction instanceof InstrJumpIfTrue) {
+                    int target = resolve(((InstrJumpIfTrue) instruction).getMemoryLocation());
+                    if (target != ((InstrJumpIfTrue) instruction).getMemoryLocation()) {
+                        instruction = new InstrJumpIfTrue(Arrays.asList(location(target)));
+                    }
+                } else if (instruction instanceof InstrJump) {
+                    int target = resolve(((InstrJump) instruction).getMemoryLocation());
+                    if (target != ((InstrJump) instruction).getMemoryLocation()) {
+                        instruction = jump(target);
+                    }
+                } else if (instruction instanceof InstrCall) {
+                    int target = resolve(((InstrCall) instruction).getMemoryLocation());
+                    if (target != ((InstrCall) instruction).getMemoryLocation()) {
+                        instruction = new InstrCall(Arrays.asList(location(target)));
+                    }
+                }
+
+                if (instruction != analysis.getInstruction(pc)) {
+                    rewritten[pc] = instruction;
+                }
+            }
+
+            int count = 0;
+            for (int pc = 0; pc < length; pc++) {
+                if (rewritten[pc] != null) {
+                    memory.setLocation(pc, rewritten[pc]);
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Returns the address of the first instruction executed after control
+         * reaches the specified address, skipping removed instructions and
+         * following unconditional jumps. Returns the address itself if the
+         * instructions from it loop without executing anything else.
+         *
+         * @param location the address
+         * @return the address of the first executed instruction
+         */
+        private int resolve(int location) {
+            int pc = location;
+            for (int steps = 0; steps <= length; steps++) {
+                if (pc < 0 || pc >= length || !analysis.isReachable(pc)) {
+                    return pc;
+                }
+                if (removed[pc]) {
+                    pc++;
+                } else if (folded[pc] instanceof InstrJump && !(folded[pc] instanceof InstrJumpIfTrue)) {
+                    pc = ((InstrJump) folded[pc]).getMemoryLocation();
+                } else {
+                    return pc;
+                }
+            }
+            return location;
+        }
+
+        /**
+         * Returns a <tt>jump</tt> to the specified address.
+         *
+         * @param location the address
+         * @return a jump to the address
+         */
+        private static Instruction jump(int location) {
+            return new InstrJump(Arrays.asList(location(location)));
+        }
+
+        /**
+         * Returns a location argument of the specified address.
+         *
+         * @param location the address
+         * @return an argument of the address
+         */
+        private static InstructionArgument location(int location) {
+            return new ProgramImage.Argument(false, false, true, location);
+        }
+    }
+
+}
@@ -0,0 +1,187 @@
+package hr.fer.zemris.java.simplecomp.impl;
+
+import hr.fer.zemris.java.simplecomp.RegisterUtil;
+import hr.fer.zemris.java.simplecomp.impl.instructions.AbstractInstrArithmeticOperation;
+import hr.fer.zemris.java.simplecomp.impl.instructions.AbstractInstrUnaryOperation;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrMove;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrPop;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrPush;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrRet;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrTestEquals;
+import hr.fer.zemris.java.simplecomp.impl.instructions.VerifiedArithmetic;
+import hr.fer.zemris.java.simplecomp.impl.instructions.VerifiedMove;
+import hr.fer.zemris.java.simplecomp.impl.instructions.VerifiedPop;
+import hr.fer.zemris.java.simplecomp.impl.instructions.VerifiedPush;
+import hr.fer.zemris.java.simplecomp.impl.instructions.VerifiedRet;
+import hr.fer.zemris.java.simplecomp.impl.instructions.VerifiedTestEquals;
+import hr.fer.zemris.java.simplecomp.impl.instructions.VerifiedUnary;
+import hr.fer.zemris.java.simplecomp.models.Computer;
+import hr.fer.zemris.java.simplecomp.models.Instruction;
+import hr.fer.zemris.java.simplecomp.models.InstructionArgument;
+import hr.fer.zemris.java.simplecomp.models.Registers;
+
+/**
+ * A load-time pass that proves which instructions of a program never execute
+ * with a value of the wrong type, and replaces them with verified instructions
+ * that skip their runtime checks. The following instructions are replaced:
+ * <ul>
+ * <li>arithmetic and unary operations on integer registers by a
+ * {@linkplain VerifiedArithmetic} and a {@linkplain VerifiedUnary},
+ * <li><tt>testEquals</tt> of two integer registers by a
+ * {@linkplain VerifiedTestEquals},
+ * <li><tt>move</tt> of an integer, through integer address registers, by a
+ * {@linkplain VerifiedMove},
+ * <li><tt>push</tt>, <tt>pop</tt> and <tt>ret</tt> of integers with an
+ * integer stack register by a {@linkplain VerifiedPush}, a
+ * {@linkplain VerifiedPop} and a {@linkplain VerifiedRet}.
+ * </ul>
+ * Verified instructions read and write the {@linkplain RegistersImpl} without
+ * checking the types and the indexes of the registers. Memory locations are
+ * still checked by the memory, as the memory implementations differ in how
+ * they store them.
+ * <p>
+ * The facts proving an instruction safe are computed by a
+ * {@linkplain ProgramAnalysis}. An instruction whose facts do not prove it
+ * safe keeps its checks, while the rest of the program is still verified. The
+ * whole program keeps its checks if it can not be analyzed, that is if it
+ * contains an instruction unknown to the analysis (including fused ones), or
+ * may write over one of its instructions.
+ * <p>
+ * The pass must be run after the program is loaded and before it is executed,
+ * on the computer that executes it. The replaced instructions are only valid
+ * for executions that start from the registers the program was verified with,
+ * which is how a loaded program is executed.
+ *
+ * @author Mario Bobic
+ */
+public abstract class ProgramVerifier {
+
+    /**
+     * Verifies the program loaded into the specified <tt>computer</tt>,
+     * replaces the instructions proven safe with verified instructions and
+     * returns the number of replaced instructions. Returns <tt>0</tt> if the
+     * program can not be verified, or if the computer does not have
+     * {@linkplain RegistersImpl} and a {@linkplain PrimitiveMemory}.
+     *
+     * @param computer computer holding the program
+     * @return the number of replaced instructions
+     */
+    public static int verify(Computer computer) {
+        if (!(computer.getRegisters() instanceof RegistersImpl)
+                || !(computer.getMemory() instanceof PrimitiveMemory)) {
+            return 0;
+        }
+
+        ProgramAnalysis analysis = new ProgramAnalysis(computer.getMemory(), (RegistersImpl) computer.getRegisters());
+        if (!analysis.run()) {
+            return 0;
+        }
+
+        int replaced = 0;
+        for (int pc = 0; pc < analysis.getCodeLength(); pc++) {
+            if (!analysis.isReachable(pc)) continue;
+
+            Instruction instruction = verified(analysis, pc);
+            if (instruction != null) {
+                computer.getMemory().setLocation(pc, instruction);
+                replaced++;
+            }
+        }
+        return replaced;
+    }
+
+    /**
+     * Returns a verified instruction replacing the instruction on the
+     * specified address, or <tt>null</tt> if the facts of the analysis do not
+     * prove it safe.
+     *
+     * @param analysis analysis of the program
+     * @param pc address of the instruction
+     * @return a verified instruction, or <tt>null</tt>
+     */
+    private static Instruction verified(ProgramAnalysis analysis, int pc) {
+        Instruction instruction = analysis.getInstruction(pc);
+        int stack = Registers.STACK_REGISTER_INDEX;
+
+        if (instruction instanceof AbstractInstrArithmeticOperation
+                && !(instruction instanceof VerifiedArithmetic)) {
+            AbstractInstrArithmeticOperation op = (AbstractInstrArithmeticOperation) instruction;
+            if (op.getRegisterIndex1() < analysis.getRegisterCount()
+                    && analysis.isInt(pc, op.getRegisterIndex2())
+                    && analysis.isInt(pc, op.getRegisterIndex3())) {
+                return new VerifiedArithmetic(op);
+            }
+
+        } else if (instruction instanceof AbstractInstrUnaryOperation
+                && !(instruction instanceof VerifiedUnary)) {
+            AbstractInstrUnaryOperation op = (AbstractInstrUnaryOperation) instruction;
+            if (analysis.isInt(pc, op.getRegisterIndex())) {
+                return new VerifiedUnary(op);
+            }
+
+        } else if (instruction instanceof InstrTestEquals && !(instruction instanceof VerifiedTestEquals)) {
+            InstrTestEquals test = (InstrTestEquals) instruction;
+            if (analysis.isInt(pc, test.getRegisterIndex1()) && analysis.isInt(pc, test.getRegisterIndex2())) {
+                return new VerifiedTestEquals(test);
+            }
+
+        } else if (instruction instanceof InstrMove && !(instruction instanceof VerifiedMove)) {
+            InstrMove move = (InstrMove) instruction;
+            if (movesInt(analysis, pc, move)) {
+                return new VerifiedMove(move);
+            }
+
+        } else if (instruction instanceof InstrPush && !(instruction instanceof VerifiedPush)) {
+            InstrPush push = (InstrPush) instruction;
+            if (analysis.isInt(pc, stack) && analysis.isInt(pc, push.getRegisterIndex())) {
+                return new VerifiedPush(push);
+            }
+
+        } else if (instruction instanceof InstrPop && !(instruction instanceof VerifiedPop)) {
+            InstrPop pop = (InstrPop) instruction;
+            if (pop.getRegisterIndex() < analysis.getRegisterCount() && analysis.readsInt(pc, stack, 1)) {
+                return new VerifiedPop(pop);
+            }
+
+        } else if (instruction instanceof InstrRet && !(instruction instanceof VerifiedRet)) {
+            if (analysis.readsInt(pc, stack, 1)) {
+                return new VerifiedRet((InstrRet) instruction);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns true if the specified <tt>move</tt> on the specified address
+     * moves an integer through integer address registers, according to the
+     * facts of the analysis.
+     *
+     * @param analysis analysis of the program
+     * @param pc address of the instruction
+     * @param move the instruction
+     * @return true if the move moves an integer
+     */
+    private static boolean movesInt(ProgramAnalysis analysis, int pc, InstrMove move) {
+        int descriptor = move.getRegisterDescriptor();
+        int destination = RegisterUtil.getRegisterIndex(descriptor);
+        if (RegisterUtil.isIndirect(descriptor)
+                ? !analysis.isInt(pc, destination)
+                : destination >= analysis.getRegisterCount()) {
+            return false;
+        }
+
+        InstructionArgument argument = move.getArgument();
+        if (!argument.isRegister()) {
+            return argument.getValue() instanceof Integer;
+        }
+
+        int source = (Integer) argument.getValue();
+        int index = RegisterUtil.getRegisterIndex(source);
+        if (!RegisterUtil.isIndirect(source)) {
+            return analysis.isInt(pc, index);
+        }
+        return analysis.readsInt(pc, index, RegisterUtil.getRegisterOffset(source));
+    }
+
+}
@@ -17,15 +17,33 @@ import hr.fer.zemris.java.simplecomp.models.Registers;
  * <li>The <tt>program counter</tt> register which is stored separately.
  * </ul>
  * <p>
+ * Integer values of general purpose registers are stored as primitive values
+ * in an integer array, with a parallel array of tags recording whether a
+ * register is empty, holds an integer or holds an object. Only non-integer
+ * values, such as strings, are stored in a separate array of objects. This way
+ * the primitive accessors of the {@linkplain PrimitiveRegisters} interface
+ * never box integers into {@linkplain Integer} objects.
+ * <p>
  * The implementation also holds a <tt>flag</tt> which may be used by some
  * {@linkplain Instruction}s.
  *
  * @author Mario Bobic
  */
-public class RegistersImpl implements Registers {
+public class RegistersImpl implements PrimitiveRegisters {
+
+    /** Tag of a register that holds no value. */
+    private static final byte EMPTY = 0;
+    /** Tag of a register that holds an integer. */
+    private static final byte INT = 1;
+    /** Tag of a register that holds an object. */
+    private static final byte OBJECT = 2;
 
-    /** Array of general purpose registers plus the stack register. */
-    private Object[] registers;
+    /** Tags of general purpose registers plus the stack register. */
+    private byte[] tags;
+    /** Integer values of registers tagged as integers. */
+    private int[] values;
+    /** Object values of registers tagged as objects. */
+    private Object[] objects;
     /** The program counter register. */
     private int pc;
     /** A flag used by some instructions. */
@@ -43,7 +61,9 @@ public class RegistersImpl implements Registers {
      */
     public RegistersImpl(int regsLen) {
         checkLength(regsLen);
-        registers = new Object[regsLen];
+        tags = new byte[regsLen];
+        values = new int[regsLen];
+        objects = new Object[regsLen];
     }
 
     /**
@@ -70,13 +90,84 @@ public class RegistersImpl implements Registers {
     @Override
     public Object getRegisterValue(int index) {
         checkIndex(index);
-        return registers[index];
+        switch (tags[index]) {
+            case INT:
+                return values[index];
+            case OBJECT:
+                return objects[index];
+            default:
+                return null;
+        }
     }
 
     @Override
     public void setRegisterValue(int index, Object value) {
         checkIndex(index);
-        registers[index] = value;
+        if (value instanceof Integer) {
+            tags[index] = INT;
+            values[index] = (Integer) value;
+            objects[index] = null;
+        } else {
+            tags[index] = value == null ? EMPTY : OBJECT;
+            objects[index] = value;
+        }
+    }
+
+    @Override
+    public boolean isInt(int index) {
+        checkIndex(index);
+        return tags[index] == INT;
+    }
+
+    @Override
+    public int getInt(int index) {
+        checkIndex(index);
+        if (tags[index] != INT) {
+            throw new IllegalStateException("Register " + index
+                    + " must contain an integer. Instead it contained: [" + objects[index] + "]");
+        }
+        return values[index];
+    }
+
+    @Override
+    public void setInt(int index, int value) {
+        checkIndex(index);
+        tags[index] = INT;
+        values[index] = value;
+        objects[index] = null;
+    }
+
+    /**
+     * Returns the integer held by the register at the specified
+     * <tt>index</tt>, without checking the index or that the register holds
+     * an integer. The result is undefined if it does not.
+     * <p>
+     * This method is meant for instructions the {@linkplain ProgramVerifier}
+     * proved to read an integer register. Everyone else should use the
+     * {@linkplain #getInt(int)} method.
+     *
+     * @param index the register index, known to hold an integer
+     * @return the integer held by the register
+     */
+    public int getIntUnchecked(int index) {
+        return values[index];
+    }
+
+    /**
+     * Sets the register at the specified <tt>index</tt> to the specified
+     * integer <tt>value</tt>, without checking the index.
+     * <p>
+     * This method is meant for instructions the {@linkplain ProgramVerifier}
+     * proved to write a valid register. Everyone else should use the
+     * {@linkplain #setInt(int, int)} method.
+     *
+     * @param index the register index, known to be valid
+     * @param value the integer value
+     */
+    public void setIntUnchecked(int index, int value) {
+        tags[index] = INT;
+        values[index] = value;
+        objects[index] = null;
     }
 
     @Override
@@ -104,6 +195,46 @@ public class RegistersImpl implements Registers {
         flag = value;
     }
 
+    /**
+     * Returns the number of registers, including the stack register.
+     *
+     * @return the number of registers
+     */
+    int getLength() {
+        return tags.length;
+    }
+
+    /**
+     * Returns a copy of these registers, including the program counter and
+     * the flag.
+     *
+     * @return a copy of these registers
+     */
+    RegistersImpl copy() {
+        RegistersImpl copy = new RegistersImpl(tags.length);
+        copy.copyFrom(this);
+        return copy;
+    }
+
+    /**
+     * Sets these registers, the program counter and the flag to the values of
+     * the specified registers, which must be of the same length.
+     *
+     * @param other the registers to be copied
+     * @throws IllegalArgumentException if the registers are of another length
+     */
+    void copyFrom(RegistersImpl other) {
+        if (other.tags.length != tags.length) {
+            throw new IllegalArgumentException("Registers length must be " + tags.length
+                    + ", but was " + other.tags.length + ".");
+        }
+        System.arraycopy(other.tags, 0, tags, 0, tags.length);
+        System.arraycopy(other.values, 0, values, 0, values.length);
+        System.arraycopy(other.objects, 0, objects, 0, objects.length);
+        pc = other.pc;
+        flag = other.flag;
+    }
+
     /**
      * Checks if the specified <tt>index</tt> is a valid register index, or
      * throws an {@linkplain IndexOutOfBoundsException} if the index is invalid.
@@ -112,9 +243,9 @@ public class RegistersImpl implements Registers {
      * @throws IndexOutOfBoundsException if register index is out of range
      */
     private void checkIndex(int index) {
-        if (index < 0 || index >= registers.length) {
+        if (index < 0 || index >= tags.length) {
             throw new IndexOutOfBoundsException(
-                    "Size: " + registers.length
+                    "Size: " + tags.length
                     + ", location: " + index);
         }
     }
@@ -0,0 +1,467 @@
+package hr.fer.zemris.java.simplecomp.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import hr.fer.zemris.java.simplecomp.impl.ExecutionUnitImpl.StepStatus;
+import hr.fer.zemris.java.simplecomp.io.InputSource;
+import hr.fer.zemris.java.simplecomp.io.OutputSink;
+import hr.fer.zemris.java.simplecomp.models.Computer;
+
+/**
+ * A program executed by the {@linkplain SessionService}, together with its
+ * input and output queues. Input lines are {@linkplain #offerLine(String)
+ * offered} to the session and output is {@linkplain #takeOutput() taken} from
+ * it, instead of going through the standard streams.
+ * <p>
+ * A session is in one of the following states:
+ * <ul>
+ * <li>{@linkplain State#RUNNABLE} if it is running or waiting for a thread,
+ * <li>{@linkplain State#BLOCKED} if its next instruction is an <tt>iinput</tt>
+ * and no input line has arrived yet,
+ * <li>{@linkplain State#FINISHED} if the program halted, failed, exceeded its
+ * instruction quota or the session was {@linkplain #cancel() cancelled}.
+ * </ul>
+ * <p>
+ * The program is {@linkplain ExecutionUnitImpl#step(Computer, int) stepped}
+ * in slices. The priority of a session multiplies the slice of the service,
+ * so sessions share the threads in proportion to their priorities. The
+ * instruction quota limits the total number of instructions the program may
+ * execute.
+ *
+ * @author Mario Bobic
+ */
+public class Session {
+
+    /**
+     * States of a session.
+     */
+    public enum State {
+        /** The session is running or waiting for a thread. */
+        RUNNABLE,
+        /** The session waits for input. */
+        BLOCKED,
+        /** The session finished. */
+        FINISHED
+    }
+
+    /** The service executing this session. */
+    private final SessionService service;
+    /** The computer holding the program. */
+    private final ComputerImpl computer;
+    /** Queue of input lines. */
+    private final LineQueue input = new LineQueue();
+    /** Queue of output bytes. */
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    /** Signals that the session finished. */
+    private final CountDownLatch done = new CountDownLatch(1);
+    /** The execution unit stepping the program. */
+    private final Stepper stepper = new Stepper();
+    /** Priority of the session. */
+    private final int priority;
+    /** Maximum number of instructions the program may execute. */
+    private final long quota;
+
+    /** Current state of the session. */
+    private volatile State state = State.RUNNABLE;
+    /** Indicates if the session was cancelled. */
+    private volatile boolean cancelled;
+    /** Indicates if the program ended regularly. */
+    private boolean endedRegularly;
+    /** Description of the failure, or <tt>null</tt>. */
+    private String failure;
+    /** Number of instructions executed by the program. */
+    private volatile long executedInstructions;
+
+    /**
+     * Constructs a session that executes the program loaded into the specified
+     * computer, and replaces the input and the output of the computer by those
+     * of the session.
+     *
+     * @param service the service executing this session
+     * @param computer computer holding the program
+     * @param priority priority of the session
+     * @param quota maximum number of instructions the program may execute
+     */
+    Session(SessionService service, ComputerImpl computer, int priority, long quota) {
+        this.service = service;
+        this.computer = computer;
+        this.priority = priority;
+        this.quota = quota;
+
+        computer.setInput(new InputSource(input));
+        computer.setOutput(new OutputSink(output));
+        computer.getRegisters().setProgramCounter(0);
+    }
+
+    /**
+     * Offers the specified line of input to the program. The line terminator
+     * is appended to it. Wakes the session up if it waits for input.
+     *
+     * @param line the input line
+     */
+    public void offerLine(String line) {
+        input.offer((line + "\n").getBytes(Charset.defaultCharset()));
+        wake();
+    }
+
+    /**
+     * Closes the input of the program, so that the program gets the end of
+     * input once it reads all offered lines. Wakes the session up if it waits
+     * for input.
+     */
+    public void closeInput() {
+        input.close();
+        wake();
+    }
+
+    /**
+     * Returns the output written by the program since the last call of this
+     * method, decoded in the default charset of the platform. Output of the
+     * program is available when it halts, fails or waits for input, or when
+     * its output buffer fills.
+     *
+     * @return the new output of the program
+     */
+    public String takeOutput() {
+        synchronized (output) {
+            String text = new String(output.toByteArray(), Charset.defaultCharset());
+            output.reset();
+            return text;
+        }
+    }
+
+    /**
+     * Cancels the session. A running session is stopped after its current
+     * slice, and a blocked session is finished immediately.
+     */
+    public void cancel() {
+        cancelled = true;
+        synchronized (this) {
+            if (state == State.BLOCKED) {
+                finish(false, "Cancelled.");
+            }
+        }
+    }
+
+    /**
+     * Waits for the session to finish, at most for the specified time.
+     *
+     * @param timeout maximum time to wait
+     * @param unit unit of the timeout
+     * @return true if the session finished, false if the time elapsed
+     * @throws InterruptedException if the current thread is interrupted
+     */
+    public boolean awaitFinish(long timeout, TimeUnit unit) throws InterruptedException {
+        return done.await(timeout, unit);
+    }
+
+    /**
+     * Returns the current state of the session.
+     *
+     * @return the state
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Returns true if the session was cancelled.
+     *
+     * @return true if the session was cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Returns true if the program halted regularly. Valid after the session
+     * finished.
+     *
+     * @return true if the program ended regularly
+     */
+    public synchronized boolean isEndedRegularly() {
+        return endedRegularly;
+    }
+
+    /**
+     * Returns a description of the failure, or <tt>null</tt> if the program
+     * did not fail. Valid after the session finished.
+     *
+     * @return description of the failure, or <tt>null</tt>
+     */
+    public synchronized String getFailure() {
+        return failure;
+    }
+
+    /**
+     * Returns the priority of this session.
+     *
+     * @return the priority
+     */
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * Returns the maximum number of instructions the program may execute.
+     *
+     * @return the instruction quota
+     */
+    public long getQuota() {
+        return quota;
+    }
+
+    /**
+     * Returns the number of instructions the program executed so far. The
+     * number is updated after each slice.
+     *
+     * @return the number of executed instructions
+     */
+    public long getExecutedInstructions() {
+        return executedInstructions;
+    }
+
+    /**
+     * Returns the computer of this session.
+     *
+     * @return the computer
+     */
+    public ComputerImpl getComputer() {
+        return computer;
+    }
+
+    /**
+     * Executes the next slice of the program. The slice ends when the program
+     * halts or fails, when it has to wait for input, or after the number of
+     * instructions given by the service multiplied by the priority, in which
+     * case the session is scheduled again. The session is finished instead
+     * if it was cancelled or if its quota is used up.
+     */
+    void runSlice() {
+        if (cancelled) {
+            finishCancelled();
+            return;
+        }
+
+        long remaining = quota - stepper.getExecutedInstructions();
+        if (remaining <= 0) {
+            synchronized (this) {
+                finish(false, "Instruction quota of " + quota + " exceeded.");
+            }
+            return;
+        }
+
+        int budget = (int) Math.min(Math.min((long) service.getSlice() * priority, remaining), Integer.MAX_VALUE);
+        StepStatus status = stepper.step(computer, budget);
+        executedInstructions = stepper.getExecutedInstructions();
+
+        switch (status) {
+            case HALTED:
+                synchronized (this) {
+                    finish(true, null);
+                }
+                return;
+            case FAULTED:
+                synchronized (this) {
+                    finish(false, stepper.fault);
+                }
+                return;
+            case WAITING_FOR_INPUT:
+                if (park()) {
+                    return;
+                }
+                break;
+            default:
+                break;
+        }
+
+        service.submit(this);
+    }
+
+    /**
+     * Cancels the session and finishes it immediately. The service calls this
+     * method for a session that is not running and will not be executed
+     * anymore.
+     */
+    synchronized void finishCancelled() {
+        cancelled = true;
+        finish(false, "Cancelled.");
+    }
+
+    /**
+     * Parks the session if no input line is available, so that the next
+     * <tt>iinput</tt> would block. Output is flushed before parking, as the
+     * program may have prompted for the input.
+     *
+     * @return true if the session was parked
+     */
+    private synchronized boolean park() {
+        if (isInputReady()) {
+            return false;
+        }
+
+        computer.getOutput().flush();
+        state = State.BLOCKED;
+        return true;
+    }
+
+    /**
+     * Returns true if the next <tt>iinput</tt> would not block, that is if a
+     * line is buffered, lines were offered or the input was closed.
+     *
+     * @return true if input is ready
+     */
+    private boolean isInputReady() {
+        return computer.getInput().hasBufferedLine() || input.isReady();
+    }
+
+    /**
+     * Schedules the session again if it waits for input.
+     */
+    private synchronized void wake() {
+        if (state == State.BLOCKED && !cancelled) {
+            state = State.RUNNABLE;
+            service.submit(this);
+        }
+    }
+
+    /**
+     * Finishes the session with the specified outcome. Must be called while
+     * holding the lock of this session.
+     *
+     * @param endedRegularly true if the program ended regularly
+     * @param failure description of the failure, or <tt>null</tt>
+     */
+    private void finish(boolean endedRegularly, String failure) {
+        if (state == State.FINISHED) {
+            return;
+        }
+
+        this.endedRegularly = endedRegularly;
+        this.failure = failure;
+        try {
+            computer.getOutput().flush();
+        } finally {
+            state = State.FINISHED;
+            service.finished(this);
+            done.countDown();
+        }
+    }
+
+    /**
+     * The execution unit of a session, which records the failure of the
+     * program and checks the input against the queue of offered lines.
+     */
+    private class Stepper extends ExecutionUnitImpl {
+
+        /** Description of the failure, or <tt>null</tt>. */
+        private String fault;
+
+        @Override
+        protected void reportFailure(Computer c, Throwable t, int address) {
+            fault = t + " at instruction on address " + address;
+        }
+
+        @Override
+        protected boolean isInputReady(Computer c) {
+            return Session.this.isInputReady();
+        }
+    }
+
+    /**
+     * An input stream of offered lines. Reading from an empty queue blocks
+     * until a line is offered or the queue is closed, but sessions are parked
+     * before that could happen.
+     */
+    private static class LineQueue extends InputStream {
+
+        /** Queued bytes. */
+        private byte[] bytes = new byte[256];
+        /** Position of the next byte to be read. */
+        private int head;
+        /** Position after the last queued byte. */
+        private int tail;
+        /** Indicates if the queue is closed. */
+        private boolean closed;
+
+        /**
+         * Appends the specified bytes to the queue.
+         *
+         * @param data bytes to be appended
+         */
+        synchronized void offer(byte[] data) {
+            if (closed) {
+                throw new IllegalStateException("Input is closed.");
+            }
+            if (tail + data.length > bytes.length) {
+                // compact the queue and grow it if needed
+                int size = tail - head;
+                byte[] target = size + data.length > bytes.length
+                        ? new byte[Math.max(bytes.length * 2, size + data.length)]
+                        : bytes;
+                System.arraycopy(bytes, head, target, 0, size);
+                bytes = target;
+                head = 0;
+                tail = size;
+            }
+            System.arraycopy(data, 0, bytes, tail, data.length);
+            tail += data.length;
+            notifyAll();
+        }
+
+        /**
+         * Returns true if reading from the queue would not block, that is if
+         * there are queued bytes or the queue is closed.
+         *
+         * @return true if reading would not block
+         */
+        synchronized boolean isReady() {
+            return head < tail || closed;
+        }
+
+        @Override
+        public synchronized void close() {
+            closed = true;
+            notifyAll();
+        }
+
+        @Override
+        public synchronized int read() {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            while (head == tail && !closed) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return -1;
+                }
+            }
+            if (head == tail) {
+                return -1;
+            }
+
+            int n = Math.min(len, tail - head);
+            System.arraycopy(bytes, head, b, off, n);
+            head += n;
+            if (head == tail) {
+                head = tail = 0;
+            }
+            return n;
+        }
+
+        @Override
+        public synchronized int available() {
+            return tail - head;
+        }
+    }
+
+}
@@ -0,0 +1,264 @@
+package hr.fer.zemris.java.simplecomp.impl;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An execution service for many interactive programs, each running in its own
+ * {@linkplain Session}. Sessions are executed by a small pool of threads in
+ * slices of a limited number of instructions, so that no session can starve
+ * the others. Scheduled sessions wait in a single queue, in the order they
+ * were scheduled, and every task of the pool executes a slice of the session
+ * at the head of the queue. The pool is a {@linkplain ForkJoinPool}, so idle
+ * threads steal the tasks of the busy ones.
+ * <p>
+ * A session may be opened with a priority and an instruction quota. A session
+ * of priority <tt>n</tt> executes <tt>n</tt> slices at once, so it gets
+ * <tt>n</tt> times the share of a session of the default priority. A session
+ * that executed its quota of instructions is finished as failed, which puts
+ * a hard limit on programs that never halt.
+ * <p>
+ * A session does not hold a thread while it waits for input. When the next
+ * instruction of a session is an <tt>iinput</tt> and no input line has arrived
+ * yet, the session is <i>parked</i>: it gives up its thread without executing
+ * the instruction, and is scheduled again when a line is
+ * {@linkplain Session#offerLine(String) offered} to it. This way thousands of
+ * mostly idle sessions need only as many threads as there are processors.
+ * <p>
+ * The numbers of active, blocked and finished sessions can be obtained by the
+ * {@linkplain #getActiveCount()}, {@linkplain #getBlockedCount()} and
+ * {@linkplain #getFinishedCount()} methods.
+ * <p>
+ * When the service is {@linkplain #shutdown() shut down}, every session that
+ * has not finished yet is cancelled, so it ends up counted as finished.
+ *
+ * @author Mario Bobic
+ */
+public class SessionService {
+
+    /** Default number of instructions a session executes before yielding. */
+    public static final int DEFAULT_SLICE = 10_000;
+    /** Default priority of a session. */
+    public static final int DEFAULT_PRIORITY = 1;
+    /** Instruction quota of a session that may execute any number of instructions. */
+    public static final long NO_QUOTA = Long.MAX_VALUE;
+
+    /** The pool that executes sessions. */
+    private final ForkJoinPool pool;
+    /** Number of instructions a session executes before yielding. */
+    private final int slice;
+    /** Sessions scheduled for execution of their next slice. */
+    private final ConcurrentLinkedQueue<Session> runQueue = new ConcurrentLinkedQueue<>();
+    /** Sessions that have not finished yet. */
+    private final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+    /** Number of finished sessions. */
+    private final AtomicLong finished = new AtomicLong();
+    /** Indicates if the service is shut down. */
+    private volatile boolean shutdown;
+
+    /**
+     * Constructs an instance of {@code SessionService} with as many threads as
+     * there are available processors and the default slice.
+     */
+    public SessionService() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_SLICE);
+    }
+
+    /**
+     * Constructs an instance of {@code SessionService} with the specified
+     * number of threads and slice.
+     *
+     * @param threads number of threads executing sessions
+     * @param slice number of instructions a session executes before yielding
+     * @throws IllegalArgumentException if threads or slice is not positive
+     */
+    public SessionService(int threads, int slice) {
+        if (threads < 1 || slice < 1) {
+            throw new IllegalArgumentException("Threads and slice must be positive.");
+        }
+        this.pool = new ForkJoinPool(threads, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        this.slice = slice;
+    }
+
+    /**
+     * Opens a new session that executes the program loaded into the specified
+     * <tt>computer</tt>, starting from address <tt>0</tt>. The input and the
+     * output of the computer are replaced by those of the session.
+     *
+     * @param computer computer holding the program
+     * @return the opened session
+     */
+    public Session open(ComputerImpl computer) {
+        return open(computer, DEFAULT_PRIORITY, NO_QUOTA);
+    }
+
+    /**
+     * Opens a new session of the specified priority and instruction quota
+     * that executes the program loaded into the specified <tt>computer</tt>,
+     * starting from address <tt>0</tt>. The input and the output of the
+     * computer are replaced by those of the session.
+     *
+     * @param computer computer holding the program
+     * @param priority priority of the session, the number of slices it
+     *        executes at once
+     * @param quota maximum number of instructions the program may execute
+     * @return the opened session
+     * @throws IllegalArgumentException if priority or quota is not positive
+     * @throws IllegalStateException if the service is shut down
+     */
+    public Session open(ComputerImpl computer, int priority, long quota) {
+        if (priority < 1 || quota < 1) {
+            throw new IllegalArgumentException("Priority and quota must be positive.");
+        }
+        if (shutdown) {
+            throw new IllegalStateException("Service is shut down.");
+        }
+        Session session = new Session(this, computer, priority, quota);
+        sessions.add(session);
+        submit(session);
+        return session;
+    }
+
+    /**
+     * Returns the number of sessions that are running or waiting for a
+     * thread.
+     *
+     * @return the number of active sessions
+     */
+    public int getActiveCount() {
+        int count = 0;
+        for (Session session : sessions) {
+            if (session.getState() == Session.State.RUNNABLE) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of sessions that are waiting for input.
+     *
+     * @return the number of blocked sessions
+     */
+    public int getBlockedCount() {
+        int count = 0;
+        for (Session session : sessions) {
+            if (session.getState() == Session.State.BLOCKED) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of sessions that finished, either regularly, with a
+     * failure or by cancellation.
+     *
+     * @return the number of finished sessions
+     */
+    public long getFinishedCount() {
+        return finished.get();
+    }
+
+    /**
+     * Shuts down this service. Every session that has not finished is
+     * cancelled: blocked and scheduled sessions are finished immediately, and
+     * a session running a slice is finished when the slice ends. The threads
+     * of the service are stopped afterwards. Shutting down a service that is
+     * already shut down has no effect.
+     *
+     * @see #awaitTermination(long, TimeUnit)
+     */
+    public void shutdown() {
+        shutdown = true;
+        for (Session session : sessions) {
+            session.cancel();
+        }
+        drainRunQueue();
+        pool.shutdownNow();
+
+        // a slice scheduled before the threads stopped has lost its task
+        drainRunQueue();
+    }
+
+    /**
+     * Waits for the threads of this service to stop after it was shut down,
+     * at most for the specified time. Once they stopped, every session is
+     * finished.
+     *
+     * @param timeout maximum time to wait
+     * @param unit unit of the timeout
+     * @return true if the threads stopped, false if the time elapsed
+     * @throws InterruptedException if the current thread is interrupted
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return pool.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Schedules the specified session for execution of its next slice.
+     * <p>
+     * A worker thread of the pool executes the tasks it submits before the
+     * tasks submitted from outside, so a session resubmitting its own slices
+     * could starve the newly opened ones. The session is therefore put into
+     * the run queue and the task only executes the session at its head.
+     *
+     * @param session the session
+     */
+    void submit(Session session) {
+        if (shutdown) {
+            session.finishCancelled();
+            return;
+        }
+
+        runQueue.add(session);
+        try {
+            pool.execute(this::runNext);
+        } catch (RejectedExecutionException e) {
+            // the service was shut down meanwhile
+            drainRunQueue();
+        }
+    }
+
+    /**
+     * Removes all sessions from the run queue and finishes them as cancelled.
+     */
+    private void drainRunQueue() {
+        Session session;
+        while ((session = runQueue.poll()) != null) {
+            session.finishCancelled();
+        }
+    }
+
+    /**
+     * Executes a slice of the session at the head of the run queue.
+     */
+    private void runNext() {
+        Session session = runQueue.poll();
+        if (session != null) {
+            session.runSlice();
+        }
+    }
+
+    /**
+     * Records that the specified session finished.
+     *
+     * @param session the session
+     */
+    void finished(Session session) {
+        if (sessions.remove(session)) {
+            finished.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the number of instructions a session executes before yielding.
+     *
+     * @return the slice
+     */
+    int getSlice() {
+        return slice;
+    }
+
+}
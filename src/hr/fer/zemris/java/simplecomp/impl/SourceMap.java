@@ -0,0 +1,135 @@
+package hr.fer.zemris.java.simplecomp.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import hr.fer.zemris.java.simplecomp.parser.ProgramParser;
+
+/**
+ * Maps the memory locations of a program back to the lines of its source,
+ * following the rules by which the {@linkplain ProgramParser} places the lines
+ * into memory. Each line holding a statement takes one location, except a
+ * <tt>RESERVE:</tt> statement, which takes as many locations as it reserves.
+ * <p>
+ * The source map does not validate the program. It is meant for programs that
+ * were parsed successfully, and a malformed <tt>RESERVE:</tt> statement is
+ * counted as a single location.
+ *
+ * @author Mario Bobic
+ */
+public class SourceMap {
+
+    /** Line numbers of the locations, starting from <tt>1</tt>. */
+    private int[] lines;
+    /** Trimmed source lines of the locations. */
+    private String[] texts;
+    /** Number of locations. */
+    private int size;
+    /** Labels defined at the locations. */
+    private final Map<Integer, List<String>> labels = new HashMap<>();
+
+    /**
+     * Constructs a source map of the specified program source.
+     *
+     * @param source the program source
+     */
+    public SourceMap(String source) {
+        lines = new int[16];
+        texts = new String[16];
+
+        List<String> sourceLines = LineParser.splitLines(source);
+        for (int i = 0; i < sourceLines.size(); i++) {
+            String text = sourceLines.get(i).trim();
+            if (text.isEmpty() || text.startsWith("#")) {
+                continue;
+            }
+
+            String statement = text;
+            if (text.startsWith("@")) {
+                int colon = text.indexOf(':');
+                if (colon < 0) {
+                    continue;
+                }
+                labels.computeIfAbsent(size, k -> new ArrayList<>()).add(text.substring(0, colon));
+                statement = text.substring(colon + 1).trim();
+            }
+
+            int count = 1;
+            if (statement.startsWith("RESERVE:")) {
+                try {
+                    count = LineParser.reserveCount(statement.substring("RESERVE:".length()));
+                } catch (IllegalArgumentException e) {
+                    // counted as a single location
+                }
+            }
+            for (int j = 0; j < count; j++) {
+                add(i + 1, text);
+            }
+        }
+    }
+
+    /**
+     * Adds a location of the specified line.
+     *
+     * @param line number of the line
+     * @param text the trimmed line
+     */
+    private void add(int line, String text) {
+        if (size == lines.length) {
+            lines = Arrays.copyOf(lines, size * 2);
+            texts = Arrays.copyOf(texts, size * 2);
+        }
+        lines[size] = line;
+        texts[size] = text;
+        size++;
+    }
+
+    /**
+     * Returns the number of locations of the program.
+     *
+     * @return the number of locations
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of the source line of the specified location,
+     * starting from <tt>1</tt>, or <tt>0</tt> if the location is not part of
+     * the program.
+     *
+     * @param location the memory location
+     * @return the line number, or <tt>0</tt>
+     */
+    public int getLine(int location) {
+        return location >= 0 && location < size ? lines[location] : 0;
+    }
+
+    /**
+     * Returns the trimmed source line of the specified location, or
+     * <tt>null</tt> if the location is not part of the program.
+     *
+     * @param location the memory location
+     * @return the source line, or <tt>null</tt>
+     */
+    public String getText(int location) {
+        return location >= 0 && location < size ? texts[location] : null;
+    }
+
+    /**
+     * Returns the labels defined at the specified location, in the order of
+     * their definition.
+     *
+     * @param location the memory location
+     * @return the labels, which may be empty
+     */
+    public List<String> getLabels(int location) {
+        List<String> list = labels.get(location);
+        return list == null ? Collections.emptyList() : Collections.unmodifiableList(list);
+    }
+
+}
@@ -0,0 +1,270 @@
+package hr.fer.zemris.java.simplecomp.impl;
+
+import java.util.Arrays;
+
+import hr.fer.zemris.java.simplecomp.models.*;
+
+/**
+ * This class implements the {@linkplain ExecutionUnit} interface and represents
+ * an execution unit with two tiers of execution.
+ * <p>
+ * Every program starts in the <i>interpreter</i> tier, which fetches and
+ * executes one instruction at a time, just like the {@linkplain ExecutionUnitImpl}.
+ * While interpreting, the unit counts how many times each address was entered
+ * by a control transfer and how many times it was the target of a backward
+ * jump. Once either counter of an address reaches its threshold, the basic
+ * block starting at that address is promoted to the <i>compiled</i> tier, where
+ * it is executed as a whole, as by the {@linkplain BlockExecutionUnit}, with
+ * its instructions specialized for the registers known to hold integers.
+ * <p>
+ * A compiled block is deoptimized (returned to the interpreter tier) when one
+ * of its assumptions breaks:
+ * <ul>
+ * <li>a register the block uses as an integer does not hold an integer on
+ * block entry, which the unchecked instructions of the block rely on, see
+ * {@linkplain CompiledBlock},
+ * <li>the program writes to its own code region, which deoptimizes all
+ * compiled blocks.
+ * </ul>
+ * A deoptimized block starts counting again and may be promoted again, unless
+ * it was deoptimized too many times, in which case it stays interpreted.
+ * <p>
+ * The number of promotions and deoptimizations of the last execution can be
+ * obtained by the {@linkplain #getPromotions()} and
+ * {@linkplain #getDeoptimizations()} methods.
+ *
+ * @author Mario Bobic
+ */
+public class TieredExecutionUnit implements ExecutionUnit {
+
+    /** Default number of entries after which a block is promoted. */
+    public static final int DEFAULT_ENTRY_THRESHOLD = 1000;
+    /** Default number of backward jumps after which a block is promoted. */
+    public static final int DEFAULT_BACK_EDGE_THRESHOLD = 100;
+    /** Number of deoptimizations after which a block stays interpreted. */
+    private static final int MAX_DEOPTIMIZATIONS = 8;
+
+    /** Number of entries after which a block is promoted. */
+    private final int entryThreshold;
+    /** Number of backward jumps after which a block is promoted. */
+    private final int backEdgeThreshold;
+
+    /** Number of promotions during the last execution. */
+    private int promotions;
+    /** Number of deoptimizations during the last execution. */
+    private int deoptimizations;
+
+    /** Registers of the current execution. */
+    private Registers registers;
+    /** Instruction cache of the current execution. */
+    private InstructionCache cache;
+    /** Entry counters of the current execution, indexed by address. */
+    private int[] entryCounts;
+    /** Backward jump counters of the current execution, indexed by address. */
+    private int[] backEdgeCounts;
+    /** Deoptimization counters of the current execution, indexed by address. */
+    private int[] deoptimizationCounts;
+    /** Compiled blocks of the current execution, indexed by address. */
+    private CompiledBlock[] compiled;
+
+    /**
+     * Constructs an instance of {@code TieredExecutionUnit} with the default
+     * promotion thresholds.
+     */
+    public TieredExecutionUnit() {
+        this(DEFAULT_ENTRY_THRESHOLD, DEFAULT_BACK_EDGE_THRESHOLD);
+    }
+
+    /**
+     * Constructs an instance of {@code TieredExecutionUnit} with the specified
+     * promotion thresholds. Both thresholds must be positive.
+     *
+     * @param entryThreshold number of entries after which a block is promoted
+     * @param backEdgeThreshold number of backward jumps after which a block is promoted
+     * @throws IllegalArgumentException if any of the thresholds is not positive
+     */
+    public TieredExecutionUnit(int entryThreshold, int backEdgeThreshold) {
+        if (entryThreshold < 1 || backEdgeThreshold < 1) {
+            throw new IllegalArgumentException("Thresholds must be positive.");
+        }
+        this.entryThreshold = entryThreshold;
+        this.backEdgeThreshold = backEdgeThreshold;
+    }
+
+    @Override
+    public boolean go(Computer computer) {
+        registers = computer.getRegisters();
+        cache = new InstructionCache(computer.getMemory());
+        Computer cachedComputer = ComputerImpl.withMemory(computer, cache);
+
+        int codeLength = cache.getCodeLength();
+        entryCounts = new int[codeLength];
+        backEdgeCounts = new int[codeLength];
+        deoptimizationCounts = new int[codeLength];
+        compiled = new CompiledBlock[codeLength];
+        promotions = 0;
+        deoptimizations = 0;
+
+        int codeWrites = 0;
+        registers.setProgramCounter(0);
+
+        int address = 0;
+        try {
+            while (true) {
+                if (cache.getCodeWrites() != codeWrites) {
+                    codeWrites = cache.getCodeWrites();
+                    deoptimizeAll();
+                }
+
+                address = registers.getProgramCounter();
+                CompiledBlock block = address >= 0 && address < codeLength ? compiled[address] : null;
+
+                if (block != null && !block.guard(registers)) {
+                    deoptimize(address);
+                    block = null;
+                }
+
+                if (block == null) {
+                    // interpreter tier
+                    registers.incrementProgramCounter();
+                    Instruction instruction = ExecutionUnitImpl.getInstruction(cache, address);
+
+                    boolean halt = instruction.execute(cachedComputer);
+                    if (halt) break;
+
+                    profile(address, registers.getProgramCounter());
+                    continue;
+                }
+
+                // compiled tier
+                boolean modified = false;
+                for (Instruction instruction : block.body) {
+                    instruction.execute(cachedComputer);
+                    address++;
+
+                    if (cache.getCodeWrites() != codeWrites) {
+                        modified = true;
+                        break;
+                    }
+                }
+
+                if (modified) {
+                    // leave the block, the rest of it may have been overwritten
+                    registers.setProgramCounter(address);
+                    continue;
+                }
+
+                registers.setProgramCounter(block.block.end);
+                if (block.block.terminator != null) {
+                    boolean halt = block.block.terminator.execute(cachedComputer);
+                    if (halt) break;
+
+                    profile(address, registers.getProgramCounter());
+                }
+            }
+        } catch (Throwable t) {
+            registers.setProgramCounter(address+1);
+            ExecutionUnitImpl.flushOutput(computer);
+            t.printStackTrace();
+            System.err.println("\t at instruction on address " + address);
+            return false;
+        } finally {
+            registers = null;
+            cache = null;
+            entryCounts = null;
+            backEdgeCounts = null;
+            deoptimizationCounts = null;
+            compiled = null;
+        }
+
+        return true;
+    }
+
+    /**
+     * Records a transfer of control from the instruction on the specified
+     * <tt>source</tt> address to the specified <tt>target</tt> address, and
+     * promotes the block at the target address if it became hot. Sequential
+     * execution, where the target is the address after the source, is not
+     * recorded.
+     *
+     * @param source address of the instruction that transferred control
+     * @param target the address to which control was transferred
+     */
+    private void profile(int source, int target) {
+        if (target == source+1 || target < 0 || target >= compiled.length) {
+            return;
+        }
+        if (compiled[target] != null || deoptimizationCounts[target] >= MAX_DEOPTIMIZATIONS) {
+            return;
+        }
+
+        boolean hot;
+        if (target <= source) {
+            hot = ++backEdgeCounts[target] >= backEdgeThreshold;
+        } else {
+            hot = ++entryCounts[target] >= entryThreshold;
+        }
+
+        if (hot) {
+            compiled[target] = new CompiledBlock(BasicBlock.build(cache, target), registers);
+            promotions++;
+        }
+    }
+
+    /**
+     * Deoptimizes the compiled block at the specified address, returning it to
+     * the interpreter tier.
+     *
+     * @param address address of the compiled block
+     */
+    private void deoptimize(int address) {
+        compiled[address] = null;
+        entryCounts[address] = 0;
+        backEdgeCounts[address] = 0;
+        deoptimizationCounts[address]++;
+        deoptimizations++;
+    }
+
+    /**
+     * Deoptimizes all compiled blocks, returning them to the interpreter tier.
+     */
+    private void deoptimizeAll() {
+        for (int i = 0; i < compiled.length; i++) {
+            if (compiled[i] != null) {
+                deoptimize(i);
+            }
+        }
+        Arrays.fill(entryCounts, 0);
+        Arrays.fill(backEdgeCounts, 0);
+    }
+
+    /**
+     * Returns the number of blocks that were promoted to the compiled tier
+     * during the last execution.
+     *
+     * @return the number of promotions
+     */
+    public int getPromotions() {
+        return promotions;
+    }
+
+    /**
+     * Returns the number of blocks that were deoptimized back to the
+     * interpreter tier during the last execution.
+     *
+     * @return the number of deoptimizations
+     */
+    public int getDeoptimizations() {
+        return deoptimizations;
+    }
+
+    /**
+     * Returns the promotion and deoptimization counts of the last execution.
+     */
+    @Override
+    public String toString() {
+        return "Tiered execution: " + promotions + " promotions, "
+                + deoptimizations + " deoptimizations";
+    }
+
+}
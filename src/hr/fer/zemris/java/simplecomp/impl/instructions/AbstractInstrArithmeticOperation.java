@@ -3,6 +3,7 @@ package hr.fer.zemris.java.simplecomp.impl.instructions;
 import java.util.List;
 
 import hr.fer.zemris.java.simplecomp.RegisterUtil;
+import hr.fer.zemris.java.simplecomp.impl.PrimitiveRegisters;
 import hr.fer.zemris.java.simplecomp.models.Computer;
 import hr.fer.zemris.java.simplecomp.models.InstructionArgument;
 
@@ -47,18 +48,70 @@ public abstract class AbstractInstrArithmeticOperation extends AbstractInstructi
         this.registerIndex1 = RegisterUtil.getRegisterIndex((Integer) arguments.get(0).getValue());
         this.registerIndex2 = RegisterUtil.getRegisterIndex((Integer) arguments.get(1).getValue());
         this.registerIndex3 = RegisterUtil.getRegisterIndex((Integer) arguments.get(2).getValue());
+        setWrittenRegister(registerIndex1);
+    }
+
+    /**
+     * Constructs an instance of {@code AbstractInstrArithmeticOperation} with
+     * the registers of the specified <tt>original</tt> operation.
+     *
+     * @param original the operation being replaced
+     */
+    protected AbstractInstrArithmeticOperation(AbstractInstrArithmeticOperation original) {
+        super(original);
+        this.registerIndex1 = original.registerIndex1;
+        this.registerIndex2 = original.registerIndex2;
+        this.registerIndex3 = original.registerIndex3;
+    }
+
+    /**
+     * Returns the index of the register to where the operation result is stored.
+     *
+     * @return the index of the result register
+     */
+    public int getRegisterIndex1() {
+        return registerIndex1;
+    }
+
+    /**
+     * Returns the index of the register holding the first operand.
+     *
+     * @return the index of the first operand register
+     */
+    public int getRegisterIndex2() {
+        return registerIndex2;
+    }
+
+    /**
+     * Returns the index of the register holding the second operand.
+     *
+     * @return the index of the second operand register
+     */
+    public int getRegisterIndex3() {
+        return registerIndex3;
     }
 
     /**
      * Executes the arithmetic operation using the method
      * {@linkplain #apply(int, int)} and storing the result as:
      * <blockquote>register1 = register2 op register 3</blockquote>
+     * If the registers are {@linkplain PrimitiveRegisters}, the operands and
+     * the result are not boxed.
      *
      * @param computer computer that holds the registers
      * @return false
      */
     @Override
     public boolean execute(Computer computer) {
+        if (computer.getRegisters() instanceof PrimitiveRegisters) {
+            PrimitiveRegisters registers = (PrimitiveRegisters) computer.getRegisters();
+            registers.setInt(registerIndex1, apply(
+                    registers.getInt(registerIndex2),
+                    registers.getInt(registerIndex3)
+            ));
+            return false;
+        }
+
         Object value1 = computer.getRegisters().getRegisterValue(registerIndex2);
         Object value2 = computer.getRegisters().getRegisterValue(registerIndex3);
 
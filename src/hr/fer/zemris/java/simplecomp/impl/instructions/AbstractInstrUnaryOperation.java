@@ -3,6 +3,7 @@ package hr.fer.zemris.java.simplecomp.impl.instructions;
 import java.util.List;
 
 import hr.fer.zemris.java.simplecomp.RegisterUtil;
+import hr.fer.zemris.java.simplecomp.impl.PrimitiveRegisters;
 import hr.fer.zemris.java.simplecomp.models.Computer;
 import hr.fer.zemris.java.simplecomp.models.InstructionArgument;
 
@@ -41,18 +42,47 @@ public abstract class AbstractInstrUnaryOperation extends AbstractInstruction {
         checkNonIndirectRegister(register, 0);
 
         registerIndex = RegisterUtil.getRegisterIndex((Integer) register.getValue());
+        setWrittenRegister(registerIndex);
+    }
+
+    /**
+     * Constructs an instance of {@code AbstractInstrUnaryOperation} with the
+     * register of the specified <tt>original</tt> operation.
+     *
+     * @param original the operation being replaced
+     */
+    protected AbstractInstrUnaryOperation(AbstractInstrUnaryOperation original) {
+        super(original);
+        this.registerIndex = original.registerIndex;
+    }
+
+    /**
+     * Returns the index of the register to which the unary operation is performed.
+     *
+     * @return the index of the register
+     */
+    public int getRegisterIndex() {
+        return registerIndex;
     }
 
     /**
      * Executes the unary operation using the method {@linkplain #apply(int)}
      * and storing the result as:
      * <blockquote>register = (unary_op)register</blockquote>
+     * If the registers are {@linkplain PrimitiveRegisters}, the value is not
+     * boxed.
      *
      * @param computer computer that holds the registers
      * @return false
      */
     @Override
     public boolean execute(Computer computer) {
+        if (computer.getRegisters() instanceof PrimitiveRegisters) {
+            PrimitiveRegisters registers = (PrimitiveRegisters) computer.getRegisters();
+            registers.setInt(registerIndex, apply(registers.getInt(registerIndex)));
+            return false;
+        }
+
         Integer num = (Integer) computer.getRegisters().getRegisterValue(registerIndex);
 
         computer.getRegisters().setRegisterValue(
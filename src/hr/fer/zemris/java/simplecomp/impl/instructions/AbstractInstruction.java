@@ -1,6 +1,9 @@
 package hr.fer.zemris.java.simplecomp.impl.instructions;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import hr.fer.zemris.java.simplecomp.RegisterUtil;
 import hr.fer.zemris.java.simplecomp.models.Instruction;
@@ -9,13 +12,30 @@ import hr.fer.zemris.java.simplecomp.models.InstructionArgument;
 /**
  * This class serves as a super class for {@linkplain Instruction}s, offering
  * most common methods, mostly for checking the validity of arguments.
+ * <p>
+ * Each instruction name is given a small number, its {@linkplain #getOpcode()
+ * opcode}, and an instruction that writes a register declares it by the
+ * {@linkplain #setWrittenRegister(int)} method, so that executed instructions
+ * can be recorded as primitive values.
  *
  * @author Mario Bobic
  */
 public abstract class AbstractInstruction implements Instruction {
 
+    /** Greatest opcode that can be assigned. */
+    public static final int MAX_OPCODE = 0xFFFE;
+
+    /** Opcodes of instruction names. */
+    private static final Map<String, Integer> OPCODES = new ConcurrentHashMap<>();
+    /** Instruction names indexed by opcode, starting with opcode <tt>1</tt>. */
+    private static final List<String> NAMES = new ArrayList<>();
+
     /** Name of the instruction.*/
     private final String instrName;
+    /** Opcode of the instruction. */
+    private final int opcode;
+    /** Index of the register this instruction writes, or <tt>-1</tt>. */
+    private int writtenRegister = -1;
 
     /**
      * Constructs an instance of {@code AbstractInstruction} with the specified
@@ -25,6 +45,94 @@ public abstract class AbstractInstruction implements Instruction {
      */
     protected AbstractInstruction(String name) {
         instrName = name;
+        opcode = opcodeOf(name);
+    }
+
+    /**
+     * Constructs an instance of {@code AbstractInstruction} with the name,
+     * the opcode and the written register of the specified <tt>original</tt>
+     * instruction. Used by instructions that replace another one.
+     *
+     * @param original the instruction being replaced
+     */
+    protected AbstractInstruction(AbstractInstruction original) {
+        instrName = original.instrName;
+        opcode = original.opcode;
+        writtenRegister = original.writtenRegister;
+    }
+
+    /**
+     * Returns the opcode of the specified instruction name, assigning the
+     * next free opcode to a name seen for the first time. Opcodes are assigned
+     * from <tt>1</tt>, as instructions are constructed, so they are only
+     * valid within one run.
+     *
+     * @param name name of the instruction
+     * @return the opcode of the name
+     * @throws IllegalStateException if there are more than
+     *         {@value #MAX_OPCODE} instruction names
+     */
+    private static int opcodeOf(String name) {
+        Integer opcode = OPCODES.get(name);
+        if (opcode != null) {
+            return opcode;
+        }
+
+        synchronized (NAMES) {
+            opcode = OPCODES.get(name);
+            if (opcode == null) {
+                if (NAMES.size() == MAX_OPCODE) {
+                    throw new IllegalStateException("Too many instruction names.");
+                }
+                NAMES.add(name);
+                opcode = NAMES.size();
+                OPCODES.put(name, opcode);
+            }
+            return opcode;
+        }
+    }
+
+    /**
+     * Returns the instruction name of the specified opcode, or <tt>null</tt>
+     * if no name has that opcode.
+     *
+     * @param opcode the opcode
+     * @return the instruction name of the opcode, or <tt>null</tt>
+     */
+    public static String nameOf(int opcode) {
+        synchronized (NAMES) {
+            return opcode >= 1 && opcode <= NAMES.size() ? NAMES.get(opcode - 1) : null;
+        }
+    }
+
+    /**
+     * Returns the opcode of this instruction, a number between <tt>1</tt> and
+     * {@value #MAX_OPCODE} shared by all instructions of the same name.
+     *
+     * @return the opcode
+     */
+    public final int getOpcode() {
+        return opcode;
+    }
+
+    /**
+     * Returns the index of the register this instruction writes, or
+     * <tt>-1</tt> if it writes none.
+     *
+     * @return the index of the written register, or <tt>-1</tt>
+     */
+    public final int getWrittenRegister() {
+        return writtenRegister;
+    }
+
+    /**
+     * Declares the index of the register this instruction writes. Subclasses
+     * call this method from their constructors.
+     *
+     * @param index the index of the written register
+     */
+    protected final void setWrittenRegister(int index) {
+        writtenRegister = index;
     }
 
     /**
@@ -0,0 +1,51 @@
+package hr.fer.zemris.java.simplecomp.impl.instructions;
+
+import hr.fer.zemris.java.simplecomp.models.Computer;
+
+/**
+ * This class represents a fused computer instruction that executes a
+ * {@linkplain InstrLoad} instruction immediately followed by a
+ * {@linkplain InstrEcho} instruction in a single dispatch. This is the common
+ * idiom of loading a string constant to a register and printing it.
+ * <p>
+ * This instruction replaces only the <tt>load</tt> instruction in memory, so
+ * jumps directly to the <tt>echo</tt> instruction still execute the original
+ * instruction.
+ *
+ * @author Mario Bobic
+ * @see InstrLoad
+ * @see InstrEcho
+ */
+public class FusedLoadEcho extends AbstractInstruction {
+
+    /** The load instruction. */
+    private InstrLoad load;
+    /** The echo instruction. */
+    private InstrEcho echo;
+
+    /**
+     * Constructs an instance of {@code FusedLoadEcho} from the specified
+     * instructions.
+     *
+     * @param load the <tt>load</tt> instruction
+     * @param echo the <tt>echo</tt> instruction that follows it
+     */
+    public FusedLoadEcho(InstrLoad load, InstrEcho echo) {
+        super("Load+Echo");
+
+        this.load = load;
+        this.echo = echo;
+        setWrittenRegister(load.getRegisterIndex());
+    }
+
+    @Override
+    public boolean execute(Computer computer) {
+        load.execute(computer);
+        echo.execute(computer);
+
+        computer.getRegisters().incrementProgramCounter();
+
+        return false;
+    }
+
+}
@@ -0,0 +1,66 @@
+package hr.fer.zemris.java.simplecomp.impl.instructions;
+
+import hr.fer.zemris.java.simplecomp.models.Computer;
+import hr.fer.zemris.java.simplecomp.models.Registers;
+
+/**
+ * This class represents a fused computer instruction that executes two
+ * {@linkplain InstrPush} instructions immediately followed by a
+ * {@linkplain InstrCall} instruction in a single dispatch. This is the common
+ * idiom of pushing two arguments to the stack and calling a subroutine.
+ * <p>
+ * Upon instruction execution, both values are pushed to the stack and the
+ * subroutine is called with the return address of the instruction following
+ * the <tt>call</tt> instruction, exactly as the three original instructions
+ * would do. The stack cleanup after the call is not fused, since it is
+ * executed only when the subroutine returns.
+ * <p>
+ * This instruction replaces only the first <tt>push</tt> instruction in
+ * memory, so jumps to the second <tt>push</tt> or the <tt>call</tt>
+ * instruction still execute the original instructions.
+ *
+ * @author Mario Bobic
+ * @see InstrPush
+ * @see InstrCall
+ */
+public class FusedPushPushCall extends AbstractInstruction {
+
+    /** The first push instruction. */
+    private InstrPush push1;
+    /** The second push instruction. */
+    private InstrPush push2;
+    /** The call instruction. */
+    private InstrCall call;
+
+    /**
+     * Constructs an instance of {@code FusedPushPushCall} from the specified
+     * instructions.
+     *
+     * @param push1 the first <tt>push</tt> instruction
+     * @param push2 the second <tt>push</tt> instruction
+     * @param call the <tt>call</tt> instruction that follows them
+     */
+    public FusedPushPushCall(InstrPush push1, InstrPush push2, InstrCall call) {
+        super("Push+Push+Call");
+
+        this.push1 = push1;
+        this.push2 = push2;
+        this.call = call;
+        setWrittenRegister(Registers.STACK_REGISTER_INDEX);
+    }
+
+    @Override
+    public boolean execute(Computer computer) {
+        Registers registers = computer.getRegisters();
+
+        push1.execute(computer);
+        push2.execute(computer);
+
+        // the return address is the address after the call instruction
+        registers.setProgramCounter(registers.getProgramCounter() + 2);
+        call.execute(computer);
+
+        return false;
+    }
+
+}
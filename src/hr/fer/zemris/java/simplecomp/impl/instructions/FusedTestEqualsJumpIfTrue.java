@@ -0,0 +1,77 @@
+package hr.fer.zemris.java.simplecomp.impl.instructions;
+
+import hr.fer.zemris.java.simplecomp.impl.PrimitiveRegisters;
+import hr.fer.zemris.java.simplecomp.models.Computer;
+import hr.fer.zemris.java.simplecomp.models.Registers;
+
+/**
+ * This class represents a fused computer instruction that executes a
+ * {@linkplain InstrTestEquals} instruction immediately followed by a
+ * {@linkplain InstrJumpIfTrue} instruction in a single dispatch.
+ * <p>
+ * Upon instruction execution, the contents of the two registers are compared
+ * and the flag is set to the result of the comparison, exactly as the
+ * <tt>testEquals</tt> instruction would do. The result is then used directly,
+ * without reading the flag back: if it is <tt>true</tt> the program counter is
+ * set to the jump location, else the program counter skips the
+ * <tt>jumpIfTrue</tt> instruction.
+ * <p>
+ * This instruction replaces only the <tt>testEquals</tt> instruction in memory,
+ * so jumps directly to the <tt>jumpIfTrue</tt> instruction still execute the
+ * original instruction.
+ *
+ * @author Mario Bobic
+ * @see InstrTestEquals
+ * @see InstrJumpIfTrue
+ */
+public class FusedTestEqualsJumpIfTrue extends AbstractInstruction {
+
+    /** The index of the first register. */
+    private int registerIndex1;
+    /** The index of the second register. */
+    private int registerIndex2;
+    /** The memory location to which the program counter is set if equal. */
+    private int memoryLocation;
+
+    /**
+     * Constructs an instance of {@code FusedTestEqualsJumpIfTrue} from the
+     * specified instructions.
+     *
+     * @param test the <tt>testEquals</tt> instruction
+     * @param jump the <tt>jumpIfTrue</tt> instruction that follows it
+     */
+    public FusedTestEqualsJumpIfTrue(InstrTestEquals test, InstrJumpIfTrue jump) {
+        super("TestEquals+JumpIfTrue");
+
+        registerIndex1 = test.getRegisterIndex1();
+        registerIndex2 = test.getRegisterIndex2();
+        memoryLocation = jump.getMemoryLocation();
+    }
+
+    @Override
+    public boolean execute(Computer computer) {
+        Registers registers = computer.getRegisters();
+
+        boolean equal;
+        if (registers instanceof PrimitiveRegisters
+                && ((PrimitiveRegisters) registers).isInt(registerIndex1)
+                && ((PrimitiveRegisters) registers).isInt(registerIndex2)) {
+            PrimitiveRegisters primitive = (PrimitiveRegisters) registers;
+            equal = primitive.getInt(registerIndex1) == primitive.getInt(registerIndex2);
+        } else {
+            Object value1 = registers.getRegisterValue(registerIndex1);
+            Object value2 = registers.getRegisterValue(registerIndex2);
+            equal = value1.equals(value2);
+        }
+        registers.setFlag(equal);
+
+        if (equal) {
+            registers.setProgramCounter(memoryLocation);
+        } else {
+            registers.incrementProgramCounter();
+        }
+
+        return false;
+    }
+
+}
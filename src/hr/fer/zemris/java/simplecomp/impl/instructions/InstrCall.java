@@ -4,6 +4,7 @@ import java.util.List;
 
 import hr.fer.zemris.java.simplecomp.models.Computer;
 import hr.fer.zemris.java.simplecomp.models.InstructionArgument;
+import hr.fer.zemris.java.simplecomp.models.Registers;
 
 /**
  * This class represents a computer instruction that is used for calling a
@@ -42,6 +43,16 @@ public class InstrCall extends AbstractInstruction {
         checkNumber(arguments.get(0), 0);
 
         memoryLocation = (Integer) arguments.get(0).getValue();
+        setWrittenRegister(Registers.STACK_REGISTER_INDEX);
+    }
+
+    /**
+     * Returns the memory location which is being called.
+     *
+     * @return the memory location
+     */
+    public int getMemoryLocation() {
+        return memoryLocation;
     }
 
     @Override
@@ -3,6 +3,7 @@ package hr.fer.zemris.java.simplecomp.impl.instructions;
 import java.util.List;
 
 import hr.fer.zemris.java.simplecomp.RegisterUtil;
+import hr.fer.zemris.java.simplecomp.impl.IOComputer;
 import hr.fer.zemris.java.simplecomp.models.Computer;
 import hr.fer.zemris.java.simplecomp.models.InstructionArgument;
 
@@ -19,7 +20,9 @@ import hr.fer.zemris.java.simplecomp.models.InstructionArgument;
  * <p>
  * This instruction takes the contents of the register if it is non-indirect or
  * the memory address to which the specified register points to if it is
- * indirect and writes the contents to the screen.
+ * indirect and writes the contents to the screen. If the computer is an
+ * {@linkplain IOComputer}, the contents are written to its buffered output
+ * instead of directly to the standard output.
  *
  * @author Mario Bobic
  */
@@ -46,6 +49,15 @@ public class InstrEcho extends AbstractInstruction {
         registerDescriptor = (Integer) checkRegister(arguments.get(0)).getValue();
     }
 
+    /**
+     * Returns the descriptor of the register whose contents are printed.
+     *
+     * @return the register descriptor
+     */
+    public int getRegisterDescriptor() {
+        return registerDescriptor;
+    }
+
     /**
      * Checks if the specified instruction argument is a register and throws an
      * {@linkplain IllegalArgumentException} if the test returns false.
@@ -74,7 +86,11 @@ public class InstrEcho extends AbstractInstruction {
             object = computer.getRegisters().getRegisterValue(registerIndex);
         }
 
-        System.out.print(object);
+        if (computer instanceof IOComputer) {
+            ((IOComputer) computer).getOutput().print(object);
+        } else {
+            System.out.print(object);
+        }
 
         return false;
     }
@@ -2,6 +2,7 @@ package hr.fer.zemris.java.simplecomp.impl.instructions;
 
 import java.util.List;
 
+import hr.fer.zemris.java.simplecomp.impl.IOComputer;
 import hr.fer.zemris.java.simplecomp.models.Computer;
 import hr.fer.zemris.java.simplecomp.models.InstructionArgument;
 
@@ -12,7 +13,8 @@ import hr.fer.zemris.java.simplecomp.models.InstructionArgument;
  * Instruction takes a total of <tt>0</tt> {@linkplain InstructionArgument}s.
  * <p>
  * Upon instruction execution, a simple <tt>true</tt> boolean value is returned
- * to indicate that the processor needs to be stopped.
+ * to indicate that the processor needs to be stopped. If the computer is an
+ * {@linkplain IOComputer}, its output is flushed before stopping.
  *
  * @author Mario Bobic
  */
@@ -35,6 +37,9 @@ public class InstrHalt extends AbstractInstruction {
 
     @Override
     public boolean execute(Computer computer) {
+        if (computer instanceof IOComputer) {
+            ((IOComputer) computer).getOutput().flush();
+        }
         return true;
     }
 
@@ -1,10 +1,12 @@
 package hr.fer.zemris.java.simplecomp.impl.instructions;
 
-import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.List;
 
+import hr.fer.zemris.java.simplecomp.impl.IOComputer;
+import hr.fer.zemris.java.simplecomp.impl.PrimitiveMemory;
+import hr.fer.zemris.java.simplecomp.io.InputSource;
 import hr.fer.zemris.java.simplecomp.models.Computer;
 import hr.fer.zemris.java.simplecomp.models.InstructionArgument;
 
@@ -16,14 +18,17 @@ import hr.fer.zemris.java.simplecomp.models.InstructionArgument;
  * The instruction argument must be a number (a memory location).
  * <p>
  * Upon instruction execution, the program gets blocked due to trying to read a
- * line.
+ * line. The line is read from the {@linkplain InputSource input} of the
+ * computer if it is an {@linkplain IOComputer}, or from the shared
+ * {@linkplain InputSource#stdin() standard input source} otherwise. If the
+ * line is not buffered yet, the output of the computer is flushed first, so
+ * that the user sees everything printed before the input is asked.
  * <p>
  * If the entered value can not be interpreted as an integer, the computer
  * register flag is set to false to indicate that another reading is needed.
  * <p>
- * If the {@linkplain BufferedReader#readLine() reader.readLine()} method
- * returns <tt>null</tt>, an {@linkplain IllegalStateException} is thrown as the
- * input stream reached the end or is closed.
+ * If the input reached the end, an {@linkplain IllegalStateException} is
+ * thrown.
  *
  * @author Mario Bobic
  */
@@ -51,26 +56,44 @@ public class InstrIinput extends AbstractInstruction {
         memoryLocation = (Integer) arguments.get(0).getValue();
     }
 
+    /**
+     * Returns the memory location to which the integer is stored.
+     *
+     * @return the memory location
+     */
+    public int getMemoryLocation() {
+        return memoryLocation;
+    }
+
     /**
      * {@inheritDoc}
      *
-     * @throws IllegalStateException if the input stream is closed
+     * @throws IllegalStateException if the input reached the end
      */
     @Override
     public boolean execute(Computer computer) {
-        try {
-            // The input stream must NOT be closed.
-            BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
-
-            String line = reader.readLine();
-            if (line == null) {
-                throw new IllegalStateException("Input stream closed.");
+        InputSource input;
+        if (computer instanceof IOComputer) {
+            IOComputer io = (IOComputer) computer;
+            input = io.getInput();
+            if (!input.hasBufferedLine()) {
+                io.getOutput().flush();
             }
+        } else {
+            input = InputSource.stdin();
+        }
 
-            int num = Integer.parseInt(line);
+        try {
+            int num = input.readInt();
 
-            computer.getMemory().setLocation(memoryLocation, num);
+            if (computer.getMemory() instanceof PrimitiveMemory) {
+                ((PrimitiveMemory) computer.getMemory()).setInt(memoryLocation, num);
+            } else {
+                computer.getMemory().setLocation(memoryLocation, num);
+            }
             computer.getRegisters().setFlag(true);
+        } catch (EOFException e) {
+            throw new IllegalStateException("Input stream closed.");
         } catch (IOException | NumberFormatException e) {
             computer.getRegisters().setFlag(false);
         }
@@ -35,7 +35,21 @@ public class InstrJump extends AbstractInstruction {
      * @throws IllegalArgumentException if argument size or number is invalid
      */
     public InstrJump(List<InstructionArgument> arguments) {
-        super("Jump");
+        this("Jump", arguments);
+    }
+
+    /**
+     * Constructs an instance of {@code InstrJump} with the specified
+     * instruction <tt>name</tt> and {@link InstructionArgument arguments}.
+     * Used by jumps that have a name of their own, so that they also get an
+     * opcode of their own.
+     *
+     * @param name name of the instruction
+     * @param arguments arguments of this instruction
+     * @throws IllegalArgumentException if argument size or number is invalid
+     */
+    protected InstrJump(String name, List<InstructionArgument> arguments) {
+        super(name);
         checkSize(arguments, 1);
 
         checkNumber(arguments.get(0), 0);
@@ -43,6 +57,15 @@ public class InstrJump extends AbstractInstruction {
         memoryLocation = (Integer) arguments.get(0).getValue();
     }
 
+    /**
+     * Returns the memory location to which the program counter is set.
+     *
+     * @return the memory location
+     */
+    public int getMemoryLocation() {
+        return memoryLocation;
+    }
+
     @Override
     public boolean execute(Computer computer) {
         computer.getRegisters().setProgramCounter(memoryLocation);
@@ -33,7 +33,7 @@ public class InstrJumpIfTrue extends InstrJump {
      * @throws IllegalArgumentException if argument size or number is invalid
      */
     public InstrJumpIfTrue(List<InstructionArgument> arguments) {
-        super(arguments);
+        super("JumpIfTrue", arguments);
     }
 
     @Override
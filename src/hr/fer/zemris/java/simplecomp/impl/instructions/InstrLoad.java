@@ -3,6 +3,8 @@ package hr.fer.zemris.java.simplecomp.impl.instructions;
 import java.util.List;
 
 import hr.fer.zemris.java.simplecomp.RegisterUtil;
+import hr.fer.zemris.java.simplecomp.impl.PrimitiveMemory;
+import hr.fer.zemris.java.simplecomp.impl.PrimitiveRegisters;
 import hr.fer.zemris.java.simplecomp.models.Computer;
 import hr.fer.zemris.java.simplecomp.models.InstructionArgument;
 
@@ -48,10 +50,38 @@ public class InstrLoad extends AbstractInstruction {
 
         registerIndex = RegisterUtil.getRegisterIndex((Integer) arguments.get(0).getValue());
         memoryLocation = (Integer) arguments.get(1).getValue();
+        setWrittenRegister(registerIndex);
+    }
+
+    /**
+     * Returns the index of the register whose value is set upon loading.
+     *
+     * @return the index of the register
+     */
+    public int getRegisterIndex() {
+        return registerIndex;
+    }
+
+    /**
+     * Returns the memory location from where the value is loaded.
+     *
+     * @return the memory location
+     */
+    public int getMemoryLocation() {
+        return memoryLocation;
     }
 
     @Override
     public boolean execute(Computer computer) {
+        if (computer.getMemory() instanceof PrimitiveMemory
+                && computer.getRegisters() instanceof PrimitiveRegisters) {
+            PrimitiveMemory memory = (PrimitiveMemory) computer.getMemory();
+            if (memory.isInt(memoryLocation)) {
+                ((PrimitiveRegisters) computer.getRegisters()).setInt(registerIndex, memory.getInt(memoryLocation));
+                return false;
+            }
+        }
+
         Object value = computer.getMemory().getLocation(memoryLocation);
         computer.getRegisters().setRegisterValue(registerIndex, value);
 
@@ -3,6 +3,8 @@ package hr.fer.zemris.java.simplecomp.impl.instructions;
 import java.util.List;
 
 import hr.fer.zemris.java.simplecomp.RegisterUtil;
+import hr.fer.zemris.java.simplecomp.impl.PrimitiveMemory;
+import hr.fer.zemris.java.simplecomp.impl.PrimitiveRegisters;
 import hr.fer.zemris.java.simplecomp.models.Computer;
 import hr.fer.zemris.java.simplecomp.models.InstructionArgument;
 
@@ -51,6 +53,39 @@ public class InstrMove extends AbstractInstruction {
 
         registerDescriptor = (Integer) register.getValue();
         this.argument = argument;
+        if (!RegisterUtil.isIndirect(registerDescriptor)) {
+            setWrittenRegister(RegisterUtil.getRegisterIndex(registerDescriptor));
+        }
+    }
+
+    /**
+     * Constructs an instance of {@code InstrMove} with the arguments of the
+     * specified <tt>original</tt> instruction.
+     *
+     * @param original the instruction being replaced
+     */
+    protected InstrMove(InstrMove original) {
+        super(original);
+        registerDescriptor = original.registerDescriptor;
+        argument = original.argument;
+    }
+
+    /**
+     * Returns the descriptor of the register to which the value is moved.
+     *
+     * @return the descriptor of the destination register
+     */
+    public int getRegisterDescriptor() {
+        return registerDescriptor;
+    }
+
+    /**
+     * Returns the second argument of the instruction, which is either a register or a number.
+     *
+     * @return the second argument of the instruction
+     */
+    public InstructionArgument getArgument() {
+        return argument;
     }
 
     /**
@@ -89,6 +124,26 @@ public class InstrMove extends AbstractInstruction {
 
     @Override
     public boolean execute(Computer computer) {
+        if (computer.getRegisters() instanceof PrimitiveRegisters
+                && !RegisterUtil.isIndirect(registerDescriptor)
+                && argument.isRegister()
+                && !RegisterUtil.isIndirect((Integer) argument.getValue())) {
+            // register to register move, copy integers without boxing
+            PrimitiveRegisters registers = (PrimitiveRegisters) computer.getRegisters();
+            int source = RegisterUtil.getRegisterIndex((Integer) argument.getValue());
+            if (registers.isInt(source)) {
+                registers.setInt(RegisterUtil.getRegisterIndex(registerDescriptor), registers.getInt(source));
+                return false;
+            }
+        }
+
+        if (computer.getMemory() instanceof PrimitiveMemory
+                && computer.getRegisters() instanceof PrimitiveRegisters
+                && argument.isRegister()
+                && moveInt(computer)) {
+            return false;
+        }
+
         Object argumentValue = getArgumentValue(computer, argument);
 
         if (RegisterUtil.isIndirect(registerDescriptor)) {
@@ -104,6 +159,40 @@ public class InstrMove extends AbstractInstruction {
         return false;
     }
 
+    /**
+     * Moves an integer between a register and a memory location without boxing
+     * it, if the source holds an integer. Returns true if the value was moved,
+     * or false if the source does not hold an integer and the move has to be
+     * done with objects.
+     *
+     * @param computer computer holding {@linkplain PrimitiveMemory} and
+     *        {@linkplain PrimitiveRegisters}
+     * @return true if the integer was moved
+     */
+    private boolean moveInt(Computer computer) {
+        PrimitiveMemory memory = (PrimitiveMemory) computer.getMemory();
+        PrimitiveRegisters registers = (PrimitiveRegisters) computer.getRegisters();
+
+        int argumentDescriptor = (Integer) argument.getValue();
+        int value;
+        if (RegisterUtil.isIndirect(argumentDescriptor)) {
+            int location = RegisterUtil.getIndirectRegisterLocation(computer, argumentDescriptor);
+            if (!memory.isInt(location)) return false;
+            value = memory.getInt(location);
+        } else {
+            int registerIndex = RegisterUtil.getRegisterIndex(argumentDescriptor);
+            if (!registers.isInt(registerIndex)) return false;
+            value = registers.getInt(registerIndex);
+        }
+
+        if (RegisterUtil.isIndirect(registerDescriptor)) {
+            memory.setInt(RegisterUtil.getIndirectRegisterLocation(computer, registerDescriptor), value);
+        } else {
+            registers.setInt(RegisterUtil.getRegisterIndex(registerDescriptor), value);
+        }
+        return true;
+    }
+
     /**
      * Returns the value of the instruction argument by these rules:
      * <ul>
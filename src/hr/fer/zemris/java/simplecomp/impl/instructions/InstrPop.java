@@ -3,6 +3,8 @@ package hr.fer.zemris.java.simplecomp.impl.instructions;
 import java.util.List;
 
 import hr.fer.zemris.java.simplecomp.RegisterUtil;
+import hr.fer.zemris.java.simplecomp.impl.PrimitiveMemory;
+import hr.fer.zemris.java.simplecomp.impl.PrimitiveRegisters;
 import hr.fer.zemris.java.simplecomp.models.Computer;
 import hr.fer.zemris.java.simplecomp.models.InstructionArgument;
 import hr.fer.zemris.java.simplecomp.models.Registers;
@@ -43,10 +45,43 @@ public class InstrPop extends AbstractInstruction {
 
         checkNonIndirectRegister(arguments.get(0), 0);
         registerIndex = RegisterUtil.getRegisterIndex((Integer) arguments.get(0).getValue());
+        setWrittenRegister(registerIndex);
+    }
+
+    /**
+     * Constructs an instance of {@code InstrPop} with the register of the
+     * specified <tt>original</tt> instruction.
+     *
+     * @param original the instruction being replaced
+     */
+    protected InstrPop(InstrPop original) {
+        super(original);
+        registerIndex = original.registerIndex;
+    }
+
+    /**
+     * Returns the index of the register to which the value is popped.
+     *
+     * @return the index of the register
+     */
+    public int getRegisterIndex() {
+        return registerIndex;
     }
 
     @Override
     public boolean execute(Computer computer) {
+        if (computer.getMemory() instanceof PrimitiveMemory
+                && computer.getRegisters() instanceof PrimitiveRegisters) {
+            PrimitiveMemory memory = (PrimitiveMemory) computer.getMemory();
+            PrimitiveRegisters registers = (PrimitiveRegisters) computer.getRegisters();
+            int location = registers.getInt(Registers.STACK_REGISTER_INDEX) + 1;
+            if (memory.isInt(location)) {
+                registers.setInt(Registers.STACK_REGISTER_INDEX, location);
+                registers.setInt(registerIndex, memory.getInt(location));
+                return false;
+            }
+        }
+
         Object value = pop(computer);
         computer.getRegisters().setRegisterValue(registerIndex, value);
 
@@ -61,6 +96,14 @@ public class InstrPop extends AbstractInstruction {
      * @return the value that is popped from the stack
      */
     protected static Object pop(Computer computer) {
+        if (computer.getRegisters() instanceof PrimitiveRegisters) {
+            PrimitiveRegisters registers = (PrimitiveRegisters) computer.getRegisters();
+            int location = registers.getInt(Registers.STACK_REGISTER_INDEX) + 1;
+            registers.setInt(Registers.STACK_REGISTER_INDEX, location);
+
+            return computer.getMemory().getLocation(location);
+        }
+
         int location = (Integer) computer.getRegisters().getRegisterValue(Registers.STACK_REGISTER_INDEX);
         // move stack pointer for 1 address up
         computer.getRegisters().setRegisterValue(Registers.STACK_REGISTER_INDEX, ++location);
@@ -3,6 +3,8 @@ package hr.fer.zemris.java.simplecomp.impl.instructions;
 import java.util.List;
 
 import hr.fer.zemris.java.simplecomp.RegisterUtil;
+import hr.fer.zemris.java.simplecomp.impl.PrimitiveMemory;
+import hr.fer.zemris.java.simplecomp.impl.PrimitiveRegisters;
 import hr.fer.zemris.java.simplecomp.models.Computer;
 import hr.fer.zemris.java.simplecomp.models.InstructionArgument;
 import hr.fer.zemris.java.simplecomp.models.Registers;
@@ -44,10 +46,43 @@ public class InstrPush extends AbstractInstruction {
 
         checkNonIndirectRegister(arguments.get(0), 0);
         registerIndex = RegisterUtil.getRegisterIndex((Integer) arguments.get(0).getValue());
+        setWrittenRegister(Registers.STACK_REGISTER_INDEX);
+    }
+
+    /**
+     * Constructs an instance of {@code InstrPush} with the register of the
+     * specified <tt>original</tt> instruction.
+     *
+     * @param original the instruction being replaced
+     */
+    protected InstrPush(InstrPush original) {
+        super(original);
+        registerIndex = original.registerIndex;
+    }
+
+    /**
+     * Returns the index of the register from which the value is pushed.
+     *
+     * @return the index of the register
+     */
+    public int getRegisterIndex() {
+        return registerIndex;
     }
 
     @Override
     public boolean execute(Computer computer) {
+        if (computer.getMemory() instanceof PrimitiveMemory
+                && computer.getRegisters() instanceof PrimitiveRegisters) {
+            PrimitiveRegisters registers = (PrimitiveRegisters) computer.getRegisters();
+            if (registers.isInt(registerIndex)) {
+                int location = registers.getInt(Registers.STACK_REGISTER_INDEX);
+                ((PrimitiveMemory) computer.getMemory()).setInt(location, registers.getInt(registerIndex));
+
+                registers.setInt(Registers.STACK_REGISTER_INDEX, location-1);
+                return false;
+            }
+        }
+
         Object value = computer.getRegisters().getRegisterValue(registerIndex);
         push(computer, value);
 
@@ -62,6 +97,15 @@ public class InstrPush extends AbstractInstruction {
      * @param value value to be pushed onto the stack
      */
     protected static void push(Computer computer, Object value) {
+        if (computer.getRegisters() instanceof PrimitiveRegisters) {
+            PrimitiveRegisters registers = (PrimitiveRegisters) computer.getRegisters();
+            int location = registers.getInt(Registers.STACK_REGISTER_INDEX);
+            computer.getMemory().setLocation(location, value);
+
+            registers.setInt(Registers.STACK_REGISTER_INDEX, location-1);
+            return;
+        }
+
         int location = (Integer) computer.getRegisters().getRegisterValue(Registers.STACK_REGISTER_INDEX);
         computer.getMemory().setLocation(location, value);
 
@@ -4,6 +4,7 @@ import java.util.List;
 
 import hr.fer.zemris.java.simplecomp.models.Computer;
 import hr.fer.zemris.java.simplecomp.models.InstructionArgument;
+import hr.fer.zemris.java.simplecomp.models.Registers;
 
 /**
  * This class represents a computer instruction that is used for returning from
@@ -34,6 +35,17 @@ public class InstrRet extends AbstractInstruction {
     public InstrRet(List<InstructionArgument> arguments) {
         super("Ret");
         checkSize(arguments, 0);
+        setWrittenRegister(Registers.STACK_REGISTER_INDEX);
+    }
+
+    /**
+     * Constructs an instance of {@code InstrRet} that replaces the specified
+     * <tt>original</tt> instruction.
+     *
+     * @param original the instruction being replaced
+     */
+    protected InstrRet(InstrRet original) {
+        super(original);
     }
 
     @Override
@@ -3,6 +3,7 @@ package hr.fer.zemris.java.simplecomp.impl.instructions;
 import java.util.List;
 
 import hr.fer.zemris.java.simplecomp.RegisterUtil;
+import hr.fer.zemris.java.simplecomp.impl.PrimitiveRegisters;
 import hr.fer.zemris.java.simplecomp.models.Computer;
 import hr.fer.zemris.java.simplecomp.models.InstructionArgument;
 
@@ -48,8 +49,46 @@ public class InstrTestEquals extends AbstractInstruction {
         this.registerIndex2 = RegisterUtil.getRegisterIndex((Integer) arguments.get(1).getValue());
     }
 
+    /**
+     * Constructs an instance of {@code InstrTestEquals} with the registers of
+     * the specified <tt>original</tt> instruction.
+     *
+     * @param original the instruction being replaced
+     */
+    protected InstrTestEquals(InstrTestEquals original) {
+        super(original);
+        this.registerIndex1 = original.registerIndex1;
+        this.registerIndex2 = original.registerIndex2;
+    }
+
+    /**
+     * Returns the index of the first register.
+     *
+     * @return the index of the first register
+     */
+    public int getRegisterIndex1() {
+        return registerIndex1;
+    }
+
+    /**
+     * Returns the index of the second register.
+     *
+     * @return the index of the second register
+     */
+    public int getRegisterIndex2() {
+        return registerIndex2;
+    }
+
     @Override
     public boolean execute(Computer computer) {
+        if (computer.getRegisters() instanceof PrimitiveRegisters) {
+            PrimitiveRegisters registers = (PrimitiveRegisters) computer.getRegisters();
+            if (registers.isInt(registerIndex1) && registers.isInt(registerIndex2)) {
+                registers.setFlag(registers.getInt(registerIndex1) == registers.getInt(registerIndex2));
+                return false;
+            }
+        }
+
         Object value1 = computer.getRegisters().getRegisterValue(registerIndex1);
         Object value2 = computer.getRegisters().getRegisterValue(registerIndex2);
 
@@ -0,0 +1,65 @@
+package hr.fer.zemris.java.simplecomp.impl.instructions;
+
+import hr.fer.zemris.java.simplecomp.impl.ProgramVerifier;
+import hr.fer.zemris.java.simplecomp.impl.RegistersImpl;
+import hr.fer.zemris.java.simplecomp.models.Computer;
+
+/**
+ * An arithmetic operation that the {@linkplain ProgramVerifier} proved to be
+ * executed only with integer operands, on a computer with
+ * {@linkplain RegistersImpl}. It replaces the original operation and applies
+ * it without checking the types and the indexes of the registers.
+ *
+ * @author Mario Bobic
+ */
+public class VerifiedArithmetic extends AbstractInstrArithmeticOperation {
+
+    /** The original operation. */
+    private final AbstractInstrArithmeticOperation operation;
+    /** The register index to where the operation result is stored. */
+    private final int result;
+    /** The register index of the first operand. */
+    private final int operand1;
+    /** The register index of the second operand. */
+    private final int operand2;
+
+    /**
+     * Constructs an instance of {@code VerifiedArithmetic} that replaces the
+     * specified <tt>operation</tt>.
+     *
+     * @param operation the original operation
+     */
+    public VerifiedArithmetic(AbstractInstrArithmeticOperation operation) {
+        super(operation);
+        this.operation = operation;
+        this.result = operation.getRegisterIndex1();
+        this.operand1 = operation.getRegisterIndex2();
+        this.operand2 = operation.getRegisterIndex3();
+    }
+
+    @Override
+    public boolean execute(Computer computer) {
+        RegistersImpl registers = (RegistersImpl) computer.getRegisters();
+        registers.setIntUnchecked(result, operation.apply(
+                registers.getIntUnchecked(operand1),
+                registers.getIntUnchecked(operand2)
+        ));
+
+        return false;
+    }
+
+    @Override
+    protected int apply(int n1, int n2) {
+        return operation.apply(n1, n2);
+    }
+
+    /**
+     * Returns the original operation replaced by this instruction.
+     *
+     * @return the original operation
+     */
+    public AbstractInstrArithmeticOperation getOperation() {
+        return operation;
+    }
+
+}
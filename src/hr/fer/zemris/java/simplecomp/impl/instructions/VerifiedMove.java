@@ -0,0 +1,89 @@
+package hr.fer.zemris.java.simplecomp.impl.instructions;
+
+import hr.fer.zemris.java.simplecomp.RegisterUtil;
+import hr.fer.zemris.java.simplecomp.impl.PrimitiveMemory;
+import hr.fer.zemris.java.simplecomp.impl.ProgramVerifier;
+import hr.fer.zemris.java.simplecomp.impl.RegistersImpl;
+import hr.fer.zemris.java.simplecomp.models.Computer;
+import hr.fer.zemris.java.simplecomp.models.InstructionArgument;
+
+/**
+ * A <tt>move</tt> instruction that the {@linkplain ProgramVerifier} proved to
+ * move only integers, and to address memory only through integer registers,
+ * on a computer with {@linkplain RegistersImpl} and a
+ * {@linkplain PrimitiveMemory}. It moves the integer without checking the
+ * types and the indexes of the registers. The memory still checks its
+ * locations.
+ *
+ * @author Mario Bobic
+ */
+public class VerifiedMove extends InstrMove {
+
+    /** Index of the destination register. */
+    private final int destination;
+    /** Indicates that the destination is a memory location. */
+    private final boolean destinationIndirect;
+    /** Offset of the destination memory location. */
+    private final int destinationOffset;
+    /** Indicates that the source is a number constant. */
+    private final boolean constant;
+    /** The number constant, or the index of the source register. */
+    private final int source;
+    /** Indicates that the source is a memory location. */
+    private final boolean sourceIndirect;
+    /** Offset of the source memory location. */
+    private final int sourceOffset;
+
+    /**
+     * Constructs an instance of {@code VerifiedMove} that replaces the
+     * specified <tt>move</tt>, whose second argument is a register or an
+     * integer.
+     *
+     * @param move the original instruction
+     */
+    public VerifiedMove(InstrMove move) {
+        super(move);
+
+        int descriptor = move.getRegisterDescriptor();
+        destination = RegisterUtil.getRegisterIndex(descriptor);
+        destinationIndirect = RegisterUtil.isIndirect(descriptor);
+        destinationOffset = RegisterUtil.getRegisterOffset(descriptor);
+
+        InstructionArgument argument = move.getArgument();
+        constant = !argument.isRegister();
+        if (constant) {
+            source = (Integer) argument.getValue();
+            sourceIndirect = false;
+            sourceOffset = 0;
+        } else {
+            int argumentDescriptor = (Integer) argument.getValue();
+            source = RegisterUtil.getRegisterIndex(argumentDescriptor);
+            sourceIndirect = RegisterUtil.isIndirect(argumentDescriptor);
+            sourceOffset = RegisterUtil.getRegisterOffset(argumentDescriptor);
+        }
+    }
+
+    @Override
+    public boolean execute(Computer computer) {
+        RegistersImpl registers = (RegistersImpl) computer.getRegisters();
+
+        int value;
+        if (constant) {
+            value = source;
+        } else if (sourceIndirect) {
+            value = ((PrimitiveMemory) computer.getMemory()).getInt(registers.getIntUnchecked(source) + sourceOffset);
+        } else {
+            value = registers.getIntUnchecked(source);
+        }
+
+        if (destinationIndirect) {
+            int location = registers.getIntUnchecked(destination) + destinationOffset;
+            ((PrimitiveMemory) computer.getMemory()).setInt(location, value);
+        } else {
+            registers.setIntUnchecked(destination, value);
+        }
+
+        return false;
+    }
+
+}
@@ -0,0 +1,46 @@
+package hr.fer.zemris.java.simplecomp.impl.instructions;
+
+import hr.fer.zemris.java.simplecomp.impl.PrimitiveMemory;
+import hr.fer.zemris.java.simplecomp.impl.ProgramVerifier;
+import hr.fer.zemris.java.simplecomp.impl.RegistersImpl;
+import hr.fer.zemris.java.simplecomp.models.Computer;
+import hr.fer.zemris.java.simplecomp.models.Registers;
+
+/**
+ * A <tt>pop</tt> instruction that the {@linkplain ProgramVerifier} proved to
+ * pop only integers with an integer stack register, on a computer with
+ * {@linkplain RegistersImpl} and a {@linkplain PrimitiveMemory}. It pops the
+ * integer without checking the types and the indexes of the registers. The
+ * memory still checks its locations.
+ *
+ * @author Mario Bobic
+ */
+public class VerifiedPop extends InstrPop {
+
+    /** The index of the register to which the value will be popped. */
+    private final int registerIndex;
+
+    /**
+     * Constructs an instance of {@code VerifiedPop} that replaces the
+     * specified <tt>pop</tt>.
+     *
+     * @param pop the original instruction
+     */
+    public VerifiedPop(InstrPop pop) {
+        super(pop);
+        this.registerIndex = pop.getRegisterIndex();
+    }
+
+    @Override
+    public boolean execute(Computer computer) {
+        RegistersImpl registers = (RegistersImpl) computer.getRegisters();
+        int location = registers.getIntUnchecked(Registers.STACK_REGISTER_INDEX) + 1;
+        int value = ((PrimitiveMemory) computer.getMemory()).getInt(location);
+
+        registers.setIntUnchecked(Registers.STACK_REGISTER_INDEX, location);
+        registers.setIntUnchecked(registerIndex, value);
+
+        return false;
+    }
+
+}
@@ -0,0 +1,45 @@
+package hr.fer.zemris.java.simplecomp.impl.instructions;
+
+import hr.fer.zemris.java.simplecomp.impl.PrimitiveMemory;
+import hr.fer.zemris.java.simplecomp.impl.ProgramVerifier;
+import hr.fer.zemris.java.simplecomp.impl.RegistersImpl;
+import hr.fer.zemris.java.simplecomp.models.Computer;
+import hr.fer.zemris.java.simplecomp.models.Registers;
+
+/**
+ * A <tt>push</tt> instruction that the {@linkplain ProgramVerifier} proved to
+ * push only integers with an integer stack register, on a computer with
+ * {@linkplain RegistersImpl} and a {@linkplain PrimitiveMemory}. It pushes the
+ * integer without checking the types and the indexes of the registers. The
+ * memory still checks its locations.
+ *
+ * @author Mario Bobic
+ */
+public class VerifiedPush extends InstrPush {
+
+    /** The index of the register from which the value will be pushed. */
+    private final int registerIndex;
+
+    /**
+     * Constructs an instance of {@code VerifiedPush} that replaces the
+     * specified <tt>push</tt>.
+     *
+     * @param push the original instruction
+     */
+    public VerifiedPush(InstrPush push) {
+        super(push);
+        this.registerIndex = push.getRegisterIndex();
+    }
+
+    @Override
+    public boolean execute(Computer computer) {
+        RegistersImpl registers = (RegistersImpl) computer.getRegisters();
+        int location = registers.getIntUnchecked(Registers.STACK_REGISTER_INDEX);
+        ((PrimitiveMemory) computer.getMemory()).setInt(location, registers.getIntUnchecked(registerIndex));
+
+        registers.setIntUnchecked(Registers.STACK_REGISTER_INDEX, location-1);
+
+        return false;
+    }
+
+}
@@ -0,0 +1,41 @@
+package hr.fer.zemris.java.simplecomp.impl.instructions;
+
+import hr.fer.zemris.java.simplecomp.impl.PrimitiveMemory;
+import hr.fer.zemris.java.simplecomp.impl.ProgramVerifier;
+import hr.fer.zemris.java.simplecomp.impl.RegistersImpl;
+import hr.fer.zemris.java.simplecomp.models.Computer;
+import hr.fer.zemris.java.simplecomp.models.Registers;
+
+/**
+ * A <tt>ret</tt> instruction that the {@linkplain ProgramVerifier} proved to
+ * pop only integer return addresses with an integer stack register, on a
+ * computer with {@linkplain RegistersImpl} and a {@linkplain PrimitiveMemory}.
+ * It returns without checking the types of the stack register and the
+ * return address. The memory still checks its locations.
+ *
+ * @author Mario Bobic
+ */
+public class VerifiedRet extends InstrRet {
+
+    /**
+     * Constructs an instance of {@code VerifiedRet} that replaces the
+     * specified <tt>ret</tt>.
+     *
+     * @param ret the original instruction
+     */
+    public VerifiedRet(InstrRet ret) {
+        super(ret);
+    }
+
+    @Override
+    public boolean execute(Computer computer) {
+        RegistersImpl registers = (RegistersImpl) computer.getRegisters();
+        int location = registers.getIntUnchecked(Registers.STACK_REGISTER_INDEX) + 1;
+        registers.setIntUnchecked(Registers.STACK_REGISTER_INDEX, location);
+
+        registers.setProgramCounter(((PrimitiveMemory) computer.getMemory()).getInt(location));
+
+        return false;
+    }
+
+}
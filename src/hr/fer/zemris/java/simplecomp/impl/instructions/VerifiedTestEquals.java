@@ -0,0 +1,42 @@
+package hr.fer.zemris.java.simplecomp.impl.instructions;
+
+import hr.fer.zemris.java.simplecomp.impl.ProgramVerifier;
+import hr.fer.zemris.java.simplecomp.impl.RegistersImpl;
+import hr.fer.zemris.java.simplecomp.models.Computer;
+
+/**
+ * A <tt>testEquals</tt> instruction that the {@linkplain ProgramVerifier}
+ * proved to be executed only on two integer registers, on a computer with
+ * {@linkplain RegistersImpl}. It compares the integers without checking the
+ * types and the indexes of the registers.
+ *
+ * @author Mario Bobic
+ */
+public class VerifiedTestEquals extends InstrTestEquals {
+
+    /** The index of the first register. */
+    private final int registerIndex1;
+    /** The index of the second register. */
+    private final int registerIndex2;
+
+    /**
+     * Constructs an instance of {@code VerifiedTestEquals} that replaces the
+     * specified <tt>test</tt>.
+     *
+     * @param test the original instruction
+     */
+    public VerifiedTestEquals(InstrTestEquals test) {
+        super(test);
+        this.registerIndex1 = test.getRegisterIndex1();
+        this.registerIndex2 = test.getRegisterIndex2();
+    }
+
+    @Override
+    public boolean execute(Computer computer) {
+        RegistersImpl registers = (RegistersImpl) computer.getRegisters();
+        registers.setFlag(registers.getIntUnchecked(registerIndex1) == registers.getIntUnchecked(registerIndex2));
+
+        return false;
+    }
+
+}
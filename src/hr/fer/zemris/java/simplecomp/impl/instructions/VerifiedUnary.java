@@ -0,0 +1,56 @@
+package hr.fer.zemris.java.simplecomp.impl.instructions;
+
+import hr.fer.zemris.java.simplecomp.impl.ProgramVerifier;
+import hr.fer.zemris.java.simplecomp.impl.RegistersImpl;
+import hr.fer.zemris.java.simplecomp.models.Computer;
+
+/**
+ * An unary operation that the {@linkplain ProgramVerifier} proved to be
+ * executed only on an integer register, on a computer with
+ * {@linkplain RegistersImpl}. It replaces the original operation and applies
+ * it without checking the type and the index of the register.
+ *
+ * @author Mario Bobic
+ */
+public class VerifiedUnary extends AbstractInstrUnaryOperation {
+
+    /** The original operation. */
+    private final AbstractInstrUnaryOperation operation;
+    /** The register index to which the unary operation is performed. */
+    private final int registerIndex;
+
+    /**
+     * Constructs an instance of {@code VerifiedUnary} that replaces the
+     * specified <tt>operation</tt>.
+     *
+     * @param operation the original operation
+     */
+    public VerifiedUnary(AbstractInstrUnaryOperation operation) {
+        super(operation);
+        this.operation = operation;
+        this.registerIndex = operation.getRegisterIndex();
+    }
+
+    @Override
+    public boolean execute(Computer computer) {
+        RegistersImpl registers = (RegistersImpl) computer.getRegisters();
+        registers.setIntUnchecked(registerIndex, operation.apply(registers.getIntUnchecked(registerIndex)));
+
+        return false;
+    }
+
+    @Override
+    protected int apply(int n) {
+        return operation.apply(n);
+    }
+
+    /**
+     * Returns the original operation replaced by this instruction.
+     *
+     * @return the original operation
+     */
+    public AbstractInstrUnaryOperation getOperation() {
+        return operation;
+    }
+
+}
@@ -0,0 +1,278 @@
+package hr.fer.zemris.java.simplecomp.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * A buffered input of a computer, read from by the <tt>iinput</tt>
+ * instruction. The source stays open across instructions and reads ahead from
+ * the underlying {@linkplain InputStream} in large blocks, so no input is lost
+ * between two reads.
+ * <p>
+ * Input is read line by line. A line is terminated by a line feed
+ * (<tt>'\n'</tt>), a carriage return (<tt>'\r'</tt>) or a carriage return
+ * followed immediately by a line feed, as with the
+ * {@linkplain java.io.BufferedReader#readLine() BufferedReader}. Integers are
+ * parsed directly from the buffered bytes by the {@linkplain #readInt()}
+ * method, without building strings.
+ * <p>
+ * The source of the standard input is shared, and can be obtained by the
+ * {@linkplain #stdin()} method.
+ *
+ * @author Mario Bobic
+ */
+public class InputSource {
+
+    /** Default size of the buffer, in bytes. */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /** The shared source of the standard input. */
+    private static InputSource stdin;
+    /** The standard input stream the shared source reads from. */
+    private static InputStream stdinStream;
+
+    /** The underlying input stream. */
+    private final InputStream in;
+    /** The input buffer. */
+    private final byte[] buffer;
+    /** Position of the next byte to be read from the buffer. */
+    private int pos;
+    /** Number of valid bytes in the buffer. */
+    private int limit;
+    /** Indicates that the last line ended with a carriage return. */
+    private boolean skipLF;
+    /** Bytes of the line being read by {@linkplain #readLine()}. */
+    private byte[] line = new byte[80];
+    /** Time spent waiting for the underlying stream, in nanoseconds. */
+    private long waitNanos;
+
+    /**
+     * Constructs an instance of {@code InputSource} that reads from the
+     * specified input stream with a buffer of the default size.
+     *
+     * @param in the underlying input stream
+     * @throws NullPointerException if the input stream is <tt>null</tt>
+     */
+    public InputSource(InputStream in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructs an instance of {@code InputSource} that reads from the
+     * specified input stream with a buffer of the specified size.
+     *
+     * @param in the underlying input stream
+     * @param bufferSize size of the buffer, in bytes
+     * @throws NullPointerException if the input stream is <tt>null</tt>
+     * @throws IllegalArgumentException if the buffer size is not positive
+     */
+    public InputSource(InputStream in, int bufferSize) {
+        if (in == null) {
+            throw new NullPointerException("Input stream must not be null.");
+        }
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Buffer size must be positive.");
+        }
+        this.in = in;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Returns the shared source of the {@linkplain System#in standard input}.
+     * All readers of the standard input should use this source, as any other
+     * buffered reader may consume input that this source would then miss. If
+     * the standard input stream is {@linkplain System#setIn(InputStream)
+     * replaced}, a new source is created for the new stream.
+     *
+     * @return the source of the standard input
+     */
+    public static synchronized InputSource stdin() {
+        if (stdin == null || stdinStream != System.in) {
+            stdinStream = System.in;
+            stdin = new InputSource(stdinStream);
+        }
+        return stdin;
+    }
+
+    /**
+     * Reads a line and parses it as a decimal integer, with an optional sign.
+     * The line is consumed even if it is not a valid integer.
+     *
+     * @return the parsed integer
+     * @throws NumberFormatException if the line is not a valid integer
+     * @throws EOFException if the end of the input is reached
+     * @throws IOException if an I/O error occurs
+     */
+    public int readInt() throws IOException {
+        int c = startLine();
+        if (c < 0) {
+            throw new EOFException("End of input.");
+        }
+
+        // accumulate negatively, which also covers Integer.MIN_VALUE
+        boolean negative = false;
+        int limit = -Integer.MAX_VALUE;
+        if (c == '-') {
+            negative = true;
+            limit = Integer.MIN_VALUE;
+            c = read();
+        } else if (c == '+') {
+            c = read();
+        }
+
+        int multmin = limit / 10;
+        int result = 0;
+        int digits = 0;
+        boolean valid = true;
+
+        for (; c >= 0 && c != '\n' && c != '\r'; c = read()) {
+            if (!valid) continue;
+
+            int digit = c - '0';
+            if (digit < 0 || digit > 9 || result < multmin) {
+                valid = false;
+                continue;
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                valid = false;
+                continue;
+            }
+            result -= digit;
+            digits++;
+        }
+        endLine(c);
+
+        if (!valid || digits == 0) {
+            throw new NumberFormatException("Input line is not an integer.");
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * Reads a line, decoded in the default charset of the platform. The line
+     * terminator is not included.
+     *
+     * @return the line, or <tt>null</tt> if the end of the input is reached
+     * @throws IOException if an I/O error occurs
+     */
+    public String readLine() throws IOException {
+        int c = startLine();
+        if (c < 0) {
+            return null;
+        }
+
+        int length = 0;
+        for (; c >= 0 && c != '\n' && c != '\r'; c = read()) {
+            if (length == line.length) {
+                line = Arrays.copyOf(line, length * 2);
+            }
+            line[length++] = (byte) c;
+        }
+        endLine(c);
+
+        return new String(line, 0, length, Charset.defaultCharset());
+    }
+
+    /**
+     * Returns true if a whole line is already buffered, so that reading it
+     * will not block. Computers flush their output before reading a line that
+     * is not buffered, as the user may have to be prompted for it.
+     *
+     * @return true if a whole line is buffered
+     */
+    public boolean hasBufferedLine() {
+        int start = pos;
+        if (skipLF && start < limit && buffer[start] == '\n') {
+            start++;
+        }
+        for (int i = start; i < limit; i++) {
+            if (buffer[i] == '\n' || buffer[i] == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if reading a line may proceed without waiting for input,
+     * that is if a whole line is buffered or the underlying stream has bytes
+     * available. A stream at its end may report no available bytes, in which
+     * case this method returns false although reading would not block.
+     *
+     * @return true if input is ready
+     */
+    public boolean isReady() {
+        if (hasBufferedLine()) {
+            return true;
+        }
+        try {
+            return in.available() > 0;
+        } catch (IOException e) {
+            // a broken stream fails the next read instead
+            return true;
+        }
+    }
+
+    /**
+     * Returns the total time this source spent waiting for the underlying
+     * stream, in nanoseconds. This is the time readers of this source were
+     * blocked for input.
+     *
+     * @return the waiting time in nanoseconds
+     */
+    public long getWaitNanos() {
+        return waitNanos;
+    }
+
+    /**
+     * Skips the line feed following a carriage return that ended the last
+     * line, and returns the first byte of the next line.
+     *
+     * @return the first byte of the line, or <tt>-1</tt> at the end of input
+     * @throws IOException if an I/O error occurs
+     */
+    private int startLine() throws IOException {
+        int c = read();
+        if (skipLF) {
+            skipLF = false;
+            if (c == '\n') {
+                c = read();
+            }
+        }
+        return c;
+    }
+
+    /**
+     * Records how the line that ended with the specified byte was terminated.
+     *
+     * @param c the byte that ended the line, or <tt>-1</tt> at the end of input
+     */
+    private void endLine(int c) {
+        skipLF = c == '\r';
+    }
+
+    /**
+     * Reads the next byte, filling the buffer if it is empty.
+     *
+     * @return the next byte, or <tt>-1</tt> at the end of input
+     * @throws IOException if an I/O error occurs
+     */
+    private int read() throws IOException {
+        if (pos == limit) {
+            long start = System.nanoTime();
+            int n = in.read(buffer, 0, buffer.length);
+            waitNanos += System.nanoTime() - start;
+            if (n <= 0) {
+                return -1;
+            }
+            pos = 0;
+            limit = n;
+        }
+        return buffer[pos++] & 0xFF;
+    }
+
+}
@@ -0,0 +1,223 @@
+package hr.fer.zemris.java.simplecomp.io;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * A buffered output of a computer, written to by the <tt>echo</tt>
+ * instruction. Output is collected in a byte buffer and written to the
+ * underlying {@linkplain OutputStream} only when the buffer fills or when the
+ * sink is explicitly {@linkplain #flush() flushed}, which the computer does at
+ * <tt>halt</tt> and before blocking for input. The buffer is allocated when
+ * the first byte is printed, so a sink that is never printed to, such as the
+ * default sink of a computer that is given another one, costs no buffer.
+ * <p>
+ * Integers are formatted by writing their digits directly into the buffer, so
+ * printing an integer allocates no objects. Strings are written as the
+ * {@linkplain System#out standard output} would write them, in the default
+ * charset of the platform.
+ * <p>
+ * Any {@linkplain IOException} of the underlying stream is rethrown as an
+ * {@linkplain UncheckedIOException}, since instructions can not throw checked
+ * exceptions.
+ *
+ * @author Mario Bobic
+ */
+public class OutputSink implements Flushable {
+
+    /** Default size of the buffer, in bytes. */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    /** Maximum number of bytes of a formatted integer. */
+    private static final int MAX_INT_LENGTH = 11;
+    /** Empty buffer of a sink that has not been printed to yet. */
+    private static final byte[] NO_BUFFER = new byte[0];
+
+    /** The underlying output stream. */
+    private final OutputStream out;
+    /** Size of the output buffer, in bytes. */
+    private final int bufferSize;
+    /** The output buffer, empty until the first byte is printed. */
+    private byte[] buffer = NO_BUFFER;
+    /** Number of bytes in the buffer. */
+    private int count;
+    /** Number of bytes printed to this sink. */
+    private long written;
+
+    /**
+     * Constructs an instance of {@code OutputSink} that writes to the
+     * specified output stream with a buffer of the default size.
+     *
+     * @param out the underlying output stream
+     * @throws NullPointerException if the output stream is <tt>null</tt>
+     */
+    public OutputSink(OutputStream out) {
+        this(out, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructs an instance of {@code OutputSink} that writes to the
+     * specified output stream with a buffer of the specified size.
+     *
+     * @param out the underlying output stream
+     * @param bufferSize size of the buffer, in bytes
+     * @throws NullPointerException if the output stream is <tt>null</tt>
+     * @throws IllegalArgumentException if the buffer size is less than
+     *         {@value #MAX_INT_LENGTH}
+     */
+    public OutputSink(OutputStream out, int bufferSize) {
+        if (out == null) {
+            throw new NullPointerException("Output stream must not be null.");
+        }
+        if (bufferSize < MAX_INT_LENGTH) {
+            throw new IllegalArgumentException("Buffer size must be at least " + MAX_INT_LENGTH + ".");
+        }
+        this.out = out;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Prints the specified <tt>object</tt> the way
+     * {@linkplain java.io.PrintStream#print(Object)} would print it.
+     * Integers are printed without allocation.
+     *
+     * @param object the object to be printed
+     */
+    public void print(Object object) {
+        if (object instanceof Integer) {
+            print(((Integer) object).intValue());
+        } else {
+            print(String.valueOf(object));
+        }
+    }
+
+    /**
+     * Prints the decimal representation of the specified integer.
+     *
+     * @param value the integer to be printed
+     */
+    public void print(int value) {
+        if (buffer.length - count < MAX_INT_LENGTH) {
+            flushBuffer();
+        }
+
+        // work with the negative value, which also covers Integer.MIN_VALUE
+        boolean negative = value < 0;
+        int n = negative ? value : -value;
+
+        int length = negative ? 2 : 1;
+        for (int i = n; i <= -10; i /= 10) {
+            length++;
+        }
+
+        int end = count + length;
+        int pos = end;
+        do {
+            buffer[--pos] = (byte) ('0' - n % 10);
+            n /= 10;
+        } while (n != 0);
+        if (negative) {
+            buffer[--pos] = '-';
+        }
+
+        count = end;
+        written += length;
+    }
+
+    /**
+     * Prints the specified string.
+     *
+     * @param s the string to be printed
+     */
+    public void print(String s) {
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            if (s.charAt(i) >= 0x80) {
+                // not plain ASCII, let the platform charset encode it
+                byte[] bytes = s.getBytes();
+                write(bytes);
+                written += bytes.length;
+                return;
+            }
+        }
+
+        for (int i = 0; i < length; ) {
+            if (count == buffer.length) {
+                flushBuffer();
+            }
+            int chunk = Math.min(length - i, buffer.length - count);
+            for (int end = i + chunk; i < end; i++) {
+                buffer[count++] = (byte) s.charAt(i);
+            }
+        }
+        written += length;
+    }
+
+    /**
+     * Writes the specified bytes to the sink.
+     *
+     * @param bytes the bytes to be written
+     */
+    private void write(byte[] bytes) {
+        if (bytes.length > buffer.length - count) {
+            flushBuffer();
+        }
+
+        if (bytes.length > buffer.length) {
+            try {
+                out.write(bytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            System.arraycopy(bytes, 0, buffer, count, bytes.length);
+            count += bytes.length;
+        }
+    }
+
+    /**
+     * Returns the number of bytes printed to this sink, including those that
+     * are still buffered.
+     *
+     * @return the number of printed bytes
+     */
+    public long getBytesWritten() {
+        return written;
+    }
+
+    /**
+     * Writes the buffered bytes to the underlying stream and flushes it.
+     */
+    @Override
+    public void flush() {
+        flushBuffer();
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the buffered bytes to the underlying stream, without flushing it.
+     * Allocates the buffer if it has not been allocated yet.
+     */
+    private void flushBuffer() {
+        if (count == 0) {
+            if (buffer == NO_BUFFER) {
+                buffer = new byte[bufferSize];
+            }
+            return;
+        }
+
+        try {
+            out.write(buffer, 0, count);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            count = 0;
+        }
+    }
+
+}
@@ -0,0 +1,163 @@
+package hr.fer.zemris.java.simplecomp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class BatchRunnerTests {
+
+    /* ------------------------------ Batch runner tests ------------------------------ */
+
+    @Test
+    public void testRunExamples() {
+        List<Path> programs = Arrays.asList(
+                Paths.get("examples/asmProgram1.txt"),
+                Paths.get("examples/asmProgram2.txt"),
+                Paths.get("examples/prim1.txt"),
+                Paths.get("examples/asmProgram3.txt"));
+
+        BatchRunner runner = new BatchRunner(2, Simulator.DEFAULT_MEMORY_SIZE);
+        List<BatchResult> results = runner.run(programs);
+        runner.shutdown();
+
+        assertEquals(programs.size(), results.size());
+        for (int i = 0; i < programs.size(); i++) {
+            BatchResult result = results.get(i);
+            assertEquals(programs.get(i), result.getPath());
+            assertTrue(result.isEndedRegularly());
+            assertNull(result.getFailure());
+            assertTrue(result.getExecutedInstructions() > 0);
+        }
+    }
+
+    @Test
+    public void testIsolatedInputAndOutput() throws Exception {
+        Path dir = Files.createTempDirectory("batch");
+        Path program = dir.resolve("double.txt");
+        Path input = dir.resolve("double.txt.in");
+        try {
+            Files.write(program, (
+                      "        iinput @n\n"
+                    + "        load r0, @n\n"
+                    + "        add r0, r0, r0\n"
+                    + "        echo r0\n"
+                    + "        halt\n"
+                    + "@n:     DEFINT 0\n").getBytes());
+            Files.write(input, "21\n".getBytes());
+
+            BatchResult result = BatchRunner.runProgram(program, 256);
+            assertTrue(result.isEndedRegularly());
+            assertEquals(5, result.getExecutedInstructions());
+            assertEquals("42", new String(result.getOutput()));
+        } finally {
+            Files.deleteIfExists(input);
+            Files.deleteIfExists(program);
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void testOutputKeepsRelativePaths() throws Exception {
+        Path dir = Files.createTempDirectory("batch");
+        Path outputDir = Files.createTempDirectory("batch-out");
+        try {
+            Files.createDirectories(dir.resolve("a"));
+            Files.createDirectories(dir.resolve("b"));
+            Files.write(dir.resolve("a/prog.txt"), "load r0, @s\necho r0\nhalt\n@s: DEFSTR \"a\"\n".getBytes());
+            Files.write(dir.resolve("b/prog.txt"), "load r0, @s\necho r0\nhalt\n@s: DEFSTR \"b\"\n".getBytes());
+
+            BatchRunner.main(new String[] {"--threads=1", "--output-dir=" + outputDir, dir.toString()});
+
+            assertEquals("a", new String(Files.readAllBytes(outputDir.resolve("a/prog.txt.out"))));
+            assertEquals("b", new String(Files.readAllBytes(outputDir.resolve("b/prog.txt.out"))));
+        } finally {
+            deleteTree(dir);
+            deleteTree(outputDir);
+        }
+    }
+
+    @Test
+    public void testFailureRecorded() throws Exception {
+        Path program = Files.createTempFile("batch", ".txt");
+        try {
+            Files.write(program, "echo r0\nmove r1, [r2+0]\nhalt\n".getBytes());
+
+            BatchResult result = BatchRunner.runProgram(program, 256);
+            assertFalse(result.isEndedRegularly());
+            assertEquals(2, result.getExecutedInstructions());
+            assertTrue(result.getFailure().endsWith("at instruction on address 1"));
+            assertEquals("null", new String(result.getOutput()));
+        } finally {
+            Files.delete(program);
+        }
+    }
+
+    @Test
+    public void testInstructionLimit() throws Exception {
+        Path program = Files.createTempFile("batch", ".txt");
+        try {
+            Files.write(program, "@l: jump @l\n".getBytes());
+
+            BatchResult result = BatchRunner.runProgram(program, 256, null, 100_000, 1024);
+            assertFalse(result.isEndedRegularly());
+            assertEquals(100_000, result.getExecutedInstructions());
+            assertEquals("Instruction limit of 100000 exceeded", result.getFailure());
+        } finally {
+            Files.delete(program);
+        }
+    }
+
+    @Test
+    public void testOutputLimit() throws Exception {
+        Path program = Files.createTempFile("batch", ".txt");
+        try {
+            Files.write(program, "move r0, 7\n@l: echo r0\njump @l\n".getBytes());
+
+            BatchResult result = BatchRunner.runProgram(program, 256, null, 1_000_000, 100);
+            assertFalse(result.isEndedRegularly());
+            assertTrue(result.getExecutedInstructions() < 1_000_000);
+            assertEquals("Output limit of 100 bytes exceeded", result.getFailure());
+            assertEquals(100, result.getOutput().length);
+        } finally {
+            Files.delete(program);
+        }
+    }
+
+    @Test
+    public void testInputEnd() throws Exception {
+        Path program = Files.createTempFile("batch", ".txt");
+        try {
+            // there is no input file, so reading fails instead of waiting for input
+            Files.write(program, "iinput @n\nhalt\n@n: DEFINT 0\n".getBytes());
+
+            BatchResult result = BatchRunner.runProgram(program, 256);
+            assertFalse(result.isEndedRegularly());
+            assertEquals(1, result.getExecutedInstructions());
+            assertTrue(result.getFailure().endsWith("at instruction on address 0"));
+        } finally {
+            Files.delete(program);
+        }
+    }
+
+    private static void deleteTree(Path root) throws Exception {
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,883 @@
+package hr.fer.zemris.java.simplecomp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import hr.fer.zemris.java.simplecomp.impl.BlockExecutionUnit;
+import hr.fer.zemris.java.simplecomp.impl.ComputerImpl;
+import hr.fer.zemris.java.simplecomp.impl.ComputerMetrics;
+import hr.fer.zemris.java.simplecomp.impl.DecodedExecutionUnit;
+import hr.fer.zemris.java.simplecomp.impl.ExecutionUnitImpl;
+import hr.fer.zemris.java.simplecomp.impl.FlightRecorder;
+import hr.fer.zemris.java.simplecomp.impl.InstructionFuser;
+import hr.fer.zemris.java.simplecomp.impl.ProfilingExecutionUnit;
+import hr.fer.zemris.java.simplecomp.impl.ProgramOptimizer;
+import hr.fer.zemris.java.simplecomp.impl.ProgramVerifier;
+import hr.fer.zemris.java.simplecomp.impl.SourceMap;
+import hr.fer.zemris.java.simplecomp.impl.TieredExecutionUnit;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrIncrement;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrJump;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrMove;
+import hr.fer.zemris.java.simplecomp.impl.instructions.VerifiedMove;
+import hr.fer.zemris.java.simplecomp.impl.instructions.VerifiedRet;
+import hr.fer.zemris.java.simplecomp.impl.instructions.VerifiedTestEquals;
+import hr.fer.zemris.java.simplecomp.impl.instructions.VerifiedUnary;
+import hr.fer.zemris.java.simplecomp.io.InputSource;
+import hr.fer.zemris.java.simplecomp.io.OutputSink;
+import hr.fer.zemris.java.simplecomp.models.Computer;
+import hr.fer.zemris.java.simplecomp.models.ExecutionUnit;
+import hr.fer.zemris.java.simplecomp.parser.InstructionCreatorImpl;
+import hr.fer.zemris.java.simplecomp.parser.ProgramParser;
+
+@SuppressWarnings("javadoc")
+public class ExecutionUnitTests {
+
+    /** Program that counts r0 down from 1000 to 0 and stores the result in r1. */
+    private static final String LOOP_PROGRAM =
+              "        load r0, @count\n"
+            + "        load r2, @zero\n"
+            + "        move r1, 0\n"
+            + "@loop:  testEquals r0, r2\n"
+            + "        jumpIfTrue @end\n"
+            + "        decrement r0\n"
+            + "        increment r1\n"
+            + "        jump @loop\n"
+            + "@end:   halt\n"
+            + "@count: DEFINT 1000\n"
+            + "@zero:  DEFINT 0\n";
+
+    /** Program that overwrites its instruction on address 3 with a halt. */
+    private static final String SELF_MODIFYING_PROGRAM =
+              "        move r0, 3\n"
+            + "        load r1, @h\n"
+            + "        move [r0+0], r1\n"
+            + "        move r2, 1\n"
+            + "@h:     halt\n";
+
+    /** Program that overwrites an instruction in the body of its hot loop with a halt. */
+    private static final String HOT_SELF_MODIFYING_PROGRAM =
+              "        load r5, @h\n"
+            + "        move r6, @stop\n"
+            + "        move r0, 0\n"
+            + "        move r7, 3\n"
+            + "@loop:  increment r0\n"
+            + "@stop:  move r1, 0\n"
+            + "        testEquals r0, r7\n"
+            + "        jumpIfTrue @patch\n"
+            + "        jump @loop\n"
+            + "@patch: move [r6+0], r5\n"
+            + "        jump @loop\n"
+            + "@h:     halt\n";
+
+    /** Program that reads 3, stores it indirectly, echoes it and recurses 4 calls deep. */
+    private static final String METRICS_PROGRAM =
+              "        iinput @n\n"
+            + "        load r0, @n\n"
+            + "        move r1, 0\n"
+            + "        move r2, @buf\n"
+            + "        move [r2+0], r0\n"
+            + "        echo r0\n"
+            + "        call @down\n"
+            + "        halt\n"
+            + "@down:  testEquals r0, r1\n"
+            + "        jumpIfTrue @back\n"
+            + "        decrement r0\n"
+            + "        call @down\n"
+            + "@back:  ret\n"
+            + "@n:     DEFINT 0\n"
+            + "@buf:   DEFINT 0\n"
+            + "        RESERVE:9\n"
+            + "@stackTop: RESERVE\n";
+
+    /* ------------------------------ Decoded execution unit tests ------------------------------ */
+
+    @Test
+    public void testDecodedLoop() throws Exception {
+        Computer c = run(LOOP_PROGRAM, new DecodedExecutionUnit());
+
+        assertEquals(0, c.getRegisters().getRegisterValue(0));
+        assertEquals(1000, c.getRegisters().getRegisterValue(1));
+    }
+
+    @Test
+    public void testDecodedSelfModifying() throws Exception {
+        Computer c = run(SELF_MODIFYING_PROGRAM, new DecodedExecutionUnit());
+
+        // the move on address 3 was overwritten by a halt before it executed
+        assertNull(c.getRegisters().getRegisterValue(2));
+        assertEquals(4, c.getRegisters().getProgramCounter());
+    }
+
+
+    /* ------------------------------ Block execution unit tests ------------------------------ */
+
+    @Test
+    public void testBlocksLoop() throws Exception {
+        Computer c = run(LOOP_PROGRAM, new BlockExecutionUnit());
+
+        assertEquals(0, c.getRegisters().getRegisterValue(0));
+        assertEquals(1000, c.getRegisters().getRegisterValue(1));
+    }
+
+    @Test
+    public void testBlocksSelfModifying() throws Exception {
+        Computer c = run(SELF_MODIFYING_PROGRAM, new BlockExecutionUnit());
+
+        // the move on address 3 is in the same block as the write that replaced it
+        assertNull(c.getRegisters().getRegisterValue(2));
+        assertEquals(4, c.getRegisters().getProgramCounter());
+    }
+
+    @Test
+    public void testBlocksFaultAddress() throws Exception {
+        Computer c = parse("move r0, 1\nmove r1, 2\nmove r2, [r3+0]\nhalt\n");
+
+        // r3 is empty, so the indirect move on address 2 fails
+        assertFalse(new BlockExecutionUnit().go(c));
+        assertEquals(3, c.getRegisters().getProgramCounter());
+    }
+
+    @Test
+    public void testBlocksLongBlock() throws Exception {
+        // a block of 400 instructions is longer than a compiled block can be
+        StringBuilder program = new StringBuilder("move r0, 0\nmove r1, 0\n");
+        for (int i = 0; i < 400; i++) {
+            program.append(i % 2 == 0 ? "increment r0\n" : "add r1, r1, r0\n");
+        }
+        program.append("halt\n");
+
+        Computer c = new ComputerImpl(1024, 16);
+        ProgramParser.parse(new StringReader(program.toString()), c,
+                new InstructionCreatorImpl("hr.fer.zemris.java.simplecomp.impl.instructions"));
+
+        assertTrue(new BlockExecutionUnit().go(c));
+        assertEquals(200, c.getRegisters().getRegisterValue(0));
+        assertEquals(200 * 201 / 2, c.getRegisters().getRegisterValue(1));
+    }
+
+    @Test
+    public void testBlocksFaultInRepeatedBlock() throws Exception {
+        // on the second pass the indirect move reads the string, and the add after it fails
+        Computer c = parse(
+                  "        move r0, 0\n"
+                + "        move r3, 0\n"
+                + "        move r4, @t\n"
+                + "@loop:  increment r0\n"
+                + "        increment r3\n"
+                + "        add r5, r4, r3\n"
+                + "        load r6, @t\n"
+                + "        move r2, [r5+0]\n"
+                + "        add r2, r2, r6\n"
+                + "        jump @loop\n"
+                + "@t:     DEFINT 1\n"
+                + "        DEFINT 2\n"
+                + "        DEFSTR \"x\"\n");
+
+        assertFalse(new BlockExecutionUnit().go(c));
+        assertEquals(2, c.getRegisters().getRegisterValue(0));
+        assertEquals(9, c.getRegisters().getProgramCounter());
+    }
+
+
+    /* ------------------------------ Tiered execution unit tests ------------------------------ */
+
+    @Test
+    public void testTieredLoop() throws Exception {
+        TieredExecutionUnit exec = new TieredExecutionUnit(1, 1);
+        Computer c = run(LOOP_PROGRAM, exec);
+
+        assertEquals(0, c.getRegisters().getRegisterValue(0));
+        assertEquals(1000, c.getRegisters().getRegisterValue(1));
+        assertTrue(exec.getPromotions() > 0);
+        assertEquals(0, exec.getDeoptimizations());
+    }
+
+    @Test
+    public void testTieredShortProgramNotPromoted() throws Exception {
+        TieredExecutionUnit exec = new TieredExecutionUnit();
+        run(SELF_MODIFYING_PROGRAM, exec);
+
+        assertEquals(0, exec.getPromotions());
+    }
+
+    @Test
+    public void testTieredDeoptimizesOnCodeWrite() throws Exception {
+        TieredExecutionUnit exec = new TieredExecutionUnit(1, 1);
+        Computer c = run(HOT_SELF_MODIFYING_PROGRAM, exec);
+
+        // the fourth iteration halts on the overwritten instruction
+        assertEquals(4, c.getRegisters().getRegisterValue(0));
+        assertEquals(6, c.getRegisters().getProgramCounter());
+        assertTrue(exec.getDeoptimizations() > 0);
+    }
+
+    @Test
+    public void testTieredDeoptimizesOnTypeChange() throws Exception {
+        Computer c = parse(
+                  "        move r0, 0\n"
+                + "        move r1, 2\n"
+                + "@loop:  increment r0\n"
+                + "        testEquals r0, r1\n"
+                + "        jumpIfTrue @str\n"
+                + "        jump @loop\n"
+                + "@str:   load r0, @s\n"
+                + "        jump @loop\n"
+                + "@s:     DEFSTR \"x\"\n");
+
+        // the compiled loop assumes r0 holds an integer, the interpreter then fails on increment
+        TieredExecutionUnit exec = new TieredExecutionUnit(1, 1);
+        assertFalse(exec.go(c));
+        assertEquals(1, exec.getDeoptimizations());
+        assertEquals(3, c.getRegisters().getProgramCounter());
+    }
+
+    @Test
+    public void testTieredFailsOnLoadedValue() throws Exception {
+        String program =
+                  "        move r0, 0\n"
+                + "        move r1, 3\n"
+                + "@loop:  increment r0\n"
+                + "        load r2, @v\n"
+                + "        increment r2\n"
+                + "        testEquals r0, r1\n"
+                + "        jumpIfTrue @str\n"
+                + "        jump @loop\n"
+                + "@str:   load r5, @s\n"
+                + "        move r4, @v\n"
+                + "        move [r4+0], r5\n"
+                + "        jump @loop\n"
+                + "@v:     DEFINT 1\n"
+                + "@s:     DEFSTR \"x\"\n";
+
+        // the loaded register is not guarded, its increment keeps the check and fails in the compiled block
+        TieredExecutionUnit exec = new TieredExecutionUnit(1, 1);
+        Computer c = parse(program);
+        assertFalse(exec.go(c));
+        assertTrue(exec.getPromotions() > 0);
+        assertEquals(0, exec.getDeoptimizations());
+        assertEquals(4, c.getRegisters().getRegisterValue(0));
+
+        Computer interpreted = parse(program);
+        assertFalse(new ExecutionUnitImpl().go(interpreted));
+        assertEquals(interpreted.getRegisters().getProgramCounter(), c.getRegisters().getProgramCounter());
+    }
+
+
+    /* ------------------------------ Instruction fusion tests ------------------------------ */
+
+    @Test
+    public void testFusedLoop() throws Exception {
+        Computer c = parse(LOOP_PROGRAM);
+        assertEquals(1, InstructionFuser.fuse(c));
+
+        assertTrue(new ExecutionUnitImpl().go(c));
+        assertEquals(0, c.getRegisters().getRegisterValue(0));
+        assertEquals(1000, c.getRegisters().getRegisterValue(1));
+        assertEquals(true, c.getRegisters().getFlag());
+    }
+
+    @Test
+    public void testFusedJumpIntoMiddle() throws Exception {
+        Computer c = parse(
+                  "        move r0, 1\n"
+                + "        move r1, 1\n"
+                + "        testEquals r0, r1\n"
+                + "        jump @mid\n"
+                + "        testEquals r0, r2\n"
+                + "@mid:   jumpIfTrue @yes\n"
+                + "        halt\n"
+                + "@yes:   move r3, 1\n"
+                + "        halt\n");
+        assertEquals(1, InstructionFuser.fuse(c));
+
+        // the jump lands on the original jumpIfTrue, which uses the flag set before the jump
+        assertTrue(new ExecutionUnitImpl().go(c));
+        assertEquals(1, c.getRegisters().getRegisterValue(3));
+    }
+
+    @Test
+    public void testFusedPushPushCall() throws Exception {
+        Computer c = parse(
+                  "        move r0, 2\n"
+                + "        move r1, 3\n"
+                + "        move r12, 2\n"
+                + "        push r0\n"
+                + "        push r1\n"
+                + "        call @add\n"
+                + "        add r15, r12, r15\n"
+                + "        halt\n"
+                + "@add:   move r2, [r15+2]\n"
+                + "        move r3, [r15+3]\n"
+                + "        add r4, r2, r3\n"
+                + "        ret\n"
+                + "        RESERVE:9\n"
+                + "@stackTop: RESERVE\n");
+        Object stackTop = c.getRegisters().getRegisterValue(15);
+        assertEquals(1, InstructionFuser.fuse(c));
+
+        // the call returns to the stack cleanup following it
+        assertTrue(new ExecutionUnitImpl().go(c));
+        assertEquals(5, c.getRegisters().getRegisterValue(4));
+        assertEquals(stackTop, c.getRegisters().getRegisterValue(15));
+    }
+
+    @Test
+    public void testFuseSkipsSelfModifyingProgram() throws Exception {
+        String program =
+                  "        move r0, 1\n"
+                + "        move r3, 0\n"
+                + "        load r5, @e\n"
+                + "        move r6, @j\n"
+                + "        move [r6+0], r5\n"
+                + "        testEquals r0, r0\n"
+                + "@j:     jumpIfTrue @end\n"
+                + "        move r4, 1\n"
+                + "        halt\n"
+                + "@end:   move r4, 2\n"
+                + "        halt\n"
+                + "@e:     increment r3\n";
+        Computer c = parse(program);
+        assertEquals(0, InstructionFuser.fuse(c));
+
+        // the overwritten jumpIfTrue is executed as the increment, not as part of the test
+        assertTrue(new ExecutionUnitImpl().go(c));
+        assertEquals(1, c.getRegisters().getRegisterValue(3));
+        assertEquals(1, c.getRegisters().getRegisterValue(4));
+    }
+
+
+    /* ------------------------------ Profiling execution unit tests ------------------------------ */
+
+    @Test
+    public void testProfilingLoop() throws Exception {
+        ProfilingExecutionUnit exec = new ProfilingExecutionUnit(null, null);
+        Computer c = run(LOOP_PROGRAM, exec);
+
+        assertEquals(1000, c.getRegisters().getRegisterValue(1));
+        assertEquals(5006, exec.getExecutedInstructions());
+        assertEquals(1, exec.getExecutions(0));
+        assertEquals(1001, exec.getExecutions(3));
+        assertEquals(1000, exec.getExecutions(7));
+        assertEquals(1000, exec.getBackJumps(7));
+        assertEquals(0, exec.getBackJumps(4));
+    }
+
+    @Test
+    public void testProfilingCalls() throws Exception {
+        ProfilingExecutionUnit exec = new ProfilingExecutionUnit(null, null);
+        run(      "        move r0, 3\n"
+                + "        move r1, 0\n"
+                + "        call @down\n"
+                + "        call @leaf\n"
+                + "        halt\n"
+                + "@down:  testEquals r0, r1\n"
+                + "        jumpIfTrue @back\n"
+                + "        decrement r0\n"
+                + "        call @down\n"
+                + "@back:  ret\n"
+                + "@leaf:  ret\n"
+                + "        RESERVE:9\n"
+                + "@stackTop: RESERVE\n", exec);
+
+        // recursive calls are counted, but their steps only once
+        assertEquals(4, exec.getCalls(5));
+        assertEquals(18, exec.getInclusiveSteps(5));
+        assertEquals(1, exec.getCalls(10));
+        assertEquals(1, exec.getInclusiveSteps(10));
+        assertEquals(24, exec.getExecutedInstructions());
+    }
+
+    @Test
+    public void testProfilingReport() throws Exception {
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        ProfilingExecutionUnit exec = new ProfilingExecutionUnit(
+                new SourceMap(LOOP_PROGRAM), new PrintStream(report, true, "UTF-8"), 3);
+        run(LOOP_PROGRAM, exec);
+
+        String text = report.toString("UTF-8");
+        assertTrue(text.startsWith("Profile: 5006 instructions executed."));
+        assertTrue(text.contains("1001   20.0%        3      4  @loop:  testEquals r0, r2"));
+        assertTrue(text.contains("1000        7        3  @loop (lines 4-8)"));
+    }
+
+    @Test
+    public void testSourceMap() {
+        SourceMap map = new SourceMap("# comment\n\n@a: move r0, 1\n  RESERVE:2\n@b:\thalt\n@d: DEFINT 3\n");
+
+        assertEquals(5, map.size());
+        assertEquals(3, map.getLine(0));
+        assertEquals("@a: move r0, 1", map.getText(0));
+        assertEquals(4, map.getLine(2));
+        assertEquals(5, map.getLine(3));
+        assertEquals(Arrays.asList("@d"), map.getLabels(4));
+        assertTrue(map.getLabels(1).isEmpty());
+        assertEquals(0, map.getLine(5));
+        assertNull(map.getText(-1));
+    }
+
+
+    /* ------------------------------ Computer metrics tests ------------------------------ */
+
+    @Test
+    public void testMetrics() throws Exception {
+        ComputerImpl c = (ComputerImpl) parse(METRICS_PROGRAM);
+        c.setInput(new InputSource(new ByteArrayInputStream("3\n".getBytes())));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        c.setOutput(new OutputSink(out));
+
+        ComputerMetrics metrics = new ComputerMetrics();
+        ExecutionUnitImpl exec = new ExecutionUnitImpl(metrics);
+        assertTrue(exec.go(c));
+
+        assertFalse(metrics.isRunning());
+        assertEquals(26, metrics.getInstructionsExecuted());
+        assertEquals(exec.getExecutedInstructions(), metrics.getInstructionsExecuted());
+        assertEquals(0, metrics.getCallDepth());
+        assertEquals(4, metrics.getMaxCallDepth());
+        assertEquals(20, metrics.getStackLowWaterMark());
+        // iinput, the indirect move and four calls
+        assertEquals(6, metrics.getMemoryCellsWritten());
+        assertEquals(1, metrics.getEchoBytesWritten());
+        assertTrue(metrics.getInstructionsPerSecond() > 0);
+    }
+
+    @Test
+    public void testMetricsOverJmx() throws Exception {
+        ComputerImpl c = (ComputerImpl) parse(METRICS_PROGRAM);
+        c.setInput(new InputSource(new ByteArrayInputStream("3\n".getBytes())));
+        c.setOutput(new OutputSink(new ByteArrayOutputStream()));
+
+        ComputerMetrics metrics = new ComputerMetrics();
+        ObjectName name = metrics.register("metrics test");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            assertTrue(new ExecutionUnitImpl(metrics).go(c));
+            assertEquals(26L, server.getAttribute(name, "InstructionsExecuted"));
+            assertEquals(4, server.getAttribute(name, "MaxCallDepth"));
+        } finally {
+            metrics.unregister();
+        }
+        assertFalse(server.isRegistered(name));
+    }
+
+
+    /* ------------------------------ Step tests ------------------------------ */
+
+    @Test
+    public void testStepInBudgets() throws Exception {
+        Computer c = parse(LOOP_PROGRAM);
+        ExecutionUnitImpl exec = new ExecutionUnitImpl();
+
+        int steps = 0;
+        ExecutionUnitImpl.StepStatus status;
+        do {
+            status = exec.step(c, 100);
+            steps++;
+        } while (status == ExecutionUnitImpl.StepStatus.RUNNING);
+
+        assertEquals(ExecutionUnitImpl.StepStatus.HALTED, status);
+        assertEquals(1000, c.getRegisters().getRegisterValue(1));
+        assertEquals(5006, exec.getExecutedInstructions());
+        assertEquals(51, steps);
+    }
+
+    @Test
+    public void testStepFault() throws Exception {
+        Computer c = parse("echo r0\nmove r1, [r2+0]\nhalt\n");
+        ((ComputerImpl) c).setOutput(new OutputSink(new ByteArrayOutputStream()));
+        final int[] failed = { -1 };
+        ExecutionUnitImpl exec = new ExecutionUnitImpl() {
+            @Override
+            protected void reportFailure(Computer computer, Throwable t, int address) {
+                failed[0] = address;
+            }
+        };
+
+        assertEquals(ExecutionUnitImpl.StepStatus.FAULTED, exec.step(c, 10));
+        assertEquals(1, failed[0]);
+        assertEquals(2, c.getRegisters().getProgramCounter());
+        assertEquals(2, exec.getExecutedInstructions());
+    }
+
+    @Test
+    public void testStepWaitingForInput() throws Exception {
+        ComputerImpl c = (ComputerImpl) parse(METRICS_PROGRAM);
+        c.setInput(new InputSource(new ByteArrayInputStream(new byte[0])));
+        c.setOutput(new OutputSink(new ByteArrayOutputStream()));
+        ExecutionUnitImpl exec = new ExecutionUnitImpl();
+
+        assertEquals(ExecutionUnitImpl.StepStatus.WAITING_FOR_INPUT, exec.step(c, 100));
+        assertEquals(0, c.getRegisters().getProgramCounter());
+        assertEquals(0, exec.getExecutedInstructions());
+
+        c.setInput(new InputSource(new ByteArrayInputStream("3\n".getBytes())));
+        assertEquals(ExecutionUnitImpl.StepStatus.HALTED, exec.step(c, 100));
+        assertEquals(26, exec.getExecutedInstructions());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testStepInvalidBudget() throws Exception {
+        new ExecutionUnitImpl().step(parse(LOOP_PROGRAM), 0);
+    }
+
+
+    /* ------------------------------ Flight recorder tests ------------------------------ */
+
+    @Test
+    public void testFlightRecorderKeepsLast() throws Exception {
+        FlightRecorder recorder = new FlightRecorder(8);
+        ExecutionUnitImpl exec = new ExecutionUnitImpl(null, recorder);
+        run(LOOP_PROGRAM, exec);
+
+        assertEquals(exec.getExecutedInstructions(), recorder.getRecordedCount());
+        assertTrue(Arrays.equals(new int[] {3, 4, 5, 6, 7, 3, 4, 8}, recorder.getAddresses()));
+    }
+
+    @Test
+    public void testFlightRecorderDumpOnFailure() throws Exception {
+        ComputerImpl c = (ComputerImpl) parse("echo r0\nmove r1, [r2+0]\nhalt\n");
+        c.setOutput(new OutputSink(new ByteArrayOutputStream()));
+        ByteArrayOutputStream dump = new ByteArrayOutputStream();
+        ExecutionUnitImpl exec = new ExecutionUnitImpl(null, new FlightRecorder()) {
+            @Override
+            protected void reportFailure(Computer computer, Throwable t, int address) {
+                getFlightRecorder().dump(new PrintStream(dump, true));
+            }
+        };
+
+        assertFalse(exec.go(c));
+        String[] lines = dump.toString().split("\\R");
+        assertEquals(4, lines.length);
+        assertEquals("Last 2 of 2 executed instructions:", lines[0]);
+        assertTrue(lines[2].matches("\\s+1\\s+0\\s+Echo\\s+-\\s+false"));
+        assertTrue(lines[3].matches("\\s+2\\s+1\\s+Move\\s+r1\\s+false"));
+    }
+
+    @Test
+    public void testFlightRecorderNamesConditionalJump() throws Exception {
+        ComputerImpl c = (ComputerImpl) parse(
+                  "        move r0, 1\n"
+                + "        testEquals r0, r0\n"
+                + "        jumpIfTrue @fail\n"
+                + "        halt\n"
+                + "@fail:  jump @s\n"
+                + "@s:     DEFSTR \"x\"\n");
+        ByteArrayOutputStream dump = new ByteArrayOutputStream();
+        ExecutionUnitImpl exec = new ExecutionUnitImpl(null, new FlightRecorder()) {
+            @Override
+            protected void reportFailure(Computer computer, Throwable t, int address) {
+                getFlightRecorder().dump(new PrintStream(dump, true));
+            }
+        };
+
+        assertFalse(exec.go(c));
+        String[] lines = dump.toString().split("\\R");
+        assertEquals(7, lines.length);
+        assertTrue(lines[4].matches("\\s+3\\s+2\\s+JumpIfTrue\\s+-\\s+true"));
+        assertTrue(lines[5].matches("\\s+4\\s+4\\s+Jump\\s+-\\s+true"));
+    }
+
+    @Test
+    public void testFlightRecorderWhileStepping() throws Exception {
+        FlightRecorder recorder = new FlightRecorder(4);
+        ExecutionUnitImpl exec = new ExecutionUnitImpl(null, recorder);
+        Computer c = parse(LOOP_PROGRAM);
+
+        exec.step(c, 6);
+        assertTrue(Arrays.equals(new int[] {2, 3, 4, 5}, recorder.getAddresses()));
+
+        recorder.clear();
+        assertEquals(0, recorder.getAddresses().length);
+    }
+
+    @Test
+    public void testFlightRecorderCapacity() {
+        assertEquals(1, new FlightRecorder(1).getCapacity());
+        assertEquals(8, new FlightRecorder(5).getCapacity());
+        assertEquals(FlightRecorder.DEFAULT_CAPACITY, new FlightRecorder().getCapacity());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testFlightRecorderInvalidCapacity() {
+        new FlightRecorder(0);
+    }
+
+
+    /* ------------------------------ Program verifier tests ------------------------------ */
+
+    @Test
+    public void testVerifiedLoop() throws Exception {
+        Computer c = parse(LOOP_PROGRAM);
+        assertEquals(4, ProgramVerifier.verify(c));
+        assertTrue(c.getMemory().getLocation(3) instanceof VerifiedTestEquals);
+        assertTrue(c.getMemory().getLocation(5) instanceof VerifiedUnary);
+
+        assertTrue(new ExecutionUnitImpl().go(c));
+        assertEquals(0, c.getRegisters().getRegisterValue(0));
+        assertEquals(1000, c.getRegisters().getRegisterValue(1));
+        assertEquals(true, c.getRegisters().getFlag());
+    }
+
+    @Test
+    public void testVerifiedKeepsChecks() throws Exception {
+        ComputerImpl c = (ComputerImpl) parse(
+                  "        move r0, 1\n"
+                + "        iinput @n\n"
+                + "        jumpIfTrue @inc\n"
+                + "        load r0, @s\n"
+                + "@inc:   increment r0\n"
+                + "        halt\n"
+                + "@n:     RESERVE\n"
+                + "@s:     DEFSTR \"x\"\n");
+
+        // r0 may hold a string on the increment, which keeps its check
+        assertEquals(1, ProgramVerifier.verify(c));
+        assertTrue(c.getMemory().getLocation(4) instanceof InstrIncrement);
+        assertFalse(c.getMemory().getLocation(4) instanceof VerifiedUnary);
+
+        c.setInput(new InputSource(new ByteArrayInputStream("5\n".getBytes())));
+        assertTrue(new ExecutionUnitImpl().go(c));
+        assertEquals(2, c.getRegisters().getRegisterValue(0));
+    }
+
+    @Test
+    public void testVerifiedSelfModifying() throws Exception {
+        Computer c = parse(SELF_MODIFYING_PROGRAM);
+        assertEquals(0, ProgramVerifier.verify(c));
+        assertEquals(0, ProgramVerifier.verify(parse(METRICS_PROGRAM)));
+    }
+
+    @Test
+    public void testVerifiedCalls() throws Exception {
+        String program =
+                  "        move r0, 2\n"
+                + "        move r1, 3\n"
+                + "        move r12, 2\n"
+                + "        push r0\n"
+                + "        push r1\n"
+                + "        call @add\n"
+                + "        add r15, r12, r15\n"
+                + "        halt\n"
+                + "@add:   move r2, [r15+2]\n"
+                + "        move r3, [r15+3]\n"
+                + "        add r4, r2, r3\n"
+                + "        ret\n"
+                + "        RESERVE:9\n"
+                + "@stackTop: RESERVE\n";
+
+        for (ExecutionUnit exec : new ExecutionUnit[] {new ExecutionUnitImpl(), new TieredExecutionUnit(1, 1)}) {
+            Computer c = parse(program);
+            Object stackTop = c.getRegisters().getRegisterValue(15);
+            assertEquals(10, ProgramVerifier.verify(c));
+            assertTrue(c.getMemory().getLocation(11) instanceof VerifiedRet);
+
+            assertTrue(exec.go(c));
+            assertEquals(5, c.getRegisters().getRegisterValue(4));
+            assertEquals(stackTop, c.getRegisters().getRegisterValue(15));
+        }
+    }
+
+    @Test
+    public void testVerifiedInput() throws Exception {
+        ComputerImpl c = (ComputerImpl) parse(
+                  "        move r2, @n\n"
+                + "        iinput @n\n"
+                + "        jumpIfTrue @ok\n"
+                + "        halt\n"
+                + "@ok:    move r0, [r2+0]\n"
+                + "        halt\n"
+                + "@n:     RESERVE\n");
+
+        // the location is empty until the input is read as an integer
+        assertEquals(2, ProgramVerifier.verify(c));
+        assertTrue(c.getMemory().getLocation(4) instanceof VerifiedMove);
+
+        c.setInput(new InputSource(new ByteArrayInputStream("7\n".getBytes())));
+        assertTrue(new ExecutionUnitImpl().go(c));
+        assertEquals(7, c.getRegisters().getRegisterValue(0));
+    }
+
+
+    /* ------------------------------ Program optimizer tests ------------------------------ */
+
+    @Test
+    public void testOptimizedConstants() throws Exception {
+        ComputerImpl c = (ComputerImpl) parse(
+                  "        move r10, 0\n"
+                + "        move r11, 1\n"
+                + "        move r12, 2\n"
+                + "        add r1, r11, r12\n"
+                + "        testEquals r1, r10\n"
+                + "        jumpIfTrue @skip\n"
+                + "        increment r1\n"
+                + "        echo r1\n"
+                + "@skip:  halt\n");
+
+        // the jumpIfTrue is never taken, and is left in place as nothing follows it
+        assertEquals(2, ProgramOptimizer.optimize(c));
+        assertTrue(c.getMemory().getLocation(3) instanceof InstrMove);
+        assertTrue(c.getMemory().getLocation(6) instanceof InstrMove);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        c.setOutput(new OutputSink(out));
+        assertTrue(new ExecutionUnitImpl().go(c));
+        assertEquals("4", out.toString());
+        assertEquals(4, c.getRegisters().getRegisterValue(1));
+        assertEquals(false, c.getRegisters().getFlag());
+    }
+
+    @Test
+    public void testOptimizedDeadStores() throws Exception {
+        ComputerImpl c = (ComputerImpl) parse(
+                  "        move r0, 1\n"
+                + "        move r0, 2\n"
+                + "        move r0, 3\n"
+                + "        echo r0\n"
+                + "        halt\n");
+
+        assertEquals(1, ProgramOptimizer.optimize(c));
+        assertEquals(2, ((InstrJump) c.getMemory().getLocation(0)).getMemoryLocation());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        c.setOutput(new OutputSink(out));
+        assertTrue(new ExecutionUnitImpl().go(c));
+        assertEquals("3", out.toString());
+    }
+
+    @Test
+    public void testOptimizedJumps() throws Exception {
+        Computer c = parse(
+                  "        jump @a\n"
+                + "@a:     jump @b\n"
+                + "@b:     move r0, 1\n"
+                + "        halt\n");
+
+        assertEquals(1, ProgramOptimizer.optimize(c));
+        assertEquals(2, ((InstrJump) c.getMemory().getLocation(0)).getMemoryLocation());
+
+        assertTrue(new ExecutionUnitImpl().go(c));
+        assertEquals(1, c.getRegisters().getRegisterValue(0));
+    }
+
+    @Test
+    public void testOptimizedKeepsFailingState() throws Exception {
+        ComputerImpl c = (ComputerImpl) parse(
+                  "        move r2, 5\n"
+                + "        iinput @n\n"
+                + "        jumpIfTrue @inc\n"
+                + "        load r2, @s\n"
+                + "@inc:   move r0, 1\n"
+                + "        move r1, 1\n"
+                + "        increment r2\n"
+                + "        move r0, 2\n"
+                + "        move r1, 2\n"
+                + "        halt\n"
+                + "@n:     RESERVE\n"
+                + "@s:     DEFSTR \"x\"\n");
+
+        // the increment fails on a string, after which r0 and r1 must still be 1
+        ProgramOptimizer.optimize(c);
+        assertTrue(c.getMemory().getLocation(4) instanceof InstrMove);
+
+        c.setInput(new InputSource(new ByteArrayInputStream("x\n".getBytes())));
+        assertFalse(new ExecutionUnitImpl().go(c));
+        assertEquals(1, c.getRegisters().getRegisterValue(0));
+        assertEquals(1, c.getRegisters().getRegisterValue(1));
+    }
+
+    @Test
+    public void testOptimizedSelfModifying() throws Exception {
+        assertEquals(0, ProgramOptimizer.optimize(parse(SELF_MODIFYING_PROGRAM)));
+    }
+
+    @Test
+    public void testOptimizedExamples() throws Exception {
+        try (DirectoryStream<Path> examples = Files.newDirectoryStream(Paths.get("examples"), "*.txt")) {
+            for (Path example : examples) {
+                String program = new String(Files.readAllBytes(example));
+                ComputerImpl expected = (ComputerImpl) parse(program);
+                ComputerImpl optimized = (ComputerImpl) parse(program);
+                ProgramOptimizer.optimize(optimized);
+
+                String expectedOutput = runWithInput(expected);
+                assertEquals(example.toString(), expectedOutput, runWithInput(optimized));
+                for (int i = 0; i < 16; i++) {
+                    assertEquals(expected.getRegisters().getRegisterValue(i), optimized.getRegisters().getRegisterValue(i));
+                }
+                assertEquals(expected.getRegisters().getFlag(), optimized.getRegisters().getFlag());
+            }
+        }
+    }
+
+
+    /* ------------------------------ Utility methods ------------------------------ */
+
+    /**
+     * Parses the specified <tt>program</tt> into a new computer, executes it
+     * with the specified execution unit, asserts that the execution ended
+     * regularly and returns the computer.
+     *
+     * @param program the assembly code
+     * @param exec the execution unit
+     * @return the computer on which the program was executed
+     * @throws Exception if the program can not be parsed
+     */
+    private static Computer run(String program, ExecutionUnit exec) throws Exception {
+        Computer c = parse(program);
+
+        assertTrue(exec.go(c));
+        return c;
+    }
+
+    /**
+     * Executes the program loaded into the specified computer with the
+     * interpreter, reading a few integers as its input, and returns its
+     * output.
+     *
+     * @param c the computer
+     * @return the output of the program
+     */
+    private static String runWithInput(ComputerImpl c) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        c.setInput(new InputSource(new ByteArrayInputStream("5\n7\n3\n4\n2\n".getBytes())));
+        c.setOutput(new OutputSink(out));
+
+        new ExecutionUnitImpl().go(c);
+        return out.toString();
+    }
+
+    /**
+     * Parses the specified <tt>program</tt> into a new computer with 256
+     * memory locations and 16 registers.
+     *
+     * @param program the assembly code
+     * @return the computer holding the parsed program
+     * @throws Exception if the program can not be parsed
+     */
+    private static Computer parse(String program) throws Exception {
+        Computer c = new ComputerImpl(256, 16);
+        ProgramParser.parse(new StringReader(program), c,
+                new InstructionCreatorImpl("hr.fer.zemris.java.simplecomp.impl.instructions"));
+
+        return c;
+    }
+
+}
@@ -0,0 +1,210 @@
+package hr.fer.zemris.java.simplecomp;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+import hr.fer.zemris.java.simplecomp.impl.BlockExecutionUnit;
+import hr.fer.zemris.java.simplecomp.impl.ComputerImpl;
+import hr.fer.zemris.java.simplecomp.impl.ExecutionUnitImpl;
+import hr.fer.zemris.java.simplecomp.io.InputSource;
+import hr.fer.zemris.java.simplecomp.io.OutputSink;
+import hr.fer.zemris.java.simplecomp.parser.InstructionCreatorImpl;
+import hr.fer.zemris.java.simplecomp.parser.ProgramParser;
+
+@SuppressWarnings("javadoc")
+public class IOTests {
+
+    /* ------------------------------ Output sink tests ------------------------------ */
+
+    @Test
+    public void testIntegerFormatting() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputSink sink = new OutputSink(out);
+
+        sink.print(0);
+        sink.print(" ");
+        sink.print(-7);
+        sink.print(" ");
+        sink.print(Integer.MAX_VALUE);
+        sink.print(" ");
+        sink.print(Integer.MIN_VALUE);
+        sink.print(" ");
+        sink.print((Object) 1234);
+        sink.print(" ");
+        sink.print((Object) null);
+        sink.flush();
+
+        assertEquals("0 -7 2147483647 -2147483648 1234 null", out.toString());
+    }
+
+    @Test
+    public void testBufferedUntilFlush() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputSink sink = new OutputSink(out);
+
+        sink.print("Hello ");
+        sink.print(42);
+        assertEquals(0, out.size());
+
+        sink.flush();
+        assertEquals("Hello 42", out.toString());
+    }
+
+    @Test
+    public void testSmallBuffer() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputSink sink = new OutputSink(out, 16);
+
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            sink.print(i);
+            sink.print(", a longer string than the buffer; ");
+            expected.append(i).append(", a longer string than the buffer; ");
+        }
+        sink.print("čćž");
+        expected.append("čćž");
+        sink.flush();
+
+        // strings are encoded in the default charset, as by System.out
+        assertArrayEquals(expected.toString().getBytes(), out.toByteArray());
+        assertEquals(out.size(), sink.getBytesWritten());
+    }
+
+    @Test
+    public void testUnusedSinkFlush() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputSink sink = new OutputSink(out, 16);
+
+        sink.flush();
+        assertEquals(0, out.size());
+
+        // the first print is a string longer than the buffer
+        sink.print("čćž, čćž, čćž, čćž");
+        sink.print(-12);
+        sink.flush();
+        assertArrayEquals("čćž, čćž, čćž, čćž-12".getBytes(), out.toByteArray());
+    }
+
+    @Test
+    public void testEchoToSink() throws Exception {
+        ComputerImpl c = new ComputerImpl(256, 16);
+        ProgramParser.parse(new StringReader(
+                  "        move r0, 3\n"
+                + "@loop:  echo r0\n"
+                + "        echo [r1+0]\n"
+                + "        decrement r0\n"
+                + "        testEquals r0, r2\n"
+                + "        jumpIfTrue @end\n"
+                + "        jump @loop\n"
+                + "@end:   halt\n"), c,
+                new InstructionCreatorImpl("hr.fer.zemris.java.simplecomp.impl.instructions"));
+        c.getRegisters().setRegisterValue(1, 20);
+        c.getRegisters().setRegisterValue(2, 0);
+        c.getMemory().setLocation(20, ";");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        c.setOutput(new OutputSink(out));
+
+        assertTrue(new BlockExecutionUnit().go(c));
+        assertEquals("3;2;1;", out.toString());
+    }
+
+
+    /* ------------------------------ Input source tests ------------------------------ */
+
+    @Test
+    public void testReadInt() throws Exception {
+        InputSource in = source("42\n-7\r\n+3\r2147483647\n-2147483648");
+
+        assertEquals(42, in.readInt());
+        assertEquals(-7, in.readInt());
+        assertEquals(3, in.readInt());
+        assertEquals(Integer.MAX_VALUE, in.readInt());
+        assertEquals(Integer.MIN_VALUE, in.readInt());
+    }
+
+    @Test
+    public void testInvalidLinesConsumed() throws Exception {
+        InputSource in = source("abc\n2147483648\n\n-\n 1\n5\n");
+
+        for (int i = 0; i < 5; i++) {
+            try {
+                in.readInt();
+                throw new AssertionError("Line " + i + " must not be an integer.");
+            } catch (NumberFormatException e) {
+                // expected
+            }
+        }
+        assertEquals(5, in.readInt());
+    }
+
+    @Test(expected=EOFException.class)
+    public void testReadIntAtEnd() throws Exception {
+        InputSource in = source("1\n");
+        in.readInt();
+        in.readInt();
+    }
+
+    @Test
+    public void testLinesAcrossSmallBuffer() throws Exception {
+        InputSource in = new InputSource(new ByteArrayInputStream(
+                "examples/prim1.txt\r\n123456\r\nlast".getBytes()), 3);
+
+        assertEquals("examples/prim1.txt", in.readLine());
+        assertEquals(123456, in.readInt());
+        assertEquals("last", in.readLine());
+        assertNull(in.readLine());
+    }
+
+    @Test
+    public void testIinputKeepsReadAhead() throws Exception {
+        ComputerImpl c = new ComputerImpl(256, 16);
+        ProgramParser.parse(new StringReader(
+                  "        iinput 20\n"
+                + "        iinput 21\n"
+                + "        iinput 22\n"
+                + "        halt\n"), c,
+                new InstructionCreatorImpl("hr.fer.zemris.java.simplecomp.impl.instructions"));
+        c.setInput(source("1\nx\n3\n"));
+
+        assertTrue(new ExecutionUnitImpl().go(c));
+        assertEquals(1, c.getMemory().getLocation(20));
+        assertNull(c.getMemory().getLocation(21));
+        assertEquals(3, c.getMemory().getLocation(22));
+        assertTrue(c.getRegisters().getFlag());
+    }
+
+    @Test
+    public void testIinputAtEnd() throws Exception {
+        ComputerImpl c = new ComputerImpl(256, 16);
+        ProgramParser.parse(new StringReader("iinput 20\nhalt\n"), c,
+                new InstructionCreatorImpl("hr.fer.zemris.java.simplecomp.impl.instructions"));
+        c.setInput(source(""));
+
+        assertFalse(new ExecutionUnitImpl().go(c));
+    }
+
+
+    /* ------------------------------ Utility methods ------------------------------ */
+
+    /**
+     * Returns an input source that reads the specified <tt>input</tt>.
+     *
+     * @param input the input string
+     * @return an input source of the string
+     */
+    private static InputSource source(String input) {
+        return new InputSource(new ByteArrayInputStream(input.getBytes()));
+    }
+
+}
@@ -0,0 +1,215 @@
+package hr.fer.zemris.java.simplecomp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.Test;
+
+import hr.fer.zemris.java.simplecomp.impl.IncrementalAssembler;
+import hr.fer.zemris.java.simplecomp.impl.InstructionRegistry;
+import hr.fer.zemris.java.simplecomp.impl.ProgramImage;
+import hr.fer.zemris.java.simplecomp.models.Instruction;
+
+@SuppressWarnings("javadoc")
+public class IncrementalAssemblerTests {
+
+    private static String program(int functions) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("        load r7, @count\n");
+        for (int i = 0; i < functions; i++) {
+            sb.append("        call @f").append(i).append('\n');
+        }
+        sb.append("        halt\n\n");
+        for (int i = 0; i < functions; i++) {
+            sb.append("# function ").append(i).append('\n');
+            sb.append("@f").append(i).append(": move r0, ").append(i).append('\n');
+            sb.append("        add r0, r0, r7\n");
+            sb.append("        echo r0\n");
+            sb.append("        ret\n");
+        }
+        sb.append("@count: DEFINT 1\n");
+        sb.append("        RESERVE:10\n");
+        sb.append("@stackTop: RESERVE\n");
+        return sb.toString();
+    }
+
+    private static byte[] bytes(String source) {
+        return source.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void assertSameImage(ProgramImage expected, ProgramImage actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Object e = expected.getCell(i);
+            Object a = actual.getCell(i);
+            if (e instanceof Instruction) {
+                assertNotNull("Location " + i, a);
+                assertEquals("Location " + i, e.getClass(), a.getClass());
+            } else {
+                assertEquals("Location " + i, e, a);
+            }
+        }
+        assertEquals(expected.getStackTop(), actual.getStackTop());
+    }
+
+    private static ProgramImage assembleFully(String source) throws Exception {
+        return ProgramImage.assemble(bytes(source), InstructionRegistry.DEFAULT_PACKAGE);
+    }
+
+    private static ProgramImage reassemble(IncrementalAssembler assembler, String source) throws Exception {
+        ProgramImage image = assembler.assemble(bytes(source));
+        assertSameImage(assembleFully(source), image);
+        return image;
+    }
+
+
+    /* ------------------------------ Assembly tests ------------------------------ */
+
+    @Test
+    public void testExamples() throws Exception {
+        try (DirectoryStream<Path> examples = Files.newDirectoryStream(Paths.get("examples"), "*.txt")) {
+            for (Path example : examples) {
+                String source = new String(Files.readAllBytes(example), StandardCharsets.UTF_8);
+                reassemble(new IncrementalAssembler(InstructionRegistry.getDefault()), source);
+            }
+        }
+    }
+
+    @Test
+    public void testUnchangedSource() throws Exception {
+        IncrementalAssembler assembler = new IncrementalAssembler(InstructionRegistry.getDefault());
+        String source = program(10);
+
+        ProgramImage image = reassemble(assembler, source);
+        assertSame(image, assembler.assemble(bytes(source)));
+        assertEquals(0, assembler.getCreatedLocations());
+    }
+
+    @Test
+    public void testEditLine() throws Exception {
+        IncrementalAssembler assembler = new IncrementalAssembler(InstructionRegistry.getDefault());
+        String source = program(500);
+        reassemble(assembler, source);
+
+        reassemble(assembler, source.replace("@f250: move r0, 250", "@f250: move r0, 7"));
+        assertEquals(1, assembler.getCreatedLocations());
+    }
+
+    @Test
+    public void testEditComment() throws Exception {
+        IncrementalAssembler assembler = new IncrementalAssembler(InstructionRegistry.getDefault());
+        String source = program(100);
+        reassemble(assembler, source);
+
+        reassemble(assembler, source.replace("# function 50\n", "# function fifty\n\n"));
+        assertEquals(0, assembler.getCreatedLocations());
+    }
+
+    @Test
+    public void testInsertLine() throws Exception {
+        IncrementalAssembler assembler = new IncrementalAssembler(InstructionRegistry.getDefault());
+        String source = program(500);
+        reassemble(assembler, source);
+
+        // Labels after the insertion move, so only their references are created again.
+        reassemble(assembler, source.replace("@f400: move r0, 400\n", "@f400: move r0, 400\n echo r0\n"));
+        int created = assembler.getCreatedLocations();
+        assertTrue(created > 1);
+        assertTrue(created < 200);
+    }
+
+    @Test
+    public void testRemoveAndRenameLabels() throws Exception {
+        IncrementalAssembler assembler = new IncrementalAssembler(InstructionRegistry.getDefault());
+        String source = program(20);
+        reassemble(assembler, source);
+
+        source = source.replace("@f10: move r0, 10\n", "@g10: move r0, 10\n").replace("call @f10", "call @g10");
+        reassemble(assembler, source);
+        source = source.replace("@f3: ", "").replace("call @f3\n", "").replace("RESERVE:10", "RESERVE:3");
+        reassemble(assembler, source);
+        source = source.replace("@stackTop: RESERVE\n", "");
+        reassemble(assembler, source);
+    }
+
+    @Test
+    public void testSuccessiveEdits() throws Exception {
+        IncrementalAssembler assembler = new IncrementalAssembler(InstructionRegistry.getDefault());
+        String source = program(50);
+        reassemble(assembler, source);
+
+        for (int i = 0; i < 50; i += 7) {
+            source = source.replace("@f" + i + ": move r0, " + i + "\n",
+                    "@f" + i + ": move r0, " + (i + 1) + "\n        echo r0\n");
+            reassemble(assembler, source);
+        }
+        reassemble(assembler, "");
+        reassemble(assembler, program(5));
+    }
+
+
+    /* ------------------------------ Error tests ------------------------------ */
+
+    private static void assertSameError(IncrementalAssembler assembler, String source) {
+        String expected = null;
+        try {
+            assembleFully(source);
+            fail("Expected an invalid program.");
+        } catch (Exception e) {
+            expected = e.getClass() + ": " + e.getMessage();
+        }
+
+        ProgramImage previous = assembler.getImage();
+        try {
+            assembler.assemble(bytes(source));
+            fail("Expected an invalid program.");
+        } catch (Exception e) {
+            assertEquals(expected, e.getClass() + ": " + e.getMessage());
+        }
+        assertSame(previous, assembler.getImage());
+    }
+
+    @Test
+    public void testInvalidEditKeepsImage() throws Exception {
+        IncrementalAssembler assembler = new IncrementalAssembler(InstructionRegistry.getDefault());
+        String source = program(20);
+        reassemble(assembler, source);
+
+        assertSameError(assembler, source.replace("echo r0", "echo r0 r1"));
+        assertSameError(assembler, source.replace("@f5: move r0, 5", "@f5: move r0, x5"));
+        assertSameError(assembler, source.replace("RESERVE:10", "RESERVE:0"));
+        assertSameError(assembler, source.replace("@f5: move r0, 5", "@f5 move r0, 5"));
+
+        reassemble(assembler, source.replace("@f5: move r0, 5", "@f5: move r0, 6"));
+        assertEquals(1, assembler.getCreatedLocations());
+    }
+
+    @Test
+    public void testDuplicateLabels() throws Exception {
+        IncrementalAssembler assembler = new IncrementalAssembler(InstructionRegistry.getDefault());
+        String source = program(20);
+        reassemble(assembler, source);
+
+        assertSameError(assembler, source.replace("@f5: move r0, 5", "@f2: move r0, 5"));
+        assertSameError(assembler, source.replace("@f5: move r0, 5", "@f15: move r0, 5"));
+        // The parser reports the duplicate only after the invalid statement.
+        assertSameError(assembler, source.replace("@f5: move r0, 5", "@f15: move r0, 5\nRESERVE:x"));
+    }
+
+    @Test
+    public void testInvalidFirstVersion() throws Exception {
+        IncrementalAssembler assembler = new IncrementalAssembler(InstructionRegistry.getDefault());
+        assertSameError(assembler, "move r0, r1\nhalt r0 r0\n");
+        reassemble(assembler, program(3));
+    }
+
+}
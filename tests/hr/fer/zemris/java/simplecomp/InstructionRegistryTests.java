@@ -0,0 +1,123 @@
+package hr.fer.zemris.java.simplecomp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import hr.fer.zemris.java.simplecomp.impl.InstructionRegistry;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrHalt;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrJumpIfTrue;
+import hr.fer.zemris.java.simplecomp.impl.instructions.InstrMove;
+import hr.fer.zemris.java.simplecomp.models.Instruction;
+import hr.fer.zemris.java.simplecomp.models.InstructionArgument;
+import hr.fer.zemris.java.simplecomp.parser.InstructionCreatorImpl;
+
+@SuppressWarnings("javadoc")
+public class InstructionRegistryTests {
+
+    private static final List<InstructionArgument> NO_ARGS = Collections.emptyList();
+
+    private static InstructionArgument register(int index) {
+        InstructionArgument arg = mock(InstructionArgument.class);
+        when(arg.isRegister()).thenReturn(true);
+        when(arg.getValue()).thenReturn(index);
+        return arg;
+    }
+
+    private static InstructionArgument number(int value) {
+        InstructionArgument arg = mock(InstructionArgument.class);
+        when(arg.isNumber()).thenReturn(true);
+        when(arg.getValue()).thenReturn(value);
+        return arg;
+    }
+
+
+    /* ------------------------------ Registry tests ------------------------------ */
+
+    @Test
+    public void testDefaultInstructionSet() {
+        InstructionRegistry registry = InstructionRegistry.getDefault();
+        InstructionCreatorImpl reflective = new InstructionCreatorImpl(InstructionRegistry.DEFAULT_PACKAGE);
+
+        List<String> names = Arrays.asList(
+                "halt", "ret", "echo", "increment", "decrement", "push", "pop", "jump",
+                "jumpIfTrue", "call", "iinput");
+        List<List<InstructionArgument>> args = Arrays.asList(
+                NO_ARGS, NO_ARGS, Arrays.asList(register(0)), Arrays.asList(register(0)),
+                Arrays.asList(register(0)), Arrays.asList(register(0)), Arrays.asList(register(0)),
+                Arrays.asList(number(3)), Arrays.asList(number(3)), Arrays.asList(number(3)),
+                Arrays.asList(number(3)));
+        for (int i = 0; i < names.size(); i++) {
+            assertTrue(registry.isRegistered(names.get(i)));
+            assertEquals(
+                    reflective.getInstruction(names.get(i), args.get(i)).getClass(),
+                    registry.getInstruction(names.get(i), args.get(i)).getClass());
+        }
+    }
+
+    @Test
+    public void testNameIsCapitalized() {
+        InstructionRegistry registry = InstructionRegistry.getDefault();
+
+        assertTrue(registry.getInstruction("halt", NO_ARGS) instanceof InstrHalt);
+        assertTrue(registry.getInstruction(" Halt ", NO_ARGS) instanceof InstrHalt);
+        assertTrue(registry.getInstruction("JumpIfTrue", Arrays.asList(number(1))) instanceof InstrJumpIfTrue);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testUnknownInstruction() {
+        InstructionRegistry.getDefault().getInstruction("nop", NO_ARGS);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testEmptyName() {
+        InstructionRegistry.getDefault().getInstruction("  ", NO_ARGS);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidArguments() {
+        InstructionRegistry.getDefault().getInstruction("move", NO_ARGS);
+    }
+
+    @Test
+    public void testRegisterFactory() {
+        Instruction nop = computer -> false;
+        InstructionRegistry registry = new InstructionRegistry();
+        registry.register("nop", args -> nop);
+
+        assertTrue(registry.isRegistered("Nop"));
+        assertSame(nop, registry.getInstruction("nop", NO_ARGS));
+    }
+
+    @Test
+    public void testFallbackPackage() {
+        InstructionRegistry registry = new InstructionRegistry(InstructionRegistry.DEFAULT_PACKAGE);
+        assertFalse(registry.isRegistered("move"));
+
+        Instruction move = registry.getInstruction("move", Arrays.asList(register(0), number(1)));
+        assertTrue(move instanceof InstrMove);
+        assertTrue(registry.isRegistered("move"));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testFallbackPackageUnknownInstruction() {
+        new InstructionRegistry(InstructionRegistry.DEFAULT_PACKAGE).getInstruction("nop", NO_ARGS);
+    }
+
+    @Test
+    public void testForPackage() {
+        assertSame(InstructionRegistry.getDefault(),
+                InstructionRegistry.forPackage(InstructionRegistry.DEFAULT_PACKAGE));
+        assertSame(InstructionRegistry.forPackage("some.pkg"), InstructionRegistry.forPackage("some.pkg"));
+    }
+
+}
@@ -5,6 +5,8 @@ import org.junit.Test;
 import hr.fer.zemris.java.simplecomp.impl.instructions.*;
 import hr.fer.zemris.java.simplecomp.models.*;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 
 import java.util.ArrayList;
@@ -397,6 +399,34 @@ public class InstructionTests {
 
 
 
+    /* ------------------------------ Opcode tests ------------------------------ */
+
+    // Instructions of the same name share an opcode, and declare the register they write
+    @Test
+    public void testOpcodeAndWrittenRegister() {
+        List<InstructionArgument> arguments = new ArrayList<>();
+        arguments.add(new InstructionArgumentImpl(false, true, false, new Register(false, 3, 0)));
+        arguments.add(new InstructionArgumentImpl(false, true, false, new Register(false, 1, 0)));
+        arguments.add(new InstructionArgumentImpl(false, true, false, new Register(false, 2, 0)));
+
+        AbstractInstruction mul1 = new InstrMul(arguments);
+        AbstractInstruction mul2 = new InstrMul(arguments);
+        AbstractInstruction add = new InstrAdd(arguments);
+
+        assertEquals(mul1.getOpcode(), mul2.getOpcode());
+        assertTrue(mul1.getOpcode() != add.getOpcode());
+        assertEquals("Mul", AbstractInstruction.nameOf(mul1.getOpcode()));
+        assertEquals(3, mul1.getWrittenRegister());
+
+        // move [r2+25], r1 writes memory, not a register
+        List<InstructionArgument> moveArguments = new ArrayList<>();
+        moveArguments.add(new InstructionArgumentImpl(false, true, false, new Register(true, 2, 25)));
+        moveArguments.add(new InstructionArgumentImpl(false, true, false, new Register(false, 1, 0)));
+        assertEquals(-1, new InstrMove(moveArguments).getWrittenRegister());
+    }
+
+
+
     /* ------------------------------ Utility methods and classes ------------------------------ */
 
     /**
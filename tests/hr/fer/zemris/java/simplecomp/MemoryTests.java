@@ -0,0 +1,405 @@
+package hr.fer.zemris.java.simplecomp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import hr.fer.zemris.java.simplecomp.impl.ComputerImpl;
+import hr.fer.zemris.java.simplecomp.impl.ComputerSnapshot;
+import hr.fer.zemris.java.simplecomp.impl.ExecutionUnitImpl;
+import hr.fer.zemris.java.simplecomp.impl.MappedMemory;
+import hr.fer.zemris.java.simplecomp.impl.MemoryImpl;
+import hr.fer.zemris.java.simplecomp.impl.OffHeapMemory;
+import hr.fer.zemris.java.simplecomp.impl.PagedMemory;
+import hr.fer.zemris.java.simplecomp.impl.RegistersImpl;
+import hr.fer.zemris.java.simplecomp.io.InputSource;
+import hr.fer.zemris.java.simplecomp.io.OutputSink;
+import hr.fer.zemris.java.simplecomp.models.Computer;
+import hr.fer.zemris.java.simplecomp.parser.InstructionCreatorImpl;
+import hr.fer.zemris.java.simplecomp.parser.ProgramParser;
+
+@SuppressWarnings("javadoc")
+public class MemoryTests {
+
+    /** Program that reads n, stores the sum of 1 to n into @n and echoes it. */
+    private static final String SUM_PROGRAM =
+              "        move r2, 0\n"
+            + "        move r1, 0\n"
+            + "        iinput @n\n"
+            + "        load r0, @n\n"
+            + "@loop:  testEquals r0, r2\n"
+            + "        jumpIfTrue @end\n"
+            + "        add r1, r1, r0\n"
+            + "        decrement r0\n"
+            + "        jump @loop\n"
+            + "@end:   move r3, @n\n"
+            + "        move [r3+0], r1\n"
+            + "        echo r1\n"
+            + "        halt\n"
+            + "@n:     DEFINT 0\n";
+
+    /* ------------------------------ Primitive memory tests ------------------------------ */
+
+    @Test
+    public void testIntegerStoredAsPrimitive() {
+        MemoryImpl m = new MemoryImpl(64);
+        m.setLocation(10, 42);
+
+        assertTrue(m.isInt(10));
+        assertEquals(42, m.getInt(10));
+        assertEquals(42, m.getLocation(10));
+    }
+
+    @Test
+    public void testObjectsInSideTable() {
+        MemoryImpl m = new MemoryImpl(100_000);
+        for (int i = 0; i < 100_000; i += 7) {
+            m.setLocation(i, "s" + i);
+        }
+        // overwrite every other object with an integer
+        for (int i = 0; i < 100_000; i += 14) {
+            m.setInt(i, i);
+        }
+
+        for (int i = 0; i < 100_000; i += 7) {
+            if (i % 14 == 0) {
+                assertEquals(i, m.getLocation(i));
+            } else {
+                assertFalse(m.isInt(i));
+                assertEquals("s" + i, m.getLocation(i));
+            }
+        }
+        assertNull(m.getLocation(1));
+    }
+
+    @Test
+    public void testNullClearsLocation() {
+        MemoryImpl m = new MemoryImpl(16);
+        m.setLocation(3, "text");
+        m.setLocation(3, null);
+
+        assertFalse(m.isInt(3));
+        assertNull(m.getLocation(3));
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testGetIntOfString() {
+        MemoryImpl m = new MemoryImpl(16);
+        m.setLocation(0, "text");
+        m.getInt(0);
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testSetIntOutOfRange() {
+        new MemoryImpl(16).setInt(16, 1);
+    }
+
+
+    /* ------------------------------ Off-heap memory tests ------------------------------ */
+
+    @Test
+    public void testOffHeapValues() {
+        try (OffHeapMemory m = new OffHeapMemory(1000)) {
+            assertNull(m.getLocation(999));
+
+            m.setInt(999, -5);
+            m.setLocation(0, "text");
+            m.setLocation(1, 7);
+
+            assertEquals(-5, m.getLocation(999));
+            assertEquals("text", m.getLocation(0));
+            assertTrue(m.isInt(1));
+            assertEquals(7, m.getInt(1));
+
+            m.setInt(0, 3);
+            assertEquals(3, m.getLocation(0));
+        }
+    }
+
+    @Test
+    public void testOffHeapExecution() throws Exception {
+        try (OffHeapMemory m = new OffHeapMemory(256)) {
+            Computer c = new ComputerImpl(m, new RegistersImpl(16));
+            ProgramParser.parse(new StringReader(
+                      "        load r0, @n\n"
+                    + "        move r1, 0\n"
+                    + "@loop:  add r1, r1, r0\n"
+                    + "        decrement r0\n"
+                    + "        testEquals r0, r2\n"
+                    + "        jumpIfTrue @end\n"
+                    + "        jump @loop\n"
+                    + "@end:   halt\n"
+                    + "@n:     DEFINT 10\n"), c,
+                    new InstructionCreatorImpl("hr.fer.zemris.java.simplecomp.impl.instructions"));
+            c.getRegisters().setRegisterValue(2, 0);
+
+            assertTrue(new ExecutionUnitImpl().go(c));
+            assertEquals(55, c.getRegisters().getRegisterValue(1));
+        }
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testOffHeapClosed() {
+        OffHeapMemory m = new OffHeapMemory(16);
+        m.close();
+        m.close();
+        m.getLocation(0);
+    }
+
+    @Test
+    public void testOffHeapCloseWhileAccessed() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            OffHeapMemory m = new OffHeapMemory(1024);
+            Thread closer = new Thread(m::close);
+            closer.start();
+
+            try {
+                for (int i = 0; ; i = (i + 1) % 1024) {
+                    m.setInt(i, i);
+                    assertEquals(i, m.getInt(i));
+                }
+            } catch (IllegalStateException e) {
+                assertEquals("Memory is closed.", e.getMessage());
+            }
+            closer.join();
+        }
+    }
+
+
+    /* ------------------------------ Paged memory tests ------------------------------ */
+
+    @Test
+    public void testPagedValues() {
+        PagedMemory m = new PagedMemory(1000, 64);
+        assertNull(m.getLocation(999));
+        assertEquals(0, m.getCopiedPages());
+
+        m.setInt(999, -5);
+        m.setLocation(0, "text");
+        m.setLocation(1, 7);
+
+        assertEquals(-5, m.getLocation(999));
+        assertEquals("text", m.getLocation(0));
+        assertTrue(m.isInt(1));
+        assertEquals(7, m.getInt(1));
+
+        m.setInt(0, 3);
+        assertEquals(3, m.getLocation(0));
+        m.setLocation(1, null);
+        assertNull(m.getLocation(1));
+        assertEquals(2, m.getCopiedPages());
+    }
+
+    @Test
+    public void testPagedSnapshotUnchanged() {
+        PagedMemory m = new PagedMemory(1000, 64);
+        m.setInt(10, 1);
+        m.setLocation(500, "old");
+
+        PagedMemory.Snapshot snapshot = m.snapshot();
+        m.setInt(10, 2);
+        m.setLocation(500, "new");
+
+        PagedMemory copy = new PagedMemory(snapshot);
+        assertEquals(1, copy.getLocation(10));
+        assertEquals("old", copy.getLocation(500));
+        assertEquals(0, copy.getCopiedPages());
+
+        m.restore(snapshot);
+        assertEquals(1, m.getLocation(10));
+        assertEquals("old", m.getLocation(500));
+    }
+
+    @Test
+    public void testPagedForkCopiesOnWrite() {
+        PagedMemory m = new PagedMemory(100_000);
+        for (int i = 0; i < 100_000; i++) {
+            m.setInt(i, i);
+        }
+        long copied = m.getCopiedPages();
+
+        PagedMemory fork = m.fork();
+        fork.setInt(5, -1);
+        fork.setInt(6, -2);
+        m.setInt(99_999, -3);
+
+        assertEquals(1, fork.getCopiedPages());
+        assertEquals(copied + 1, m.getCopiedPages());
+        assertEquals(-1, fork.getInt(5));
+        assertEquals(5, m.getInt(5));
+        assertEquals(99_999, fork.getInt(99_999));
+        assertEquals(-3, m.getInt(99_999));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testPagedInvalidPageSize() {
+        new PagedMemory(100, 48);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testPagedRestoreOtherSize() {
+        new PagedMemory(100).restore(new PagedMemory(200).snapshot());
+    }
+
+
+    /* ------------------------------ Computer snapshot tests ------------------------------ */
+
+    @Test
+    public void testForkAtInput() throws Exception {
+        ComputerImpl c = new ComputerImpl(new PagedMemory(256), new RegistersImpl(16));
+        ProgramParser.parse(new StringReader(SUM_PROGRAM), c,
+                new InstructionCreatorImpl("hr.fer.zemris.java.simplecomp.impl.instructions"));
+        c.setInput(new InputSource(new ByteArrayInputStream(new byte[0])));
+
+        assertEquals(ExecutionUnitImpl.StepStatus.WAITING_FOR_INPUT, new ExecutionUnitImpl().step(c, 100));
+        ComputerSnapshot snapshot = c.snapshot();
+
+        for (int n = 0; n < 1000; n++) {
+            ComputerImpl fork = snapshot.fork();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            fork.setInput(new InputSource(new ByteArrayInputStream((n + "\n").getBytes())));
+            fork.setOutput(new OutputSink(out));
+
+            runToHalt(fork);
+            assertEquals(Integer.toString(n * (n + 1) / 2), out.toString());
+            assertEquals(n * (n + 1) / 2, fork.getMemory().getLocation(13));
+        }
+
+        // the forks did not change the original computer
+        assertEquals(2, c.getRegisters().getProgramCounter());
+        assertEquals(0, c.getMemory().getLocation(13));
+    }
+
+    @Test
+    public void testForkWithOutputAndInput() throws Exception {
+        ComputerImpl c = new ComputerImpl(new PagedMemory(256), new RegistersImpl(16));
+        ProgramParser.parse(new StringReader(SUM_PROGRAM), c,
+                new InstructionCreatorImpl("hr.fer.zemris.java.simplecomp.impl.instructions"));
+        c.setInput(new InputSource(new ByteArrayInputStream(new byte[0])));
+
+        new ExecutionUnitImpl().step(c, 100);
+        ComputerSnapshot snapshot = c.snapshot();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputSink output = new OutputSink(out, 16);
+        InputSource input = new InputSource(new ByteArrayInputStream("4\n".getBytes()), 16);
+        ComputerImpl fork = snapshot.fork(output, input);
+        assertSame(output, fork.getOutput());
+        assertSame(input, fork.getInput());
+
+        runToHalt(fork);
+        assertEquals("10", out.toString());
+    }
+
+    @Test
+    public void testRollback() throws Exception {
+        ComputerImpl c = new ComputerImpl(new PagedMemory(256), new RegistersImpl(16));
+        ProgramParser.parse(new StringReader(SUM_PROGRAM), c,
+                new InstructionCreatorImpl("hr.fer.zemris.java.simplecomp.impl.instructions"));
+        c.setInput(new InputSource(new ByteArrayInputStream("10\n".getBytes())));
+        c.setOutput(new OutputSink(new ByteArrayOutputStream()));
+
+        ExecutionUnitImpl exec = new ExecutionUnitImpl();
+        exec.step(c, 4);
+        ComputerSnapshot checkpoint = c.snapshot();
+        runToHalt(c);
+        assertEquals(55, c.getMemory().getLocation(13));
+        assertEquals(55, c.getRegisters().getRegisterValue(1));
+
+        c.restore(checkpoint);
+        assertEquals(4, c.getRegisters().getProgramCounter());
+        assertEquals(10, c.getMemory().getLocation(13));
+        assertEquals(0, c.getRegisters().getRegisterValue(1));
+        assertEquals(10, c.getRegisters().getRegisterValue(0));
+
+        // the checkpoint can be restored again
+        runToHalt(c);
+        c.restore(checkpoint);
+        assertEquals(10, c.getMemory().getLocation(13));
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testSnapshotUnsupported() {
+        new ComputerImpl(256, 16).snapshot();
+    }
+
+    private static void runToHalt(Computer c) {
+        ExecutionUnitImpl exec = new ExecutionUnitImpl();
+        ExecutionUnitImpl.StepStatus status;
+        do {
+            status = exec.step(c, 1000);
+        } while (status == ExecutionUnitImpl.StepStatus.RUNNING);
+        assertEquals(ExecutionUnitImpl.StepStatus.HALTED, status);
+    }
+
+
+    /* ------------------------------ Mapped memory tests ------------------------------ */
+
+    @Test
+    public void testMappedPersists() throws Exception {
+        Path file = Files.createTempFile("memory", ".bin");
+        try {
+            try (MappedMemory m = new MappedMemory(file, 1000)) {
+                m.setInt(5, 123);
+                m.setLocation(999, -1);
+                m.setLocation(6, "not persisted");
+            }
+
+            try (MappedMemory m = new MappedMemory(file, 1000)) {
+                assertEquals(123, m.getInt(5));
+                assertEquals(-1, m.getLocation(999));
+                assertNull(m.getLocation(6));
+                assertNull(m.getLocation(7));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testMappedNotClosed() throws Exception {
+        Path file = Files.createTempFile("memory", ".bin");
+        try {
+            // the first memory is still open, as if its run ended without closing it
+            MappedMemory unclosed = new MappedMemory(file, 1000);
+            unclosed.setInt(5, 123);
+            unclosed.setLocation(6, "not persisted");
+            unclosed.sync();
+
+            try (MappedMemory m = new MappedMemory(file, 1000)) {
+                assertEquals(123, m.getInt(5));
+                assertNull(m.getLocation(6));
+            }
+
+            // the tag of location 6 follows the 16 byte header and 1000 values
+            byte[] bytes = Files.readAllBytes(file);
+            assertEquals(0, bytes[16 + 4*1000 + 6]);
+            unclosed.close();
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected=IOException.class)
+    public void testMappedSizeMismatch() throws Exception {
+        Path file = Files.createTempFile("memory", ".bin");
+        try {
+            new MappedMemory(file, 100).close();
+            new MappedMemory(file, 200).close();
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+}
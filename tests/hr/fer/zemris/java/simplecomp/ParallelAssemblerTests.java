@@ -0,0 +1,216 @@
+package hr.fer.zemris.java.simplecomp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import hr.fer.zemris.java.simplecomp.impl.ComputerImpl;
+import hr.fer.zemris.java.simplecomp.impl.InstructionRegistry;
+import hr.fer.zemris.java.simplecomp.impl.MemoryImpl;
+import hr.fer.zemris.java.simplecomp.impl.ParallelAssembler;
+import hr.fer.zemris.java.simplecomp.impl.RegistersImpl;
+import hr.fer.zemris.java.simplecomp.models.Computer;
+import hr.fer.zemris.java.simplecomp.models.Instruction;
+import hr.fer.zemris.java.simplecomp.models.Registers;
+import hr.fer.zemris.java.simplecomp.parser.ProgramParser;
+
+@SuppressWarnings("javadoc")
+public class ParallelAssemblerTests {
+
+    private static final int MEMORY_SIZE = 50000;
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(8);
+
+    /** Splits every source into as many chunks as the pool allows. */
+    private static final ParallelAssembler ASSEMBLER = new ParallelAssembler(POOL, 1);
+
+    @AfterClass
+    public static void shutdownPool() {
+        POOL.shutdown();
+    }
+
+    private static Computer newComputer() {
+        return new ComputerImpl(new MemoryImpl(MEMORY_SIZE), new RegistersImpl(16));
+    }
+
+    private static Object parseSequential(byte[] source, Computer computer) {
+        try {
+            ProgramParser.parse(
+                    new InputStreamReader(new ByteArrayInputStream(source), StandardCharsets.UTF_8),
+                    computer, InstructionRegistry.getDefault());
+            return null;
+        } catch (Exception e) {
+            return e;
+        }
+    }
+
+    private static Object parseParallel(byte[] source, Computer computer) {
+        try {
+            ASSEMBLER.assemble(source, computer, InstructionRegistry.getDefault());
+            return null;
+        } catch (Exception e) {
+            return e;
+        }
+    }
+
+    private static void assertSameContents(Computer expected, Computer actual) {
+        for (int i = 0; i < MEMORY_SIZE; i++) {
+            Object e = expected.getMemory().getLocation(i);
+            Object a = actual.getMemory().getLocation(i);
+            if (e instanceof Instruction) {
+                assertNotNull("Location " + i, a);
+                assertEquals("Location " + i, e.getClass(), a.getClass());
+            } else {
+                assertEquals("Location " + i, e, a);
+            }
+        }
+        assertEquals(
+                expected.getRegisters().getRegisterValue(Registers.STACK_REGISTER_INDEX),
+                actual.getRegisters().getRegisterValue(Registers.STACK_REGISTER_INDEX));
+    }
+
+    private static void assertSameResult(String source) {
+        byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+        Computer expected = newComputer();
+        Computer actual = newComputer();
+
+        Object expectedFailure = parseSequential(bytes, expected);
+        Object actualFailure = parseParallel(bytes, actual);
+
+        if (expectedFailure == null) {
+            assertEquals(null, actualFailure);
+        } else {
+            assertNotNull("Expected " + expectedFailure, actualFailure);
+            assertEquals(expectedFailure.getClass(), actualFailure.getClass());
+            assertEquals(((Exception) expectedFailure).getMessage(), ((Exception) actualFailure).getMessage());
+        }
+        assertSameContents(expected, actual);
+    }
+
+    private static String largeProgram(int functions) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("# generated program\r\n");
+        sb.append("        load r7, @count\n");
+        for (int i = 0; i < functions; i++) {
+            sb.append("        call @f").append(i).append("  ; forward reference\n");
+        }
+        sb.append("        halt\n\n");
+        for (int i = 0; i < functions; i++) {
+            sb.append("@f").append(i).append(":\tmove r0, ").append(i).append('\n');
+            sb.append("        move r1, [r15+").append(i % 100).append("]\n");
+            sb.append("        add r0, r0, r7\n");
+            sb.append("        testEquals r0, r1\n");
+            sb.append("        jumpIfTrue @f").append(i / 2).append('\n');
+            sb.append("        ret\n");
+            sb.append("@s").append(i).append(": DEFSTR \"str\\n\\t\\\"").append(i).append("\\\"\"\n");
+            sb.append("@i").append(i).append(": DEFINT -").append(i).append('\n');
+        }
+        sb.append("@count: DEFINT 0\n");
+        sb.append("        RESERVE:20\n");
+        sb.append("@stackTop: RESERVE\n");
+        return sb.toString();
+    }
+
+
+    /* ------------------------------ Program tests ------------------------------ */
+
+    @Test
+    public void testExamples() throws Exception {
+        try (DirectoryStream<Path> examples = Files.newDirectoryStream(Paths.get("examples"), "*.txt")) {
+            for (Path example : examples) {
+                assertSameResult(new String(Files.readAllBytes(example), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Test
+    public void testLargeProgram() {
+        String source = largeProgram(1500);
+        assertTrue(source.length() > 100_000);
+        assertSameResult(source);
+    }
+
+    @Test
+    public void testDefaultChunkSize() throws Exception {
+        byte[] source = largeProgram(5000).getBytes(StandardCharsets.UTF_8);
+        Computer expected = newComputer();
+        Computer actual = newComputer();
+
+        parseSequential(source, expected);
+        new ParallelAssembler().assemble(source, actual, InstructionRegistry.getDefault());
+        assertSameContents(expected, actual);
+    }
+
+    @Test
+    public void testEmptyProgram() {
+        assertSameResult("");
+        assertSameResult("\n\n# comment only\n");
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidChunkSize() {
+        new ParallelAssembler(POOL, 0);
+    }
+
+
+    /* ------------------------------ Error tests ------------------------------ */
+
+    @Test
+    public void testSyntaxErrors() {
+        String prefix = largeProgram(20);
+        String[] lines = {
+                "move r0 r1",
+                "move x0, r1",
+                "move r300, r1",
+                "move r0, [x1]",
+                "move r0, [r1*2]",
+                "move r0, [r1+x]",
+                "move r0, [r1+40000]",
+                "move r0, [r1+2",
+                "echo \"unterminated",
+                "DEFSTR 1, 2",
+                "DEFINT",
+                "DEFINT \"text\"",
+                "RESERVE 3",
+                "RESERVE:0",
+                "RESERVE:x",
+                "RESERVE:2 x",
+                "@label",
+                "@f3: halt",
+                "123",
+                "nop r0",
+                "move r0, 99999999999",
+                "move r0, r1 , , r2",
+                "@label: ",
+        };
+        for (String line : lines) {
+            assertSameResult(prefix + line + "\n" + prefix.replace("@", "@x"));
+        }
+    }
+
+    @Test
+    public void testFirstPassErrorWins() {
+        // The parser reads all labels before it creates any instruction.
+        String source = largeProgram(20) + "move r0 r1\n" + largeProgram(5).replace("@", "@y") + "RESERVE:0\n";
+        assertSameResult(source);
+    }
+
+    @Test
+    public void testFirstErrorInLineOrder() {
+        String source = largeProgram(30) + "move r0 r1\n" + largeProgram(30).replace("@", "@z") + "nop\n";
+        assertSameResult(source);
+    }
+
+}
@@ -0,0 +1,336 @@
+package hr.fer.zemris.java.simplecomp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import hr.fer.zemris.java.simplecomp.impl.ComputerImpl;
+import hr.fer.zemris.java.simplecomp.impl.MemoryImpl;
+import hr.fer.zemris.java.simplecomp.impl.ObjectFile;
+import hr.fer.zemris.java.simplecomp.impl.ProgramImage;
+import hr.fer.zemris.java.simplecomp.impl.ProgramImageCache;
+import hr.fer.zemris.java.simplecomp.impl.RegistersImpl;
+import hr.fer.zemris.java.simplecomp.models.Computer;
+import hr.fer.zemris.java.simplecomp.models.Instruction;
+import hr.fer.zemris.java.simplecomp.models.Memory;
+import hr.fer.zemris.java.simplecomp.models.Registers;
+import hr.fer.zemris.java.simplecomp.parser.InstructionCreatorImpl;
+import hr.fer.zemris.java.simplecomp.parser.ProgramParser;
+
+@SuppressWarnings("javadoc")
+public class ProgramImageTests {
+
+    private static final String PACKAGE = "hr.fer.zemris.java.simplecomp.impl.instructions";
+
+    private static final String PROGRAM =
+              "        load r0, @n\n"
+            + "        echo r0\n"
+            + "        load r0, @s\n"
+            + "        echo r0\n"
+            + "        halt\n"
+            + "@n:     DEFINT 42\n"
+            + "@s:     DEFSTR \"text\"\n"
+            + "        RESERVE:3\n"
+            + "@stackTop: RESERVE\n";
+
+    private static ComputerImpl parse(Path path) throws Exception {
+        ComputerImpl computer = new ComputerImpl(new MemoryImpl(256), new RegistersImpl(16));
+        ProgramParser.parse(path.toString(), computer, new InstructionCreatorImpl(PACKAGE));
+        return computer;
+    }
+
+    private static void assertSameContents(Computer expected, Computer actual) {
+        for (int i = 0; i < 256; i++) {
+            Object e = expected.getMemory().getLocation(i);
+            Object a = actual.getMemory().getLocation(i);
+            if (e instanceof Instruction) {
+                assertEquals(e.getClass(), a.getClass());
+            } else {
+                assertEquals(e, a);
+            }
+        }
+        assertEquals(
+                expected.getRegisters().getRegisterValue(Registers.STACK_REGISTER_INDEX),
+                actual.getRegisters().getRegisterValue(Registers.STACK_REGISTER_INDEX));
+    }
+
+    private static void deleteDirectory(Path dir) throws Exception {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+
+    /* ------------------------------ Image tests ------------------------------ */
+
+    @Test
+    public void testImageMatchesParser() throws Exception {
+        try (DirectoryStream<Path> examples = Files.newDirectoryStream(Paths.get("examples"), "*.txt")) {
+            for (Path example : examples) {
+                ProgramImage image = ProgramImage.assemble(Files.readAllBytes(example), PACKAGE);
+                ComputerImpl computer = new ComputerImpl(new MemoryImpl(256), new RegistersImpl(16));
+                image.loadInto(computer);
+
+                assertSameContents(parse(example), computer);
+            }
+        }
+    }
+
+    @Test
+    public void testImageContents() throws Exception {
+        ProgramImage image = ProgramImage.assemble(PROGRAM.getBytes(), PACKAGE);
+
+        assertEquals(11, image.size());
+        assertEquals(42, image.getCell(5));
+        assertEquals("text", image.getCell(6));
+        assertEquals(0, image.getCell(10));
+        assertEquals(Integer.valueOf(10), image.getStackTop());
+        assertTrue(image.isWritable());
+    }
+
+    @Test
+    public void testLoadReplacesPreviousContents() throws Exception {
+        ProgramImage image = ProgramImage.assemble(PROGRAM.getBytes(), PACKAGE);
+        ComputerImpl computer = new ComputerImpl(new MemoryImpl(256), new RegistersImpl(16));
+        computer.getMemory().setLocation(0, "old");
+        computer.getMemory().setLocation(5, "old");
+        computer.getMemory().setLocation(20, 7);
+
+        image.loadInto(computer);
+        assertTrue(computer.getMemory().getLocation(0) instanceof Instruction);
+        assertEquals(42, computer.getMemory().getLocation(5));
+        assertEquals(7, computer.getMemory().getLocation(20));
+        assertEquals(10, computer.getRegisters().getRegisterValue(Registers.STACK_REGISTER_INDEX));
+    }
+
+    @Test
+    public void testLoadIntoOtherMemory() throws Exception {
+        ProgramImage image = ProgramImage.assemble(PROGRAM.getBytes(), PACKAGE);
+        Memory memory = mock(Memory.class);
+        Registers registers = mock(Registers.class);
+        Computer computer = mock(Computer.class);
+        when(computer.getMemory()).thenReturn(memory);
+        when(computer.getRegisters()).thenReturn(registers);
+
+        image.loadInto(computer);
+        verify(memory).setLocation(5, 42);
+        verify(memory).setLocation(6, "text");
+        verify(registers).setRegisterValue(Registers.STACK_REGISTER_INDEX, 10);
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testLoadTooLarge() throws Exception {
+        ProgramImage image = ProgramImage.assemble(PROGRAM.getBytes(), PACKAGE);
+        image.loadInto(new ComputerImpl(new MemoryImpl(5), new RegistersImpl(16)));
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        ProgramImage image = ProgramImage.assemble(PROGRAM.getBytes(), PACKAGE);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        image.write(new DataOutputStream(bytes));
+
+        ProgramImage read = ProgramImage.read(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())),
+                new InstructionCreatorImpl(PACKAGE));
+
+        ComputerImpl expected = new ComputerImpl(new MemoryImpl(256), new RegistersImpl(16));
+        ComputerImpl actual = new ComputerImpl(new MemoryImpl(256), new RegistersImpl(16));
+        image.loadInto(expected);
+        read.loadInto(actual);
+        assertSameContents(expected, actual);
+    }
+
+
+    /* ------------------------------ Cache tests ------------------------------ */
+
+    @Test
+    public void testMemoryLevel() throws Exception {
+        ProgramImageCache cache = new ProgramImageCache(2);
+        ProgramImage first = cache.get(PROGRAM.getBytes(), PACKAGE);
+        ProgramImage second = cache.get(PROGRAM.getBytes(), PACKAGE);
+
+        assertSame(first, second);
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getMemoryHits());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() throws Exception {
+        ProgramImageCache cache = new ProgramImageCache(2);
+        ProgramImage a = cache.get("halt\n".getBytes(), PACKAGE);
+        cache.get("echo r0\nhalt\n".getBytes(), PACKAGE);
+        cache.get("halt\n".getBytes(), PACKAGE);
+        cache.get("echo r1\nhalt\n".getBytes(), PACKAGE);
+
+        assertEquals(2, cache.size());
+        assertSame(a, cache.get("halt\n".getBytes(), PACKAGE));
+        assertEquals(3, cache.getMisses());
+
+        cache.get("echo r0\nhalt\n".getBytes(), PACKAGE);
+        assertEquals(4, cache.getMisses());
+    }
+
+    @Test
+    public void testKeyIncludesPackage() throws Exception {
+        ProgramImageCache cache = new ProgramImageCache(2);
+        cache.get("halt\n".getBytes(), PACKAGE);
+        try {
+            cache.get("halt\n".getBytes(), "no.such.pkg");
+        } catch (Exception expected) {}
+
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testDiskLevel() throws Exception {
+        Path dir = Files.createTempDirectory("images");
+        try {
+            new ProgramImageCache(2, dir).get(PROGRAM.getBytes(), PACKAGE);
+
+            ProgramImageCache cache = new ProgramImageCache(2, dir);
+            ProgramImage image = cache.get(PROGRAM.getBytes(), PACKAGE);
+            assertEquals(1, cache.getDiskHits());
+            assertEquals(0, cache.getMisses());
+            assertEquals(Integer.valueOf(10), image.getStackTop());
+        } finally {
+            deleteDirectory(dir);
+        }
+    }
+
+    @Test
+    public void testCorruptFileReplaced() throws Exception {
+        Path dir = Files.createTempDirectory("images");
+        try {
+            new ProgramImageCache(2, dir).get(PROGRAM.getBytes(), PACKAGE);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                for (Path file : files) {
+                    Files.write(file, new byte[] {1, 2, 3});
+                }
+            }
+
+            ProgramImageCache cache = new ProgramImageCache(2, dir);
+            assertNotNull(cache.get(PROGRAM.getBytes(), PACKAGE));
+            assertEquals(1, cache.getMisses());
+
+            cache = new ProgramImageCache(2, dir);
+            cache.get(PROGRAM.getBytes(), PACKAGE);
+            assertEquals(1, cache.getDiskHits());
+        } finally {
+            deleteDirectory(dir);
+        }
+    }
+
+    @Test
+    public void testBatchRunsShareImages() {
+        BatchRunner runner = new BatchRunner(2, Simulator.DEFAULT_MEMORY_SIZE);
+        Path program = Paths.get("examples/asmProgram1.txt");
+        for (BatchResult result : runner.run(Arrays.asList(program, program, program, program))) {
+            assertTrue(result.isEndedRegularly());
+            assertNull(result.getFailure());
+        }
+        runner.shutdown();
+
+        ProgramImageCache cache = runner.getCache();
+        assertEquals(4, cache.getMisses() + cache.getMemoryHits());
+        assertEquals(1, cache.size());
+    }
+
+
+    /* ------------------------------ Object file tests ------------------------------ */
+
+    @Test
+    public void testObjectFileMatchesParser() throws Exception {
+        Path file = Files.createTempFile("program", ".sco");
+        try (DirectoryStream<Path> examples = Files.newDirectoryStream(Paths.get("examples"), "*.txt")) {
+            for (Path example : examples) {
+                ObjectFile.assemble(Files.readAllBytes(example), PACKAGE).write(file);
+                assertTrue(ObjectFile.isObjectFile(file));
+
+                ComputerImpl computer = new ComputerImpl(new MemoryImpl(256), new RegistersImpl(16));
+                ObjectFile.load(file).getImage().loadInto(computer);
+                assertSameContents(parse(example), computer);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testSymbols() throws Exception {
+        Path file = Files.createTempFile("program", ".sco");
+        try {
+            ObjectFile.assemble(PROGRAM.getBytes(), PACKAGE).write(file);
+
+            Map<String, Integer> expected = new LinkedHashMap<>();
+            expected.put("@n", 5);
+            expected.put("@s", 6);
+            expected.put("@stackTop", 10);
+            assertEquals(expected, ObjectFile.load(file).getSymbols());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testDisassemble() throws Exception {
+        ObjectFile object = ObjectFile.assemble(
+                "@a: move [r1-2], -7\n        halt\n@s: DEFSTR \"x\\\"\\n\"\n".getBytes(), PACKAGE);
+
+        assertEquals("@a:\tmove [r1-2], -7\n\thalt\n@s:\tDEFSTR \"x\\\"\\n\"\n", object.disassemble());
+    }
+
+    @Test
+    public void testDisassembledSourceParses() throws Exception {
+        Path example = Paths.get("examples/prim2.txt");
+        String source = ObjectFile.assemble(Files.readAllBytes(example), PACKAGE).disassemble();
+
+        ComputerImpl computer = new ComputerImpl(new MemoryImpl(256), new RegistersImpl(16));
+        ProgramImage.assemble(source.getBytes(StandardCharsets.UTF_8), PACKAGE).loadInto(computer);
+        assertSameContents(parse(example), computer);
+    }
+
+    @Test
+    public void testNotObjectFile() throws Exception {
+        assertFalse(ObjectFile.isObjectFile(Paths.get("examples/prim2.txt")));
+    }
+
+    @Test(expected=IOException.class)
+    public void testTruncatedObjectFile() throws Exception {
+        Path file = Files.createTempFile("program", ".sco");
+        try {
+            ObjectFile.assemble(PROGRAM.getBytes(), PACKAGE).write(file);
+            byte[] bytes = Files.readAllBytes(file);
+            Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+            ObjectFile.load(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+}
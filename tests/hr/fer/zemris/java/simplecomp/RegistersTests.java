@@ -0,0 +1,59 @@
+package hr.fer.zemris.java.simplecomp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import hr.fer.zemris.java.simplecomp.impl.RegistersImpl;
+
+@SuppressWarnings("javadoc")
+public class RegistersTests {
+
+    /* ------------------------------ Primitive registers tests ------------------------------ */
+
+    @Test
+    public void testIntegerStoredAsPrimitive() {
+        RegistersImpl r = new RegistersImpl(16);
+        r.setRegisterValue(0, 42);
+
+        assertTrue(r.isInt(0));
+        assertEquals(42, r.getInt(0));
+        assertEquals(42, r.getRegisterValue(0));
+    }
+
+    @Test
+    public void testSetIntReadAsObject() {
+        RegistersImpl r = new RegistersImpl(16);
+        r.setInt(3, -7);
+
+        assertEquals(Integer.valueOf(-7), r.getRegisterValue(3));
+    }
+
+    @Test
+    public void testObjectOverwritesInteger() {
+        RegistersImpl r = new RegistersImpl(16);
+        r.setInt(1, 5);
+        r.setRegisterValue(1, "text");
+
+        assertFalse(r.isInt(1));
+        assertEquals("text", r.getRegisterValue(1));
+
+        r.setRegisterValue(1, null);
+        assertFalse(r.isInt(1));
+        assertNull(r.getRegisterValue(1));
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testGetIntOfEmptyRegister() {
+        new RegistersImpl(16).getInt(2);
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testSetIntOutOfRange() {
+        new RegistersImpl(16).setInt(16, 1);
+    }
+
+}
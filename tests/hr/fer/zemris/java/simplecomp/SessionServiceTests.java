@@ -0,0 +1,270 @@
+package hr.fer.zemris.java.simplecomp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import hr.fer.zemris.java.simplecomp.impl.ComputerImpl;
+import hr.fer.zemris.java.simplecomp.impl.MemoryImpl;
+import hr.fer.zemris.java.simplecomp.impl.RegistersImpl;
+import hr.fer.zemris.java.simplecomp.impl.Session;
+import hr.fer.zemris.java.simplecomp.impl.SessionService;
+import hr.fer.zemris.java.simplecomp.parser.InstructionCreatorImpl;
+import hr.fer.zemris.java.simplecomp.parser.ProgramParser;
+
+@SuppressWarnings("javadoc")
+public class SessionServiceTests {
+
+    private static final String ECHO_DOUBLE =
+              "@loop:  iinput @n\n"
+            + "        jumpIfTrue @read\n"
+            + "        halt\n"
+            + "@read:  load r0, @n\n"
+            + "        add r0, r0, r0\n"
+            + "        echo r0\n"
+            + "        jump @loop\n"
+            + "@n:     DEFINT 0\n";
+
+    private static final String SPIN =
+              "@loop:  jump @loop\n";
+
+    private SessionService service;
+
+    @Before
+    public void setUp() {
+        service = new SessionService(2, 100);
+    }
+
+    @After
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    private static ComputerImpl load(String program) throws Exception {
+        Path file = Files.createTempFile("session", ".txt");
+        try {
+            Files.write(file, program.getBytes());
+            ComputerImpl computer = new ComputerImpl(new MemoryImpl(256), new RegistersImpl(16));
+            ProgramParser.parse(file.toString(), computer,
+                    new InstructionCreatorImpl("hr.fer.zemris.java.simplecomp.impl.instructions"));
+            return computer;
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void awaitState(Session session, Session.State state) throws InterruptedException {
+        for (int i = 0; i < 500 && session.getState() != state; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(state, session.getState());
+    }
+
+    private static long[] sample(Session low, Session high, long min) throws InterruptedException {
+        // one thread alternates the slices, so read both counts while the first does not change
+        long lowCount, highCount;
+        do {
+            Thread.sleep(10);
+            lowCount = low.getExecutedInstructions();
+            highCount = high.getExecutedInstructions();
+        } while (lowCount < min || lowCount != low.getExecutedInstructions());
+        return new long[] { lowCount, highCount };
+    }
+
+
+    /* ------------------------------ Session tests ------------------------------ */
+
+    @Test
+    public void testInteractiveSession() throws Exception {
+        Session session = service.open(load(ECHO_DOUBLE));
+        awaitState(session, Session.State.BLOCKED);
+        assertEquals(1, service.getBlockedCount());
+
+        session.offerLine("21");
+        awaitState(session, Session.State.BLOCKED);
+        assertEquals("42", session.takeOutput());
+
+        session.offerLine("5");
+        session.offerLine("7");
+        awaitState(session, Session.State.BLOCKED);
+        assertEquals("1014", session.takeOutput());
+
+        session.offerLine("end");
+        assertTrue(session.awaitFinish(5, TimeUnit.SECONDS));
+        assertTrue(session.isEndedRegularly());
+        assertNull(session.getFailure());
+        assertEquals(1, service.getFinishedCount());
+        assertEquals(0, service.getBlockedCount());
+    }
+
+    @Test
+    public void testClosedInput() throws Exception {
+        Session session = service.open(load(ECHO_DOUBLE));
+        session.offerLine("3");
+        session.closeInput();
+
+        assertTrue(session.awaitFinish(5, TimeUnit.SECONDS));
+        assertFalse(session.isEndedRegularly());
+        assertTrue(session.getFailure().contains("Input stream closed."));
+        assertEquals("6", session.takeOutput());
+    }
+
+    @Test
+    public void testFailureRecorded() throws Exception {
+        Session session = service.open(load("echo r0\nmove r1, [r2+0]\nhalt\n"));
+
+        assertTrue(session.awaitFinish(5, TimeUnit.SECONDS));
+        assertFalse(session.isEndedRegularly());
+        assertTrue(session.getFailure().endsWith("at instruction on address 1"));
+        assertEquals("null", session.takeOutput());
+    }
+
+    @Test
+    public void testCancelBlocked() throws Exception {
+        Session session = service.open(load(ECHO_DOUBLE));
+        awaitState(session, Session.State.BLOCKED);
+
+        session.cancel();
+        assertEquals(Session.State.FINISHED, session.getState());
+        assertTrue(session.isCancelled());
+        assertFalse(session.isEndedRegularly());
+        assertEquals(1, service.getFinishedCount());
+    }
+
+    @Test
+    public void testCancelRunning() throws Exception {
+        Session spinning = service.open(load(SPIN));
+        Session other = service.open(load(ECHO_DOUBLE));
+
+        // slices let the other session run beside the endless loop
+        awaitState(other, Session.State.BLOCKED);
+        assertEquals(Session.State.RUNNABLE, spinning.getState());
+        assertEquals(1, service.getActiveCount());
+
+        spinning.cancel();
+        assertTrue(spinning.awaitFinish(5, TimeUnit.SECONDS));
+        assertFalse(spinning.isEndedRegularly());
+        assertEquals(0, service.getActiveCount());
+    }
+
+    @Test
+    public void testManySessions() throws Exception {
+        List<Session> sessions = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            sessions.add(service.open(load(ECHO_DOUBLE)));
+        }
+        for (int i = 0; i < sessions.size(); i++) {
+            sessions.get(i).offerLine(Integer.toString(i));
+            sessions.get(i).offerLine("end");
+        }
+
+        for (int i = 0; i < sessions.size(); i++) {
+            Session session = sessions.get(i);
+            assertTrue(session.awaitFinish(10, TimeUnit.SECONDS));
+            assertTrue(session.isEndedRegularly());
+            assertEquals(Integer.toString(2 * i), session.takeOutput());
+        }
+        assertEquals(sessions.size(), service.getFinishedCount());
+    }
+
+
+    /* ------------------------------ Priority and quota tests ------------------------------ */
+
+    @Test
+    public void testQuotaExceeded() throws Exception {
+        Session session = service.open(load(SPIN), SessionService.DEFAULT_PRIORITY, 1000);
+
+        assertTrue(session.awaitFinish(5, TimeUnit.SECONDS));
+        assertFalse(session.isEndedRegularly());
+        assertFalse(session.isCancelled());
+        assertEquals("Instruction quota of 1000 exceeded.", session.getFailure());
+        assertEquals(1000, session.getExecutedInstructions());
+    }
+
+    @Test
+    public void testQuotaNotReached() throws Exception {
+        Session session = service.open(load(ECHO_DOUBLE), SessionService.DEFAULT_PRIORITY, 1000);
+        session.offerLine("4");
+        session.offerLine("end");
+
+        assertTrue(session.awaitFinish(5, TimeUnit.SECONDS));
+        assertTrue(session.isEndedRegularly());
+        assertEquals("8", session.takeOutput());
+        assertEquals(9, session.getExecutedInstructions());
+    }
+
+    @Test
+    public void testPriority() throws Exception {
+        SessionService single = new SessionService(1, 100);
+        try {
+            Session low = single.open(load(SPIN), 1, SessionService.NO_QUOTA);
+            Session high = single.open(load(SPIN), 3, SessionService.NO_QUOTA);
+
+            // the low session ran alone before the high one was opened
+            long[] first = sample(low, high, 0);
+            long[] second = sample(low, high, first[0] + 10_000);
+            long lowCount = second[0] - first[0];
+            long highCount = second[1] - first[1];
+            assertTrue(highCount > 2 * lowCount && highCount < 4 * lowCount);
+
+            low.cancel();
+            high.cancel();
+            assertTrue(low.awaitFinish(5, TimeUnit.SECONDS));
+            assertTrue(high.awaitFinish(5, TimeUnit.SECONDS));
+        } finally {
+            single.shutdown();
+        }
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidPriority() throws Exception {
+        service.open(load(SPIN), 0, SessionService.NO_QUOTA);
+    }
+
+
+    /* ------------------------------ Shutdown tests ------------------------------ */
+
+    @Test
+    public void testShutdownCancelsSessions() throws Exception {
+        Session blocked = service.open(load(ECHO_DOUBLE));
+        awaitState(blocked, Session.State.BLOCKED);
+
+        // more spinning sessions than threads, so some of them wait in the run queue
+        List<Session> spinning = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            spinning.add(service.open(load(SPIN)));
+        }
+
+        service.shutdown();
+        assertTrue(service.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(Session.State.FINISHED, blocked.getState());
+        assertTrue(blocked.isCancelled());
+        for (Session session : spinning) {
+            assertEquals(Session.State.FINISHED, session.getState());
+            assertTrue(session.isCancelled());
+            assertEquals("Cancelled.", session.getFailure());
+        }
+        assertEquals(0, service.getActiveCount());
+        assertEquals(0, service.getBlockedCount());
+        assertEquals(9, service.getFinishedCount());
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testOpenAfterShutdown() throws Exception {
+        service.shutdown();
+        service.open(load(SPIN));
+    }
+
+}